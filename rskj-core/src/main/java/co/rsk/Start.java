@@ -235,6 +235,7 @@ public class Start {
         messageHandler.stop();
         txHandler.stop();
         channelManager.stop();
+        blockchain.close();
     }
 
     private void setupRecorder(@Nullable String blocksRecorderFileName) {
@@ -214,6 +214,36 @@ public class RskSystemProperties extends SystemProperties {
                 configFromFiles.getInt("blockchain.flushNumberOfBlocks") : 20;
     }
 
+    public int senderCacheSize() {
+        return configFromFiles.hasPath("transaction.senderCacheSize") ?
+                configFromFiles.getInt("transaction.senderCacheSize") : 100000;
+    }
+
+    public int codeAnalysisCacheSize() {
+        return configFromFiles.hasPath("vm.codeAnalysisCacheSize") ?
+                configFromFiles.getInt("vm.codeAnalysisCacheSize") : 5000;
+    }
+
+    public long trieCacheSize() {
+        return configFromFiles.hasPath("database.trieCacheSize") ?
+                configFromFiles.getBytes("database.trieCacheSize") : 64L * 1024 * 1024;
+    }
+
+    public int trieParallelHashingThreshold() {
+        return configFromFiles.hasPath("database.trieParallelHashingThreshold") ?
+                configFromFiles.getInt("database.trieParallelHashingThreshold") : 0;
+    }
+
+    public int detailsCacheSize() {
+        return configFromFiles.hasPath("database.detailsCacheSize") ?
+                configFromFiles.getInt("database.detailsCacheSize") : 10000;
+    }
+
+    public boolean unifiedContractStorage() {
+        return configFromFiles.hasPath("database.unifiedContractStorage") ?
+                configFromFiles.getBoolean("database.unifiedContractStorage") : false;
+    }
+
     public int soLingerTime() {
         return configFromFiles.hasPath("rpc.linger.time") ?
                 configFromFiles.getInt("rpc.linger.time") : -1;
@@ -384,6 +414,10 @@ public class RskSystemProperties extends SystemProperties {
         return getInt("sync.maxSkeletonChunks", 20);
     }
 
+    public boolean isStateDownloadEnabled() {
+        return configFromFiles.hasPath("sync.stateDownload") && configFromFiles.getBoolean("sync.stateDownload");
+    }
+
     // its fixed, cannot be set by config file
     public int getChunkSize() {
         return CHUNK_SIZE;
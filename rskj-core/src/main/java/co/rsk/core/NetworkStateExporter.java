@@ -32,8 +32,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.math.BigInteger;
@@ -76,6 +79,46 @@ public class NetworkStateExporter {
         }
     }
 
+    /**
+     * Writes the state to a file, in chunks, without loading it in memory.
+     * <p>
+     * The file has the world state trie (see TrieExporter), followed by the contracts. Each contract is written as
+     * a true flag (boolean), its address (20 bytes), the length of its encoded details (int), the encoded details
+     * and, when its storage is external, the storage trie and the keys trie (see ContractDetails.exportStorage).
+     * A false flag ends the contracts. See NetworkStateImporter.
+     */
+    public boolean exportStateTrie(String outputFile) {
+        Repository frozenRepository = this.repository.getSnapshotTo(this.repository.getRoot());
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile)))) {
+            frozenRepository.exportTrie(out);
+
+            for (RskAddress addr : frozenRepository.getAccountsKeys()) {
+                ContractDetails contractDetails = frozenRepository.getContractDetails(addr);
+
+                if (contractDetails == null) {
+                    continue;
+                }
+
+                byte[] encoded = contractDetails.getEncoded();
+
+                out.writeBoolean(true);
+                out.write(addr.getBytes());
+                out.writeInt(encoded.length);
+                out.write(encoded);
+
+                contractDetails.exportStorage(out);
+            }
+
+            out.writeBoolean(false);
+            return true;
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+            panicProcessor.panic("dumpstate", e.getMessage());
+            return false;
+        }
+    }
+
     private ObjectNode createContractNode(ContractDetails contractDetails, ObjectNode accountNode) {
         ObjectNode contractNode = accountNode.objectNode();
         contractNode.put("code", Hex.toHexString(contractDetails.getCode()));
@@ -0,0 +1,127 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.core;
+
+import co.rsk.config.RskSystemProperties;
+import co.rsk.db.ContractDetailsImpl;
+import co.rsk.db.RepositoryImpl;
+import co.rsk.trie.TrieSerializationException;
+import co.rsk.trie.TrieStoreImpl;
+import org.ethereum.core.Repository;
+import org.ethereum.datasource.KeyValueDataSource;
+import org.ethereum.datasource.LevelDbDataSource;
+import org.ethereum.db.DatabaseImpl;
+import org.ethereum.db.DetailsDataStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.util.encoders.Hex;
+
+import javax.annotation.CheckForNull;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Reads a state written by NetworkStateExporter.exportStateTrie into a repository: the world state trie,
+ * and the details and storage of each contract. The repository is moved to the imported root and flushed.
+ */
+public class NetworkStateImporter {
+    private static final Logger logger = LoggerFactory.getLogger(NetworkStateImporter.class);
+
+    // the encoded details of a contract, with its storage in memory
+    private static final int MAX_DETAILS_LENGTH = 64 * 1024 * 1024;
+
+    private final RskSystemProperties config;
+    private final Repository repository;
+
+    public NetworkStateImporter(RskSystemProperties config, Repository repository) {
+        this.config = config;
+        this.repository = repository;
+    }
+
+    /**
+     * @return the root of the imported state, null if it could not be read
+     */
+    @CheckForNull
+    public byte[] importStateTrie(String inputFile) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(inputFile)))) {
+            byte[] root = this.repository.importTrie(in);
+            int contracts = 0;
+
+            while (in.readBoolean()) {
+                byte[] address = new byte[RskAddress.LENGTH_IN_BYTES];
+                in.readFully(address);
+                int length = in.readInt();
+
+                if (length < 0 || length > MAX_DETAILS_LENGTH) {
+                    throw new TrieSerializationException("Error importing contract details of " + Hex.toHexString(address), null);
+                }
+
+                byte[] encoded = new byte[length];
+                in.readFully(encoded);
+
+                // the external storage has to be saved before the details are decoded
+                ContractDetailsImpl.importStorage(this.config, encoded, in);
+                this.repository.updateContractDetails(new RskAddress(address),
+                        new ContractDetailsImpl(this.config, encoded, this.repository.getDetailsDataStore().getTrieNodeCache()));
+                contracts++;
+            }
+
+            this.repository.syncToRoot(root);
+            this.repository.flush();
+
+            logger.info("Imported state {}, {} contracts", Hex.toHexString(root), contracts);
+
+            return root;
+        } catch (IOException | TrieSerializationException e) {
+            logger.error(e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Imports a state file, written by the ext_dumpStateTrie RPC method, into the database of the node,
+     * which has to be stopped
+     */
+    public static void main(String[] args) {
+        RskSystemProperties config = new RskSystemProperties();
+
+        KeyValueDataSource stateDataSource = makeDataSource(config, "state");
+        KeyValueDataSource detailsDataSource = makeDataSource(config, "details");
+
+        try {
+            DetailsDataStore detailsDataStore = new DetailsDataStore(config, new DatabaseImpl(detailsDataSource));
+            Repository repository = new RepositoryImpl(config, new TrieStoreImpl(stateDataSource), detailsDataStore);
+
+            if (new NetworkStateImporter(config, repository).importStateTrie(args[0]) == null) {
+                logger.error("The state could not be imported from {}", args[0]);
+            }
+        } finally {
+            stateDataSource.close();
+            detailsDataSource.close();
+        }
+    }
+
+    private static KeyValueDataSource makeDataSource(RskSystemProperties config, String name) {
+        KeyValueDataSource ds = new LevelDbDataSource(config, name);
+        ds.init();
+        return ds;
+    }
+}
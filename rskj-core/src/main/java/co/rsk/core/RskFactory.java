@@ -20,6 +20,7 @@ package co.rsk.core;
 
 import co.rsk.Start;
 import co.rsk.config.RskSystemProperties;
+import co.rsk.core.bc.BlockChainFlusher;
 import co.rsk.core.bc.BlockChainImpl;
 import co.rsk.core.bc.PendingStateImpl;
 import co.rsk.metrics.HashRateCalculator;
@@ -39,6 +40,7 @@ import co.rsk.scoring.PeerScoringManager;
 import co.rsk.scoring.PunishmentParameters;
 import co.rsk.validators.BlockValidator;
 import co.rsk.validators.ProofOfWorkRule;
+import co.rsk.vm.CodeAnalysisCache;
 import org.ethereum.config.SystemProperties;
 import org.ethereum.core.Blockchain;
 import org.ethereum.core.PendingState;
@@ -61,6 +63,7 @@ import org.ethereum.net.p2p.P2pHandler;
 import org.ethereum.net.rlpx.HandshakeHandler;
 import org.ethereum.net.rlpx.MessageCodec;
 import org.ethereum.net.server.*;
+import org.ethereum.rpc.LogBloomIndex;
 import org.ethereum.solidity.compiler.SolidityCompiler;
 import org.ethereum.sync.SyncPool;
 import org.ethereum.vm.program.invoke.ProgramInvokeFactory;
@@ -129,8 +132,18 @@ public class RskFactory {
     }
 
     @Bean
-    public TxHandler getTxHandler(RskSystemProperties config, CompositeEthereumListener compositeEthereumListener, Repository repository, Blockchain blockchain) {
-        return new TxHandlerImpl(config, compositeEthereumListener, repository, blockchain);
+    public TxHandler getTxHandler(RskSystemProperties config, CompositeEthereumListener compositeEthereumListener, Repository repository, Blockchain blockchain, TransactionSenderCache senderCache) {
+        return new TxHandlerImpl(config, compositeEthereumListener, repository, blockchain, senderCache);
+    }
+
+    @Bean
+    public TransactionSenderCache getTransactionSenderCache(RskSystemProperties config) {
+        return new TransactionSenderCache(config.senderCacheSize());
+    }
+
+    @Bean
+    public CodeAnalysisCache getCodeAnalysisCache(RskSystemProperties config) {
+        return new CodeAnalysisCache(config.codeAnalysisCacheSize());
     }
 
     @Bean
@@ -150,8 +163,10 @@ public class RskFactory {
                                             PeerServer peerServer,
                                             BlockProcessor nodeBlockProcessor,
                                             HashRateCalculator hashRateCalculator,
-                                            ConfigCapabilities configCapabilities) {
-        return () -> new Web3RskImpl(rsk, blockchain, pendingState, config, minerClient, minerServer, personalModule, ethModule, channelManager, repository, peerScoringManager, networkStateExporter, blockStore, peerServer, nodeBlockProcessor, hashRateCalculator, configCapabilities);
+                                            ConfigCapabilities configCapabilities,
+                                            LogBloomIndex logBloomIndex,
+                                            TransactionSenderCache senderCache) {
+        return () -> new Web3RskImpl(rsk, blockchain, pendingState, config, minerClient, minerServer, personalModule, ethModule, channelManager, repository, peerScoringManager, networkStateExporter, blockStore, peerServer, nodeBlockProcessor, hashRateCalculator, configCapabilities, logBloomIndex, senderCache);
     }
 
     @Bean
@@ -162,7 +177,10 @@ public class RskFactory {
                                         @Qualifier("compositeEthereumListener") EthereumListener listener,
                                         AdminInfo adminInfo,
                                         BlockValidator blockValidator,
-                                        RskSystemProperties config) {
+                                        RskSystemProperties config,
+                                        TransactionSenderCache senderCache,
+                                        ProgramInvokeFactory programInvokeFactory,
+                                        BlockChainFlusher flusher) {
         return new BlockChainImpl(
                 config,
                 repository,
@@ -171,24 +189,35 @@ public class RskFactory {
                 pendingState,
                 listener,
                 adminInfo,
-                blockValidator
+                blockValidator,
+                senderCache,
+                programInvokeFactory,
+                flusher
         );
     }
 
+    @Bean
+    public BlockChainFlusher getBlockChainFlusher(org.ethereum.core.Repository repository,
+                                                  org.ethereum.db.BlockStore blockStore) {
+        return new BlockChainFlusher(repository, blockStore);
+    }
+
     @Bean
     public PendingState getPendingState(org.ethereum.db.BlockStore blockStore,
                                         ReceiptStore receiptStore,
                                         org.ethereum.core.Repository repository,
                                         RskSystemProperties config,
                                         ProgramInvokeFactory programInvokeFactory,
-                                        @Qualifier("compositeEthereumListener") EthereumListener listener) {
+                                        @Qualifier("compositeEthereumListener") EthereumListener listener,
+                                        TransactionSenderCache senderCache) {
         return new PendingStateImpl(
                 blockStore,
                 receiptStore,
                 listener,
                 programInvokeFactory,
                 repository,
-                config
+                config,
+                senderCache
         );
     }
 
@@ -287,8 +316,9 @@ public class RskFactory {
         int expirationTimePeerStatus = config.getExpirationTimePeerStatus();
         int maxSkeletonChunks = config.getMaxSkeletonChunks();
         int chunkSize = config.getChunkSize();
+        boolean stateDownload = config.isStateDownloadEnabled();
         return new SyncConfiguration(expectedPeers, timeoutWaitingPeers, timeoutWaitingRequest,
-                expirationTimePeerStatus, maxSkeletonChunks, chunkSize);
+                expirationTimePeerStatus, maxSkeletonChunks, chunkSize, stateDownload);
     }
 
     @Bean
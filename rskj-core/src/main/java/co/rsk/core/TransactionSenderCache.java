@@ -0,0 +1,87 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.core;
+
+import org.ethereum.db.ByteArrayWrapper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of recovered transaction senders, keyed by transaction hash, shared by the node components
+ * that receive transactions (see Transaction.getSender(TransactionSenderCache)).
+ * <p>
+ * The same transaction is usually decoded many times into different Transaction
+ * instances (received from peers, added to the pending state, relayed, included
+ * in a block). The hash covers the signature, so a hit returns the sender
+ * that would be recovered from it, and the signature is recovered only once.
+ * <p>
+ * Entries are evicted in least-recently-accessed order.
+ */
+public class TransactionSenderCache {
+    private final LinkedHashMap<ByteArrayWrapper, RskAddress> senders;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public TransactionSenderCache(int maxSize) {
+        this.senders = new LinkedHashMap<ByteArrayWrapper, RskAddress>(maxSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, RskAddress> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public RskAddress get(byte[] txHash) {
+        RskAddress sender;
+
+        synchronized (senders) {
+            sender = senders.get(new ByteArrayWrapper(txHash));
+        }
+
+        if (sender == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+
+        return sender;
+    }
+
+    public void put(byte[] txHash, RskAddress sender) {
+        synchronized (senders) {
+            senders.put(new ByteArrayWrapper(txHash), sender);
+        }
+    }
+
+    public int size() {
+        synchronized (senders) {
+            return senders.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.core.bc;
+
+import co.rsk.net.Metrics;
+import co.rsk.panic.PanicProcessor;
+import org.ethereum.core.Repository;
+import org.ethereum.db.BlockStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Flushes the repository and the block store to the database in a dedicated writer thread.
+ * <p>
+ * The dirty state is encoded in the calling thread (see {@link Repository#prepareFlush()}),
+ * and the database writes are queued to the writer thread, so block import can continue.
+ * The block store writes are prepared in the same step and run after the repository ones,
+ * so the block index never refers to blocks whose state is not written yet.
+ * At most MAX_PENDING_FLUSHES flushes can be queued; a new flush waits for the oldest
+ * one to finish, so a slow disk slows down block import instead of using more memory.
+ * <p>
+ * The node has a single flusher; close writes the queued flushes, stops the writer thread
+ * and closes the block store.
+ */
+public class BlockChainFlusher {
+    private static final Logger logger = LoggerFactory.getLogger("blockchain");
+    private static final PanicProcessor panicProcessor = new PanicProcessor();
+
+    public static final int MAX_PENDING_FLUSHES = 2;
+
+    private final Repository repository;
+    private final BlockStore blockStore;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "blockchainFlusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Semaphore pendingFlushes = new Semaphore(MAX_PENDING_FLUSHES);
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    public BlockChainFlusher(Repository repository, BlockStore blockStore) {
+        this.repository = repository;
+        this.blockStore = blockStore;
+    }
+
+    public void flush() {
+        long waitTime = System.nanoTime();
+        pendingFlushes.acquireUninterruptibly();
+        waitTime = System.nanoTime() - waitTime;
+
+        long prepareTime = System.nanoTime();
+        Runnable repositoryWrites;
+        Runnable blockStoreWrites;
+
+        try {
+            repositoryWrites = repository.prepareFlush();
+            blockStoreWrites = blockStore.prepareFlush();
+        } catch (RuntimeException e) {
+            pendingFlushes.release();
+            throw e;
+        }
+
+        prepareTime = System.nanoTime() - prepareTime;
+        logger.trace("repository flush prepared in [{}]nano, waited [{}]nano", prepareTime, waitTime);
+
+        int depth = queueDepth.incrementAndGet();
+
+        try {
+            writer.execute(() -> write(repositoryWrites, blockStoreWrites));
+        } catch (RejectedExecutionException e) {
+            // already closed, there is no writer thread
+            write(repositoryWrites, blockStoreWrites);
+            return;
+        }
+
+        Metrics.flushData("queued", depth, waitTime + prepareTime);
+    }
+
+    /**
+     * Waits until all the queued flushes are written to the database.
+     */
+    public void waitForPendingFlushes() {
+        pendingFlushes.acquireUninterruptibly(MAX_PENDING_FLUSHES);
+        pendingFlushes.release(MAX_PENDING_FLUSHES);
+    }
+
+    /**
+     * Writes the queued flushes, stops the writer thread and closes the block store.
+     */
+    public void close() {
+        writer.shutdown();
+
+        try {
+            while (!writer.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.info("Waiting for {} queued flushes", queueDepth.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while waiting for the queued flushes");
+        }
+
+        blockStore.close();
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    private void write(Runnable repositoryWrites, Runnable blockStoreWrites) {
+        try {
+            long saveTime = System.nanoTime();
+            repositoryWrites.run();
+            long repositoryTime = System.nanoTime() - saveTime;
+            logger.trace("repository flush: [{}]nano", repositoryTime);
+
+            saveTime = System.nanoTime();
+            blockStoreWrites.run();
+            long blockStoreTime = System.nanoTime() - saveTime;
+            logger.trace("blockstore flush: [{}]nano", blockStoreTime);
+
+            Metrics.flushData("written", queueDepth.get() - 1, repositoryTime + blockStoreTime);
+        } catch (RuntimeException e) {
+            logger.error("Unable to flush blockchain data", e);
+            panicProcessor.panic("flush", String.format("Unable to flush blockchain data: %s", e.getMessage()));
+        } finally {
+            queueDepth.decrementAndGet();
+            pendingFlushes.release();
+        }
+    }
+}
@@ -20,6 +20,7 @@ package co.rsk.core.bc;
 
 import co.rsk.blocks.BlockRecorder;
 import co.rsk.config.RskSystemProperties;
+import co.rsk.core.TransactionSenderCache;
 import co.rsk.net.Metrics;
 import co.rsk.panic.PanicProcessor;
 import co.rsk.trie.Trie;
@@ -35,6 +36,7 @@ import org.ethereum.db.TransactionInfo;
 import org.ethereum.listener.EthereumListener;
 import org.ethereum.manager.AdminInfo;
 import org.ethereum.util.RLP;
+import org.ethereum.vm.program.invoke.ProgramInvokeFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
@@ -94,6 +96,8 @@ public class BlockChainImpl implements Blockchain {
     private final Object connectLock = new Object();
     private final Object accessLock = new Object();
     private final BlockExecutor blockExecutor;
+    private final TransactionSenderRecoverer senderRecoverer;
+    private final BlockChainFlusher flusher;
     private BlockRecorder blockRecorder;
     private boolean noValidation;
 
@@ -104,7 +108,10 @@ public class BlockChainImpl implements Blockchain {
                           PendingState pendingState,
                           EthereumListener listener,
                           AdminInfo adminInfo,
-                          BlockValidator blockValidator) {
+                          BlockValidator blockValidator,
+                          TransactionSenderCache senderCache,
+                          ProgramInvokeFactory programInvokeFactory,
+                          BlockChainFlusher flusher) {
         this.config = config;
         this.repository = repository;
         this.blockStore = blockStore;
@@ -112,7 +119,9 @@ public class BlockChainImpl implements Blockchain {
         this.listener = listener;
         this.adminInfo = adminInfo;
         this.blockValidator = blockValidator;
-        this.blockExecutor = new BlockExecutor(config, repository, this, blockStore, listener);
+        this.blockExecutor = new BlockExecutor(config, repository, this, blockStore, listener, programInvokeFactory);
+        this.senderRecoverer = new TransactionSenderRecoverer(senderCache);
+        this.flusher = flusher;
         this.pendingState = pendingState;
     }
 
@@ -180,6 +189,10 @@ public class BlockChainImpl implements Blockchain {
                          block.getShortHash(),
                          block.getNumber());
 
+            // Senders are recovered in parallel before taking the connect lock,
+            // so validation and execution find them already computed
+            senderRecoverer.recoverSenders(block);
+
             synchronized (connectLock) {
                 logger.trace("Start try connect");
                 long saveTime = System.nanoTime();
@@ -447,11 +460,15 @@ public class BlockChainImpl implements Blockchain {
      * Returns transaction info by hash
      *
      * @param hash      the hash of the transaction
-     * @return transaction info, null if the transaction does not exist
+     * @return transaction info, in the main chain if it is there, null if the transaction does not exist
      */
     @Override
     public TransactionInfo getTransactionInfo(byte[] hash) {
-        TransactionInfo txInfo = receiptStore.get(hash);
+        TransactionInfo txInfo = receiptStore.getInMainChain(hash, blockStore);
+
+        if (txInfo == null) {
+            txInfo = receiptStore.get(hash);
+        }
 
         if (txInfo == null) {
             return null;
@@ -465,7 +482,14 @@ public class BlockChainImpl implements Blockchain {
 
     @Override
     public void close() {
+        // the blocks imported since the last flush are written too
+        synchronized (connectLock) {
+            if (config.isFlushEnabled()) {
+                flusher.flush();
+            }
+        }
 
+        flusher.close();
     }
 
     @Override
@@ -546,14 +570,7 @@ public class BlockChainImpl implements Blockchain {
 
     private void flushData() {
         if (config.isFlushEnabled() && nFlush == 0)  {
-            long saveTime = System.nanoTime();
-            repository.flush();
-            long totalTime = System.nanoTime() - saveTime;
-            logger.trace("repository flush: [{}]nano", totalTime);
-            saveTime = System.nanoTime();
-            blockStore.flush();
-            totalTime = System.nanoTime() - saveTime;
-            logger.trace("blockstore flush: [{}]nano", totalTime);
+            flusher.flush();
         }
         nFlush++;
         nFlush = nFlush % config.flushNumberOfBlocks();
@@ -52,14 +52,19 @@ public class BlockExecutor {
     private final BlockStore blockStore;
     private final EthereumListener listener;
 
-    private final ProgramInvokeFactory programInvokeFactory = new ProgramInvokeFactoryImpl();
+    private final ProgramInvokeFactory programInvokeFactory;
 
     public BlockExecutor(RskSystemProperties config, Repository repository, Blockchain blockChain, BlockStore blockStore, EthereumListener listener) {
+        this(config, repository, blockChain, blockStore, listener, new ProgramInvokeFactoryImpl());
+    }
+
+    public BlockExecutor(RskSystemProperties config, Repository repository, Blockchain blockChain, BlockStore blockStore, EthereumListener listener, ProgramInvokeFactory programInvokeFactory) {
         this.config = config;
         this.repository = repository;
         this.blockChain = blockChain;
         this.blockStore = blockStore;
         this.listener = listener;
+        this.programInvokeFactory = programInvokeFactory;
     }
 
     /**
@@ -190,8 +195,6 @@ public class BlockExecutor {
 
         Repository initialRepository = repository.getSnapshotTo(stateRoot);
 
-        byte[] lastStateRootHash = initialRepository.getRoot();
-
         Repository track = initialRepository.startTracking();
         int i = 1;
         long totalGasUsed = 0;
@@ -240,14 +243,17 @@ public class BlockExecutor {
             TransactionReceipt receipt = new TransactionReceipt();
             receipt.setGasUsed(gasUsed);
             receipt.setCumulativeGas(totalGasUsed);
-            lastStateRootHash = initialRepository.getRoot();
             receipt.setTxStatus(txExecutor.getReceipt().isSuccessful());
             receipt.setTransaction(tx);
             receipt.setLogInfoList(txExecutor.getVMLogs());
             receipt.setStatus(txExecutor.getReceipt().getStatus());
 
-            logger.trace("block: [{}] executed tx: [{}] state: [{}]", block.getNumber(), Hex.toHexString(tx.getHash()),
-                    Hex.toHexString(lastStateRootHash));
+            // Intermediate state roots are only needed for tracing; computing them forces
+            // the trie to be saved and rehashed, so it is done once per block otherwise
+            if (logger.isTraceEnabled()) {
+                logger.trace("block: [{}] executed tx: [{}] state: [{}]", block.getNumber(), Hex.toHexString(tx.getHash()),
+                        Hex.toHexString(initialRepository.getRoot()));
+            }
 
             logger.trace("tx[{}].receipt", i);
 
@@ -258,6 +264,8 @@ public class BlockExecutor {
             logger.trace("tx done");
         }
 
+        byte[] lastStateRootHash = initialRepository.getRoot();
+
         return new BlockResult(executedTransactions, receipts, lastStateRootHash, totalGasUsed, totalPaidFees);
     }
 }
@@ -20,6 +20,7 @@ package co.rsk.core.bc;
 
 import co.rsk.config.RskSystemProperties;
 import co.rsk.core.RskAddress;
+import co.rsk.core.TransactionSenderCache;
 import co.rsk.net.handler.TxPendingValidator;
 import co.rsk.trie.Trie;
 import co.rsk.trie.TrieImpl;
@@ -67,6 +68,7 @@ public class PendingStateImpl implements PendingState {
     private final EthereumListener listener;
     private final int outdatedThreshold;
     private final int outdatedTimeout;
+    private final TransactionSenderCache senderCache;
 
     private ScheduledExecutorService cleanerTimer;
     private ScheduledFuture<?> cleanerFuture;
@@ -81,7 +83,8 @@ public class PendingStateImpl implements PendingState {
                             EthereumListener listener,
                             ProgramInvokeFactory programInvokeFactory,
                             Repository repository,
-                            RskSystemProperties config) {
+                            RskSystemProperties config,
+                            TransactionSenderCache senderCache) {
         this(config,
                 repository,
                 blockStore,
@@ -89,7 +92,8 @@ public class PendingStateImpl implements PendingState {
                 programInvokeFactory,
                 listener,
                 config.txOutdatedThreshold(),
-                config.txOutdatedTimeout());
+                config.txOutdatedTimeout(),
+                senderCache);
     }
 
     public PendingStateImpl(RskSystemProperties config,
@@ -99,7 +103,8 @@ public class PendingStateImpl implements PendingState {
                             ProgramInvokeFactory programInvokeFactory,
                             EthereumListener listener,
                             int outdatedThreshold,
-                            int outdatedTimeout) {
+                            int outdatedTimeout,
+                            TransactionSenderCache senderCache) {
         this.config = config;
         this.blockStore = blockStore;
         this.repository = repository;
@@ -108,6 +113,7 @@ public class PendingStateImpl implements PendingState {
         this.listener = listener;
         this.outdatedThreshold = outdatedThreshold;
         this.outdatedTimeout = outdatedTimeout;
+        this.senderCache = senderCache;
 
         this.pendingStateRepository = repository.startTracking();
 
@@ -176,6 +182,7 @@ public class PendingStateImpl implements PendingState {
                 continue;
             }
 
+            recoverSender(tx);
             wireTransactions.put(hash, tx);
             transactionBlocks.put(hash, bnumber);
             final long timestampSeconds = this.getCurrentTimeInSeconds();
@@ -230,6 +237,7 @@ public class PendingStateImpl implements PendingState {
             return;
         }
 
+        recoverSender(tx);
         pendingTransactions.put(hash, tx);
         transactionBlocks.put(hash, bnumber);
         final long timestampSeconds = this.getCurrentTimeInSeconds();
@@ -428,6 +436,16 @@ public class PendingStateImpl implements PendingState {
                             ByteUtil.bigIntegerToBytes(BigInteger.ZERO)); //minimum gas price
     }
 
+    /**
+     * Takes the sender from the cache or adds it, so the transaction executor, the validation rules
+     * and the block import don't recover it again
+     */
+    private void recoverSender(Transaction tx) {
+        if (tx.getSignature() != null) {
+            tx.getSender(senderCache);
+        }
+    }
+
     private boolean shouldAcceptTx(Transaction tx) {
         if (bestBlock == null) {
             return true;
@@ -19,6 +19,7 @@
 package co.rsk.core.bc;
 
 import co.rsk.config.RskSystemProperties;
+import co.rsk.core.TransactionSenderCache;
 import org.ethereum.core.Block;
 import org.ethereum.core.Repository;
 import org.ethereum.db.BlockStore;
@@ -34,8 +35,9 @@ public class PendingStateImplNoCleaner extends PendingStateImpl {
                                      ProgramInvokeFactory programInvokeFactory,
                                      EthereumListener listener,
                                      int outdatedThreshold,
-                                     int outdatedTimeout) {
-        super(config, repository, blockStore, receiptStore, programInvokeFactory, listener, outdatedThreshold, outdatedTimeout);
+                                     int outdatedTimeout,
+                                     TransactionSenderCache senderCache) {
+        super(config, repository, blockStore, receiptStore, programInvokeFactory, listener, outdatedThreshold, outdatedTimeout, senderCache);
     }
 
     @Override
@@ -0,0 +1,124 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.core.bc;
+
+import co.rsk.core.TransactionSenderCache;
+import co.rsk.net.Metrics;
+import org.ethereum.core.Block;
+import org.ethereum.core.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Recovers the senders of a block's transactions in parallel, before the block
+ * is validated and executed.
+ * <p>
+ * Sender recovery (secp256k1 public key recovery) is the most expensive part of
+ * transaction validation. The recovered sender is kept by each Transaction instance,
+ * so the later calls to getSender() done by the validation rules and
+ * the block executor don't have to recover it again. The senders of the transactions
+ * already seen by the node (e.g. relayed before they were mined) are taken from the cache.
+ */
+public class TransactionSenderRecoverer {
+    private static final Logger logger = LoggerFactory.getLogger("blockchain");
+
+    // Transactions recovered by a single task, to avoid splitting the work too much
+    private static final int TXS_PER_TASK = 4;
+
+    private static final ForkJoinPool pool = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors(),
+            p -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                thread.setName("senderRecovery-" + thread.getPoolIndex());
+                return thread;
+            },
+            null,
+            false);
+
+    private final TransactionSenderCache senderCache;
+
+    public TransactionSenderRecoverer(TransactionSenderCache senderCache) {
+        this.senderCache = senderCache;
+    }
+
+    public void recoverSenders(Block block) {
+        recoverSenders(block.getTransactionsList());
+
+        Metrics.senderCache(senderCache.getHits(), senderCache.getMisses(), senderCache.size());
+    }
+
+    public void recoverSenders(List<Transaction> txs) {
+        if (txs.size() < 2) {
+            // not worth the hand-off, it will be recovered on demand
+            return;
+        }
+
+        long start = System.nanoTime();
+
+        pool.invoke(new RecoverSendersTask(txs, 0, txs.size(), senderCache));
+
+        logger.trace("recovered {} senders in [{}]nano", txs.size(), System.nanoTime() - start);
+    }
+
+    private static void recoverSender(Transaction tx, TransactionSenderCache senderCache) {
+        try {
+            // unsigned transactions are rejected later by the validation rules
+            if (tx.getSignature() != null) {
+                tx.getSender(senderCache);
+            }
+        } catch (RuntimeException e) {
+            // the same failure will be reported when the transaction is validated
+            logger.trace("Unable to recover transaction sender", e);
+        }
+    }
+
+    private static class RecoverSendersTask extends RecursiveAction {
+        private final List<Transaction> txs;
+        private final int from;
+        private final int to;
+        private final TransactionSenderCache senderCache;
+
+        RecoverSendersTask(List<Transaction> txs, int from, int to, TransactionSenderCache senderCache) {
+            this.txs = txs;
+            this.from = from;
+            this.to = to;
+            this.senderCache = senderCache;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= TXS_PER_TASK) {
+                for (int k = from; k < to; k++) {
+                    recoverSender(txs.get(k), senderCache);
+                }
+
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+
+            invokeAll(new RecoverSendersTask(txs, from, middle, senderCache), new RecoverSendersTask(txs, middle, to, senderCache));
+        }
+    }
+}
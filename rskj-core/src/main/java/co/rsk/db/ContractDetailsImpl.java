@@ -27,6 +27,7 @@ import org.ethereum.datasource.HashMapDB;
 import org.ethereum.datasource.KeyValueDataSource;
 import org.ethereum.db.ByteArrayWrapper;
 import org.ethereum.db.ContractDetails;
+import org.ethereum.util.ByteUtil;
 import org.ethereum.util.RLP;
 import org.ethereum.util.RLPElement;
 import org.ethereum.util.RLPItem;
@@ -38,7 +39,11 @@ import org.spongycastle.pqc.math.linearalgebra.ByteUtils;
 import org.spongycastle.util.encoders.Hex;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.ethereum.datasource.DataSourcePool.levelDbByName;
 import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
@@ -52,8 +57,14 @@ public class ContractDetailsImpl implements ContractDetails {
     private static final PanicProcessor panicProcessor = new PanicProcessor();
     private static final Logger logger = LoggerFactory.getLogger("contractdetails");
 
+    // data source shared by all the contracts, when unified contract storage is enabled
+    public static final String UNIFIED_DATA_SOURCE_NAME = "contracts-storage";
+
     private final RskSystemProperties config;
 
+    // the cache of the stores of the external storage, null if not cached
+    private final TrieNodeCache trieNodeCache;
+
     private Trie trie;
     private byte[] code;
     private byte[] address;
@@ -62,19 +73,40 @@ public class ContractDetailsImpl implements ContractDetails {
     private boolean originalExternalStorage;
     private boolean externalStorage;
     private boolean closed;
+
+    // the storage keys while the storage is in memory, encoded as a list in the details
     private Set<ByteArrayWrapper> keys = new HashSet<>();
 
+    // with external storage, the storage keys are kept as the values of a trie saved with the storage,
+    // so only the changed nodes are written when the details are flushed; null while in memory
+    private Trie keysTrie;
+    private int keysCount;
+
     public ContractDetailsImpl(RskSystemProperties config, byte[] encoded) {
+        this(config, encoded, null);
+    }
+
+    public ContractDetailsImpl(RskSystemProperties config, byte[] encoded, TrieNodeCache trieNodeCache) {
         this.config = config;
+        this.trieNodeCache = trieNodeCache;
         decode(encoded);
     }
 
     public ContractDetailsImpl(RskSystemProperties config) {
-        this(config, null, new TrieImpl(new TrieStoreImpl(new HashMapDB()), true), null);
+        this(config, (TrieNodeCache) null);
+    }
+
+    public ContractDetailsImpl(RskSystemProperties config, TrieNodeCache trieNodeCache) {
+        this(config, null, new TrieImpl(new TrieStoreImpl(new HashMapDB()), true), null, trieNodeCache);
     }
 
     public ContractDetailsImpl(RskSystemProperties config, byte[] address, Trie trie, byte[] code) {
+        this(config, address, trie, code, null);
+    }
+
+    private ContractDetailsImpl(RskSystemProperties config, byte[] address, Trie trie, byte[] code, TrieNodeCache trieNodeCache) {
         this.config = config;
+        this.trieNodeCache = trieNodeCache;
         this.address = ByteUtils.clone(address);
         this.trie = trie;
         this.code = ByteUtils.clone(code);
@@ -185,22 +217,31 @@ public class ContractDetailsImpl implements ContractDetails {
         RLPItem rlpIsExternalStorage = (RLPItem) rlpList.get(1);
         RLPItem rlpStorage = (RLPItem) rlpList.get(2);
         RLPElement rlpCode = rlpList.get(3);
-        RLPList rlpKeys = (RLPList) rlpList.get(4);
 
         this.address = rlpAddress.getRLPData();
         this.externalStorage = rlpIsExternalStorage.getRLPData() != null;
         this.originalExternalStorage = this.externalStorage;
 
         if (this.externalStorage) {
-            this.trie = new TrieImpl(new TrieStoreImpl(levelDbByName(config, getDataSourceName())), true).getSnapshotTo(rlpStorage.getRLPData());
+            this.trie = new TrieImpl(new TrieStoreImpl(openDataSource(), trieNodeCache), true).getSnapshotTo(rlpStorage.getRLPData());
         } else {
             this.trie = TrieImpl.deserialize(rlpStorage.getRLPData());
         }
 
         this.code = (rlpCode.getRLPData() == null) ? EMPTY_BYTE_ARRAY : rlpCode.getRLPData();
 
-        for (RLPElement key : rlpKeys) {
-            addKey(key.getRLPData());
+        if (rlpList.size() > 5) {
+            this.keysTrie = retrieveKeysTrie(((TrieImpl) this.trie).getStore(), rlpList.get(4).getRLPData());
+            this.keysCount = ByteUtil.byteArrayToInt(rlpList.get(5).getRLPData());
+        } else {
+            for (RLPElement key : (RLPList) rlpList.get(4)) {
+                this.keys.add(wrap(key.getRLPData()));
+            }
+
+            // the keys of an external storage were encoded as a list by previous versions
+            if (this.externalStorage) {
+                moveKeysToTrie();
+            }
         }
 
         logger.trace("decoding contract details from bytes, hash {}, address {}, storage size {}, has external storage {}", this.getStorageHashAsString(), this.getAddressAsString(), this.getStorageSize(), this.hasExternalStorage());
@@ -237,34 +278,79 @@ public class ContractDetailsImpl implements ContractDetails {
         byte[] rlpStorage = RLP.encodeElement(externalStorage ? this.trie.getHash() : this.trie.serialize());
 
         byte[] rlpCode = RLP.encodeElement(this.code);
-        byte[] rlpKeys = RLP.encodeSet(this.keys);
 
-        return RLP.encodeList(rlpAddress, rlpIsExternalStorage, rlpStorage, rlpCode, rlpKeys);
+        if (!externalStorage) {
+            byte[] rlpKeys = RLP.encodeSet(this.keys);
+
+            return RLP.encodeList(rlpAddress, rlpIsExternalStorage, rlpStorage, rlpCode, rlpKeys);
+        }
+
+        // Same for the keys, only their trie root hash and count if external storage is used
+        byte[] rlpKeys = RLP.encodeElement(this.keysTrie.getHash());
+        byte[] rlpKeysCount = RLP.encodeInt(this.keysCount);
+
+        return RLP.encodeList(rlpAddress, rlpIsExternalStorage, rlpStorage, rlpCode, rlpKeys, rlpKeysCount);
     }
 
     @Override
     public synchronized int getStorageSize() {
-        return keys.size();
+        return this.keysTrie == null ? this.keys.size() : this.keysCount;
     }
 
     @Override
     public synchronized Set<DataWord> getStorageKeys() {
+        checkDataSourceIsOpened();
+
         Set<DataWord> result = new HashSet<>();
 
-        for (ByteArrayWrapper key : keys) {
+        if (this.keysTrie == null) {
+            for (ByteArrayWrapper key : this.keys) {
+                result.add(new DataWord(key));
+            }
+
+            return result;
+        }
+
+        if (keysCount == 0) {
+            return result;
+        }
+
+        List<byte[]> trieKeys = new ArrayList<>(keysCount);
+        ((TrieImpl) this.keysTrie).collectValues(trieKeys);
+
+        for (byte[] key : trieKeys) {
             result.add(new DataWord(key));
         }
 
         return result;
     }
 
+    @Override
+    public synchronized List<DataWord> getStorageKeys(@Nullable DataWord fromKey, int limit) {
+        checkDataSourceIsOpened();
+
+        if (this.keysTrie == null) {
+            return this.keys.stream()
+                    .map(DataWord::new)
+                    .filter(key -> fromKey == null || key.compareTo(fromKey) > 0)
+                    .sorted()
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        }
+
+        // the keys trie is not secure, its values are in key order
+        List<byte[]> trieKeys = new ArrayList<>();
+        ((TrieImpl) this.keysTrie).collectValues(fromKey == null ? null : fromKey.getData(), limit, trieKeys);
+
+        return trieKeys.stream().map(DataWord::new).collect(Collectors.toList());
+    }
+
     @Override
     public synchronized Map<DataWord, DataWord> getStorage(@Nullable Collection<DataWord> keys) {
         Map<DataWord, DataWord> storage = new HashMap<>();
 
         if (keys == null) {
-            for (ByteArrayWrapper keyBytes : this.keys) {
-                DataWord key = new DataWord(keyBytes);
+            for (DataWord key : getStorageKeys()) {
                 DataWord value = get(key);
 
                 // we check if the value is not null,
@@ -326,19 +412,28 @@ public class ContractDetailsImpl implements ContractDetails {
         if (this.trie.hasStore()) {
             logger.trace("syncing to storage, hash {}, address {}, storage size {}", hashString, addressString, this.getStorageSize());
 
+            long start = System.nanoTime();
+
             this.trie.save();
 
+            if (this.keysTrie != null) {
+                this.keysTrie.save();
+            }
+
             if (this.externalStorage && !this.originalExternalStorage) {
                 // switching to data source
 
                 logger.trace("switching to data source, hash {}, address {}", hashString, addressString);
-                KeyValueDataSource ds = levelDbByName(config, this.getDataSourceName());
-                TrieStoreImpl newStore = new TrieStoreImpl(ds);
+                KeyValueDataSource ds = openDataSource();
+                TrieStoreImpl newStore = new TrieStoreImpl(ds, trieNodeCache);
                 TrieStoreImpl originalStore = (TrieStoreImpl)((TrieImpl) this.trie).getStore();
                 newStore.copyFrom(originalStore);
                 Trie newTrie = newStore.retrieve(this.trie.getHash());
                 this.trie = newTrie;
 
+                // the keys trie is in the same store
+                this.keysTrie = retrieveKeysTrie(newStore, this.keysTrie.getHash());
+
                 // checking the trie it's OK
 
                 if (newTrie == null) {
@@ -352,11 +447,14 @@ public class ContractDetailsImpl implements ContractDetails {
                 this.originalExternalStorage = true;
             }
 
-            if (this.externalStorage) {
+            // the unified data source is kept open
+            if (this.externalStorage && !config.unifiedContractStorage()) {
                 logger.trace("closing contract details data source, hash {}, address {}", hashString, addressString);
-                DataSourcePool.closeDataSource(getDataSourceName());
+                closeDataSource();
                 this.closed = true;
             }
+
+            logger.trace("synced storage in [{}]nano, address {}, open data sources {}", System.nanoTime() - start, addressString, DataSourcePool.getOpenDataSourcesCount());
         }
     }
 
@@ -366,14 +464,15 @@ public class ContractDetailsImpl implements ContractDetails {
 
         this.trie.save();
 
-        ContractDetailsImpl details = new ContractDetailsImpl(this.config, this.address, this.trie.getSnapshotTo(hash), this.code);
-        details.keys = new HashSet<>();
-        details.keys.addAll(this.keys);
+        ContractDetailsImpl details = new ContractDetailsImpl(this.config, this.address, this.trie.getSnapshotTo(hash), this.code, this.trieNodeCache);
+        details.keys = this.keysTrie == null ? new HashSet<>(this.keys) : null;
+        details.keysTrie = this.keysTrie;
+        details.keysCount = this.keysCount;
         details.externalStorage = this.externalStorage;
         details.originalExternalStorage = this.originalExternalStorage;
 
         if (this.externalStorage) {
-            levelDbByName(config, getDataSourceName());
+            openDataSource();
         }
 
         logger.trace("getting contract details snapshot hash {}, address {}, storage size {}, has external storage {}", details.getStorageHashAsString(), details.getAddressAsString(), details.getStorageSize(), details.hasExternalStorage());
@@ -381,9 +480,54 @@ public class ContractDetailsImpl implements ContractDetails {
         return details;
     }
 
+    @Override
+    public synchronized void exportStorage(OutputStream outputStream) throws IOException {
+        if (!this.externalStorage) {
+            return;
+        }
+
+        checkDataSourceIsOpened();
+
+        this.trie.save();
+        this.keysTrie.save();
+
+        TrieExporter exporter = new TrieExporter(((TrieImpl) this.trie).getStore());
+        exporter.export(this.trie.getHash(), outputStream);
+        exporter.export(this.keysTrie.getHash(), outputStream);
+    }
+
+    /**
+     * Reads the storage written by exportStorage into the database of the contract, before its
+     * encoded details are decoded. A storage in memory is part of the encoded details, nothing is read.
+     *
+     * @param encoded the encoded details of the contract
+     * @param inputStream the stream to read from, it is not closed
+     */
+    public static void importStorage(RskSystemProperties config, byte[] encoded, InputStream inputStream) throws IOException {
+        RLPList rlpList = (RLPList) RLP.decode2(encoded).get(0);
+
+        if (rlpList.get(1).getRLPData() == null) {
+            return;
+        }
+
+        String name = config.unifiedContractStorage() ? UNIFIED_DATA_SOURCE_NAME : getDataSourceName(rlpList.get(0).getRLPData());
+        TrieImporter importer = new TrieImporter(levelDbByName(config, name));
+
+        try {
+            byte[] storageRoot = importer.importFrom(inputStream);
+            byte[] keysRoot = importer.importFrom(inputStream);
+
+            if (!Arrays.equals(storageRoot, rlpList.get(2).getRLPData()) || rlpList.size() <= 5 || !Arrays.equals(keysRoot, rlpList.get(4).getRLPData())) {
+                throw new TrieSerializationException("Error importing contract storage of " + Hex.toHexString(rlpList.get(0).getRLPData()), null);
+            }
+        } finally {
+            DataSourcePool.closeDataSource(name);
+        }
+    }
+
     @Override
     public boolean isNullObject() {
-        return (code==null || code.length==0) && keys.isEmpty();
+        return (code==null || code.length==0) && getStorageSize() == 0;
     }
 
     @VisibleForTesting
@@ -396,18 +540,78 @@ public class ContractDetailsImpl implements ContractDetails {
     }
 
     private void addKey(byte[] key) {
-        keys.add(wrap(key));
+        if (this.keysTrie == null) {
+            this.keys.add(wrap(key));
+        } else if (this.keysTrie.get(key) == null) {
+            this.keysTrie = this.keysTrie.put(key, key);
+            this.keysCount++;
+        }
     }
 
     private void removeKey(byte[] key) {
-        keys.remove(wrap(key));
+        if (this.keysTrie == null) {
+            this.keys.remove(wrap(key));
+        } else if (this.keysTrie.get(key) != null) {
+            this.keysTrie = this.keysTrie.delete(key);
+            this.keysCount--;
+        }
+    }
+
+    private void moveKeysToTrie() {
+        // in the storage trie store, so they are switched to the data source with the storage
+        Trie newKeysTrie = new TrieImpl(((TrieImpl) this.trie).getStore(), false);
+
+        for (ByteArrayWrapper key : this.keys) {
+            newKeysTrie = newKeysTrie.put(key.getData(), key.getData());
+        }
+
+        this.keysTrie = newKeysTrie;
+        this.keysCount = this.keys.size();
+        this.keys = null;
+    }
+
+    private static Trie retrieveKeysTrie(TrieStore store, byte[] hash) {
+        Trie emptyTrie = new TrieImpl(store, false);
+
+        if (Arrays.equals(emptyTrie.getHash(), hash)) {
+            return emptyTrie;
+        }
+
+        return store.retrieve(hash);
     }
 
     private void checkExternalStorage() {
-        this.externalStorage = (keys.size() > config.detailsInMemoryStorageLimit()) || this.externalStorage;
+        this.externalStorage = (getStorageSize() > config.detailsInMemoryStorageLimit()) || this.externalStorage;
+
+        if (this.externalStorage && this.keysTrie == null) {
+            moveKeysToTrie();
+        }
+    }
+
+    private KeyValueDataSource openDataSource() {
+        return levelDbByName(config, getDataSourceName());
+    }
+
+    private void closeDataSource() {
+        String name = getDataSourceName();
+
+        // the queued writes of the saved nodes have to be done first
+        if (trieNodeCache != null) {
+            trieNodeCache.queueAction(() -> DataSourcePool.closeDataSource(name));
+        } else {
+            DataSourcePool.closeDataSource(name);
+        }
     }
 
     private String getDataSourceName() {
+        if (config.unifiedContractStorage()) {
+            return UNIFIED_DATA_SOURCE_NAME;
+        }
+
+        return getDataSourceName(address);
+    }
+
+    public static String getDataSourceName(byte[] address) {
         return "details-storage/" + toHexString(address);
     }
 
@@ -431,10 +635,11 @@ public class ContractDetailsImpl implements ContractDetails {
         }
 
         logger.trace("reopening contract details data source");
-        KeyValueDataSource ds = levelDbByName(config, this.getDataSourceName());
-        TrieStoreImpl newStore = new TrieStoreImpl(ds);
+        KeyValueDataSource ds = openDataSource();
+        TrieStoreImpl newStore = new TrieStoreImpl(ds, trieNodeCache);
         Trie newTrie = newStore.retrieve(this.trie.getHash());
         this.trie = newTrie;
+        this.keysTrie = retrieveKeysTrie(newStore, this.keysTrie.getHash());
         this.closed = false;
     }
 
@@ -0,0 +1,134 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.db;
+
+import co.rsk.config.RskSystemProperties;
+import org.ethereum.datasource.KeyValueDataSource;
+import org.ethereum.datasource.LevelDbDataSource;
+import org.ethereum.util.RLP;
+import org.ethereum.util.RLPList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.util.encoders.Hex;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Copies the storage of the contracts with external storage from their own database
+ * (details-storage/address) to the database shared by all the contracts,
+ * used when database.unifiedContractStorage is enabled.
+ * <p>
+ * The contract details are not changed, the storage is found by its root hash
+ * in the shared database. The old databases are not removed.
+ */
+public class ContractStorageMigration {
+    private static final Logger logger = LoggerFactory.getLogger("general");
+
+    private static final int BATCH_SIZE = 10000;
+
+    private final KeyValueDataSource detailsDataSource;
+    private final KeyValueDataSource unifiedDataSource;
+    private final Function<String, KeyValueDataSource> dataSourceOpener;
+
+    public ContractStorageMigration(KeyValueDataSource detailsDataSource,
+                                    KeyValueDataSource unifiedDataSource,
+                                    Function<String, KeyValueDataSource> dataSourceOpener) {
+        this.detailsDataSource = detailsDataSource;
+        this.unifiedDataSource = unifiedDataSource;
+        this.dataSourceOpener = dataSourceOpener;
+    }
+
+    /**
+     * @return the number of contracts whose storage was copied
+     */
+    public int migrate() {
+        int contracts = 0;
+
+        for (byte[] key : detailsDataSource.keys()) {
+            RLPList rlpList = (RLPList) RLP.decode2(detailsDataSource.get(key)).get(0);
+
+            // only the root hash is kept in the contract details
+            boolean externalStorage = rlpList.get(1).getRLPData() != null;
+
+            if (!externalStorage) {
+                continue;
+            }
+
+            byte[] address = rlpList.get(0).getRLPData();
+            long start = System.nanoTime();
+            long rows = copyStorage(ContractDetailsImpl.getDataSourceName(address));
+
+            logger.info("Migrated storage of contract {}, {} rows in [{}]nano", Hex.toHexString(address), rows, System.nanoTime() - start);
+            contracts++;
+        }
+
+        return contracts;
+    }
+
+    private long copyStorage(String dataSourceName) {
+        KeyValueDataSource dataSource = dataSourceOpener.apply(dataSourceName);
+        long count = 0;
+
+        try {
+            Map<byte[], byte[]> batch = new HashMap<>();
+
+            for (byte[] key : dataSource.keys()) {
+                batch.put(key, dataSource.get(key));
+                count++;
+
+                if (batch.size() >= BATCH_SIZE) {
+                    unifiedDataSource.updateBatch(batch);
+                    batch = new HashMap<>();
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                unifiedDataSource.updateBatch(batch);
+            }
+        } finally {
+            dataSource.close();
+        }
+
+        return count;
+    }
+
+    public static void main(String[] args) {
+        RskSystemProperties config = new RskSystemProperties();
+
+        KeyValueDataSource detailsDataSource = makeDataSource(config, "details");
+        KeyValueDataSource unifiedDataSource = makeDataSource(config, ContractDetailsImpl.UNIFIED_DATA_SOURCE_NAME);
+
+        try {
+            int contracts = new ContractStorageMigration(detailsDataSource, unifiedDataSource, name -> makeDataSource(config, name)).migrate();
+            logger.info("Migrated the storage of {} contracts", contracts);
+            logger.info("Enable database.unifiedContractStorage to use it, the details-storage databases can be removed");
+        } finally {
+            detailsDataSource.close();
+            unifiedDataSource.close();
+        }
+    }
+
+    private static KeyValueDataSource makeDataSource(RskSystemProperties config, String name) {
+        KeyValueDataSource ds = new LevelDbDataSource(config, name);
+        ds.init();
+        return ds;
+    }
+}
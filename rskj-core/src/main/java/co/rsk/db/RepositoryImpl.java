@@ -20,8 +20,11 @@ package co.rsk.db;
 
 import co.rsk.config.RskSystemProperties;
 import co.rsk.core.RskAddress;
+import co.rsk.crypto.Sha3Hash;
 import co.rsk.trie.Trie;
+import co.rsk.trie.TrieExporter;
 import co.rsk.trie.TrieImpl;
+import co.rsk.trie.TrieImporter;
 import co.rsk.trie.TrieStore;
 import org.ethereum.core.AccountState;
 import org.ethereum.core.Block;
@@ -33,9 +36,11 @@ import org.ethereum.db.*;
 import org.ethereum.vm.DataWord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.spongycastle.util.encoders.Hex;
 
 import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -47,6 +52,10 @@ import static org.ethereum.crypto.SHA3Helper.sha3;
 
 /**
  * Created by ajlopez on 29/03/2017.
+ * <p>
+ * The changes (and the flushes) are executed one at a time, synchronized on the repository.
+ * The queries read the current trie, which is never changed but replaced by each change,
+ * so they don't take the repository lock and a query sees the state of a single root.
  */
 public class RepositoryImpl implements Repository {
     private static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
@@ -55,10 +64,10 @@ public class RepositoryImpl implements Repository {
     private static final Logger logger = LoggerFactory.getLogger("repository");
 
     private final RskSystemProperties config;
-    private TrieStore store;
-    private Trie trie;
-    private DetailsDataStore detailsDataStore;
-    private boolean closed;
+    private final TrieStore store;
+    private final DetailsDataStore detailsDataStore;
+    private volatile Trie trie;
+    private volatile boolean closed;
 
     public RepositoryImpl(RskSystemProperties config) {
         this(config, null);
@@ -83,21 +92,23 @@ public class RepositoryImpl implements Repository {
     public synchronized AccountState createAccount(RskAddress addr) {
         AccountState accountState = new AccountState(BigInteger.ZERO, BigInteger.ZERO);
         updateAccountState(addr, accountState);
-        updateContractDetails(addr, new ContractDetailsImpl(config));
+        updateContractDetails(addr, new ContractDetailsImpl(config, detailsDataStore.getTrieNodeCache()));
         return accountState;
     }
 
     @Override
-    public synchronized boolean isExist(RskAddress addr) {
+    public boolean isExist(RskAddress addr) {
         return getAccountState(addr) != null;
     }
 
     @Override
-    public synchronized AccountState getAccountState(RskAddress addr) {
-        AccountState result = null;
-        byte[] accountData = null;
+    public AccountState getAccountState(RskAddress addr) {
+        return getAccountState(this.trie, addr);
+    }
 
-        accountData = this.trie.get(addr.getBytes());
+    private static AccountState getAccountState(Trie trie, RskAddress addr) {
+        AccountState result = null;
+        byte[] accountData = trie.get(addr.getBytes());
 
         if (accountData != null && accountData.length != 0) {
             result = new AccountState(accountData);
@@ -130,20 +141,30 @@ public class RepositoryImpl implements Repository {
     }
 
     @Override
-    public synchronized BigInteger getNonce(RskAddress addr) {
-        AccountState account = getAccountStateOrCreateNew(addr);
-        return account.getNonce();
+    public BigInteger getNonce(RskAddress addr) {
+        AccountState account = getAccountState(addr);
+
+        if (account != null) {
+            return account.getNonce();
+        }
+
+        // the account is created as before
+        return getAccountStateOrCreateNew(addr).getNonce();
     }
 
     @Override
-    public synchronized ContractDetails getContractDetails(RskAddress addr) {
+    public ContractDetails getContractDetails(RskAddress addr) {
+        return getContractDetails(this.trie, addr);
+    }
+
+    private ContractDetails getContractDetails(Trie trie, RskAddress addr) {
         // That part is important cause if we have
         // to sync details storage according the trie root
         // saved in the account
-        AccountState accountState = getAccountState(addr);
+        AccountState accountState = getAccountState(trie, addr);
         byte[] storageRoot = EMPTY_TRIE_HASH;
         if (accountState != null) {
-            storageRoot = getAccountState(addr).getStateRoot();
+            storageRoot = accountState.getStateRoot();
         }
 
         ContractDetails details =  detailsDataStore.get(addr);
@@ -172,13 +193,14 @@ public class RepositoryImpl implements Repository {
     }
 
     @Override
-    public synchronized byte[] getCode(RskAddress addr) {
-        if (!isExist(addr)) {
+    public byte[] getCode(RskAddress addr) {
+        Trie snapshot = this.trie;
+        AccountState account = getAccountState(snapshot, addr);
+
+        if (account == null) {
             return EMPTY_BYTE_ARRAY;
         }
 
-        AccountState  account = getAccountState(addr);
-
         if (account.isHibernated()) {
             return EMPTY_BYTE_ARRAY;
         }
@@ -189,7 +211,7 @@ public class RepositoryImpl implements Repository {
             return EMPTY_BYTE_ARRAY;
         }
 
-        ContractDetails details = getContractDetails(addr);
+        ContractDetails details = getContractDetails(snapshot, addr);
         return (details == null) ? null : details.getCode();
     }
 
@@ -221,19 +243,19 @@ public class RepositoryImpl implements Repository {
     }
 
     @Override
-    public synchronized DataWord getStorageValue(RskAddress addr, DataWord key) {
+    public DataWord getStorageValue(RskAddress addr, DataWord key) {
         ContractDetails details = getContractDetails(addr);
         return (details == null) ? null : details.get(key);
     }
 
     @Override
-    public synchronized byte[] getStorageBytes(RskAddress addr, DataWord key) {
+    public byte[] getStorageBytes(RskAddress addr, DataWord key) {
         ContractDetails details = getContractDetails(addr);
         return (details == null) ? null : details.getBytes(key);
     }
 
     @Override
-    public synchronized BigInteger getBalance(RskAddress addr) {
+    public BigInteger getBalance(RskAddress addr) {
         AccountState account = getAccountState(addr);
         return (account == null) ? AccountState.EMPTY.getBalance() : account.getBalance();
     }
@@ -249,11 +271,12 @@ public class RepositoryImpl implements Repository {
     }
 
     @Override
-    public synchronized Set<RskAddress> getAccountsKeys() {
+    public Set<RskAddress> getAccountsKeys() {
+        Trie snapshot = this.trie;
         Set<RskAddress> result = new HashSet<>();
 
         for (RskAddress addr : detailsDataStore.keys()) {
-            if (this.isExist(addr)) {
+            if (getAccountState(snapshot, addr) != null) {
                 result.add(addr);
             }
         }
@@ -267,19 +290,30 @@ public class RepositoryImpl implements Repository {
     }
 
     @Override
-    public synchronized Repository startTracking() {
+    public Repository startTracking() {
         return new RepositoryTrack(config, this);
     }
 
     @Override
     public synchronized void flush() {
-        if (this.detailsDataStore != null) {
-            this.detailsDataStore.flush();
-        }
+        prepareFlush().run();
+    }
 
-        if (this.store != null) {
-            this.trie.save();
+    @Override
+    public synchronized Runnable prepareFlush() {
+        Runnable detailsWrites = this.detailsDataStore != null ? this.detailsDataStore.prepareFlush() : () -> { };
+
+        if (this.store == null) {
+            return detailsWrites;
         }
+
+        this.trie.save();
+        Runnable trieWrites = this.store.takeWrites();
+
+        return () -> {
+            detailsWrites.run();
+            trieWrites.run();
+        };
     }
 
     @Override
@@ -303,7 +337,7 @@ public class RepositoryImpl implements Repository {
     }
 
     @Override
-    public synchronized boolean isClosed() {
+    public boolean isClosed() {
         return this.closed;
     }
 
@@ -339,7 +373,7 @@ public class RepositoryImpl implements Repository {
                 ContractDetailsCacheImpl contractDetailsCache = (ContractDetailsCacheImpl) contractDetails;
 
                 if (contractDetailsCache.getOriginalContractDetails() == null) {
-                    ContractDetails originalContractDetails = new ContractDetailsImpl(config);
+                    ContractDetails originalContractDetails = new ContractDetailsImpl(config, detailsDataStore.getTrieNodeCache());
                     originalContractDetails.setAddress(addr.getBytes());
                     contractDetailsCache.setOriginalContractDetails(originalContractDetails);
                     contractDetailsCache.commit();
@@ -369,19 +403,20 @@ public class RepositoryImpl implements Repository {
             this.trie.save();
         }
 
-        byte[] rootHash = this.trie.getHash();
+        Sha3Hash rootHash = this.trie.getSha3Hash();
 
-        logger.trace("getting repository root hash {}", Hex.toHexString(rootHash));
+        logger.trace("getting repository root hash {}", rootHash);
 
-        return rootHash;
+        return rootHash.getBytes().clone();
     }
 
     @Override
-    public synchronized void loadAccount(RskAddress addr,
-                                         Map<RskAddress, AccountState> cacheAccounts,
-                                         Map<RskAddress, ContractDetails> cacheDetails) {
-        AccountState account = getAccountState(addr);
-        ContractDetails details = getContractDetails(addr);
+    public void loadAccount(RskAddress addr,
+                            Map<RskAddress, AccountState> cacheAccounts,
+                            Map<RskAddress, ContractDetails> cacheDetails) {
+        Trie snapshot = this.trie;
+        AccountState account = getAccountState(snapshot, addr);
+        ContractDetails details = getContractDetails(snapshot, addr);
 
         account = (account == null) ? new AccountState(BigInteger.ZERO, BigInteger.ZERO) : account.clone();
         details = new ContractDetailsCacheImpl(details);
@@ -391,14 +426,38 @@ public class RepositoryImpl implements Repository {
     }
 
     @Override
-    public synchronized Repository getSnapshotTo(byte[] root) {
+    public Repository getSnapshotTo(byte[] root) {
         RepositoryImpl snapshotRepository = new RepositoryImpl(this.config, this.store, this.detailsDataStore);
         snapshotRepository.syncToRoot(root);
         return snapshotRepository;
     }
 
     @Override
-    public synchronized DetailsDataStore getDetailsDataStore() {
+    public void exportTrie(OutputStream outputStream) throws IOException {
+        byte[] root = this.getRoot();
+
+        // the nodes are read from the store, the trie is saved by getRoot
+        new TrieExporter(this.store).export(root, outputStream);
+    }
+
+    @Override
+    public byte[] importTrie(InputStream inputStream) throws IOException {
+        return new TrieImporter(this.store).importFrom(inputStream);
+    }
+
+    @Override
+    public byte[] getTrieNode(byte[] hash) {
+        // the nodes and the long values are saved by hash
+        return this.store.retrieveValue(hash);
+    }
+
+    @Override
+    public void saveTrieNodes(Map<byte[], byte[]> nodes) {
+        this.store.saveValues(nodes);
+    }
+
+    @Override
+    public DetailsDataStore getDetailsDataStore() {
         return this.detailsDataStore;
     }
 
@@ -18,10 +18,12 @@
 
 package co.rsk.net;
 
+import co.rsk.core.RskAddress;
 import co.rsk.net.messages.NewBlockHashesMessage;
 import org.ethereum.core.Block;
 import org.ethereum.core.BlockHeader;
 import org.ethereum.core.Blockchain;
+import org.ethereum.vm.DataWord;
 
 import java.util.List;
 
@@ -62,4 +64,8 @@ public interface BlockProcessor {
     void processBlockHashRequest(MessageChannel sender, long requestId, long height);
 
     void processSkeletonRequest(MessageChannel sender, long requestId, long startNumber);
+
+    void processTrieNodesRequest(MessageChannel sender, long requestId, List<byte[]> hashes);
+
+    void processContractDetailsRequest(MessageChannel sender, long requestId, byte[] stateRoot, RskAddress fromAddress, DataWord fromKey);
 }
@@ -22,6 +22,7 @@ import co.rsk.core.bc.BlockUtils;
 import co.rsk.net.messages.GetBlockMessage;
 import co.rsk.net.sync.SyncConfiguration;
 import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
 import org.ethereum.core.Blockchain;
 import org.ethereum.core.ImportResult;
 import org.ethereum.db.ByteArrayWrapper;
@@ -245,4 +246,19 @@ public class BlockSyncService {
 
         return blockchain.getBlockByHash(hash);
     }
+
+    /**
+     * getBlockHeaderFromStoreOrBlockchain retrieves a block header from the store if it's available,
+     * or else from the blockchain block store, without decoding the full block.
+     */
+    @CheckForNull
+    public BlockHeader getBlockHeaderFromStoreOrBlockchain(@Nonnull final byte[] hash) {
+        final Block block = store.getBlockByHash(hash);
+
+        if (block != null) {
+            return block.getHeader();
+        }
+
+        return blockchain.getBlockStore().getBlockHeaderByHash(hash);
+    }
 }
@@ -173,6 +173,17 @@ public class Metrics {
         logEvent(event);
     }
 
+    public static void flushData(@Nonnull final String step, final int queueDepth, final long duration) {
+        String event = String.format("event: %s step: %s queueDepth: %d duration: %d",
+                "flushData",
+                step,
+                queueDepth,
+                duration
+        );
+
+        logEvent(event);
+    }
+
     /**
      * Successive calls to this method log metrics-information related to TransactionsMessage processing (and its steps)
      * It also keeps track of duration between successive steps as well as total duration (from "start" to "finish")
@@ -234,6 +245,16 @@ public class Metrics {
         processBlockMessageStepStart = stepTime;
     }
 
+    public static void senderCache(long hits, long misses, int size) {
+        String event = String.format("event: %s hits: %d misses: %d size: %d",
+                "senderCache",
+                hits,
+                misses,
+                size
+        );
+        logEvent(event);
+    }
+
     private static String getAsJson(Map<String, String> map) {
 
         String result = "{}";
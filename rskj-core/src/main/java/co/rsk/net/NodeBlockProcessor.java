@@ -18,13 +18,17 @@
 
 package co.rsk.net;
 
+import co.rsk.core.RskAddress;
 import co.rsk.net.messages.*;
 import co.rsk.net.sync.SyncConfiguration;
 import org.ethereum.core.Block;
 import org.ethereum.core.BlockHeader;
 import org.ethereum.core.BlockIdentifier;
 import org.ethereum.core.Blockchain;
+import org.ethereum.core.Repository;
 import org.ethereum.db.ByteArrayWrapper;
+import org.ethereum.db.ContractDetails;
+import org.ethereum.vm.DataWord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
@@ -35,6 +39,8 @@ import javax.annotation.Nullable;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
+
 /**
  * NodeBlockProcessor processes blocks to add into a blockchain.
  * If a block is not ready to be added to the blockchain, it will be on hold in a BlockStore.
@@ -171,24 +177,24 @@ public class NodeBlockProcessor implements BlockProcessor {
      */
     @Override
     public void processBlockHeadersRequest(@Nonnull final MessageChannel sender, long requestId, @Nonnull final byte[] hash, int count) {
-        Block block = blockSyncService.getBlockFromStoreOrBlockchain(hash);
+        BlockHeader header = blockSyncService.getBlockHeaderFromStoreOrBlockchain(hash);
 
-        if (block == null) {
+        if (header == null) {
             return;
         }
 
         List<BlockHeader> headers = new ArrayList<>();
 
-        headers.add(block.getHeader());
+        headers.add(header);
 
         for (int k = 1; k < count; k++) {
-            block = blockSyncService.getBlockFromStoreOrBlockchain(block.getParentHash());
+            header = blockSyncService.getBlockHeaderFromStoreOrBlockchain(header.getParentHash());
 
-            if (block == null) {
+            if (header == null) {
                 break;
             }
 
-            headers.add(block.getHeader());
+            headers.add(header);
         }
 
         BlockHeadersResponseMessage response = new BlockHeadersResponseMessage(requestId, headers);
@@ -230,14 +236,14 @@ public class NodeBlockProcessor implements BlockProcessor {
             return;
         }
 
-        final Block block = this.getBlockFromBlockchainStore(height);
+        final byte[] hash = this.getBlockHashFromBlockchainStore(height);
 
-        if (block == null) {
+        if (hash == null) {
             // Don't waste time sending an empty response.
             return;
         }
 
-        BlockHashResponseMessage responseMessage = new BlockHashResponseMessage(requestId, block.getHash());
+        BlockHashResponseMessage responseMessage = new BlockHashResponseMessage(requestId, hash);
         sender.sendMessage(responseMessage);
     }
 
@@ -250,16 +256,14 @@ public class NodeBlockProcessor implements BlockProcessor {
     public void processSkeletonRequest(@Nonnull final MessageChannel sender, long requestId, long startNumber) {
         logger.trace("Processing block hash request {} {} {} from {}", requestId, startNumber, sender.getPeerNodeID());
         int skeletonStep = syncConfiguration.getChunkSize();
-        Block blockStart = this.getBlockFromBlockchainStore(startNumber);
-
         // If we don't have a block with the requested number, we ignore the message
-        if (blockStart == null) {
+        if (this.getBlockHashFromBlockchainStore(startNumber) == null) {
             // Don't waste time sending an empty response.
             return;
         }
 
         // We always include the skeleton block immediately before blockStart, even if it's Genesis
-        long skeletonStartHeight = (blockStart.getNumber() / skeletonStep) * skeletonStep;
+        long skeletonStartHeight = (startNumber / skeletonStep) * skeletonStep;
         List<BlockIdentifier> blockIdentifiers = new ArrayList<>();
         long skeletonNumber = skeletonStartHeight;
         int maxSkeletonChunks = syncConfiguration.getMaxSkeletonChunks();
@@ -279,6 +283,107 @@ public class NodeBlockProcessor implements BlockProcessor {
         sender.sendMessage(responseMessage);
     }
 
+    /**
+     * processTrieNodesRequest sends the requested world state trie nodes to a peer,
+     * an empty value for each node not found.
+     *
+     * @param sender the sender of the TrieNodesRequest message.
+     * @param requestId the id of the request
+     * @param hashes   the requested node hashes, only the first TrieNodesRequestMessage.MAX_HASHES are sent.
+     */
+    @Override
+    public void processTrieNodesRequest(@Nonnull final MessageChannel sender, long requestId, @Nonnull final List<byte[]> hashes) {
+        logger.trace("Processing trie nodes request {} {} hashes from {}", requestId, hashes.size(), sender.getPeerNodeID());
+        Repository repository = blockchain.getRepository();
+        List<byte[]> values = new ArrayList<>();
+
+        for (byte[] hash : hashes.subList(0, Math.min(hashes.size(), TrieNodesRequestMessage.MAX_HASHES))) {
+            byte[] value = hash == null ? null : repository.getTrieNode(hash);
+            values.add(value == null ? EMPTY_BYTE_ARRAY : value);
+        }
+
+        sender.sendMessage(new TrieNodesResponseMessage(requestId, values));
+    }
+
+    /**
+     * processContractDetailsRequest sends the code and storage of the next accounts of a world state,
+     * in address order, and the storage of each account in key order, until a response limit is reached.
+     * The accounts are read in order from the contract details of the node, the ones not in the world state
+     * are skipped. Nothing is sent if the world state is not found.
+     *
+     * @param sender the sender of the ContractDetailsRequest message.
+     * @param requestId the id of the request
+     * @param stateRoot the root of the world state
+     * @param fromAddress the accounts are sent from this address, null to start from the first one
+     * @param fromKey the storage of fromAddress is sent after this key, null to send it from the first one
+     */
+    @Override
+    public void processContractDetailsRequest(@Nonnull final MessageChannel sender, long requestId, @Nonnull final byte[] stateRoot, @Nullable final RskAddress fromAddress, @Nullable final DataWord fromKey) {
+        logger.trace("Processing contract details request {} from {}", requestId, sender.getPeerNodeID());
+        Repository repository = blockchain.getRepository();
+
+        if (repository.getTrieNode(stateRoot) == null) {
+            return;
+        }
+
+        Repository snapshot = repository.getSnapshotTo(stateRoot);
+        List<RskAddress> addresses = repository.getDetailsDataStore().keys(fromAddress, ContractDetailsResponseMessage.MAX_SCANNED_ACCOUNTS + 1);
+
+        List<ContractDetailsResponseMessage.AccountDetails> accounts = new ArrayList<>();
+        RskAddress nextAddress = null;
+        DataWord nextKey = null;
+        int rows = 0;
+
+        for (int k = 0; k < addresses.size(); k++) {
+            RskAddress address = addresses.get(k);
+
+            if (k >= ContractDetailsResponseMessage.MAX_SCANNED_ACCOUNTS
+                    || accounts.size() >= ContractDetailsResponseMessage.MAX_ACCOUNTS
+                    || rows >= ContractDetailsResponseMessage.MAX_STORAGE_ROWS) {
+                nextAddress = address;
+                break;
+            }
+
+            ContractDetails details = snapshot.getAccountState(address) == null ? null : snapshot.getContractDetails(address);
+
+            if (details == null) {
+                continue;
+            }
+
+            DataWord storageFrom = address.equals(fromAddress) ? fromKey : null;
+            int remaining = ContractDetailsResponseMessage.MAX_STORAGE_ROWS - rows;
+            List<DataWord> keys = details.getStorageKeys(storageFrom, remaining + 1);
+
+            // the rest of the storage is sent in the next responses
+            if (keys.size() > remaining) {
+                keys = keys.subList(0, remaining);
+                nextAddress = address;
+                nextKey = keys.get(keys.size() - 1);
+            }
+
+            Map<DataWord, byte[]> storage = new LinkedHashMap<>();
+
+            for (DataWord key : keys) {
+                byte[] value = details.getBytes(key);
+
+                if (value != null) {
+                    storage.put(key, value);
+                }
+            }
+
+            // the code is sent with the first part of the storage
+            byte[] code = storageFrom == null ? details.getCode() : null;
+            accounts.add(new ContractDetailsResponseMessage.AccountDetails(address, code == null ? EMPTY_BYTE_ARRAY : code, storage));
+            rows += keys.size();
+
+            if (nextAddress != null) {
+                break;
+            }
+        }
+
+        sender.sendMessage(new ContractDetailsResponseMessage(requestId, accounts, nextAddress, nextKey));
+    }
+
     /**
      *
      * @param skeletonBlockNumber a block number that belongs to the skeleton
@@ -288,17 +393,16 @@ public class NodeBlockProcessor implements BlockProcessor {
         // if block number is too close to best block then its not stored in cache
         // in order to avoid caching forked blocks
         if (blockchain.getBestBlock().getNumber() - skeletonBlockNumber < syncConfiguration.getChunkSize()){
-            Block block = getBlockFromBlockchainStore(skeletonBlockNumber);
-            if (block != null){
-                return block.getHash();
+            byte[] hash = getBlockHashFromBlockchainStore(skeletonBlockNumber);
+            if (hash != null){
+                return hash;
             }
         }
 
         byte[] hash = skeletonCache.get(skeletonBlockNumber);
         if (hash == null){
-            Block block = getBlockFromBlockchainStore(skeletonBlockNumber);
-            if (block != null){
-                hash = block.getHash();
+            hash = getBlockHashFromBlockchainStore(skeletonBlockNumber);
+            if (hash != null){
                 skeletonCache.put(skeletonBlockNumber, hash);
             }
         }
@@ -311,14 +415,15 @@ public class NodeBlockProcessor implements BlockProcessor {
     }
 
     /**
-     * getBlockFromBlockchainStore retrieves the block with the given height from the blockchain, if available.
+     * getBlockHashFromBlockchainStore retrieves the hash of the block with the given height
+     * in the blockchain, if available, without decoding the block.
      *
      * @param height the desired block's height.
-     * @return a Block with the given height if available, null otherwise.
+     * @return the hash of the block with the given height if available, null otherwise.
      */
     @CheckForNull
-    private Block getBlockFromBlockchainStore(long height) {
-        return this.blockchain.getBlockByNumber(height);
+    private byte[] getBlockHashFromBlockchainStore(long height) {
+        return this.blockchain.getBlockStore().getBlockHashByNumber(height);
     }
 
     /**
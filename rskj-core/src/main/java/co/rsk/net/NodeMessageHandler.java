@@ -137,6 +137,14 @@ public class NodeMessageHandler implements MessageHandler, Runnable {
             this.processSkeletonResponseMessage(sender, (SkeletonResponseMessage) message);
         } else if (mType == MessageType.NEW_BLOCK_HASH_MESSAGE) {
             this.processNewBlockHashMessage(sender, (NewBlockHashMessage) message);
+        } else if (mType == MessageType.TRIE_NODES_REQUEST_MESSAGE) {
+            this.processTrieNodesRequestMessage(sender, (TrieNodesRequestMessage) message);
+        } else if (mType == MessageType.TRIE_NODES_RESPONSE_MESSAGE) {
+            this.processTrieNodesResponseMessage(sender, (TrieNodesResponseMessage) message);
+        } else if (mType == MessageType.CONTRACT_DETAILS_REQUEST_MESSAGE) {
+            this.processContractDetailsRequestMessage(sender, (ContractDetailsRequestMessage) message);
+        } else if (mType == MessageType.CONTRACT_DETAILS_RESPONSE_MESSAGE) {
+            this.processContractDetailsResponseMessage(sender, (ContractDetailsResponseMessage) message);
         } else if(!blockProcessor.hasBetterBlockToSync()) {
             if (mType == MessageType.NEW_BLOCK_HASHES) {
                 this.processNewBlockHashesMessage(sender, (NewBlockHashesMessage) message);
@@ -396,6 +404,22 @@ public class NodeMessageHandler implements MessageHandler, Runnable {
         this.syncProcessor.processBodyResponse(sender, message);
     }
 
+    private void processTrieNodesRequestMessage(@Nonnull final MessageChannel sender, @Nonnull final TrieNodesRequestMessage message) {
+        this.blockProcessor.processTrieNodesRequest(sender, message.getId(), message.getHashes());
+    }
+
+    private void processTrieNodesResponseMessage(@Nonnull final MessageChannel sender, @Nonnull final TrieNodesResponseMessage message) {
+        this.syncProcessor.processTrieNodesResponse(sender, message);
+    }
+
+    private void processContractDetailsRequestMessage(@Nonnull final MessageChannel sender, @Nonnull final ContractDetailsRequestMessage message) {
+        this.blockProcessor.processContractDetailsRequest(sender, message.getId(), message.getStateRoot(), message.getFromAddress(), message.getFromKey());
+    }
+
+    private void processContractDetailsResponseMessage(@Nonnull final MessageChannel sender, @Nonnull final ContractDetailsResponseMessage message) {
+        this.syncProcessor.processContractDetailsResponse(sender, message);
+    }
+
     private void processNewBlockHashesMessage(@Nonnull final MessageChannel sender, @Nonnull final NewBlockHashesMessage message) {
         message.getBlockIdentifiers().forEach(bi -> Metrics.newBlockHash(bi, sender.getPeerNodeID()));
         blockProcessor.processNewBlockHashesMessage(sender, message);
@@ -1,10 +1,13 @@
 package co.rsk.net;
 
+import co.rsk.config.RemascConfigFactory;
 import co.rsk.config.RskSystemProperties;
 import co.rsk.core.DifficultyCalculator;
+import co.rsk.core.RskAddress;
 import co.rsk.core.bc.BlockChainStatus;
 import co.rsk.net.messages.*;
 import co.rsk.net.sync.*;
+import co.rsk.remasc.RemascContract;
 import co.rsk.scoring.EventType;
 import co.rsk.scoring.PeerScoringManager;
 import co.rsk.validators.BlockHeaderValidationRule;
@@ -14,16 +17,20 @@ import org.ethereum.core.BlockHeader;
 import org.ethereum.core.BlockIdentifier;
 import org.ethereum.core.Blockchain;
 import org.ethereum.crypto.HashUtil;
+import org.ethereum.db.BlockStore;
 import org.ethereum.util.ByteUtil;
 import org.ethereum.validator.DependentBlockHeaderRule;
 import org.ethereum.validator.DifficultyRule;
+import org.ethereum.vm.DataWord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import java.math.BigInteger;
 import java.time.Duration;
 import java.util.*;
+import java.util.function.LongFunction;
 
 /**
  * Created by ajlopez on 29/08/2017.
@@ -153,6 +160,30 @@ public class SyncProcessor implements SyncEventsHandler {
         blockSyncService.processBlock(peer, message.getBlock(), false);
     }
 
+    public void processTrieNodesResponse(MessageChannel peer, TrieNodesResponseMessage message) {
+        logger.trace("Process trie nodes response from node {}", peer.getPeerNodeID());
+        peerStatuses.getOrRegisterPeer(peer);
+
+        if (!pendingMessages.isPending(message)){
+            peerScoringManager.recordEvent(peer.getPeerNodeID(), null, EventType.UNEXPECTED_MESSAGE);
+            return;
+        }
+
+        this.syncState.newTrieNodes(message, peer);
+    }
+
+    public void processContractDetailsResponse(MessageChannel peer, ContractDetailsResponseMessage message) {
+        logger.trace("Process contract details response from node {}", peer.getPeerNodeID());
+        peerStatuses.getOrRegisterPeer(peer);
+
+        if (!pendingMessages.isPending(message)){
+            peerScoringManager.recordEvent(peer.getPeerNodeID(), null, EventType.UNEXPECTED_MESSAGE);
+            return;
+        }
+
+        this.syncState.newContractDetails(message, peer);
+    }
+
     public Set<NodeID> getKnownPeersNodeIDs() {
         return this.peerStatuses.knownNodeIds();
     }
@@ -181,12 +212,44 @@ public class SyncProcessor implements SyncEventsHandler {
         return message.getId();
     }
 
+    @Override
+    public void sendTrieNodesRequest(NodeID peerId, LongFunction<TrieNodesRequestMessage> requestById) {
+        logger.trace("Send trie nodes request to peer {}", peerId);
+
+        MessageChannel channel = peerStatuses.getPeer(peerId).getMessageChannel();
+        sendMessage(channel, requestById.apply(pendingMessages.getNextRequestId()));
+    }
+
+    @Override
+    public long sendContractDetailsRequest(byte[] stateRoot, RskAddress fromAddress, DataWord fromKey, NodeID peerId) {
+        logger.trace("Send contract details request from address {} key {} to peer {}", fromAddress, fromKey, peerId);
+
+        MessageChannel channel = peerStatuses.getPeer(peerId).getMessageChannel();
+        ContractDetailsRequestMessage message = new ContractDetailsRequestMessage(pendingMessages.getNextRequestId(), stateRoot, fromAddress, fromKey);
+        sendMessage(channel, message);
+        return message.getId();
+    }
+
     @Override
     public void startSyncing(MessageChannel peer) {
         selectedPeerId = peer.getPeerNodeID();
         logger.trace("Start syncing with node {}", peer.getPeerNodeID());
-        byte[] bestBlockHash = syncInformation.getPeerStatus(selectedPeerId).getStatus().getBestBlockHash();
-        setSyncState(new CheckingBestHeaderSyncState(this.syncConfiguration, this, syncInformation, bestBlockHash));
+        Status status = syncInformation.getPeerStatus(selectedPeerId).getStatus();
+
+        if (syncConfiguration.isStateDownloadEnabled() && blockchain.getBestBlock().getNumber() == 0 && status.getTotalDifficulty() != null) {
+            int ancestors = getStateDownloadAncestors();
+            List<NodeID> statePeers = getStatePeers(status);
+
+            // the total difficulty of the pivot can't be validated, it has to be the one reported by several peers
+            if (status.getBestBlockNumber() > ancestors && statePeers.size() >= syncConfiguration.getExpectedPeers()) {
+                logger.trace("Start state download with node {} block {} from {} peers", peer.getPeerNodeID(), status.getBestBlockNumber(), statePeers.size());
+                setSyncState(new DownloadingStateSyncState(config, this.syncConfiguration, this, syncInformation,
+                        blockchain.getRepository(), status.getBestBlockHash(), status.getTotalDifficulty(), statePeers, ancestors));
+                return;
+            }
+        }
+
+        setSyncState(new CheckingBestHeaderSyncState(this.syncConfiguration, this, syncInformation, status.getBestBlockHash()));
     }
 
     @Override
@@ -234,11 +297,90 @@ public class SyncProcessor implements SyncEventsHandler {
         stopSyncing();
     }
 
+    @Override
+    public void onCompletedStateDownload(List<Block> blocks, BigInteger totalDifficulty) {
+        Block pivot = blocks.get(0);
+        logger.trace("Completed state download with node {} block {} {}", selectedPeerId, pivot.getNumber(), pivot.getShortHash());
+
+        // the total difficulty of a parent is the one of its child without the child difficulty
+        BlockStore blockStore = blockchain.getBlockStore();
+        BigInteger difficulty = totalDifficulty;
+
+        for (int k = 1; k < blocks.size(); k++) {
+            difficulty = difficulty.subtract(blocks.get(k - 1).getCumulativeDifficulty());
+            blockStore.saveBlock(blocks.get(k), difficulty, true);
+        }
+
+        blockchain.setStatus(pivot, totalDifficulty);
+        blockchain.getRepository().flush();
+        blockStore.flush();
+
+        stopSyncing();
+    }
+
     @Override
     public void startFindingConnectionPoint() {
         logger.trace("Find connection point with node {}", selectedPeerId);
         long bestBlockNumber = syncInformation.getPeerStatus(selectedPeerId).getStatus().getBestBlockNumber();
-        setSyncState(new FindingConnectionPointSyncState(this.syncConfiguration, this, syncInformation, bestBlockNumber));
+        setSyncState(new FindingConnectionPointSyncState(this.syncConfiguration, this, syncInformation, getFirstChainBlockNumber(), bestBlockNumber));
+    }
+
+    /**
+     * @return the selected peer and the other candidate peers whose status has the same best block and total difficulty
+     */
+    private List<NodeID> getStatePeers(Status status) {
+        List<NodeID> result = new ArrayList<>();
+        result.add(selectedPeerId);
+
+        for (MessageChannel channel : peerStatuses.getPeerCandidates()) {
+            NodeID peerId = channel.getPeerNodeID();
+            Status peerStatus = peerStatuses.getPeer(peerId).getStatus();
+
+            if (!peerId.equals(selectedPeerId)
+                    && ByteUtil.fastEquals(status.getBestBlockHash(), peerStatus.getBestBlockHash())
+                    && status.getTotalDifficulty().equals(peerStatus.getTotalDifficulty())) {
+                result.add(peerId);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * The ancestors of the pivot downloaded with its state: the next blocks need them to validate
+     * their uncles and to pay the REMASC rewards
+     */
+    private int getStateDownloadAncestors() {
+        long maturity = new RemascConfigFactory(RemascContract.REMASC_CONFIG).createRemascConfig(config.netName()).getMaturity();
+        int uncleGenerationLimit = config.getBlockchainConfig().getCommonConstants().getUncleGenerationLimit();
+
+        return (int) Math.max(maturity, uncleGenerationLimit);
+    }
+
+    /**
+     * @return the number of the first block of the chain after genesis, the blocks before the
+     * ones downloaded with a state are missing, 0 if there are none
+     */
+    private long getFirstChainBlockNumber() {
+        long high = blockchain.getBestBlock().getNumber();
+
+        if (high == 0 || blockchain.getBlockByNumber(1) != null) {
+            return 0;
+        }
+
+        long low = 1;
+
+        while (low < high) {
+            long middle = low + (high - low) / 2;
+
+            if (blockchain.getBlockByNumber(middle) != null) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+
+        return high;
     }
 
     private void sendMessage(MessageChannel channel, MessageWithId message) {
@@ -281,6 +423,11 @@ public class SyncProcessor implements SyncEventsHandler {
         this.syncState = newState;
     }
 
+    @VisibleForTesting
+    public boolean isDownloadingState() {
+        return this.syncState instanceof DownloadingStateSyncState;
+    }
+
     @VisibleForTesting
     public SyncState getSyncState() {
         return this.syncState;
@@ -22,9 +22,13 @@ import co.rsk.config.RskSystemProperties;
 import co.rsk.core.bc.BlockChainStatus;
 import co.rsk.net.*;
 import co.rsk.net.messages.BlockMessage;
+import co.rsk.net.messages.ContractDetailsRequestMessage;
+import co.rsk.net.messages.ContractDetailsResponseMessage;
 import co.rsk.net.messages.GetBlockMessage;
 import co.rsk.net.messages.Message;
 import co.rsk.net.messages.StatusMessage;
+import co.rsk.net.messages.TrieNodesRequestMessage;
+import co.rsk.net.messages.TrieNodesResponseMessage;
 import co.rsk.scoring.EventType;
 import co.rsk.scoring.PeerScoringManager;
 import io.netty.channel.ChannelHandlerContext;
@@ -135,6 +139,20 @@ public class RskWireProtocol extends EthHandler {
                         loggerNet.trace("RSK Status Message: Block {} {} from {}", ((StatusMessage)message).getStatus().getBestBlockNumber(), Hex.toHexString(((StatusMessage)message).getStatus().getBestBlockHash()).substring(0, 10), this.messageSender.getPeerNodeID());
                         syncStats.addStatus();
                         break;
+                    case TRIE_NODES_REQUEST_MESSAGE:
+                        loggerNet.trace("RSK Trie Nodes Request Message: {} hashes from {}", ((TrieNodesRequestMessage)message).getHashes().size(), this.messageSender.getPeerNodeID());
+                        break;
+                    case TRIE_NODES_RESPONSE_MESSAGE:
+                        loggerNet.trace("RSK Trie Nodes Response Message: {} values from {}", ((TrieNodesResponseMessage)message).getValues().size(), this.messageSender.getPeerNodeID());
+                        break;
+                    case CONTRACT_DETAILS_REQUEST_MESSAGE:
+                        loggerNet.trace("RSK Contract Details Request Message: from address {} key {} from {}", ((ContractDetailsRequestMessage)message).getFromAddress(), ((ContractDetailsRequestMessage)message).getFromKey(), this.messageSender.getPeerNodeID());
+                        break;
+                    case CONTRACT_DETAILS_RESPONSE_MESSAGE:
+                        loggerNet.trace("RSK Contract Details Response Message: {} accounts from {}", ((ContractDetailsResponseMessage)message).getAccounts().size(), this.messageSender.getPeerNodeID());
+                        break;
+                    default:
+                        break;
                 }
 
                 if (this.messageHandler != null) {
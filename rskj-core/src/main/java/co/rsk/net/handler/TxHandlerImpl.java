@@ -20,6 +20,7 @@ package co.rsk.net.handler;
 
 import co.rsk.config.RskSystemProperties;
 import co.rsk.core.RskAddress;
+import co.rsk.core.TransactionSenderCache;
 import com.google.common.annotations.VisibleForTesting;
 import org.ethereum.core.*;
 import org.ethereum.listener.CompositeEthereumListener;
@@ -43,6 +44,7 @@ public class TxHandlerImpl implements TxHandler {
     private final RskSystemProperties config;
     private Repository repository;
     private Blockchain blockchain;
+    private TransactionSenderCache senderCache;
     private Map<String, TxTimestamp> knownTxs = new HashMap<>();
     private Lock knownTxsLock = new ReentrantLock();
     private Map<RskAddress, TxsPerAccount> txsPerAccounts = new HashMap<>();
@@ -56,10 +58,11 @@ public class TxHandlerImpl implements TxHandler {
      * threads will help to keep memory low and consistency through all the
      * life of the application
      */
-    public TxHandlerImpl(RskSystemProperties config, CompositeEthereumListener compositeEthereumListener, Repository repository, Blockchain blockchain) {
+    public TxHandlerImpl(RskSystemProperties config, CompositeEthereumListener compositeEthereumListener, Repository repository, Blockchain blockchain, TransactionSenderCache senderCache) {
         this.config = config;
         this.blockchain = blockchain;
         this.repository = repository;
+        this.senderCache = senderCache;
 
         // Clean old transactions every so seconds
         this.executorService = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "TxHandler"));
@@ -85,6 +88,13 @@ public class TxHandlerImpl implements TxHandler {
 
     @Override
     public List<Transaction> retrieveValidTxs(List<Transaction> txs) {
+        // the senders are kept for the instances of the same transactions in the next blocks
+        for (Transaction tx : txs) {
+            if (tx.getSignature() != null) {
+                tx.getSender(senderCache);
+            }
+        }
+
         try {
             knownTxsLock.lock();
             return new TxValidator(config, repository, blockchain).filterTxs(txs, knownTxs, txsPerAccounts);
@@ -0,0 +1,82 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.net.messages;
+
+import co.rsk.core.RskAddress;
+import org.ethereum.util.RLP;
+import org.ethereum.vm.DataWord;
+
+import javax.annotation.Nullable;
+
+import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
+
+/**
+ * Implements encoding of the CONTRACT_DETAILS_REQUEST message type.
+ * <p>
+ * Requests the code and storage of the accounts of a world state, in address order,
+ * starting at an address, or after a storage key of that address to continue its storage.
+ */
+public class ContractDetailsRequestMessage extends MessageWithId {
+    private final long id;
+    private final byte[] stateRoot;
+    private final RskAddress fromAddress;
+    private final DataWord fromKey;
+
+    /**
+     * @param stateRoot the root of the world state
+     * @param fromAddress the accounts are sent from this address, null to start from the first one
+     * @param fromKey the storage of the first account is sent after this key, null to send it from the first one
+     */
+    public ContractDetailsRequestMessage(long id, byte[] stateRoot, @Nullable RskAddress fromAddress, @Nullable DataWord fromKey) {
+        this.id = id;
+        this.stateRoot = stateRoot;
+        this.fromAddress = fromAddress;
+        this.fromKey = fromKey;
+    }
+
+    @Override
+    public MessageType getMessageType() {
+        return MessageType.CONTRACT_DETAILS_REQUEST_MESSAGE;
+    }
+
+    @Override
+    public MessageType getResponseMessageType() {
+        return MessageType.CONTRACT_DETAILS_RESPONSE_MESSAGE;
+    }
+
+    @Override
+    public byte[] getEncodedMessageWithoutId() {
+        byte[] rlpStateRoot = RLP.encodeElement(this.stateRoot);
+        byte[] rlpFromAddress = RLP.encodeElement(this.fromAddress == null ? EMPTY_BYTE_ARRAY : this.fromAddress.getBytes());
+        byte[] rlpFromKey = RLP.encodeElement(this.fromKey == null ? EMPTY_BYTE_ARRAY : this.fromKey.getData());
+
+        return RLP.encodeList(rlpStateRoot, rlpFromAddress, rlpFromKey);
+    }
+
+    @Override
+    public long getId() { return this.id; }
+
+    public byte[] getStateRoot() { return this.stateRoot; }
+
+    @Nullable
+    public RskAddress getFromAddress() { return this.fromAddress; }
+
+    @Nullable
+    public DataWord getFromKey() { return this.fromKey; }
+}
@@ -0,0 +1,129 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.net.messages;
+
+import co.rsk.core.RskAddress;
+import org.ethereum.util.RLP;
+import org.ethereum.vm.DataWord;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+
+import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
+
+/**
+ * Implements encoding of the CONTRACT_DETAILS_RESPONSE message type.
+ * <p>
+ * Contains the next accounts of the requested world state, in address order, with their code
+ * and storage rows in key order, and where the next request has to start. The storage of an account
+ * can be sent in several responses, the first one has its code.
+ */
+public class ContractDetailsResponseMessage extends MessageWithId {
+    // maximum number of storage rows in a response
+    public static final int MAX_STORAGE_ROWS = 4096;
+
+    // maximum number of accounts in a response
+    public static final int MAX_ACCOUNTS = 256;
+
+    // maximum number of addresses read for a response, including the ones not in the requested world state
+    public static final int MAX_SCANNED_ACCOUNTS = 4096;
+
+    private final long id;
+    private final List<AccountDetails> accounts;
+    private final RskAddress nextAddress;
+    private final DataWord nextKey;
+
+    /**
+     * @param nextAddress the address of the next request, null if there are no more accounts
+     * @param nextKey the storage key of the next request, null to start the storage of nextAddress from the first one
+     */
+    public ContractDetailsResponseMessage(long id, List<AccountDetails> accounts, @Nullable RskAddress nextAddress, @Nullable DataWord nextKey) {
+        this.id = id;
+        this.accounts = accounts;
+        this.nextAddress = nextAddress;
+        this.nextKey = nextKey;
+    }
+
+    @Override
+    public MessageType getMessageType() {
+        return MessageType.CONTRACT_DETAILS_RESPONSE_MESSAGE;
+    }
+
+    @Override
+    protected byte[] getEncodedMessageWithoutId() {
+        byte[][] rlpAccounts = new byte[this.accounts.size()][];
+
+        for (int k = 0; k < this.accounts.size(); k++) {
+            rlpAccounts[k] = this.accounts.get(k).getEncoded();
+        }
+
+        byte[] rlpNextAddress = RLP.encodeElement(this.nextAddress == null ? EMPTY_BYTE_ARRAY : this.nextAddress.getBytes());
+        byte[] rlpNextKey = RLP.encodeElement(this.nextKey == null ? EMPTY_BYTE_ARRAY : this.nextKey.getData());
+
+        return RLP.encodeList(RLP.encodeList(rlpAccounts), rlpNextAddress, rlpNextKey);
+    }
+
+    @Override
+    public long getId() { return this.id; }
+
+    public List<AccountDetails> getAccounts() { return this.accounts; }
+
+    @Nullable
+    public RskAddress getNextAddress() { return this.nextAddress; }
+
+    @Nullable
+    public DataWord getNextKey() { return this.nextKey; }
+
+    /**
+     * The code and the storage rows (key, value as saved in the storage trie) of an account
+     */
+    public static class AccountDetails {
+        private final RskAddress address;
+        private final byte[] code;
+        private final Map<DataWord, byte[]> storage;
+
+        public AccountDetails(RskAddress address, byte[] code, Map<DataWord, byte[]> storage) {
+            this.address = address;
+            this.code = code;
+            this.storage = storage;
+        }
+
+        public RskAddress getAddress() { return this.address; }
+
+        public byte[] getCode() { return this.code; }
+
+        public Map<DataWord, byte[]> getStorage() { return this.storage; }
+
+        public byte[] getEncoded() {
+            byte[][] rlpKeys = new byte[this.storage.size()][];
+            byte[][] rlpValues = new byte[this.storage.size()][];
+            int k = 0;
+
+            for (Map.Entry<DataWord, byte[]> row : this.storage.entrySet()) {
+                rlpKeys[k] = RLP.encodeElement(row.getKey().getData());
+                rlpValues[k] = RLP.encodeElement(row.getValue());
+                k++;
+            }
+
+            return RLP.encodeList(RLP.encodeElement(this.address.getBytes()), RLP.encodeElement(this.code),
+                    RLP.encodeList(rlpKeys), RLP.encodeList(rlpValues));
+        }
+    }
+}
@@ -18,19 +18,24 @@
 
 package co.rsk.net.messages;
 
+import co.rsk.core.RskAddress;
 import co.rsk.net.Status;
 import co.rsk.remasc.RemascTransaction;
 import org.ethereum.core.*;
 import org.ethereum.util.RLP;
 import org.ethereum.util.RLPElement;
 import org.ethereum.util.RLPList;
+import org.ethereum.vm.DataWord;
 import org.spongycastle.util.BigIntegers;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
+import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
 import static org.ethereum.util.ByteUtil.byteArrayToInt;
 
 /**
@@ -243,6 +248,85 @@ public enum MessageType {
             byte[] hash = list.get(0).getRLPData();
             return new NewBlockHashMessage(hash);
         }
+    },
+    TRIE_NODES_REQUEST_MESSAGE(19) {
+        @Override
+        public Message createMessage(RLPList list) {
+            RLPList message = (RLPList)RLP.decode2(list.get(1).getRLPData()).get(0);
+            byte[] rlpId = list.get(0).getRLPData();
+            long id = rlpId == null ? 0 : BigIntegers.fromUnsignedByteArray(rlpId).longValue();
+            RLPList rlpHashes = (RLPList)RLP.decode2(message.get(0).getRLPData()).get(0);
+
+            List<byte[]> hashes = rlpHashes.stream()
+                    .map(RLPElement::getRLPData)
+                    .collect(Collectors.toList());
+
+            return new TrieNodesRequestMessage(id, hashes);
+        }
+    },
+    TRIE_NODES_RESPONSE_MESSAGE(20) {
+        @Override
+        public Message createMessage(RLPList list) {
+            RLPList message = (RLPList)RLP.decode2(list.get(1).getRLPData()).get(0);
+            byte[] rlpId = list.get(0).getRLPData();
+            long id = rlpId == null ? 0 : BigIntegers.fromUnsignedByteArray(rlpId).longValue();
+            RLPList rlpValues = (RLPList)RLP.decode2(message.get(0).getRLPData()).get(0);
+
+            List<byte[]> values = rlpValues.stream()
+                    .map(el -> el.getRLPData() == null ? EMPTY_BYTE_ARRAY : el.getRLPData())
+                    .collect(Collectors.toList());
+
+            return new TrieNodesResponseMessage(id, values);
+        }
+    },
+    CONTRACT_DETAILS_REQUEST_MESSAGE(21) {
+        @Override
+        public Message createMessage(RLPList list) {
+            RLPList message = (RLPList)RLP.decode2(list.get(1).getRLPData()).get(0);
+            byte[] rlpId = list.get(0).getRLPData();
+            long id = rlpId == null ? 0 : BigIntegers.fromUnsignedByteArray(rlpId).longValue();
+            byte[] stateRoot = message.get(0).getRLPData();
+            byte[] rlpFromAddress = message.get(1).getRLPData();
+            RskAddress fromAddress = rlpFromAddress == null ? null : new RskAddress(rlpFromAddress);
+            byte[] rlpFromKey = message.get(2).getRLPData();
+            DataWord fromKey = rlpFromKey == null ? null : new DataWord(rlpFromKey);
+
+            return new ContractDetailsRequestMessage(id, stateRoot, fromAddress, fromKey);
+        }
+    },
+    CONTRACT_DETAILS_RESPONSE_MESSAGE(22) {
+        @Override
+        public Message createMessage(RLPList list) {
+            RLPList message = (RLPList)RLP.decode2(list.get(1).getRLPData()).get(0);
+            byte[] rlpId = list.get(0).getRLPData();
+            long id = rlpId == null ? 0 : BigIntegers.fromUnsignedByteArray(rlpId).longValue();
+            RLPList rlpAccounts = (RLPList)RLP.decode2(message.get(0).getRLPData()).get(0);
+
+            List<ContractDetailsResponseMessage.AccountDetails> accounts = new ArrayList<>();
+
+            for (RLPElement element : rlpAccounts) {
+                RLPList rlpAccount = (RLPList) element;
+                byte[] code = rlpAccount.get(1).getRLPData();
+                RLPList rlpKeys = (RLPList) rlpAccount.get(2);
+                RLPList rlpValues = (RLPList) rlpAccount.get(3);
+                Map<DataWord, byte[]> storage = new LinkedHashMap<>();
+
+                for (int k = 0; k < rlpKeys.size() && k < rlpValues.size(); k++) {
+                    byte[] value = rlpValues.get(k).getRLPData();
+                    storage.put(new DataWord(rlpKeys.get(k).getRLPData()), value == null ? EMPTY_BYTE_ARRAY : value);
+                }
+
+                accounts.add(new ContractDetailsResponseMessage.AccountDetails(
+                        new RskAddress(rlpAccount.get(0).getRLPData()), code == null ? EMPTY_BYTE_ARRAY : code, storage));
+            }
+
+            byte[] rlpNextAddress = message.get(1).getRLPData();
+            RskAddress nextAddress = rlpNextAddress == null ? null : new RskAddress(rlpNextAddress);
+            byte[] rlpNextKey = message.get(2).getRLPData();
+            DataWord nextKey = rlpNextKey == null ? null : new DataWord(rlpNextKey);
+
+            return new ContractDetailsResponseMessage(id, accounts, nextAddress, nextKey);
+        }
     };
 
     private int type;
@@ -0,0 +1,67 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.net.messages;
+
+import org.ethereum.util.RLP;
+
+import java.util.List;
+
+/**
+ * Implements encoding of the TRIE_NODES_REQUEST message type.
+ * <p>
+ * Requests trie nodes, or long trie values, by their hash.
+ */
+public class TrieNodesRequestMessage extends MessageWithId {
+    // maximum number of hashes answered in a request
+    public static final int MAX_HASHES = 256;
+
+    private final long id;
+    private final List<byte[]> hashes;
+
+    public TrieNodesRequestMessage(long id, List<byte[]> hashes) {
+        this.id = id;
+        this.hashes = hashes;
+    }
+
+    @Override
+    public MessageType getMessageType() {
+        return MessageType.TRIE_NODES_REQUEST_MESSAGE;
+    }
+
+    @Override
+    public MessageType getResponseMessageType() {
+        return MessageType.TRIE_NODES_RESPONSE_MESSAGE;
+    }
+
+    @Override
+    public byte[] getEncodedMessageWithoutId() {
+        byte[][] rlpHashes = new byte[this.hashes.size()][];
+
+        for (int k = 0; k < this.hashes.size(); k++) {
+            rlpHashes[k] = RLP.encodeElement(this.hashes.get(k));
+        }
+
+        return RLP.encodeList(RLP.encodeList(rlpHashes));
+    }
+
+    @Override
+    public long getId() { return this.id; }
+
+    public List<byte[]> getHashes() { return this.hashes; }
+}
@@ -0,0 +1,60 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.net.messages;
+
+import org.ethereum.util.RLP;
+
+import java.util.List;
+
+/**
+ * Implements encoding of the TRIE_NODES_RESPONSE message type.
+ * <p>
+ * Contains the serialized trie nodes, or long trie values, in the order of the request hashes.
+ * A node not found is sent as an empty value.
+ */
+public class TrieNodesResponseMessage extends MessageWithId {
+    private final long id;
+    private final List<byte[]> values;
+
+    public TrieNodesResponseMessage(long id, List<byte[]> values) {
+        this.id = id;
+        this.values = values;
+    }
+
+    @Override
+    public MessageType getMessageType() {
+        return MessageType.TRIE_NODES_RESPONSE_MESSAGE;
+    }
+
+    @Override
+    protected byte[] getEncodedMessageWithoutId() {
+        byte[][] rlpValues = new byte[this.values.size()][];
+
+        for (int k = 0; k < this.values.size(); k++) {
+            rlpValues[k] = RLP.encodeElement(this.values.get(k));
+        }
+
+        return RLP.encodeList(RLP.encodeList(rlpValues));
+    }
+
+    @Override
+    public long getId() { return this.id; }
+
+    public List<byte[]> getValues() { return this.values; }
+}
@@ -2,6 +2,8 @@ package co.rsk.net.sync;
 
 import co.rsk.net.MessageChannel;
 import co.rsk.net.messages.BodyResponseMessage;
+import co.rsk.net.messages.ContractDetailsResponseMessage;
+import co.rsk.net.messages.TrieNodesResponseMessage;
 import co.rsk.scoring.EventType;
 import com.google.common.annotations.VisibleForTesting;
 import org.ethereum.core.BlockHeader;
@@ -51,6 +53,14 @@ public abstract class BaseSyncState implements SyncState {
     public void newConnectionPointData(byte[] hash) {
     }
 
+    @Override
+    public void newTrieNodes(TrieNodesResponseMessage message, MessageChannel peer) {
+    }
+
+    @Override
+    public void newContractDetails(ContractDetailsResponseMessage message, MessageChannel peer) {
+    }
+
     @Override
     public void newPeerStatus() { }
 
@@ -17,7 +17,15 @@ public class ConnectionPointFinder {
     private Long connectionPoint = null;
 
     public ConnectionPointFinder(long height) {
-        this.start = 0;
+        this(0, height);
+    }
+
+    /**
+     * @param start a known height, ie the first block of a chain downloaded with its state
+     * @param height the peer best block height
+     */
+    public ConnectionPointFinder(long start, long height) {
+        this.start = start;
         this.end = height;
     }
 
@@ -0,0 +1,467 @@
+package co.rsk.net.sync;
+
+import co.rsk.config.RskSystemProperties;
+import co.rsk.core.RskAddress;
+import co.rsk.db.ContractDetailsImpl;
+import co.rsk.net.MessageChannel;
+import co.rsk.net.NodeID;
+import co.rsk.net.messages.BodyResponseMessage;
+import co.rsk.net.messages.ContractDetailsResponseMessage;
+import co.rsk.net.messages.TrieNodesResponseMessage;
+import co.rsk.scoring.EventType;
+import co.rsk.validators.BlockRootValidationRule;
+import co.rsk.validators.BlockUnclesHashValidationRule;
+import co.rsk.validators.BlockValidationRule;
+import org.ethereum.core.AccountState;
+import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
+import org.ethereum.core.Repository;
+import org.ethereum.crypto.HashUtil;
+import org.ethereum.db.ByteArrayWrapper;
+import org.ethereum.db.ContractDetails;
+import org.ethereum.util.ByteUtil;
+import org.ethereum.vm.DataWord;
+
+import javax.annotation.CheckForNull;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Downloads from the selected peer the state of its best block (the pivot), to start syncing
+ * from it without executing the previous blocks:
+ * <p>
+ * - the pivot block and its last ancestors, the ones needed to validate and execute the next blocks
+ * (uncles and REMASC), their headers are validated as in DownloadingHeadersSyncState.
+ * <p>
+ * - the world state trie of the pivot, see StateSnapshotDownloader. Its nodes are requested to every peer
+ * with the pivot, a peer that fails a request is left out, unless it is the selected peer.
+ * <p>
+ * - the code and storage of every account, in address order, the storage of an account can come in several
+ * responses. Each one is checked against the code hash and storage root of its account in the downloaded trie,
+ * and the number of accounts against the trie values.
+ * <p>
+ * The pivot and its total difficulty are the ones reported by every peer of the download, SyncProcessor
+ * only starts it when enough peers report the same best block and total difficulty.
+ */
+public class DownloadingStateSyncState extends BaseSyncState {
+    private final RskSystemProperties config;
+    private final Repository repository;
+    private final byte[] pivotHash;
+    private final BigInteger totalDifficulty;
+
+    // the peers with the pivot, the first one is the selected peer
+    private final List<NodeID> statePeers;
+
+    // validation rules for bodies
+    private final BlockValidationRule blockUnclesHashValidationRule;
+    private final BlockValidationRule blockTransactionsValidationRule;
+
+    // validated headers, from the pivot to its oldest ancestor, and the blocks of the received bodies
+    private final List<BlockHeader> headers = new ArrayList<>();
+    private final Map<ByteArrayWrapper, Block> blocks = new HashMap<>();
+
+    // headers waiting their body, by request id
+    private final Map<Long, BlockHeader> pendingBodies = new HashMap<>();
+
+    // headers to download, including the pivot
+    private int remainingHeaders;
+
+    // the requested headers chunk, null if there is none
+    private ChunkDescriptor currentChunk;
+
+    // null until the blocks are downloaded, and after the trie is downloaded
+    private StateSnapshotDownloader stateDownloader;
+
+    // the world state of the pivot, null until the trie is downloaded
+    private Repository pivotRepository;
+    private long expectedAccounts;
+    private long downloadedAccounts;
+    private long detailsRequestId;
+
+    // where the requested contract details start
+    private RskAddress detailsFromAddress;
+    private DataWord detailsFromKey;
+
+    // the account whose storage continues in the next response, null if there is none
+    private ContractDetails pendingDetails;
+
+    /**
+     * @param repository the repository of the node, where the state is saved
+     * @param pivotHash the hash of the peer best block
+     * @param totalDifficulty the total difficulty of the peer best block
+     * @param statePeers the peers with the same best block and total difficulty, including the selected peer
+     * @param ancestors the number of ancestors of the pivot to download
+     */
+    public DownloadingStateSyncState(RskSystemProperties config,
+                                     SyncConfiguration syncConfiguration,
+                                     SyncEventsHandler syncEventsHandler,
+                                     SyncInformation syncInformation,
+                                     Repository repository,
+                                     byte[] pivotHash,
+                                     BigInteger totalDifficulty,
+                                     List<NodeID> statePeers,
+                                     int ancestors) {
+        super(syncInformation, syncEventsHandler, syncConfiguration);
+        this.config = config;
+        this.repository = repository;
+        this.pivotHash = pivotHash;
+        this.totalDifficulty = totalDifficulty;
+        this.statePeers = new ArrayList<>(statePeers);
+        this.remainingHeaders = ancestors + 1;
+        this.blockUnclesHashValidationRule = new BlockUnclesHashValidationRule();
+        this.blockTransactionsValidationRule = new BlockRootValidationRule();
+    }
+
+    @Override
+    public void onEnter() {
+        requestHeaders(pivotHash);
+    }
+
+    @Override
+    public void newBlockHeaders(List<BlockHeader> chunk) {
+        if (currentChunk == null
+                || chunk.size() != currentChunk.getCount()
+                || !ByteUtil.fastEquals(chunk.get(0).getHash(), currentChunk.getHash())) {
+            syncEventsHandler.onErrorSyncing(
+                    "Invalid chunk received from node {}", EventType.INVALID_MESSAGE,
+                    syncInformation.getSelectedPeerId());
+            return;
+        }
+
+        // the headers come ordered by block number desc
+        for (BlockHeader header : chunk) {
+            BlockHeader childHeader = headers.isEmpty() ? null : headers.get(headers.size() - 1);
+
+            if (!syncInformation.blockHeaderIsValid(header) || (childHeader != null && !syncInformation.blockHeaderIsValid(childHeader, header))) {
+                syncEventsHandler.onErrorSyncing(
+                        "Invalid header received from node {} {} {}", EventType.INVALID_HEADER,
+                        syncInformation.getSelectedPeerId(), header.getNumber(), header.getShortHash());
+                return;
+            }
+
+            headers.add(header);
+        }
+
+        currentChunk = null;
+        remainingHeaders -= chunk.size();
+        resetTimeElapsed();
+
+        NodeID peerId = syncInformation.getSelectedPeerId();
+        chunk.forEach(header -> pendingBodies.put(syncEventsHandler.sendBodyRequest(header, peerId), header));
+    }
+
+    @Override
+    public void newBody(BodyResponseMessage message, MessageChannel peer) {
+        BlockHeader header = pendingBodies.remove(message.getId());
+
+        if (header == null) {
+            syncEventsHandler.onErrorSyncing(
+                    "Unexpected body received from node {}", EventType.UNEXPECTED_MESSAGE,
+                    peer.getPeerNodeID());
+            return;
+        }
+
+        Block block = Block.fromValidData(header, message.getTransactions(), message.getUncles());
+
+        if (!blockUnclesHashValidationRule.isValid(block) || !blockTransactionsValidationRule.isValid(block)) {
+            syncEventsHandler.onErrorSyncing(
+                    "Invalid body received from node {} {} {}", EventType.INVALID_MESSAGE,
+                    peer.getPeerNodeID(), header.getNumber(), header.getShortHash());
+            return;
+        }
+
+        blocks.put(new ByteArrayWrapper(block.getHash()), block);
+        resetTimeElapsed();
+
+        if (!pendingBodies.isEmpty()) {
+            return;
+        }
+
+        if (remainingHeaders > 0) {
+            requestHeaders(headers.get(headers.size() - 1).getParentHash());
+            return;
+        }
+
+        startTrieDownload();
+    }
+
+    @Override
+    public void newTrieNodes(TrieNodesResponseMessage message, MessageChannel peer) {
+        if (stateDownloader == null) {
+            syncEventsHandler.onErrorSyncing(
+                    "Unexpected trie nodes received from node {}", EventType.UNEXPECTED_MESSAGE,
+                    peer.getPeerNodeID());
+            return;
+        }
+
+        if (!stateDownloader.processResponse(peer.getPeerNodeID(), message)) {
+            if (!removeStatePeer(peer.getPeerNodeID(), "Invalid trie nodes received from node {}", EventType.INVALID_MESSAGE)) {
+                return;
+            }
+        } else {
+            resetTimeElapsed();
+        }
+
+        continueTrieDownload();
+    }
+
+    @Override
+    public void newContractDetails(ContractDetailsResponseMessage message, MessageChannel peer) {
+        if (pivotRepository == null || message.getId() != detailsRequestId) {
+            syncEventsHandler.onErrorSyncing(
+                    "Unexpected contract details received from node {}", EventType.UNEXPECTED_MESSAGE,
+                    peer.getPeerNodeID());
+            return;
+        }
+
+        RskAddress nextAddress = message.getNextAddress();
+        DataWord nextKey = message.getNextKey();
+
+        if (nextAddress != null && !isAfterDetailsCursor(nextAddress, nextKey)) {
+            syncEventsHandler.onErrorSyncing(
+                    "Invalid contract details received from node {} {}", EventType.INVALID_MESSAGE,
+                    peer.getPeerNodeID(), nextAddress);
+            return;
+        }
+
+        RskAddress lastAddress = null;
+
+        for (ContractDetailsResponseMessage.AccountDetails account : message.getAccounts()) {
+            RskAddress address = account.getAddress();
+            ContractDetails details = addContractDetails(account, lastAddress);
+            // the storage of the last account can continue in the next response
+            boolean continues = nextKey != null && address.equals(nextAddress);
+
+            if (details == null || (!continues && !hasStorageRoot(details, address))) {
+                syncEventsHandler.onErrorSyncing(
+                        "Invalid contract details received from node {} {}", EventType.INVALID_MESSAGE,
+                        peer.getPeerNodeID(), address);
+                return;
+            }
+
+            if (continues) {
+                pendingDetails = details;
+            } else {
+                repository.updateContractDetails(address, details);
+            }
+
+            lastAddress = address;
+        }
+
+        if (pendingDetails != null && (nextKey == null || !nextAddress.equals(lastAddress))) {
+            syncEventsHandler.onErrorSyncing(
+                    "Missing contract details from node {} {}", EventType.INVALID_MESSAGE,
+                    peer.getPeerNodeID(), new RskAddress(pendingDetails.getAddress()));
+            return;
+        }
+
+        if (nextAddress == null) {
+            if (downloadedAccounts != expectedAccounts) {
+                syncEventsHandler.onErrorSyncing(
+                        "Missing contract details from node {}, {} of {} accounts", EventType.INVALID_MESSAGE,
+                        peer.getPeerNodeID(), downloadedAccounts, expectedAccounts);
+                return;
+            }
+
+            syncEventsHandler.onCompletedStateDownload(getBlocks(), totalDifficulty);
+            return;
+        }
+
+        resetTimeElapsed();
+        requestContractDetails(nextAddress, nextKey);
+    }
+
+    @Override
+    public void tick(Duration duration) {
+        if (stateDownloader != null) {
+            List<NodeID> timedOutPeers = stateDownloader.tick(duration);
+
+            for (NodeID peerId : timedOutPeers) {
+                if (!removeStatePeer(peerId, "Timeout waiting trie nodes from node {}", EventType.TIMEOUT_MESSAGE)) {
+                    return;
+                }
+            }
+
+            if (!timedOutPeers.isEmpty()) {
+                continueTrieDownload();
+                return;
+            }
+        }
+
+        super.tick(duration);
+    }
+
+    @Override
+    public boolean isSyncing() {
+        return true;
+    }
+
+    private void requestHeaders(byte[] hash) {
+        currentChunk = new ChunkDescriptor(hash, Math.min(remainingHeaders, syncConfiguration.getChunkSize()));
+        syncEventsHandler.sendBlockHeadersRequest(currentChunk);
+    }
+
+    private void startTrieDownload() {
+        stateDownloader = new StateSnapshotDownloader(getPivotStateRoot(), repository, syncConfiguration.getTimeoutWaitingRequest());
+
+        if (stateDownloader.isCompleted()) {
+            stateDownloader = null;
+            startDetailsDownload();
+            return;
+        }
+
+        sendTrieNodesRequests();
+    }
+
+    private void continueTrieDownload() {
+        if (stateDownloader.hasMissingNodes(statePeers)) {
+            syncEventsHandler.onErrorSyncing(
+                    "Missing trie nodes from node {}", EventType.INVALID_MESSAGE,
+                    syncInformation.getSelectedPeerId());
+            return;
+        }
+
+        if (!stateDownloader.isCompleted()) {
+            sendTrieNodesRequests();
+            return;
+        }
+
+        // in the world state trie each value is an account
+        expectedAccounts = stateDownloader.getDownloadedValues();
+        stateDownloader = null;
+        startDetailsDownload();
+    }
+
+    private void sendTrieNodesRequests() {
+        boolean sent = true;
+
+        // a request to each peer in turn, to spread the pending nodes among them
+        while (sent) {
+            sent = false;
+
+            for (NodeID peerId : statePeers) {
+                if (stateDownloader.canRequest(peerId)) {
+                    syncEventsHandler.sendTrieNodesRequest(peerId, id -> stateDownloader.createRequest(id, peerId));
+                    sent = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Leaves out of the trie download a peer that failed a request, the sync fails if it is the selected peer
+     *
+     * @return false if the sync failed
+     */
+    private boolean removeStatePeer(NodeID peerId, String message, EventType eventType) {
+        if (peerId.equals(syncInformation.getSelectedPeerId())) {
+            syncEventsHandler.onErrorSyncing(message, eventType, peerId);
+            return false;
+        }
+
+        if (statePeers.remove(peerId)) {
+            syncInformation.reportEvent(message, eventType, peerId, peerId);
+        }
+
+        return true;
+    }
+
+    private void startDetailsDownload() {
+        pivotRepository = repository.getSnapshotTo(getPivotStateRoot());
+        requestContractDetails(null, null);
+    }
+
+    private void requestContractDetails(RskAddress fromAddress, DataWord fromKey) {
+        detailsFromAddress = fromAddress;
+        detailsFromKey = fromKey;
+        detailsRequestId = syncEventsHandler.sendContractDetailsRequest(getPivotStateRoot(), fromAddress, fromKey, syncInformation.getSelectedPeerId());
+    }
+
+    /**
+     * @return true if the position of an account, or of a storage key of an account, is after the requested one
+     */
+    private boolean isAfterDetailsCursor(RskAddress address, DataWord key) {
+        if (detailsFromAddress == null) {
+            return true;
+        }
+
+        int result = RskAddress.LEXICOGRAPHICAL_COMPARATOR.compare(address, detailsFromAddress);
+
+        if (result != 0) {
+            return result > 0;
+        }
+
+        return key != null && (detailsFromKey == null || key.compareTo(detailsFromKey) > 0);
+    }
+
+    /**
+     * Adds the received code and storage of an account to its details, the ones of the pending account
+     * if it continues it, or new ones if the account is the next one in address order.
+     *
+     * @param previousAddress the address of the previous account of the response, null if it is the first one
+     * @return the details of the account, null if the account is not expected or its code doesn't match its code hash
+     */
+    @CheckForNull
+    private ContractDetails addContractDetails(ContractDetailsResponseMessage.AccountDetails account, RskAddress previousAddress) {
+        RskAddress address = account.getAddress();
+
+        if (pendingDetails != null) {
+            ContractDetails details = pendingDetails;
+            pendingDetails = null;
+
+            if (previousAddress != null || !Arrays.equals(details.getAddress(), address.getBytes())) {
+                return null;
+            }
+
+            account.getStorage().forEach(details::putBytes);
+            return details;
+        }
+
+        boolean ordered = previousAddress == null
+                ? detailsFromKey == null && (detailsFromAddress == null || RskAddress.LEXICOGRAPHICAL_COMPARATOR.compare(address, detailsFromAddress) >= 0)
+                : RskAddress.LEXICOGRAPHICAL_COMPARATOR.compare(address, previousAddress) > 0;
+        AccountState accountState = ordered ? pivotRepository.getAccountState(address) : null;
+
+        if (accountState == null
+                || !Arrays.equals(HashUtil.sha3(account.getCode()), accountState.getCodeHash())
+                || ++downloadedAccounts > expectedAccounts) {
+            return null;
+        }
+
+        ContractDetails details = new ContractDetailsImpl(config, repository.getDetailsDataStore().getTrieNodeCache());
+        details.setAddress(address.getBytes());
+
+        if (account.getCode().length > 0) {
+            details.setCode(account.getCode());
+        }
+
+        account.getStorage().forEach(details::putBytes);
+        return details;
+    }
+
+    /**
+     * @return true if the storage of the details matches the storage root of their account
+     */
+    private boolean hasStorageRoot(ContractDetails details, RskAddress address) {
+        byte[] stateRoot = pivotRepository.getAccountState(address).getStateRoot();
+
+        // an account without storage can keep the initial storage root
+        if (details.getStorageSize() == 0 && Arrays.equals(HashUtil.EMPTY_TRIE_HASH, stateRoot)) {
+            return true;
+        }
+
+        return Arrays.equals(details.getStorageHash(), stateRoot);
+    }
+
+    private List<Block> getBlocks() {
+        List<Block> result = new ArrayList<>();
+        headers.forEach(header -> result.add(blocks.get(new ByteArrayWrapper(header.getHash()))));
+
+        return result;
+    }
+
+    private byte[] getPivotStateRoot() {
+        return headers.get(0).getStateRoot();
+    }
+}
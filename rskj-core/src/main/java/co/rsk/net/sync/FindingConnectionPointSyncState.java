@@ -8,9 +8,16 @@ public class FindingConnectionPointSyncState extends BaseSyncState {
     private ConnectionPointFinder connectionPointFinder;
 
     public FindingConnectionPointSyncState(SyncConfiguration syncConfiguration, SyncEventsHandler syncEventsHandler, SyncInformation syncInformation, long bestBlockNumber) {
+        this(syncConfiguration, syncEventsHandler, syncInformation, 0, bestBlockNumber);
+    }
+
+    /**
+     * @param firstBlockNumber a known block number, the connection point is searched after it
+     */
+    public FindingConnectionPointSyncState(SyncConfiguration syncConfiguration, SyncEventsHandler syncEventsHandler, SyncInformation syncInformation, long firstBlockNumber, long bestBlockNumber) {
         super(syncInformation, syncEventsHandler, syncConfiguration);
 
-        this.connectionPointFinder = new ConnectionPointFinder(bestBlockNumber);
+        this.connectionPointFinder = new ConnectionPointFinder(firstBlockNumber, bestBlockNumber);
     }
 
     @Override
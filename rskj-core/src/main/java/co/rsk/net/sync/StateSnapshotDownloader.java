@@ -0,0 +1,224 @@
+package co.rsk.net.sync;
+
+import co.rsk.net.NodeID;
+import co.rsk.net.messages.TrieNodesRequestMessage;
+import co.rsk.net.messages.TrieNodesResponseMessage;
+import co.rsk.trie.TrieImpl;
+import org.ethereum.core.Repository;
+import org.ethereum.crypto.HashUtil;
+import org.ethereum.util.ByteUtil;
+
+import javax.annotation.CheckForNull;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Downloads the world state trie of a block from peers, node by node, starting from its root hash.
+ * <p>
+ * Each received node is verified against the requested hash, saved to the repository trie store,
+ * and its subnodes (and its long value, if any) are requested next.
+ * The nodes with a value are counted, in the world state trie they are the accounts.
+ * The nodes not received (invalid or timed out) are requested again. The nodes not found by a peer
+ * are requested again to other peers, if every peer misses a node the trie can't be downloaded from them.
+ * This class' methods are executed one at a time because NodeMessageHandler is synchronized.
+ */
+public class StateSnapshotDownloader {
+    // requests waiting a response from the same peer
+    private static final int MAX_REQUESTS_PER_PEER = 4;
+
+    private static final byte[] EMPTY_TRIE_HASH = new TrieImpl().getHash();
+
+    private final Repository repository;
+    private final Duration timeout;
+
+    // nodes to request
+    private final Deque<PendingNode> pendingNodes = new ArrayDeque<>();
+
+    // requests waiting a response, by request id
+    private final Map<Long, PendingRequest> requests = new HashMap<>();
+
+    private long downloadedNodes;
+    private long downloadedValues;
+
+    public StateSnapshotDownloader(byte[] root, Repository repository, Duration timeout) {
+        this.repository = repository;
+        this.timeout = timeout;
+
+        if (!Arrays.equals(EMPTY_TRIE_HASH, root)) {
+            this.pendingNodes.add(new PendingNode(root, false));
+        }
+    }
+
+    public boolean canRequest(NodeID peerId) {
+        return requests.values().stream().filter(r -> r.peerId.equals(peerId)).count() < MAX_REQUESTS_PER_PEER
+                && pendingNodes.stream().anyMatch(n -> !n.missingPeers.contains(peerId));
+    }
+
+    /**
+     * @return true if a pending node was not found by any of the peers, so it can't be downloaded from them
+     */
+    public boolean hasMissingNodes(Collection<NodeID> peerIds) {
+        return pendingNodes.stream().anyMatch(n -> n.missingPeers.containsAll(peerIds));
+    }
+
+    /**
+     * @return a request for the next pending nodes not missed by the peer, null if there are none
+     */
+    @CheckForNull
+    public TrieNodesRequestMessage createRequest(long requestId, NodeID peerId) {
+        List<PendingNode> nodes = new ArrayList<>();
+        Iterator<PendingNode> iterator = pendingNodes.iterator();
+
+        while (iterator.hasNext() && nodes.size() < TrieNodesRequestMessage.MAX_HASHES) {
+            PendingNode node = iterator.next();
+
+            if (!node.missingPeers.contains(peerId)) {
+                nodes.add(node);
+                iterator.remove();
+            }
+        }
+
+        if (nodes.isEmpty()) {
+            return null;
+        }
+
+        requests.put(requestId, new PendingRequest(peerId, nodes));
+
+        List<byte[]> hashes = new ArrayList<>();
+        nodes.forEach(n -> hashes.add(n.hash));
+
+        return new TrieNodesRequestMessage(requestId, hashes);
+    }
+
+    /**
+     * @return false if the response has invalid data, its nodes are requested again
+     */
+    public boolean processResponse(NodeID peerId, TrieNodesResponseMessage message) {
+        PendingRequest request = requests.get(message.getId());
+
+        if (request == null || !request.peerId.equals(peerId)) {
+            return true;
+        }
+
+        requests.remove(message.getId());
+
+        List<byte[]> values = message.getValues();
+
+        if (!isValid(request.nodes, values)) {
+            pendingNodes.addAll(request.nodes);
+            return false;
+        }
+
+        Map<byte[], byte[]> rows = new HashMap<>();
+
+        for (int k = 0; k < values.size(); k++) {
+            PendingNode node = request.nodes.get(k);
+            byte[] value = values.get(k);
+
+            // the peer does not have the node, it is not requested to it again
+            if (value.length == 0) {
+                node.missingPeers.add(peerId);
+                pendingNodes.add(node);
+                continue;
+            }
+
+            rows.put(node.hash, value);
+
+            if (!node.isValue) {
+                addSubnodes(TrieImpl.fromMessage(value, null));
+            }
+        }
+
+        repository.saveTrieNodes(rows);
+        downloadedNodes += rows.size();
+
+        return true;
+    }
+
+    /**
+     * @return the peers whose requests timed out, their nodes are requested again
+     */
+    public List<NodeID> tick(Duration duration) {
+        List<NodeID> timedOutPeers = new ArrayList<>();
+        Iterator<PendingRequest> iterator = requests.values().iterator();
+
+        while (iterator.hasNext()) {
+            PendingRequest request = iterator.next();
+            request.timeElapsed = request.timeElapsed.plus(duration);
+
+            if (request.timeElapsed.compareTo(timeout) >= 0) {
+                pendingNodes.addAll(request.nodes);
+                timedOutPeers.add(request.peerId);
+                iterator.remove();
+            }
+        }
+
+        return timedOutPeers;
+    }
+
+    public boolean isCompleted() {
+        return pendingNodes.isEmpty() && requests.isEmpty();
+    }
+
+    public long getDownloadedNodes() {
+        return downloadedNodes;
+    }
+
+    public long getDownloadedValues() {
+        return downloadedValues;
+    }
+
+    public int getPendingNodes() {
+        return pendingNodes.size();
+    }
+
+    private void addSubnodes(TrieImpl node) {
+        // the long value is saved by its hash, as the nodes
+        if (node.hasLongValue()) {
+            pendingNodes.add(new PendingNode(node.getValueHash(), true));
+            downloadedValues++;
+        } else if (node.getValue() != null) {
+            downloadedValues++;
+        }
+
+        node.getSubnodeHashes().forEach(h -> pendingNodes.add(new PendingNode(h, false)));
+    }
+
+    private static boolean isValid(List<PendingNode> nodes, List<byte[]> values) {
+        if (values.size() != nodes.size()) {
+            return false;
+        }
+
+        for (int k = 0; k < values.size(); k++) {
+            byte[] value = values.get(k);
+
+            if (value.length > 0 && !ByteUtil.fastEquals(nodes.get(k).hash, HashUtil.sha3(value))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static class PendingNode {
+        private final byte[] hash;
+        private final boolean isValue;
+        private final Set<NodeID> missingPeers = new HashSet<>();
+
+        PendingNode(byte[] hash, boolean isValue) {
+            this.hash = hash;
+            this.isValue = isValue;
+        }
+    }
+
+    private static class PendingRequest {
+        private final NodeID peerId;
+        private final List<PendingNode> nodes;
+        private Duration timeElapsed = Duration.ZERO;
+
+        PendingRequest(NodeID peerId, List<PendingNode> nodes) {
+            this.peerId = peerId;
+            this.nodes = nodes;
+        }
+    }
+}
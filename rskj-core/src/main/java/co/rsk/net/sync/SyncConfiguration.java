@@ -18,6 +18,7 @@ public final class SyncConfiguration {
     private final Duration expirationTimePeerStatus;
     private final int maxSkeletonChunks;
     private final int chunkSize;
+    private final boolean stateDownload;
 
     /**
      * @param expectedPeers The expected number of peers we would want to start finding a connection point.
@@ -28,12 +29,26 @@ public final class SyncConfiguration {
      * @param chunkSize Amount of blocks contained in a chunk
      */
     public SyncConfiguration(int expectedPeers, int timeoutWaitingPeers, int timeoutWaitingRequest, int expirationTimePeerStatus, int maxSkeletonChunks, int chunkSize) {
+        this(expectedPeers, timeoutWaitingPeers, timeoutWaitingRequest, expirationTimePeerStatus, maxSkeletonChunks, chunkSize, false);
+    }
+
+    /**
+     * @param expectedPeers The expected number of peers we would want to start finding a connection point.
+     * @param timeoutWaitingPeers Timeout in minutes to start finding the connection point when we have at least one peer
+     * @param timeoutWaitingRequest Timeout in seconds to wait for syncing requests
+     * @param expirationTimePeerStatus Expiration time in minutes for peer status
+     * @param maxSkeletonChunks Maximum amount of chunks included in a skeleton message
+     * @param chunkSize Amount of blocks contained in a chunk
+     * @param stateDownload Download the state of the peer best block instead of executing the blocks, when starting from genesis
+     */
+    public SyncConfiguration(int expectedPeers, int timeoutWaitingPeers, int timeoutWaitingRequest, int expirationTimePeerStatus, int maxSkeletonChunks, int chunkSize, boolean stateDownload) {
         this.expectedPeers = expectedPeers;
         this.timeoutWaitingPeers = Duration.ofSeconds(timeoutWaitingPeers);
         this.timeoutWaitingRequest = Duration.ofSeconds(timeoutWaitingRequest);
         this.expirationTimePeerStatus = Duration.ofMinutes(expirationTimePeerStatus);
         this.maxSkeletonChunks = maxSkeletonChunks;
         this.chunkSize = chunkSize;
+        this.stateDownload = stateDownload;
     }
 
     public final int getExpectedPeers() {
@@ -59,4 +74,8 @@ public final class SyncConfiguration {
     public final int getChunkSize() {
         return chunkSize;
     }
+
+    public final boolean isStateDownloadEnabled() {
+        return stateDownload;
+    }
 }
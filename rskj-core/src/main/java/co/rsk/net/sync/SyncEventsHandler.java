@@ -1,15 +1,21 @@
 package co.rsk.net.sync;
 
+import co.rsk.core.RskAddress;
 import co.rsk.net.MessageChannel;
 import co.rsk.net.NodeID;
+import co.rsk.net.messages.TrieNodesRequestMessage;
 import co.rsk.scoring.EventType;
+import org.ethereum.core.Block;
 import org.ethereum.core.BlockHeader;
 import org.ethereum.core.BlockIdentifier;
+import org.ethereum.vm.DataWord;
 
 import javax.annotation.Nonnull;
+import java.math.BigInteger;
 import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.function.LongFunction;
 
 public interface SyncEventsHandler {
     void sendSkeletonRequest(MessageChannel peer, long height);
@@ -20,6 +26,10 @@ public interface SyncEventsHandler {
 
     long sendBodyRequest(@Nonnull BlockHeader header, NodeID peerId);
 
+    void sendTrieNodesRequest(NodeID peerId, LongFunction<TrieNodesRequestMessage> requestById);
+
+    long sendContractDetailsRequest(byte[] stateRoot, RskAddress fromAddress, DataWord fromKey, NodeID peerId);
+
     void startDownloadingBodies(List<Deque<BlockHeader>> pendingHeaders, Map<NodeID, List<BlockIdentifier>> skeletons);
 
     void startDownloadingHeaders(Map<NodeID, List<BlockIdentifier>> skeletons, long connectionPoint);
@@ -34,5 +44,11 @@ public interface SyncEventsHandler {
 
     void onCompletedSyncing();
 
+    /**
+     * @param blocks the downloaded blocks, from the pivot block to its oldest ancestor
+     * @param totalDifficulty the total difficulty of the pivot block
+     */
+    void onCompletedStateDownload(List<Block> blocks, BigInteger totalDifficulty);
+
     void startFindingConnectionPoint();
 }
@@ -2,6 +2,8 @@ package co.rsk.net.sync;
 
 import co.rsk.net.MessageChannel;
 import co.rsk.net.messages.BodyResponseMessage;
+import co.rsk.net.messages.ContractDetailsResponseMessage;
+import co.rsk.net.messages.TrieNodesResponseMessage;
 import org.ethereum.core.BlockHeader;
 import org.ethereum.core.BlockIdentifier;
 
@@ -16,6 +18,10 @@ public interface SyncState {
 
     void newConnectionPointData(byte[] hash);
 
+    void newTrieNodes(TrieNodesResponseMessage message, MessageChannel peer);
+
+    void newContractDetails(ContractDetailsResponseMessage message, MessageChannel peer);
+
     /**
      * should only be called when a new peer arrives
      */
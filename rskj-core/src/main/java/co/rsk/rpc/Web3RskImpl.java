@@ -21,6 +21,7 @@ package co.rsk.rpc;
 import co.rsk.config.RskMiningConstants;
 import co.rsk.config.RskSystemProperties;
 import co.rsk.core.NetworkStateExporter;
+import co.rsk.core.TransactionSenderCache;
 import co.rsk.metrics.HashRateCalculator;
 import co.rsk.mine.*;
 import co.rsk.net.BlockProcessor;
@@ -36,6 +37,7 @@ import org.ethereum.facade.Ethereum;
 import org.ethereum.net.client.ConfigCapabilities;
 import org.ethereum.net.server.ChannelManager;
 import org.ethereum.net.server.PeerServer;
+import org.ethereum.rpc.LogBloomIndex;
 import org.ethereum.rpc.TypeConverter;
 import org.ethereum.rpc.Web3Impl;
 import org.slf4j.Logger;
@@ -74,8 +76,10 @@ public class Web3RskImpl extends Web3Impl {
                        PeerServer peerServer,
                        BlockProcessor nodeBlockProcessor,
                        HashRateCalculator hashRateCalculator,
-                       ConfigCapabilities configCapabilities) {
-        super(eth, blockchain, pendingState, blockStore, properties, minerClient, minerServer, personalModule, ethModule, channelManager, repository, peerScoringManager, peerServer, nodeBlockProcessor, hashRateCalculator, configCapabilities);
+                       ConfigCapabilities configCapabilities,
+                       LogBloomIndex logBloomIndex,
+                       TransactionSenderCache senderCache) {
+        super(eth, blockchain, pendingState, blockStore, properties, minerClient, minerServer, personalModule, ethModule, channelManager, repository, peerScoringManager, peerServer, nodeBlockProcessor, hashRateCalculator, configCapabilities, logBloomIndex, senderCache);
         this.networkStateExporter = networkStateExporter;
         this.blockStore = blockStore;
     }
@@ -122,6 +126,16 @@ public class Web3RskImpl extends Web3Impl {
         networkStateExporter.exportStatus(System.getProperty("user.dir") + "/" + "rskdump.json");
     }
 
+    /**
+     * Export the state of the best block to user.dir/rskstate.bin, without loading it in memory.
+     * It can be imported in the database of another node with NetworkStateImporter.
+     */
+    public void ext_dumpStateTrie()  {
+        Block bestBlock = blockStore.getBestBlock();
+        logger.info("Dumping state trie for block hash {}, block number {}", Hex.toHexString(bestBlock.getHash()), bestBlock.getNumber());
+        networkStateExporter.exportStateTrie(System.getProperty("user.dir") + "/" + "rskstate.bin");
+    }
+
     /**
      * Export the blockchain tree as a tgf file to user.dir/rskblockchain.tgf
      * @param numberOfBlocks Number of block heights to include. Eg if best block is block 2300 and numberOfBlocks is 10, the graph will include blocks in heights 2290 to 2300.
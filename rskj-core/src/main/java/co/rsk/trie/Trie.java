@@ -18,12 +18,16 @@
 
 package co.rsk.trie;
 
+import co.rsk.crypto.Sha3Hash;
+
 /**
  * Created by ajlopez on 29/03/2017.
  */
 public interface Trie {
     byte[] getHash();
 
+    Sha3Hash getSha3Hash();
+
     byte[] get(byte[] key);
 
     PartialMerkleTree getPartialMerkleTree(byte[] key);
@@ -0,0 +1,166 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.trie;
+
+import org.ethereum.crypto.SHA3Helper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.util.encoders.Hex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the nodes of a trie to a stream, walking the trie from its root,
+ * so the trie does not need to fit in memory (see TrieImporter).
+ * <p>
+ * The stream has a header (version: short, root hash: 32 bytes) followed by chunks.
+ * Each chunk has the number of entries (int), the length of the entries (int),
+ * the entries (key length: int, key, value length: int, value) and the CRC32 of the entries (long).
+ * A chunk without entries ends the stream.
+ * <p>
+ * The entries are the trie nodes, keyed by hash, and the long values, keyed by their hash,
+ * as they are saved in a TrieStore. A subtree or long value found in many places of the trie
+ * is written each time, as no index of the written entries is kept.
+ */
+public class TrieExporter {
+    private static final Logger logger = LoggerFactory.getLogger("newtrie");
+
+    public static final short VERSION = 1;
+    public static final int CHUNK_SIZE = 1024 * 1024;
+
+    private static final byte[] emptyHash = new TrieImpl().getHash();
+
+    private final TrieStore store;
+
+    public TrieExporter(TrieStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @param root  the hash of the trie to export, its nodes should be saved in the store
+     * @param outputStream  the stream to write to, it is not closed
+     *
+     * @return the number of exported entries
+     */
+    public long export(byte[] root, OutputStream outputStream) throws IOException {
+        DataOutputStream output = new DataOutputStream(outputStream);
+        ChunkWriter writer = new ChunkWriter(output);
+
+        output.writeShort(VERSION);
+        output.write(root);
+
+        Deque<byte[]> pending = new ArrayDeque<>();
+
+        if (!Arrays.equals(emptyHash, root)) {
+            pending.push(root);
+        }
+
+        long start = System.nanoTime();
+
+        // the nodes are retrieved by hash and not kept, only the hashes still to visit are in memory
+        while (!pending.isEmpty()) {
+            byte[] hash = pending.pop();
+            TrieImpl node = (TrieImpl) this.store.retrieve(hash);
+
+            if (node == null) {
+                throw new TrieSerializationException("Missing trie node " + Hex.toHexString(hash), null);
+            }
+
+            writer.write(hash, node.toMessage());
+
+            if (node.hasLongValue()) {
+                writer.write(node.getValueHash(), node.getValue());
+            }
+
+            for (int k = TrieImpl.ARITY - 1; k >= 0; k--) {
+                byte[] subnodeHash = node.getSubnodeHash(k);
+
+                if (subnodeHash != null) {
+                    pending.push(subnodeHash);
+                }
+            }
+        }
+
+        writer.close();
+
+        logger.info("Exported trie {}, {} entries in [{}]nano", Hex.toHexString(root), writer.entries, System.nanoTime() - start);
+
+        return writer.entries;
+    }
+
+    private static class ChunkWriter {
+        private final DataOutputStream output;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(CHUNK_SIZE + SHA3Helper.DEFAULT_SIZE_BYTES);
+        private final DataOutputStream chunk = new DataOutputStream(buffer);
+        private final CRC32 crc = new CRC32();
+
+        private int chunkEntries;
+        private long entries;
+
+        ChunkWriter(DataOutputStream output) {
+            this.output = output;
+        }
+
+        void write(byte[] key, byte[] value) throws IOException {
+            chunk.writeInt(key.length);
+            chunk.write(key);
+            chunk.writeInt(value.length);
+            chunk.write(value);
+
+            chunkEntries++;
+            entries++;
+
+            if (buffer.size() >= CHUNK_SIZE) {
+                writeChunk();
+            }
+        }
+
+        void close() throws IOException {
+            if (chunkEntries > 0) {
+                writeChunk();
+            }
+
+            // the empty chunk ends the stream
+            writeChunk();
+            output.flush();
+        }
+
+        private void writeChunk() throws IOException {
+            byte[] bytes = buffer.toByteArray();
+
+            crc.reset();
+            crc.update(bytes);
+
+            output.writeInt(chunkEntries);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+            output.writeLong(crc.getValue());
+
+            buffer.reset();
+            chunkEntries = 0;
+        }
+    }
+}
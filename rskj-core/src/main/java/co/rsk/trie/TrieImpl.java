@@ -18,6 +18,7 @@
 
 package co.rsk.trie;
 
+import co.rsk.crypto.Sha3Hash;
 import co.rsk.panic.PanicProcessor;
 import org.ethereum.crypto.SHA3Helper;
 import org.ethereum.datasource.HashMapDB;
@@ -37,6 +38,8 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static org.ethereum.crypto.SHA3Helper.sha3;
 import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
@@ -60,7 +63,7 @@ import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
  * Created by ajlopez on 22/08/2016.
  */
 public class TrieImpl implements Trie {
-    private static final int ARITY = 2;
+    static final int ARITY = 2;
 
     private static final Logger logger = LoggerFactory.getLogger("newtrie");
     private static final PanicProcessor panicProcessor = new PanicProcessor();
@@ -73,12 +76,19 @@ public class TrieImpl implements Trie {
     private static final int MESSAGE_HEADER_LENGTH = 2 + Short.BYTES * 2;
     private static final int SERIALIZATION_HEADER_LENGTH = Short.BYTES * 2 + Integer.BYTES * 2;
 
+    // subtrees are hashed in parallel only up to this depth, deeper nodes are hashed in the same task
+    private static final int MAX_PARALLEL_HASHING_DEPTH = 8;
+
     // all zeroed, default hash for empty nodes
     private static byte[] emptyHash = makeEmptyHash();
+    private static final Sha3Hash emptySha3Hash = new Sha3Hash(emptyHash);
 
     // this node associated value, if any
     private byte[] value;
 
+    // hash of the long value, it is retrieved from the store on first use (see getValue)
+    private byte[] valueHash;
+
     // the list of subnodes
     private TrieImpl[] nodes;
 
@@ -86,7 +96,7 @@ public class TrieImpl implements Trie {
     private byte[][] hashes;
 
     // this node hash value
-    private byte[] hash;
+    private Sha3Hash hash;
 
     // it is saved to store
     private boolean saved;
@@ -137,9 +147,14 @@ public class TrieImpl implements Trie {
         return this;
     }
 
+    private TrieImpl withValueHash(byte[] valueHash) {
+        this.valueHash = valueHash;
+        return this;
+    }
+
     @Override
     public Trie cloneTrie() {
-        return new TrieImpl(this.encodedSharedPath, this.sharedPathLength, this.value, cloneNodes(true), cloneHashes(), this.store).withSecure(this.isSecure);
+        return new TrieImpl(this.encodedSharedPath, this.sharedPathLength, this.value, cloneNodes(true), cloneHashes(), this.store).withSecure(this.isSecure).withValueHash(this.valueHash);
     }
 
     @Override
@@ -163,10 +178,12 @@ public class TrieImpl implements Trie {
     @Override
     public void removeValue() {
         this.value = null;
+        this.valueHash = null;
     }
 
     private void setValue(byte[] value) {
         this.value = value;
+        this.valueHash = null;
     }
 
     /**
@@ -236,15 +253,15 @@ public class TrieImpl implements Trie {
 
             int offset = MESSAGE_HEADER_LENGTH + lencoded + nhashes * SHA3Helper.DEFAULT_SIZE_BYTES;
             byte[] value = null;
+            byte[] valueHash = null;
 
             if (hasLongVal) {
-                byte[] valueHash = new byte[SHA3Helper.DEFAULT_SIZE_BYTES];
+                // the value is retrieved from the store only if it is used
+                valueHash = new byte[SHA3Helper.DEFAULT_SIZE_BYTES];
 
                 if (istream.read(valueHash) != SHA3Helper.DEFAULT_SIZE_BYTES) {
                     throw new EOFException();
                 }
-
-                value = store.retrieveValue(valueHash);
             }
             else {
                 int lvalue = msglength - offset;
@@ -257,7 +274,7 @@ public class TrieImpl implements Trie {
                 }
             }
 
-            TrieImpl trie = new TrieImpl(encodedSharedPath, lshared, value, null, hashes, store).withSecure(isSecure);
+            TrieImpl trie = new TrieImpl(encodedSharedPath, lshared, value, null, hashes, store).withSecure(isSecure).withValueHash(valueHash);
 
             if (store != null) {
                 trie.saved = true;
@@ -286,19 +303,45 @@ public class TrieImpl implements Trie {
      */
     @Override
     public byte[] getHash() {
+        return ByteUtils.clone(this.getSha3Hash().getBytes());
+    }
+
+    /**
+     * getSha3Hash calculates and/or returns the hash associated with this node content,
+     * without copying it
+     *
+     * @return  the node hash, its bytes should not be modified
+     */
+    @Override
+    public Sha3Hash getSha3Hash() {
+        int threshold = this.store != null ? this.store.getParallelHashingThreshold() : 0;
+
+        if (this.hash == null && threshold > 0 && this.countUnhashedNodes(threshold) >= threshold) {
+            ForkJoinPool.commonPool().invoke(new HashTask(this, 0));
+        }
+
+        return this.computeHash();
+    }
+
+    /**
+     * computeHash calculates and/or returns the hash of this node, in the calling thread
+     *
+     * @return  the node hash
+     */
+    private Sha3Hash computeHash() {
         if (this.hash != null) {
-            return ByteUtils.clone(this.hash);
+            return this.hash;
         }
 
-        if (isEmptyTrie(this.value, this.nodes, this.hashes)) {
-            return ByteUtils.clone(emptyHash);
+        if (this.isEmpty()) {
+            return emptySha3Hash;
         }
 
         byte[] message = this.toMessage();
 
-        this.hash = SHA3Helper.sha3(message);
+        this.hash = new Sha3Hash(SHA3Helper.sha3(message));
 
-        return ByteUtils.clone(this.hash);
+        return this.hash;
     }
 
     /**
@@ -444,11 +487,11 @@ public class TrieImpl implements Trie {
      */
     @Override
     public byte[] toMessage() {
-        int lvalue = this.value == null ? 0 : this.value.length;
+        boolean hasLongVal = this.hasLongValue();
+        int lvalue = hasLongVal || this.value == null ? 0 : this.value.length;
         int nnodes = this.getNodeCount();
         int lshared = this.sharedPathLength;
         int lencoded = getEncodedPathLength(lshared);
-        boolean hasLongVal = this.hasLongValue();
 
         int bits = 0;
 
@@ -494,13 +537,11 @@ public class TrieImpl implements Trie {
             buffer.put(nodeHash);
         }
 
-        if (lvalue > 0) {
-            if (hasLongVal) {
-                buffer.put(this.getValueHash());
-            }
-            else {
-                buffer.put(this.value);
-            }
+        if (hasLongVal) {
+            buffer.put(this.getValueHash());
+        }
+        else if (lvalue > 0) {
+            buffer.put(this.value);
         }
 
         return buffer.array();
@@ -509,6 +550,7 @@ public class TrieImpl implements Trie {
     /**
      * save saves the unsaved current trie and subnodes to their associated store
      *
+     * All the unsaved nodes are written to the store in a single batch
      */
     @Override
     public void save() {
@@ -516,16 +558,39 @@ public class TrieImpl implements Trie {
             return;
         }
 
+        List<TrieImpl> unsavedNodes = new ArrayList<>();
+        this.collectUnsavedNodes(unsavedNodes);
+
+        this.store.saveAll(unsavedNodes);
+
+        for (TrieImpl node : unsavedNodes) {
+            node.saved = true;
+        }
+    }
+
+    /**
+     * collectUnsavedNodes adds the unsaved subnodes and the current node to the list,
+     * subnodes first. Subnodes associated to another store are saved on their own
+     *
+     * @param unsavedNodes  the list of nodes to save
+     */
+    private void collectUnsavedNodes(List<TrieImpl> unsavedNodes) {
         if (this.nodes != null) {
             for (TrieImpl node : this.nodes) {
-                if (node != null) {
+                if (node == null || node.saved) {
+                    continue;
+                }
+
+                if (node.store == this.store) {
+                    node.collectUnsavedNodes(unsavedNodes);
+                }
+                else {
                     node.save();
                 }
             }
         }
 
-        this.store.save(this);
-        this.saved = true;
+        unsavedNodes.add(this);
     }
 
     /**
@@ -548,6 +613,98 @@ public class TrieImpl implements Trie {
         return size;
     }
 
+    /**
+     * collectValues adds the values of this trie to a list, retrieving the subnodes from the store
+     *
+     * @param values the list where the values are added
+     */
+    public void collectValues(List<byte[]> values) {
+        byte[] nodeValue = this.getValue();
+
+        if (nodeValue != null) {
+            values.add(nodeValue);
+        }
+
+        for (int k = 0; k < ARITY; k++) {
+            TrieImpl node = (TrieImpl) this.retrieveNode(k);
+
+            if (node != null) {
+                node.collectValues(values);
+            }
+        }
+    }
+
+    /**
+     * collectValues adds to a list the values of the keys after a key, in key order (the order of the
+     * hashed keys in a secure trie), until the list has limit values, retrieving the subnodes from the store
+     *
+     * @param fromKey the values of the keys after this one are added, null to start from the first key
+     * @param limit the maximum size of the list
+     * @param values the list where the values are added
+     */
+    public void collectValues(@Nullable byte[] fromKey, int limit, List<byte[]> values) {
+        byte[] keyBytes = null;
+
+        if (fromKey != null) {
+            keyBytes = this.isSecure ? bytesToKey(sha3(fromKey)) : bytesToKey(fromKey);
+        }
+
+        collectValues(keyBytes, 0, limit, values);
+    }
+
+    private void collectValues(@Nullable byte[] fromKey, int keyPosition, int limit, List<byte[]> values) {
+        if (values.size() >= limit) {
+            return;
+        }
+
+        int position = keyPosition;
+        byte[] bound = fromKey;
+
+        if (this.encodedSharedPath != null) {
+            byte[] sharedPath = PathEncoder.decode(this.encodedSharedPath, this.sharedPathLength);
+
+            for (int k = 0; k < sharedPath.length && bound != null; k++, position++) {
+                // the keys of this node are after the bound
+                if (position >= bound.length || sharedPath[k] > bound[position]) {
+                    bound = null;
+                } else if (sharedPath[k] < bound[position]) {
+                    return;
+                }
+            }
+
+            if (bound == null) {
+                position = keyPosition + sharedPath.length;
+            }
+        }
+
+        // with a bound, the key of this node is the bound or a prefix of it
+        if (bound == null) {
+            byte[] nodeValue = this.getValue();
+
+            if (nodeValue != null) {
+                values.add(nodeValue);
+            }
+        }
+
+        for (int k = 0; k < ARITY && values.size() < limit; k++) {
+            byte[] nodeBound = bound;
+
+            if (bound != null) {
+                if (position >= bound.length || k > bound[position]) {
+                    nodeBound = null;
+                } else if (k < bound[position]) {
+                    continue;
+                }
+            }
+
+            TrieImpl node = (TrieImpl) this.retrieveNode(k);
+
+            if (node != null) {
+                node.collectValues(nodeBound, position + 1, limit, values);
+            }
+        }
+    }
+
     /**
      * get retrieves the associated value given the key
      *
@@ -563,7 +720,7 @@ public class TrieImpl implements Trie {
         int position = keyPosition;
 
         if (position >= length) {
-            return this.value;
+            return this.getValue();
         }
 
         if (this.encodedSharedPath != null) {
@@ -580,7 +737,7 @@ public class TrieImpl implements Trie {
             }
 
             if (position >= length) {
-                return this.value;
+                return this.getValue();
             }
         }
 
@@ -608,7 +765,7 @@ public class TrieImpl implements Trie {
             TrieImpl node = this.getNode(k);
             byte[] localHash = this.getHash(k);
 
-            if (node != null && !isEmptyTrie(node.value, node.nodes, node.hashes) || localHash != null) {
+            if (node != null && !node.isEmpty() || localHash != null) {
                 count++;
             }
         }
@@ -616,15 +773,61 @@ public class TrieImpl implements Trie {
         return count;
     }
 
+    /**
+     * getUnhashedNode returns the subnode at position n if it is in memory and its hash
+     * is not calculated yet
+     *
+     * @param n position of subnode (0 to arity - 1)
+     *
+     * @return  the node or null if there is no such subnode
+     */
+    @Nullable
+    private TrieImpl getUnhashedNode(int n) {
+        if (this.hashes != null && this.hashes[n] != null) {
+            return null;
+        }
+
+        TrieImpl node = this.getNode(n);
+
+        if (node == null || node.hash != null || node.isEmpty()) {
+            return null;
+        }
+
+        return node;
+    }
+
+    /**
+     * countUnhashedNodes counts the nodes of this trie whose hash is not calculated yet,
+     * including the current one, stopping the count at the limit
+     *
+     * @param limit the maximum number of nodes to count
+     *
+     * @return  the number of unhashed nodes, no more than limit
+     */
+    private int countUnhashedNodes(int limit) {
+        int count = 1;
+
+        for (int k = 0; k < ARITY && count < limit; k++) {
+            TrieImpl node = this.getUnhashedNode(k);
+
+            if (node != null) {
+                count += node.countUnhashedNodes(limit - count);
+            }
+        }
+
+        return count;
+    }
+
     /**
      * retrieveNode get the subnode at position n. If it is not present but its hash is known,
-     * the node is retrieved from the store
+     * the node is retrieved from the store.
+     * The retrieved node is kept under the node lock, a saved trie can be read from many threads
      *
      * @param n position of subnode (0 to arity - 1)
      *
      * @return  the node or null if no subnode at position
      */
-    private Trie retrieveNode(int n) {
+    private synchronized Trie retrieveNode(int n) {
         Trie node = this.getNode(n);
 
         if (node != null) {
@@ -679,17 +882,51 @@ public class TrieImpl implements Trie {
 
         TrieImpl node = this.nodes[n];
 
-        if (isEmptyTrie(node.value, node.nodes, node.hashes)) {
+        if (node.isEmpty()) {
             return null;
         }
 
-        byte[] localHash = node.getHash();
+        // the subnode hash is shared, it is never modified
+        byte[] localHash = node.computeHash().getBytes();
 
         this.setHash(n, localHash);
 
         return localHash;
     }
 
+    /**
+     * getSubnodeHash returns the hash of the subnode at position n, used to walk
+     * the trie without keeping the subnodes in memory
+     *
+     * @param n     subnode position
+     *
+     * @return  node hash or null if no node is present
+     */
+    @Nullable
+    byte[] getSubnodeHash(int n) {
+        return this.getHash(n);
+    }
+
+    /**
+     * getSubnodeHashes returns the hashes of the present subnodes, used to retrieve
+     * a trie node by node (ie, from other peers)
+     *
+     * @return  the subnode hashes
+     */
+    public List<byte[]> getSubnodeHashes() {
+        List<byte[]> subnodeHashes = new ArrayList<>();
+
+        for (int k = 0; k < ARITY; k++) {
+            byte[] subnodeHash = this.getHash(k);
+
+            if (subnodeHash != null) {
+                subnodeHashes.add(subnodeHash);
+            }
+        }
+
+        return subnodeHashes;
+    }
+
     /**
      * setHash save subnode hash at position n, in order to keep an internal cache
      *
@@ -715,7 +952,7 @@ public class TrieImpl implements Trie {
         this.save();
 
         byte[] bytes = this.store.serialize();
-        byte[] root = this.getHash();
+        byte[] root = this.getSha3Hash().getBytes();
 
         ByteBuffer buffer = ByteBuffer.allocate(Short.BYTES + SHA3Helper.DEFAULT_SIZE_BYTES + bytes.length);
 
@@ -910,12 +1147,12 @@ public class TrieImpl implements Trie {
             return trie;
         }
 
-        if (isEmptyTrie(trie.value, trie.nodes, trie.hashes)) {
+        if (trie.isEmpty()) {
             return null;
         }
 
         // only coalesce if node has only one child and no value
-        if (trie.value != null || trie.getNodeCount() !=1) {
+        if (trie.value != null || trie.valueHash != null || trie.getNodeCount() !=1) {
             return trie;
         }
 
@@ -985,7 +1222,7 @@ public class TrieImpl implements Trie {
             return new TrieImpl(this.encodedSharedPath, this.sharedPathLength, value, newNodes, newHashes, this.store).withSecure(this.isSecure);
         }
 
-        if (isEmptyTrie(this.value, this.nodes, this.hashes)) {
+        if (this.isEmpty()) {
             int lshared = length - position;
             byte[] shared = new byte[lshared];
             System.arraycopy(key, position, shared, 0, lshared);
@@ -1015,7 +1252,7 @@ public class TrieImpl implements Trie {
             return null;
         }
 
-        return new TrieImpl(this.encodedSharedPath, this.sharedPathLength, this.value, newNodes, newHashes, this.store).withSecure(this.isSecure);
+        return new TrieImpl(this.encodedSharedPath, this.sharedPathLength, this.value, newNodes, newHashes, this.store).withSecure(this.isSecure).withValueHash(this.valueHash);
     }
 
     private int lengthOfCommonPath(byte[] key, int length, int position, byte[] sharedPath) {
@@ -1034,7 +1271,7 @@ public class TrieImpl implements Trie {
         TrieImpl[] newChildNodes = this.cloneNodes(false);
         byte[][] newChildHashes = this.cloneHashes();
 
-        TrieImpl newChildTrie = new TrieImpl(null, 0, this.value, newChildNodes, newChildHashes, this.store).withSecure(this.isSecure);
+        TrieImpl newChildTrie = new TrieImpl(null, 0, this.value, newChildNodes, newChildHashes, this.store).withSecure(this.isSecure).withValueHash(this.valueHash);
 
         byte[] sharedPath = PathEncoder.decode(this.encodedSharedPath, this.sharedPathLength);
 
@@ -1112,6 +1349,16 @@ public class TrieImpl implements Trie {
         return this.store != null;
     }
 
+    /**
+     * isEmpty checks the existence of subnodes, subnodes hashes or value,
+     * including a long value not yet retrieved from the store
+     *
+     * @return true if no data
+     */
+    private boolean isEmpty() {
+        return this.valueHash == null && isEmptyTrie(this.value, this.nodes, this.hashes);
+    }
+
     /**
      * isEmptyTrie checks the existence of subnodes, subnodes hashes or value
      *
@@ -1201,18 +1448,31 @@ public class TrieImpl implements Trie {
     }
 
     public boolean hasLongValue() {
-        return this.value != null && this.value.length > 32;
+        return this.valueHash != null || this.value != null && this.value.length > 32;
     }
 
     public byte[] getValueHash() {
-        if (this.hasLongValue()) {
-            return sha3(this.value);
+        if (this.valueHash == null && this.hasLongValue()) {
+            this.valueHash = sha3(this.value);
         }
 
-        return null;
+        return this.valueHash;
     }
 
-    public byte[] getValue() { return this.value; }
+    /**
+     * getValue returns the value associated to this node. A long value read from a message
+     * is retrieved from the store on first use
+     *
+     * @return the value, null if there is no value
+     */
+    public synchronized byte[] getValue() {
+        // the long value is retrieved on first use
+        if (this.value == null && this.valueHash != null) {
+            this.value = this.store.retrieveValue(this.valueHash);
+        }
+
+        return this.value;
+    }
 
     private static int getEncodedPathLength(int length) {
         return length / 8 + (length % 8 == 0 ? 0 : 1);
@@ -1226,4 +1486,37 @@ public class TrieImpl implements Trie {
     private static byte[] makeEmptyHash() {
         return sha3(RLP.encodeElement(EMPTY_BYTE_ARRAY));
     }
-}
\ No newline at end of file
+
+    /**
+     * HashTask calculates the hashes of the unhashed subtrees in parallel,
+     * and then the hash of the node
+     */
+    private static class HashTask extends RecursiveAction {
+        private final TrieImpl node;
+        private final int depth;
+
+        HashTask(TrieImpl node, int depth) {
+            this.node = node;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (depth < MAX_PARALLEL_HASHING_DEPTH) {
+                List<HashTask> tasks = new ArrayList<>();
+
+                for (int k = 0; k < ARITY; k++) {
+                    TrieImpl child = node.getUnhashedNode(k);
+
+                    if (child != null) {
+                        tasks.add(new HashTask(child, depth + 1));
+                    }
+                }
+
+                invokeAll(tasks);
+            }
+
+            node.computeHash();
+        }
+    }
+}
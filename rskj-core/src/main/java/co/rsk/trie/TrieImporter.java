@@ -0,0 +1,143 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.trie;
+
+import org.ethereum.crypto.SHA3Helper;
+import org.ethereum.datasource.KeyValueDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.util.encoders.Hex;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a trie written by TrieExporter, one chunk at a time, saving its nodes to a store.
+ * <p>
+ * The checksum of each chunk is verified, and each entry key has to be the hash of its value,
+ * so a corrupted or forged stream is rejected. The entries of each chunk are written in a single batch.
+ */
+public class TrieImporter {
+    private static final Logger logger = LoggerFactory.getLogger("newtrie");
+
+    private static final String ERROR_IMPORTING_TRIE = "Error importing trie";
+
+    // a chunk has up to CHUNK_SIZE bytes plus the last entry
+    private static final int MAX_CHUNK_LENGTH = 64 * 1024 * 1024;
+
+    private final TrieStore store;
+
+    public TrieImporter(KeyValueDataSource dataSource) {
+        this(new TrieStoreImpl(dataSource));
+    }
+
+    public TrieImporter(TrieStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @param inputStream   the stream to read from, it is not closed
+     *
+     * @return the hash of the imported trie
+     */
+    public byte[] importFrom(InputStream inputStream) throws IOException {
+        DataInputStream input = new DataInputStream(inputStream);
+
+        short version = input.readShort();
+
+        if (version != TrieExporter.VERSION) {
+            throw new TrieSerializationException(ERROR_IMPORTING_TRIE + ": unknown version " + version, null);
+        }
+
+        byte[] root = new byte[SHA3Helper.DEFAULT_SIZE_BYTES];
+        input.readFully(root);
+
+        CRC32 crc = new CRC32();
+        long entries = 0;
+        long start = System.nanoTime();
+
+        for (int nchunk = 0;; nchunk++) {
+            int chunkEntries = input.readInt();
+            int length = input.readInt();
+
+            if (chunkEntries < 0 || length < 0 || length > MAX_CHUNK_LENGTH) {
+                throw new TrieSerializationException(ERROR_IMPORTING_TRIE + ": invalid chunk " + nchunk, null);
+            }
+
+            byte[] bytes = new byte[length];
+            input.readFully(bytes);
+            long checksum = input.readLong();
+
+            crc.reset();
+            crc.update(bytes);
+
+            if (crc.getValue() != checksum) {
+                throw new TrieSerializationException(ERROR_IMPORTING_TRIE + ": invalid checksum in chunk " + nchunk, null);
+            }
+
+            if (chunkEntries == 0) {
+                break;
+            }
+
+            this.store.saveValues(readEntries(bytes, chunkEntries, nchunk));
+            entries += chunkEntries;
+        }
+
+        logger.info("Imported trie {}, {} entries in [{}]nano", Hex.toHexString(root), entries, System.nanoTime() - start);
+
+        return root;
+    }
+
+    private static Map<byte[], byte[]> readEntries(byte[] bytes, int chunkEntries, int nchunk) throws IOException {
+        DataInputStream chunk = new DataInputStream(new ByteArrayInputStream(bytes));
+        Map<byte[], byte[]> rows = new HashMap<>();
+
+        for (int k = 0; k < chunkEntries; k++) {
+            byte[] key = readBytes(chunk, bytes.length);
+            byte[] value = readBytes(chunk, bytes.length);
+
+            if (!Arrays.equals(key, SHA3Helper.sha3(value))) {
+                throw new TrieSerializationException(ERROR_IMPORTING_TRIE + ": invalid entry in chunk " + nchunk, null);
+            }
+
+            rows.put(key, value);
+        }
+
+        return rows;
+    }
+
+    private static byte[] readBytes(DataInputStream chunk, int maxLength) throws IOException {
+        int length = chunk.readInt();
+
+        if (length < 0 || length > maxLength) {
+            throw new TrieSerializationException(ERROR_IMPORTING_TRIE + ": invalid entry length " + length, null);
+        }
+
+        byte[] bytes = new byte[length];
+        chunk.readFully(bytes);
+
+        return bytes;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.trie;
+
+import org.ethereum.datasource.KeyValueDataSource;
+import org.ethereum.db.ByteArrayWrapper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of serialized trie nodes and long values, keyed by hash, in front of the trie stores.
+ * <p>
+ * Keys are the hashes of the cached content, so a single instance is shared by the world state trie
+ * and all the contract storage tries saved in the database. In-memory stores don't use it: a store
+ * must not find a node it didn't save. It keeps the serialized form, not the decoded nodes, because
+ * a decoded node keeps references to the subnodes loaded later, and they couldn't be accounted for.
+ * <p>
+ * The cache is bounded by the total size in bytes of its entries, evicted in least-recently-accessed order.
+ * <p>
+ * The stores don't write the saved nodes to their data sources: the writes are queued here, and run when
+ * the repository is flushed (see takeWrites). Until then, the saved nodes are kept apart from the bounded
+ * entries, so they can't be evicted before they are written.
+ */
+public class TrieNodeCache {
+    // approximate memory used by an entry, in addition to its key and value
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final LinkedHashMap<ByteArrayWrapper, byte[]> nodes = new LinkedHashMap<>(1024, 0.75f, true);
+    private long maxSizeInBytes;
+    private long sizeInBytes;
+
+    // saved nodes not yet written, with the number of queued writes of each one
+    private final Map<ByteArrayWrapper, UnwrittenNode> unwritten = new HashMap<>();
+
+    // data source writes queued since the last takeWrites, in order
+    private List<Runnable> writes = new ArrayList<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public TrieNodeCache(long maxSizeInBytes) {
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    public byte[] get(byte[] hash) {
+        byte[] message;
+
+        synchronized (nodes) {
+            ByteArrayWrapper key = new ByteArrayWrapper(hash);
+            UnwrittenNode node = unwritten.get(key);
+            message = node != null ? node.message : nodes.get(key);
+        }
+
+        if (message == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+
+        return message;
+    }
+
+    public void put(byte[] hash, byte[] message) {
+        synchronized (nodes) {
+            byte[] previous = nodes.put(new ByteArrayWrapper(hash), message);
+
+            if (previous != null) {
+                sizeInBytes -= entrySize(hash, previous);
+            }
+
+            sizeInBytes += entrySize(hash, message);
+
+            evict();
+        }
+    }
+
+    /**
+     * Queues the write of saved nodes to a data source, they are found in the cache until they are written
+     *
+     * @param store the data source to write to
+     * @param rows  the serialized nodes and long values, by hash
+     */
+    public void queueWrite(KeyValueDataSource store, Map<ByteArrayWrapper, byte[]> rows) {
+        synchronized (nodes) {
+            for (Map.Entry<ByteArrayWrapper, byte[]> row : rows.entrySet()) {
+                unwritten.computeIfAbsent(row.getKey(), key -> new UnwrittenNode(row.getValue())).count++;
+            }
+
+            writes.add(() -> write(store, rows));
+        }
+    }
+
+    /**
+     * Queues an action to run after the writes already queued, like closing their data source
+     */
+    public void queueAction(Runnable action) {
+        synchronized (nodes) {
+            writes.add(action);
+        }
+    }
+
+    /**
+     * Takes the writes queued since the last call. They have to run in the order they were taken.
+     *
+     * @return the queued writes, to run in any thread
+     */
+    public Runnable takeWrites() {
+        List<Runnable> taken;
+
+        synchronized (nodes) {
+            taken = writes;
+            writes = new ArrayList<>();
+        }
+
+        return () -> taken.forEach(Runnable::run);
+    }
+
+    public int getUnwrittenCount() {
+        synchronized (nodes) {
+            return unwritten.size();
+        }
+    }
+
+    public void setMaxSizeInBytes(long maxSizeInBytes) {
+        synchronized (nodes) {
+            this.maxSizeInBytes = maxSizeInBytes;
+            evict();
+        }
+    }
+
+    public long getMaxSizeInBytes() {
+        synchronized (nodes) {
+            return maxSizeInBytes;
+        }
+    }
+
+    public long getSizeInBytes() {
+        synchronized (nodes) {
+            return sizeInBytes;
+        }
+    }
+
+    public int size() {
+        synchronized (nodes) {
+            return nodes.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private void write(KeyValueDataSource store, Map<ByteArrayWrapper, byte[]> rows) {
+        Map<byte[], byte[]> batch = new HashMap<>();
+
+        for (Map.Entry<ByteArrayWrapper, byte[]> row : rows.entrySet()) {
+            batch.put(row.getKey().getData(), row.getValue());
+        }
+
+        store.updateBatch(batch);
+
+        synchronized (nodes) {
+            for (ByteArrayWrapper key : rows.keySet()) {
+                UnwrittenNode node = unwritten.get(key);
+
+                if (--node.count == 0) {
+                    unwritten.remove(key);
+                }
+            }
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<ByteArrayWrapper, byte[]>> iterator = nodes.entrySet().iterator();
+
+        while (sizeInBytes > maxSizeInBytes && iterator.hasNext()) {
+            Map.Entry<ByteArrayWrapper, byte[]> eldest = iterator.next();
+            sizeInBytes -= entrySize(eldest.getKey().getData(), eldest.getValue());
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static long entrySize(byte[] hash, byte[] message) {
+        return (long) hash.length + message.length + ENTRY_OVERHEAD;
+    }
+
+    private static class UnwrittenNode {
+        private final byte[] message;
+        private int count;
+
+        private UnwrittenNode(byte[] message) {
+            this.message = message;
+        }
+    }
+}
@@ -18,12 +18,17 @@
 
 package co.rsk.trie;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * Created by ajlopez on 29/03/2017.
  */
 public interface TrieStore {
     void save(Trie trie);
 
+    void saveAll(Collection<? extends Trie> tries);
+
     int getSaveCount();
 
     Trie retrieve(byte[] hash);
@@ -33,4 +38,25 @@ public interface TrieStore {
     byte[] serialize();
 
     byte[] retrieveValue(byte[] hash);
+
+    /**
+     * saveValues saves serialized nodes, or long values, by their hash (ie, received from other peers)
+     *
+     * @param values the values by hash, written at once
+     */
+    void saveValues(Map<byte[], byte[]> values);
+
+    /**
+     * takeWrites takes the writes of the saved nodes that are not yet written to the data source
+     *
+     * @return the writes to run, in any thread, in the order they were taken
+     */
+    Runnable takeWrites();
+
+    /**
+     * getParallelHashingThreshold returns the minimum number of unhashed nodes to hash a trie of this store in many threads
+     *
+     * @return the number of unhashed nodes, 0 to always hash in the calling thread
+     */
+    int getParallelHashingThreshold();
 }
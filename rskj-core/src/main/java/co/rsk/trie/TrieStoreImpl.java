@@ -21,6 +21,7 @@ package co.rsk.trie;
 import co.rsk.panic.PanicProcessor;
 import org.ethereum.datasource.HashMapDB;
 import org.ethereum.datasource.KeyValueDataSource;
+import org.ethereum.db.ByteArrayWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,7 +31,11 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * TrieStoreImpl store and retrieve Trie node by hash
@@ -50,12 +55,29 @@ public class TrieStoreImpl implements TrieStore {
     // a key value data source to use
     private KeyValueDataSource store;
 
+    // serialized nodes and values already read, shared with other stores, null if not cached
+    // when there is a cache, the writes of the saved nodes are queued in it (see TrieNodeCache.takeWrites)
+    private final TrieNodeCache cache;
+
+    // minimum number of unhashed nodes to hash a trie in parallel, 0 to always hash in the calling thread
+    private final int parallelHashingThreshold;
+
     // internal variables, count of saves and retrieves
     private int saveCount = 0;
     private int retrieveCount = 0;
 
     public TrieStoreImpl(KeyValueDataSource store) {
+        this(store, null);
+    }
+
+    public TrieStoreImpl(KeyValueDataSource store, TrieNodeCache cache) {
+        this(store, cache, 0);
+    }
+
+    public TrieStoreImpl(KeyValueDataSource store, TrieNodeCache cache, int parallelHashingThreshold) {
         this.store = store;
+        this.cache = cache;
+        this.parallelHashingThreshold = parallelHashingThreshold;
     }
 
     /**
@@ -64,13 +86,28 @@ public class TrieStoreImpl implements TrieStore {
      */
     @Override
     public void save(Trie trie) {
-        this.saveCount++;
-        this.store.put(trie.getHash(), trie.toMessage());
+        this.saveAll(Collections.singletonList(trie));
+    }
+
+    /**
+     * saveAll saves many Trie nodes to the store, in a single batch
+     * @param tries
+     */
+    @Override
+    public void saveAll(Collection<? extends Trie> tries) {
+        Map<ByteArrayWrapper, byte[]> rows = new HashMap<>();
 
-        if (trie.hasLongValue()) {
+        for (Trie trie : tries) {
             this.saveCount++;
-            this.store.put(trie.getValueHash(), trie.getValue());
+            rows.put(new ByteArrayWrapper(trie.getSha3Hash().getBytes()), trie.toMessage());
+
+            if (trie.hasLongValue()) {
+                this.saveCount++;
+                rows.put(new ByteArrayWrapper(trie.getValueHash()), trie.getValue());
+            }
         }
+
+        this.write(rows);
     }
 
     @Override
@@ -87,13 +124,20 @@ public class TrieStoreImpl implements TrieStore {
     public Trie retrieve(byte[] hash) {
         this.retrieveCount++;
 
-        byte[] message = this.store.get(hash);
+        byte[] message = this.get(hash);
 
         return TrieImpl.fromMessage(message, this);
     }
 
     public byte[] retrieveValue(byte[] hash) {
-        return this.store.get(hash);
+        return this.get(hash);
+    }
+
+    @Override
+    public void saveValues(Map<byte[], byte[]> values) {
+        this.saveCount += values.size();
+        // they are not nodes of a saved trie, no flush is waiting for them
+        this.store.updateBatch(values);
     }
 
     @Override
@@ -144,10 +188,66 @@ public class TrieStoreImpl implements TrieStore {
 
     public void copyFrom(TrieStoreImpl originalTrieStore) {
         KeyValueDataSource ds = originalTrieStore.store;
+        Map<ByteArrayWrapper, byte[]> rows = new HashMap<>();
 
         for (byte[] key : ds.keys()) {
-            this.store.put(key, ds.get(key));
+            rows.put(new ByteArrayWrapper(key), ds.get(key));
         }
+
+        this.write(rows);
+    }
+
+    @Override
+    public Runnable takeWrites() {
+        if (this.cache == null) {
+            return () -> { };
+        }
+
+        return this.cache.takeWrites();
+    }
+
+    @Override
+    public int getParallelHashingThreshold() {
+        return this.parallelHashingThreshold;
+    }
+
+    private void write(Map<ByteArrayWrapper, byte[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        if (this.cache != null) {
+            this.cache.queueWrite(this.store, rows);
+            return;
+        }
+
+        Map<byte[], byte[]> batch = new HashMap<>();
+
+        for (Map.Entry<ByteArrayWrapper, byte[]> row : rows.entrySet()) {
+            batch.put(row.getKey().getData(), row.getValue());
+        }
+
+        this.store.updateBatch(batch);
+    }
+
+    private byte[] get(byte[] hash) {
+        if (this.cache == null) {
+            return this.store.get(hash);
+        }
+
+        byte[] message = this.cache.get(hash);
+
+        if (message != null) {
+            return message;
+        }
+
+        message = this.store.get(hash);
+
+        if (message != null) {
+            this.cache.put(hash, message);
+        }
+
+        return message;
     }
 
     public static TrieStoreImpl deserialize(byte[] bytes) {
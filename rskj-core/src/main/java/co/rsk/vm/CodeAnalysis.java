@@ -0,0 +1,61 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.vm;
+
+/**
+ * The result of analyzing contract code before running it: the code header versions,
+ * the first executable address and the valid jump destinations.
+ * <p>
+ * It is shared by all the programs running the same code, so it must not be modified.
+ */
+public class CodeAnalysis {
+    private final int codeLength;
+    private final byte exeVersion;
+    private final byte scriptVersion;
+    private final int startAddr;
+    private final BitSet jumpdestSet;
+
+    public CodeAnalysis(int codeLength, byte exeVersion, byte scriptVersion, int startAddr, BitSet jumpdestSet) {
+        this.codeLength = codeLength;
+        this.exeVersion = exeVersion;
+        this.scriptVersion = scriptVersion;
+        this.startAddr = startAddr;
+        this.jumpdestSet = jumpdestSet;
+    }
+
+    public int getCodeLength() {
+        return codeLength;
+    }
+
+    public byte getExeVersion() {
+        return exeVersion;
+    }
+
+    public byte getScriptVersion() {
+        return scriptVersion;
+    }
+
+    public int getStartAddr() {
+        return startAddr;
+    }
+
+    public BitSet getJumpdestSet() {
+        return jumpdestSet;
+    }
+}
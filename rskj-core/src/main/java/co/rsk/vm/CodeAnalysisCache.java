@@ -0,0 +1,88 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.vm;
+
+import org.ethereum.db.ByteArrayWrapper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of analyzed contract code, keyed by code hash, shared by the programs created with
+ * the same ProgramInvokeFactory.
+ * <p>
+ * Every Program analyzes its code (header and jump destinations) before running it.
+ * Popular contracts are called many times per block, often from other contracts,
+ * so the analysis is done once per code hash and shared by all the programs running that code.
+ * <p>
+ * Entries are evicted in least-recently-accessed order.
+ */
+public class CodeAnalysisCache {
+    private final LinkedHashMap<ByteArrayWrapper, CodeAnalysis> analyses;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CodeAnalysisCache(int maxSize) {
+        this.analyses = new LinkedHashMap<ByteArrayWrapper, CodeAnalysis>(maxSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, CodeAnalysis> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public CodeAnalysis get(byte[] codeHash, int codeLength) {
+        CodeAnalysis analysis;
+
+        synchronized (analyses) {
+            analysis = analyses.get(new ByteArrayWrapper(codeHash));
+        }
+
+        // the length check is a cheap guard against a hash that doesn't match the code
+        if (analysis == null || analysis.getCodeLength() != codeLength) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+
+        return analysis;
+    }
+
+    public void put(byte[] codeHash, CodeAnalysis analysis) {
+        synchronized (analyses) {
+            analyses.put(new ByteArrayWrapper(codeHash), analysis);
+        }
+    }
+
+    public int size() {
+        synchronized (analyses) {
+            return analyses.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -22,11 +22,14 @@ package org.ethereum.config;
 import co.rsk.config.RskSystemProperties;
 import co.rsk.core.DifficultyCalculator;
 import co.rsk.db.RepositoryImpl;
+import co.rsk.trie.TrieNodeCache;
 import co.rsk.trie.TrieStoreImpl;
 import org.ethereum.core.Repository;
 import org.ethereum.core.Transaction;
 import org.ethereum.datasource.KeyValueDataSource;
 import org.ethereum.datasource.LevelDbDataSource;
+import org.ethereum.db.DatabaseImpl;
+import org.ethereum.db.DetailsDataStore;
 import org.ethereum.util.FileUtil;
 import org.ethereum.validator.*;
 import org.slf4j.Logger;
@@ -50,7 +53,7 @@ public class CommonConfig {
     private static final Logger logger = LoggerFactory.getLogger("general");
 
     @Bean
-    public Repository repository(RskSystemProperties config) {
+    public Repository repository(RskSystemProperties config, TrieNodeCache trieNodeCache) {
         String databaseDir = config.databaseDir();
         if (config.databaseReset()){
             FileUtil.recursiveDelete(databaseDir);
@@ -60,7 +63,14 @@ public class CommonConfig {
         KeyValueDataSource ds = makeDataSource(config, "state");
         KeyValueDataSource detailsDS = makeDataSource(config, "details");
 
-        return new RepositoryImpl(config, new TrieStoreImpl(ds), detailsDS);
+        DetailsDataStore detailsDataStore = new DetailsDataStore(config, new DatabaseImpl(detailsDS), config.detailsCacheSize(), trieNodeCache);
+
+        return new RepositoryImpl(config, new TrieStoreImpl(ds, trieNodeCache, config.trieParallelHashingThreshold()), detailsDataStore);
+    }
+
+    @Bean
+    public TrieNodeCache trieNodeCache(RskSystemProperties config) {
+        return new TrieNodeCache(config.trieCacheSize());
     }
 
     private KeyValueDataSource makeDataSource(RskSystemProperties config, String name) {
@@ -40,7 +40,9 @@ import org.ethereum.crypto.ECKey;
 import org.ethereum.datasource.KeyValueDataSource;
 import org.ethereum.datasource.LevelDbDataSource;
 import org.ethereum.db.*;
+import org.ethereum.listener.CompositeEthereumListener;
 import org.ethereum.net.rlpx.Node;
+import org.ethereum.rpc.LogBloomIndex;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
 import org.mapdb.Serializer;
@@ -51,6 +53,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.List;
 import java.util.Map;
@@ -71,7 +74,6 @@ public class DefaultConfig {
         String database = config.databaseDir();
 
         File blockIndexDirectory = new File(database + "/blocks/");
-        File dbFile = new File(blockIndexDirectory, "index");
         if (!blockIndexDirectory.exists()) {
             boolean mkdirsSuccess = blockIndexDirectory.mkdirs();
             if (!mkdirsSuccess) {
@@ -79,26 +81,70 @@ public class DefaultConfig {
             }
         }
 
-        DB indexDB = DBMaker.fileDB(dbFile)
-                .closeOnJvmShutdown()
-                .make();
-
-        Map<Long, List<IndexedBlockStore.BlockInfo>> indexMap = indexDB.hashMapCreate("index")
-                .keySerializer(Serializer.LONG)
-                .valueSerializer(BLOCK_INFO_SERIALIZER)
-                .counterEnable()
-                .makeOrGet();
+        BlockNumberIndex indexMap = blockNumberIndex(blockIndexDirectory);
 
         KeyValueDataSource blocksDB = new LevelDbDataSource(config, "blocks");
         blocksDB.init();
 
+        KeyValueDataSource headersDB = new LevelDbDataSource(config, "headers");
+        headersDB.init();
+
         IndexedBlockStore indexedBlockStore = new IndexedBlockStore(config);
 
-        indexedBlockStore.init(indexMap, blocksDB, indexDB);
+        indexedBlockStore.init(indexMap, blocksDB, headersDB);
 
         return indexedBlockStore;
     }
 
+    private static BlockNumberIndex blockNumberIndex(File blockIndexDirectory) {
+        BlockNumberIndex index;
+
+        try {
+            index = new BlockNumberIndex(new File(blockIndexDirectory, "index.main"), new File(blockIndexDirectory, "index.log"));
+        } catch (IOException e) {
+            logger.error("Unable to open block index", e);
+            throw new RuntimeException("Unable to open block index", e);
+        }
+
+        // the MapDB index of previous versions is copied once, again if the copy was interrupted
+        File dbFile = new File(blockIndexDirectory, "index");
+        File copiedFile = new File(blockIndexDirectory, "index.copied");
+
+        if (dbFile.exists() && !copiedFile.exists()) {
+            logger.info("Copying block index from {}", dbFile);
+
+            DB indexDB = DBMaker.fileDB(dbFile).make();
+
+            Map<Long, List<IndexedBlockStore.BlockInfo>> indexMap = indexDB.hashMapCreate("index")
+                    .keySerializer(Serializer.LONG)
+                    .valueSerializer(BLOCK_INFO_SERIALIZER)
+                    .counterEnable()
+                    .makeOrGet();
+
+            indexMap.forEach(index::put);
+            index.flush();
+            indexDB.close();
+
+            try {
+                copiedFile.createNewFile();
+            } catch (IOException e) {
+                logger.error("Unable to mark the block index as copied", e);
+                throw new RuntimeException("Unable to mark the block index as copied", e);
+            }
+
+            logger.info("Copied block index, {} levels", index.size());
+        }
+
+        return index;
+    }
+
+    @Bean
+    public LogBloomIndex logBloomIndex(RskSystemProperties config, BlockStore blockStore, CompositeEthereumListener compositeEthereumListener) {
+        KeyValueDataSource ds = new LevelDbDataSource(config, "logblooms");
+        ds.init();
+        return new LogBloomIndex(ds, blockStore, compositeEthereumListener);
+    }
+
     @Bean
     public ReceiptStore receiptStore(RskSystemProperties config) {
         KeyValueDataSource ds = new LevelDbDataSource(config, "receipts");
@@ -24,6 +24,9 @@ import org.ethereum.db.ContractDetails;
 import org.ethereum.db.DetailsDataStore;
 import org.ethereum.vm.DataWord;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 
 import java.util.Map;
@@ -179,6 +182,14 @@ public interface Repository {
     void flush();
     void flushNoReconnect();
 
+    /**
+     * Prepares a flush of the repository, so the database writes can be done later.
+     * Reads see the flushed state before the returned writes are run.
+     *
+     * @return the database writes of the flush
+     */
+    Runnable prepareFlush();
+
 
     /**
      * Store all the temporary changes made
@@ -229,6 +240,39 @@ public interface Repository {
 
     Repository getSnapshotTo(byte[] root);
 
+    /**
+     * Writes the world state trie to a stream, see TrieExporter. The contract details and storage
+     * are not part of it (see NetworkStateExporter.exportStateTrie)
+     *
+     * @param outputStream - the stream to write to, it is not closed
+     */
+    void exportTrie(OutputStream outputStream) throws IOException;
+
+    /**
+     * Reads a world state trie written by exportTrie, saving its nodes. The repository keeps its root,
+     * see syncToRoot
+     *
+     * @param inputStream - the stream to read from, it is not closed
+     *
+     * @return the root of the imported trie
+     */
+    byte[] importTrie(InputStream inputStream) throws IOException;
+
+    /**
+     * Returns a node of the world state trie, or a long value of the trie, by its hash
+     *
+     * @param hash - the node hash
+     * @return the serialized node, null if it is not found
+     */
+    byte[] getTrieNode(byte[] hash);
+
+    /**
+     * Saves nodes of the world state trie, or long values of the trie, by their hash (see getTrieNode)
+     *
+     * @param nodes - the serialized nodes by hash
+     */
+    void saveTrieNodes(Map<byte[], byte[]> nodes);
+
     DetailsDataStore getDetailsDataStore();
 
     void updateContractDetails(RskAddress addr, final ContractDetails contractDetails);
@@ -23,6 +23,7 @@ import co.rsk.config.RskSystemProperties;
 import co.rsk.panic.PanicProcessor;
 import co.rsk.peg.BridgeUtils;
 import co.rsk.core.RskAddress;
+import co.rsk.core.TransactionSenderCache;
 import org.apache.commons.lang3.ArrayUtils;
 import org.ethereum.config.Constants;
 import org.ethereum.crypto.ECKey;
@@ -427,6 +428,32 @@ public class Transaction {
         return sender;
     }
 
+    /**
+     * Gets the sender from the cache, or recovers it and adds it to the cache.
+     * Failed recoveries are not cached.
+     */
+    public synchronized RskAddress getSender(TransactionSenderCache senderCache) {
+        if (sender != null) {
+            return sender;
+        }
+
+        byte[] txHash = getHash();
+        RskAddress cachedSender = senderCache.get(txHash);
+
+        if (cachedSender != null) {
+            sender = cachedSender;
+            return sender;
+        }
+
+        RskAddress recoveredSender = getSender();
+
+        if (!RskAddress.nullAddress().equals(recoveredSender)) {
+            senderCache.put(txHash, recoveredSender);
+        }
+
+        return recoveredSender;
+    }
+
     public byte getChainId() {
         if (!parsed) {
             rlpParse();
@@ -284,7 +284,8 @@ public class TransactionExecutor {
                         programInvokeFactory.createProgramInvoke(tx, txindex, executionBlock, cacheTrack, blockStore);
 
                 this.vm = new VM(config);
-                this.program = new Program(config, code, programInvoke, tx);
+                byte[] codeHash = track.getAccountState(targetAddress).getCodeHash();
+                this.program = new Program(config, code, codeHash, programInvoke, tx, programInvokeFactory.getCodeAnalysisCache());
             }
         }
 
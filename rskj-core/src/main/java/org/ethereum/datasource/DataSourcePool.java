@@ -24,6 +24,7 @@ import org.slf4j.Logger;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -31,6 +32,7 @@ public class DataSourcePool {
 
     private static final Logger logger = getLogger("db");
     private static ConcurrentMap<String, DataSourceEx> pool = new ConcurrentHashMap<>();
+    private static final AtomicLong openings = new AtomicLong();
 
     public static KeyValueDataSource levelDbByName(RskSystemProperties config, String name) {
         DataSource dataSource = new LevelDbDataSource(config, name);
@@ -47,6 +49,7 @@ public class DataSourcePool {
             result.reserve();
             if (!result.getDataSource().isAlive()) {
                 result.getDataSource().init();
+                openings.incrementAndGet();
             }
         }
 
@@ -81,6 +84,20 @@ public class DataSourcePool {
         }
     }
 
+    /**
+     * @return the number of data sources currently open in the pool
+     */
+    public static int getOpenDataSourcesCount() {
+        return pool.size();
+    }
+
+    /**
+     * @return the number of times a data source has been opened by the pool
+     */
+    public static long getOpeningsCount() {
+        return openings.get();
+    }
+
     private static class DataSourceEx {
         private DataSource dataSource;
         private int counter;
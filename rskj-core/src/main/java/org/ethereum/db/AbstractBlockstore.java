@@ -20,6 +20,7 @@
 package org.ethereum.db;
 
 import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
 
 /**
  * Created by Anton Nashatyrev on 29.10.2015.
@@ -28,14 +29,14 @@ public abstract class AbstractBlockstore implements BlockStore {
 
     @Override
     public byte[] getBlockHashByNumber(long blockNumber, byte[] branchBlockHash) {
-        Block branchBlock = getBlockByHash(branchBlockHash);
-        if (branchBlock.getNumber() < blockNumber) {
-            throw new IllegalArgumentException("Requested block number > branch hash number: " + blockNumber + " < " + branchBlock.getNumber());
+        BlockHeader branchHeader = getBlockHeaderByHash(branchBlockHash);
+        if (branchHeader.getNumber() < blockNumber) {
+            throw new IllegalArgumentException("Requested block number > branch hash number: " + blockNumber + " < " + branchHeader.getNumber());
         }
-        while(branchBlock.getNumber() > blockNumber) {
-            branchBlock = getBlockByHash(branchBlock.getParentHash());
+        while(branchHeader.getNumber() > blockNumber) {
+            branchHeader = getBlockHeaderByHash(branchHeader.getParentHash());
         }
-        return branchBlock.getHash();
+        return branchHeader.getHash();
     }
 
     @Override
@@ -0,0 +1,600 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ethereum.db;
+
+import org.ethereum.db.IndexedBlockStore.BlockInfo;
+import org.ethereum.util.ByteUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * The block index of IndexedBlockStore, block number to the blocks of that level, kept in two files.
+ * <p>
+ * The main chain file is a memory-mapped array of fixed-width records (hash: 32 bytes,
+ * total difficulty: 32 bytes), one by level, so a level is read at its offset without deserialization.
+ * The first record holds the version (int) and the number of levels (long).
+ * A level without a main chain block has a zero hash.
+ * <p>
+ * The log file has a record for each put level: the number (long), the main chain record,
+ * the number of blocks out of the main chain (int), those blocks (hash, total difficulty) and the CRC32
+ * of the record (int). A flush appends a commit record: -1 (long), the length of the log it
+ * commits (long) and the CRC32 (int). The forks are only kept in the log, it is read to memory when opened.
+ * <p>
+ * The log is a write-ahead log of the main chain file: a put level is written to the main chain file
+ * on flush, after the commit record is forced, and the number of levels after the records are forced.
+ * When opened, the committed log records are applied again and the records after the last commit are
+ * discarded, so a write interrupted by a crash leaves the index as it was on the last flush.
+ * <p>
+ * The writes returned by prepareFlush only commit the levels put before it was called, so the index
+ * can be written with the state of the same blocks while more blocks are connected.
+ * After a flush the log is compacted to the levels with forks, if most of its records are replaced.
+ * A level is only written when it is put, so a reorganization only writes the levels it changes.
+ */
+public class BlockNumberIndex extends AbstractMap<Long, List<BlockInfo>> implements FlushableBlockIndex {
+    private static final Logger logger = LoggerFactory.getLogger("general");
+
+    public static final int VERSION = 1;
+
+    private static final int HASH_SIZE = 32;
+    private static final int DIFFICULTY_SIZE = 32;
+    private static final int RECORD_SIZE = HASH_SIZE + DIFFICULTY_SIZE;
+
+    // records by mapped segment of the main chain file, 4 MB
+    private static final int SEGMENT_RECORDS = 1 << 16;
+
+    // the log is compacted when it is larger than this and than twice its live records
+    private static final long MIN_COMPACTION_SIZE = 1 << 22;
+
+    private static final long COMMIT_MARKER = -1;
+    private static final int COMMIT_RECORD_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES;
+
+    private static final byte[] EMPTY_RECORD = new byte[RECORD_SIZE];
+
+    private final File logFile;
+    private final RandomAccessFile mainFile;
+    private final FileChannel mainChannel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final Map<Long, List<BlockInfo>> forks = new HashMap<>();
+
+    // main chain records committed in the log and not yet in the main chain file
+    private final Map<Long, byte[]> pending = new HashMap<>();
+
+    // levels put and not yet committed, in log order, and the last one of each level
+    private final Deque<LogRecord> uncommitted = new ArrayDeque<>();
+    private final Map<Long, LogRecord> latest = new HashMap<>();
+
+    private RandomAccessFile log;
+    private DataOutputStream logOutput;
+
+    // bytes written to the log, including the ones not yet flushed by logOutput
+    private long logLength;
+
+    private long levels;
+    private long committedLevels;
+    private long sequence;
+
+    public BlockNumberIndex(File mainFile, File logFile) throws IOException {
+        this.logFile = logFile;
+        this.mainFile = new RandomAccessFile(mainFile, "rw");
+        this.mainChannel = this.mainFile.getChannel();
+
+        boolean created = this.mainChannel.size() == 0;
+        MappedByteBuffer header = segment(0);
+
+        if (created) {
+            header.putInt(0, VERSION);
+            header.putLong(Long.BYTES, 0);
+        } else if (header.getInt(0) != VERSION) {
+            throw new IOException("Unknown block index version " + header.getInt(0));
+        }
+
+        this.committedLevels = header.getLong(Long.BYTES);
+        this.levels = this.committedLevels;
+
+        // a compaction interrupted by a crash, the log is the previous one
+        Files.deleteIfExists(compactionFile().toPath());
+
+        boolean discarded = readLog();
+
+        // the committed records are written again, they can be lost if the main chain file was not forced
+        writeMainChain();
+
+        // a later commit would apply the discarded records, they are removed from the log
+        if (discarded) {
+            compactLog(true);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return (int) levels;
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return key instanceof Long && (Long) key >= 0 && (Long) key < levels;
+    }
+
+    /**
+     * @return the blocks of the level, the main chain one first, null if the level is beyond the last one
+     */
+    @Override
+    public synchronized List<BlockInfo> get(Object key) {
+        if (!containsKey(key)) {
+            return null;
+        }
+
+        long number = (Long) key;
+        List<BlockInfo> result = new ArrayList<>();
+
+        LogRecord latestPut = latest.get(number);
+        byte[] record = latestPut != null ? latestPut.record : getRecord(number);
+
+        if (!ByteUtil.isAllZeroes(record)) {
+            result.add(decodeBlockInfo(record, true));
+        }
+
+        List<BlockInfo> levelForks = latestPut != null ? latestPut.forks : forks.get(number);
+
+        if (levelForks != null) {
+            levelForks.forEach(bi -> result.add(copyBlockInfo(bi)));
+        }
+
+        return result;
+    }
+
+    @Override
+    public synchronized List<BlockInfo> put(Long number, List<BlockInfo> blockInfos) {
+        if (number < 0) {
+            throw new IllegalArgumentException("Invalid block number " + number);
+        }
+
+        List<BlockInfo> previous = get(number);
+
+        byte[] record = EMPTY_RECORD;
+        List<BlockInfo> levelForks = new ArrayList<>();
+
+        for (BlockInfo blockInfo : blockInfos) {
+            if (blockInfo.isMainChain() && record == EMPTY_RECORD) {
+                record = encodeBlockInfo(blockInfo);
+            } else {
+                BlockInfo fork = copyBlockInfo(blockInfo);
+                fork.setMainChain(false);
+                levelForks.add(fork);
+            }
+        }
+
+        try {
+            writeLog(encodeLogRecord(number, record, levelForks));
+        } catch (IOException e) {
+            logger.error("Can't write block index log", e);
+            throw new RuntimeException("Can't write block index log", e);
+        }
+
+        LogRecord logRecord = new LogRecord(number, record, levelForks);
+        logRecord.sequence = ++sequence;
+        logRecord.end = logLength;
+        uncommitted.add(logRecord);
+        latest.put(number, logRecord);
+
+        if (number >= levels) {
+            levels = number + 1;
+        }
+
+        return previous;
+    }
+
+    @Override
+    public synchronized Set<Entry<Long, List<BlockInfo>>> entrySet() {
+        Set<Entry<Long, List<BlockInfo>>> entries = new LinkedHashSet<>();
+
+        for (long number = 0; number < levels; number++) {
+            entries.add(new SimpleImmutableEntry<>(number, get(number)));
+        }
+
+        return entries;
+    }
+
+    @Override
+    public synchronized void flush() {
+        commit(sequence);
+    }
+
+    @Override
+    public synchronized Runnable prepareFlush() {
+        long prepared = sequence;
+        return () -> commit(prepared);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        log.close();
+        mainFile.close();
+    }
+
+    /**
+     * Commits the levels put up to the given sequence number, the later ones are still kept in the log.
+     */
+    private synchronized void commit(long prepared) {
+        List<LogRecord> committed = new ArrayList<>();
+
+        for (LogRecord logRecord : uncommitted) {
+            if (logRecord.sequence > prepared) {
+                break;
+            }
+
+            committed.add(logRecord);
+        }
+
+        if (committed.isEmpty()) {
+            return;
+        }
+
+        try {
+            // the main chain file is only written with records that can be applied again
+            writeLog(encodeCommitRecord(committed.get(committed.size() - 1).end));
+            logOutput.flush();
+            log.getChannel().force(false);
+
+            for (LogRecord logRecord : committed) {
+                uncommitted.poll();
+                latest.remove(logRecord.number, logRecord);
+                applyLogRecord(logRecord);
+            }
+
+            writeMainChain();
+            compactLog(false);
+        } catch (IOException e) {
+            logger.error("Can't flush block index", e);
+            throw new RuntimeException("Can't flush block index", e);
+        }
+    }
+
+    private void writeMainChain() {
+        if (pending.isEmpty() && segment(0).getLong(Long.BYTES) == committedLevels) {
+            return;
+        }
+
+        pending.forEach((number, record) -> recordBuffer(number).put(record));
+        pending.clear();
+        segments.forEach(MappedByteBuffer::force);
+
+        segment(0).putLong(Long.BYTES, committedLevels);
+        segment(0).force();
+    }
+
+    /**
+     * @return the committed main chain record of the level
+     */
+    private byte[] getRecord(long number) {
+        byte[] record = pending.get(number);
+
+        if (record != null) {
+            return record;
+        }
+
+        record = new byte[RECORD_SIZE];
+        recordBuffer(number).get(record);
+
+        return record;
+    }
+
+    private ByteBuffer recordBuffer(long number) {
+        // the first record is the header
+        long position = number + 1;
+        ByteBuffer buffer = segment((int) (position / SEGMENT_RECORDS)).duplicate();
+        buffer.position((int) (position % SEGMENT_RECORDS) * RECORD_SIZE);
+
+        return buffer;
+    }
+
+    private MappedByteBuffer segment(int index) {
+        try {
+            while (segments.size() <= index) {
+                long position = (long) segments.size() * SEGMENT_RECORDS * RECORD_SIZE;
+                segments.add(mainChannel.map(FileChannel.MapMode.READ_WRITE, position, (long) SEGMENT_RECORDS * RECORD_SIZE));
+            }
+        } catch (IOException e) {
+            logger.error("Can't map block index", e);
+            throw new RuntimeException("Can't map block index", e);
+        }
+
+        return segments.get(index);
+    }
+
+    /**
+     * @return true if records were put after the last commit, or before it and not committed by it
+     */
+    private boolean readLog() throws IOException {
+        openLog();
+
+        FileChannel channel = log.getChannel();
+        long position = 0;
+        long validLength = 0;
+        Deque<LogRecord> read = new ArrayDeque<>();
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        CRC32 crc = new CRC32();
+
+        try {
+            while (true) {
+                long number = input.readLong();
+
+                if (number == COMMIT_MARKER) {
+                    long length = input.readLong();
+                    int checksum = input.readInt();
+
+                    if (length > position || (int) commitChecksum(length) != checksum) {
+                        break;
+                    }
+
+                    while (!read.isEmpty() && read.peek().end <= length) {
+                        applyLogRecord(read.poll());
+                    }
+
+                    position += COMMIT_RECORD_SIZE;
+                    validLength = position;
+                    continue;
+                }
+
+                byte[] record = new byte[RECORD_SIZE];
+                input.readFully(record);
+                int count = input.readInt();
+
+                if (number < 0 || count < 0 || count > channel.size() / RECORD_SIZE) {
+                    break;
+                }
+
+                byte[] data = new byte[count * RECORD_SIZE];
+                input.readFully(data);
+                int checksum = input.readInt();
+
+                crc.reset();
+                crc.update(ByteBuffer.allocate(Long.BYTES + RECORD_SIZE + Integer.BYTES).putLong(number).put(record).putInt(count).array());
+                crc.update(data);
+
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                List<BlockInfo> levelForks = new ArrayList<>();
+
+                for (int k = 0; k < count; k++) {
+                    levelForks.add(decodeBlockInfo(Arrays.copyOfRange(data, k * RECORD_SIZE, (k + 1) * RECORD_SIZE), false));
+                }
+
+                position += logRecordSize(count);
+
+                LogRecord logRecord = new LogRecord(number, record, levelForks);
+                logRecord.end = position;
+                read.add(logRecord);
+            }
+        } catch (EOFException e) {
+            // the end of the log, or a record interrupted by a crash
+        }
+
+        if (validLength < channel.size()) {
+            logger.warn("Discarding {} bytes at the end of the block index log", channel.size() - validLength);
+            channel.truncate(validLength);
+        }
+
+        // the next records are appended after the valid ones
+        channel.position(validLength);
+        logLength = validLength;
+
+        if (!read.isEmpty()) {
+            logger.warn("Discarding {} levels put after the last block index flush", read.size());
+            return true;
+        }
+
+        return false;
+    }
+
+    private void applyLogRecord(LogRecord logRecord) {
+        pending.put(logRecord.number, logRecord.record);
+        setForks(logRecord.number, logRecord.forks);
+        committedLevels = Math.max(committedLevels, logRecord.number + 1);
+        levels = Math.max(levels, committedLevels);
+    }
+
+    private void writeLog(byte[] data) throws IOException {
+        logOutput.write(data);
+        logLength += data.length;
+    }
+
+    private void openLog() throws IOException {
+        this.log = new RandomAccessFile(logFile, "rw");
+        this.logOutput = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(log.getChannel())));
+    }
+
+    /**
+     * Writes the committed levels with forks and the uncommitted levels to a new log, and replaces the log with it.
+     * The main chain file is already flushed, so both logs are valid if it is interrupted.
+     */
+    private void compactLog(boolean force) throws IOException {
+        long size = log.length();
+        long liveSize = COMMIT_RECORD_SIZE;
+
+        for (List<BlockInfo> levelForks : forks.values()) {
+            liveSize += logRecordSize(levelForks.size());
+        }
+
+        for (LogRecord logRecord : uncommitted) {
+            liveSize += logRecordSize(logRecord.forks.size());
+        }
+
+        if (!force && (size < MIN_COMPACTION_SIZE || size < 2 * liveSize)) {
+            return;
+        }
+
+        File compactionFile = compactionFile();
+        long[] ends = new long[uncommitted.size()];
+
+        try (FileOutputStream file = new FileOutputStream(compactionFile)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file));
+
+            long length = 0;
+
+            for (Map.Entry<Long, List<BlockInfo>> entry : forks.entrySet()) {
+                byte[] data = encodeLogRecord(entry.getKey(), getRecord(entry.getKey()), entry.getValue());
+                output.write(data);
+                length += data.length;
+            }
+
+            output.write(encodeCommitRecord(length));
+            length += COMMIT_RECORD_SIZE;
+
+            int k = 0;
+
+            for (LogRecord logRecord : uncommitted) {
+                byte[] data = encodeLogRecord(logRecord.number, logRecord.record, logRecord.forks);
+                output.write(data);
+                length += data.length;
+                ends[k++] = length;
+            }
+
+            output.flush();
+            file.getChannel().force(false);
+        }
+
+        log.close();
+        Files.move(compactionFile.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        int k = 0;
+
+        for (LogRecord logRecord : uncommitted) {
+            logRecord.end = ends[k++];
+        }
+
+        openLog();
+        log.getChannel().position(log.length());
+        logLength = log.length();
+
+        logger.info("Compacted block index log from {} to {} bytes", size, log.length());
+    }
+
+    private File compactionFile() {
+        return new File(logFile.getPath() + ".tmp");
+    }
+
+    private void setForks(long number, List<BlockInfo> levelForks) {
+        if (levelForks.isEmpty()) {
+            forks.remove(number);
+        } else {
+            forks.put(number, levelForks);
+        }
+    }
+
+    private static int logRecordSize(int count) {
+        return Long.BYTES + RECORD_SIZE + Integer.BYTES + count * RECORD_SIZE + Integer.BYTES;
+    }
+
+    private static byte[] encodeLogRecord(long number, byte[] record, List<BlockInfo> levelForks) {
+        ByteBuffer buffer = ByteBuffer.allocate(logRecordSize(levelForks.size()));
+        buffer.putLong(number);
+        buffer.put(record);
+        buffer.putInt(levelForks.size());
+        levelForks.forEach(bi -> buffer.put(encodeBlockInfo(bi)));
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+
+        return buffer.array();
+    }
+
+    private static byte[] encodeCommitRecord(long length) {
+        return ByteBuffer.allocate(COMMIT_RECORD_SIZE)
+                .putLong(COMMIT_MARKER)
+                .putLong(length)
+                .putInt((int) commitChecksum(length))
+                .array();
+    }
+
+    private static long commitChecksum(long length) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Long.BYTES + Long.BYTES).putLong(COMMIT_MARKER).putLong(length).array());
+
+        return crc.getValue();
+    }
+
+    private static byte[] encodeBlockInfo(BlockInfo blockInfo) {
+        byte[] hash = blockInfo.getHash();
+        BigInteger difficulty = blockInfo.getCummDifficulty() == null ? BigInteger.ZERO : blockInfo.getCummDifficulty();
+
+        if (hash == null || hash.length != HASH_SIZE) {
+            throw new IllegalArgumentException("Invalid block hash");
+        }
+
+        if (difficulty.signum() < 0 || difficulty.bitLength() > DIFFICULTY_SIZE * 8) {
+            throw new IllegalArgumentException("Invalid total difficulty " + difficulty);
+        }
+
+        byte[] record = new byte[RECORD_SIZE];
+        System.arraycopy(hash, 0, record, 0, HASH_SIZE);
+        System.arraycopy(ByteUtil.bigIntegerToBytes(difficulty, DIFFICULTY_SIZE), 0, record, HASH_SIZE, DIFFICULTY_SIZE);
+
+        return record;
+    }
+
+    private static BlockInfo decodeBlockInfo(byte[] record, boolean mainChain) {
+        BlockInfo blockInfo = new BlockInfo();
+        blockInfo.setHash(Arrays.copyOfRange(record, 0, HASH_SIZE));
+        blockInfo.setCummDifficulty(new BigInteger(1, Arrays.copyOfRange(record, HASH_SIZE, RECORD_SIZE)));
+        blockInfo.setMainChain(mainChain);
+
+        return blockInfo;
+    }
+
+    private static BlockInfo copyBlockInfo(BlockInfo blockInfo) {
+        BlockInfo copy = new BlockInfo();
+        copy.setHash(blockInfo.getHash());
+        copy.setCummDifficulty(blockInfo.getCummDifficulty());
+        copy.setMainChain(blockInfo.isMainChain());
+
+        return copy;
+    }
+
+    private static class LogRecord {
+        private final long number;
+        private final byte[] record;
+        private final List<BlockInfo> forks;
+
+        // the put order, and the length of the log with the record
+        private long sequence;
+        private long end;
+
+        LogRecord(long number, byte[] record, List<BlockInfo> forks) {
+            this.number = number;
+            this.record = record;
+            this.forks = forks;
+        }
+    }
+}
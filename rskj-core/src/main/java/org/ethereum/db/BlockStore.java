@@ -50,6 +50,11 @@ public interface BlockStore {
 
     Block getBlockByHash(byte[] hash);
 
+    /**
+     * Gets the header of a block without decoding the full block
+     */
+    BlockHeader getBlockHeaderByHash(byte[] hash);
+
     Block getBlockByHashAndDepth(byte[] hash, long depth);
 
     boolean isBlockExist(byte[] hash);
@@ -70,6 +75,16 @@ public interface BlockStore {
 
     void flush();
 
+    /**
+     * Takes the blocks saved until now, to write them later with the state of the same blocks
+     * (see {@link org.ethereum.core.Repository#prepareFlush()}).
+     *
+     * @return the writes to the database, they can be run in another thread
+     */
+    Runnable prepareFlush();
+
+    void close();
+
     void reBranch(Block forkBlock);
 
     void load();
@@ -22,6 +22,8 @@ package org.ethereum.db;
 import org.ethereum.vm.DataWord;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -59,6 +61,11 @@ public interface ContractDetails {
 
     Set<DataWord> getStorageKeys();
 
+    /**
+     * @return the storage keys after a key, in key order, at most limit of them
+     */
+    List<DataWord> getStorageKeys(@Nullable DataWord fromKey, int limit);
+
     Map<DataWord,DataWord> getStorage(@Nullable Collection<DataWord> keys);
 
     Map<DataWord, DataWord> getStorage();
@@ -77,5 +84,13 @@ public interface ContractDetails {
 
     ContractDetails getSnapshotTo(byte[] hash);
 
+    /**
+     * Writes the external storage trie and its keys trie to a stream, see TrieExporter.
+     * A storage in memory is not written, it is part of the encoded details.
+     *
+     * @param outputStream - the stream to write to, it is not closed
+     */
+    void exportStorage(OutputStream outputStream) throws IOException;
+
     boolean isNullObject();
 }
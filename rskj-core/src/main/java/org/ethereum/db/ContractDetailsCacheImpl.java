@@ -27,7 +27,9 @@ import org.ethereum.util.RLP;
 import org.ethereum.vm.DataWord;
 import org.spongycastle.util.encoders.Hex;
 
+import java.io.OutputStream;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static java.util.Collections.unmodifiableMap;
 import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
@@ -208,6 +210,19 @@ public class ContractDetailsCacheImpl implements ContractDetails {
                 : origContract.getStorageKeys();
     }
 
+    @Override
+    public List<DataWord> getStorageKeys(DataWord fromKey, int limit) {
+        if (origContract != null) {
+            return origContract.getStorageKeys(fromKey, limit);
+        }
+
+        return storage.keySet().stream()
+                .filter(key -> fromKey == null || key.compareTo(fromKey) > 0)
+                .sorted()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public void setStorage(List<DataWord> storageKeys, List<DataWord> storageValues) {
 
@@ -293,6 +308,11 @@ public class ContractDetailsCacheImpl implements ContractDetails {
         throw new UnsupportedOperationException("No snapshot option during cache state");
     }
 
+    @Override
+    public void exportStorage(OutputStream outputStream) {
+        throw new UnsupportedOperationException("No export option during cache state");
+    }
+
     @Override
     public boolean isNullObject() {
         return origContract.isNullObject() && (MapUtils.isEmpty(storage));
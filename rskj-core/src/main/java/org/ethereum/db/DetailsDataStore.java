@@ -22,50 +22,102 @@ package org.ethereum.db;
 import co.rsk.config.RskSystemProperties;
 import co.rsk.core.RskAddress;
 import co.rsk.db.ContractDetailsImpl;
+import co.rsk.trie.TrieNodeCache;
+import org.ethereum.datasource.DataSourcePool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static java.lang.String.format;
 
 /**
  * A store for contract details.
+ * <p>
+ * Updated details are kept until the next flush. Details read from the database, or already flushed,
+ * are kept in a bounded cache, evicting the least recently used ones.
  */
 public class DetailsDataStore {
 
     private static final Logger gLogger = LoggerFactory.getLogger("general");
 
-    private final Map<RskAddress, ContractDetails> cache = new ConcurrentHashMap<>();
+    // updated details, to be written in the next flush
+    private final Map<RskAddress, ContractDetails> dirtyCache = new HashMap<>();
+    private final Map<RskAddress, ContractDetails> cleanCache;
     private final Set<RskAddress> removes = new HashSet<>();
+    private long evictions;
+
+    // flushed but not yet written to the database, see prepareFlush
+    private final Map<RskAddress, byte[]> pendingWrites = new ConcurrentHashMap<>();
+    private final Map<RskAddress, Object> pendingRemoves = new ConcurrentHashMap<>();
+
+    // the keys in address order, null until they are read in order, then kept with the updates
+    private NavigableSet<RskAddress> sortedKeys;
 
     private final RskSystemProperties config;
     private final DatabaseImpl db;
+    private final TrieNodeCache trieNodeCache;
 
     public DetailsDataStore(RskSystemProperties config, DatabaseImpl db) {
+        this(config, db, config.detailsCacheSize());
+    }
+
+    public DetailsDataStore(RskSystemProperties config, DatabaseImpl db, int cacheSize) {
+        this(config, db, cacheSize, null);
+    }
+
+    /**
+     * @param trieNodeCache the cache of the stores of the contracts with external storage, or null
+     */
+    public DetailsDataStore(RskSystemProperties config, DatabaseImpl db, int cacheSize, TrieNodeCache trieNodeCache) {
         this.config = config;
         this.db = db;
+        this.trieNodeCache = trieNodeCache;
+        this.cleanCache = new LinkedHashMap<RskAddress, ContractDetails>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RskAddress, ContractDetails> eldest) {
+                if (size() > cacheSize) {
+                    evictions++;
+                    return true;
+                }
+
+                return false;
+            }
+        };
     }
 
     public synchronized ContractDetails get(RskAddress addr) {
-        ContractDetails details = cache.get(addr);
+        ContractDetails details = dirtyCache.get(addr);
+
+        if (details == null) {
+            details = cleanCache.get(addr);
+        }
 
         if (details == null) {
 
-            if (removes.contains(addr)) {
+            if (removes.contains(addr) || pendingRemoves.containsKey(addr)) {
                 return null;
             }
-            byte[] data = db.get(addr.getBytes());
+            byte[] data = pendingWrites.get(addr);
+            if (data == null) {
+                data = db.get(addr.getBytes());
+            }
             if (data == null) {
                 return null;
             }
 
             details = createContractDetails(data);
-            cache.put(addr, details);
+            cleanCache.put(addr, details);
 
             float out = ((float) data.length) / 1048576;
             if (out > 10) {
@@ -78,66 +130,176 @@ public class DetailsDataStore {
     }
 
     protected ContractDetails createContractDetails(byte[] data) {
-        return new ContractDetailsImpl(config, data);
+        return new ContractDetailsImpl(config, data, trieNodeCache);
+    }
+
+    public TrieNodeCache getTrieNodeCache() {
+        return trieNodeCache;
     }
 
     public synchronized void update(RskAddress addr, ContractDetails contractDetails) {
         contractDetails.setAddress(addr.getBytes());
-        cache.put(addr, contractDetails);
+        contractDetails.setDirty(true);
+        cleanCache.remove(addr);
+        dirtyCache.put(addr, contractDetails);
         removes.remove(addr);
+
+        if (sortedKeys != null) {
+            sortedKeys.add(addr);
+        }
     }
 
     public synchronized void remove(RskAddress addr) {
-        cache.remove(addr);
+        cleanCache.remove(addr);
+        dirtyCache.remove(addr);
         removes.add(addr);
+
+        if (sortedKeys != null) {
+            sortedKeys.remove(addr);
+        }
     }
 
     public synchronized void flush() {
-        long keys = cache.size();
-
-        long start = System.nanoTime();
-        long totalSize = flushInternal();
-        long finish = System.nanoTime();
-
-        float flushSize = (float) totalSize / 1_048_576;
-        float flushTime = (float) (finish - start) / 1_000_000;
-        gLogger.trace(format("Flush details in: %02.2f ms, %d keys, %02.2fMB", flushTime, keys, flushSize));
+        prepareFlush().run();
     }
 
-    private long flushInternal() {
+    /**
+     * Encodes the updated contract details, returning the database writes to run.
+     * <p>
+     * The writes can be run later, and in another thread. Until they are done, the encoded details
+     * are kept as pending writes and read from there, and the saved storage nodes are found in the
+     * trie node cache. Without a trie node cache, the external storages are written while preparing.
+     * The writes of successive flushes have to run in the order they were prepared.
+     *
+     * @return the database writes of this flush
+     */
+    public synchronized Runnable prepareFlush() {
+        long keys = dirtyCache.size();
         long totalSize = 0;
 
-        Map<byte[], byte[]> batch = new HashMap<>();
-        for (Map.Entry<RskAddress, ContractDetails> entry : cache.entrySet()) {
+        long start = System.nanoTime();
+
+        Map<RskAddress, byte[]> writes = new HashMap<>();
+        for (Map.Entry<RskAddress, ContractDetails> entry : dirtyCache.entrySet()) {
             ContractDetails details = entry.getValue();
             details.syncStorage();
 
-            byte[] key = entry.getKey().getBytes();
             byte[] value = details.getEncoded();
+            details.setDirty(false);
 
-            batch.put(key, value);
+            writes.put(entry.getKey(), value);
             totalSize += value.length;
         }
 
+        // the storage nodes go before the details that refer to them
+        Runnable storageWrites = trieNodeCache != null ? trieNodeCache.takeWrites() : () -> { };
+
+        Set<RskAddress> deletes = new HashSet<>(removes);
+
+        // identifies the pending removes of this flush
+        Object flushId = new Object();
+
+        for (Map.Entry<RskAddress, byte[]> entry : writes.entrySet()) {
+            pendingWrites.put(entry.getKey(), entry.getValue());
+            pendingRemoves.remove(entry.getKey());
+        }
+
+        for (RskAddress addr : deletes) {
+            pendingWrites.remove(addr);
+            pendingRemoves.put(addr, flushId);
+        }
+
+        // they are clean now, and can be evicted
+        cleanCache.putAll(dirtyCache);
+        dirtyCache.clear();
+        removes.clear();
+
+        int cached = cleanCache.size();
+        long evicted = evictions;
+
+        float prepareTime = (float) (System.nanoTime() - start) / 1_000_000;
+        float flushSize = (float) totalSize / 1_048_576;
+
+        return () -> {
+            long writeStart = System.nanoTime();
+
+            storageWrites.run();
+            flushInternal(writes, deletes, flushId);
+
+            float flushTime = prepareTime + (float) (System.nanoTime() - writeStart) / 1_000_000;
+            gLogger.trace(format("Flush details in: %02.2f ms, %d keys, %02.2fMB, %d cached, %d evicted, %d open data sources, %d openings",
+                    flushTime, keys, flushSize, cached, evicted, DataSourcePool.getOpenDataSourcesCount(), DataSourcePool.getOpeningsCount()));
+        };
+    }
+
+    private void flushInternal(Map<RskAddress, byte[]> writes, Set<RskAddress> deletes, Object flushId) {
+        Map<byte[], byte[]> batch = new HashMap<>();
+        for (Map.Entry<RskAddress, byte[]> entry : writes.entrySet()) {
+            batch.put(entry.getKey().getBytes(), entry.getValue());
+        }
+
         db.getDb().updateBatch(batch);
 
-        for (RskAddress key : removes) {
+        for (RskAddress key : deletes) {
             db.delete(key.getBytes());
         }
 
-        cache.clear();
-        removes.clear();
+        // a later flush could have replaced them
+        for (Map.Entry<RskAddress, byte[]> entry : writes.entrySet()) {
+            pendingWrites.remove(entry.getKey(), entry.getValue());
+        }
 
-        return totalSize;
+        for (RskAddress key : deletes) {
+            pendingRemoves.remove(key, flushId);
+        }
+    }
+
+    public synchronized int getCachedCount() {
+        return dirtyCache.size() + cleanCache.size();
+    }
+
+    public synchronized int getDirtyCount() {
+        return dirtyCache.size();
     }
 
+    public synchronized long getEvictedCount() {
+        return evictions;
+    }
 
     public synchronized Set<RskAddress> keys() {
         Set<RskAddress> keys = new HashSet<>();
-        keys.addAll(cache.keySet());
+        keys.addAll(dirtyCache.keySet());
+        keys.addAll(pendingWrites.keySet());
         keys.addAll(db.dumpKeys(RskAddress::new));
+        keys.removeAll(pendingRemoves.keySet());
 
         return keys;
     }
 
+    /**
+     * The keys are read from the database once, on the first call.
+     *
+     * @param fromAddress the first key, null to start from the first one
+     * @return the keys from an address, in address order, at most limit of them
+     */
+    public synchronized List<RskAddress> keys(@Nullable RskAddress fromAddress, int limit) {
+        if (sortedKeys == null) {
+            sortedKeys = new TreeSet<>(RskAddress.LEXICOGRAPHICAL_COMPARATOR);
+            sortedKeys.addAll(keys());
+            sortedKeys.removeAll(removes);
+        }
+
+        List<RskAddress> result = new ArrayList<>();
+
+        for (RskAddress key : fromAddress == null ? sortedKeys : sortedKeys.tailSet(fromAddress, true)) {
+            if (result.size() >= limit) {
+                break;
+            }
+
+            result.add(key);
+        }
+
+        return result;
+    }
+
 }
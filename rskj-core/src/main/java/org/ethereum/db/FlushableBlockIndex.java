@@ -0,0 +1,38 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ethereum.db;
+
+import org.ethereum.db.IndexedBlockStore.BlockInfo;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A block index of IndexedBlockStore, block number to the blocks of that level,
+ * whose changes are saved when the store is flushed, and that is closed with the store.
+ */
+public interface FlushableBlockIndex extends Map<Long, List<BlockInfo>>, Closeable {
+    void flush();
+
+    /**
+     * @return the writes of the levels put until now, the levels put later are not written by them
+     */
+    Runnable prepareFlush();
+}
@@ -24,7 +24,10 @@ import co.rsk.net.BlockCache;
 import com.google.common.annotations.VisibleForTesting;
 import org.ethereum.core.Block;
 import org.ethereum.core.BlockHeader;
+import org.ethereum.datasource.HashMapDB;
 import org.ethereum.datasource.KeyValueDataSource;
+import org.ethereum.util.RLP;
+import org.ethereum.util.RLPList;
 import org.mapdb.DB;
 import org.mapdb.DataIO;
 import org.mapdb.Serializer;
@@ -48,16 +51,29 @@ public class IndexedBlockStore extends AbstractBlockstore {
     private final BlockCache blockCache = new BlockCache(5000);
     Map<Long, List<BlockInfo>> index;
     KeyValueDataSource blocks;
+    // block hash to header and total difficulty, to read them without decoding the block
+    KeyValueDataSource headers;
 
     DB indexDB;
+    FlushableBlockIndex flushableIndex;
 
     public IndexedBlockStore(RskSystemProperties config){
         this.config = config;
     }
 
+    public void init(FlushableBlockIndex index, KeyValueDataSource blocks, KeyValueDataSource headers) {
+        this.init(index, blocks, headers, null);
+        this.flushableIndex = index;
+    }
+
     public void init(Map<Long, List<BlockInfo>> index, KeyValueDataSource blocks, DB indexDB) {
+        this.init(index, blocks, new HashMapDB(), indexDB);
+    }
+
+    public void init(Map<Long, List<BlockInfo>> index, KeyValueDataSource blocks, KeyValueDataSource headers, DB indexDB) {
         this.index = index;
         this.blocks = blocks;
+        this.headers = headers;
         this.indexDB  = indexDB;
     }
 
@@ -66,6 +82,7 @@ public class IndexedBlockStore extends AbstractBlockstore {
         this.blockCache.removeBlock(block);
 
         this.blocks.delete(block.getHash());
+        this.headers.delete(block.getHash());
 
         List<BlockInfo> binfos = this.index.get(block.getNumber());
 
@@ -82,6 +99,7 @@ public class IndexedBlockStore extends AbstractBlockstore {
         }
 
         binfos.removeAll(toremove);
+        this.index.put(block.getNumber(), binfos);
     }
 
     @Override
@@ -118,20 +136,50 @@ public class IndexedBlockStore extends AbstractBlockstore {
             }
 
         }
-        return getChainBlockByNumber(blockNumber).getHash();
+
+        return null;
     }
 
     @Override
     public synchronized void flush() {
-        long t1 = System.nanoTime();
+        prepareFlush().run();
+    }
+
+    @Override
+    public synchronized Runnable prepareFlush() {
+        Runnable indexWrites = flushableIndex != null ? flushableIndex.prepareFlush() : () -> { };
+
+        return () -> {
+            long t1 = System.nanoTime();
+
+            // the MapDB index can't be written in part, it commits the blocks saved until now
+            if (indexDB != null) {
+                indexDB.commit();
+            }
+
+            indexWrites.run();
+
+            long t2 = System.nanoTime();
+
+            logger.info("Flush block store in: {} ms", ((float)(t2 - t1) / 1_000_000));
+        };
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
 
         if (indexDB != null) {
-            indexDB.commit();
+            indexDB.close();
         }
 
-        long t2 = System.nanoTime();
-
-        logger.info("Flush block store in: {} ms", ((float)(t2 - t1) / 1_000_000));
+        if (flushableIndex != null) {
+            try {
+                flushableIndex.close();
+            } catch (IOException e) {
+                logger.error("Unable to close block index", e);
+            }
+        }
     }
 
     @Override
@@ -161,6 +209,7 @@ public class IndexedBlockStore extends AbstractBlockstore {
         if (blocks.get(block.getHash()) == null) {
             blocks.put(block.getHash(), block.getEncoded());
         }
+        headers.put(block.getHash(), encodeHeaderInfo(block.getHeader(), cummDifficulty));
         index.put(block.getNumber(), blockInfos);
         blockCache.addBlock(block);
     }
@@ -223,32 +272,65 @@ public class IndexedBlockStore extends AbstractBlockstore {
         return block;
     }
 
+    @Override
+    public synchronized BlockHeader getBlockHeaderByHash(byte[] hash) {
+        Block block = this.blockCache.getBlockByHash(hash);
+
+        if (block != null) {
+            return block.getHeader();
+        }
+
+        HeaderInfo headerInfo = getHeaderInfo(hash);
+
+        return headerInfo == null ? null : headerInfo.header;
+    }
+
     @Override
     public synchronized boolean isBlockExist(byte[] hash) {
-        return getBlockByHash(hash) != null;
+        return getBlockHeaderByHash(hash) != null;
     }
 
     @Override
     public synchronized BigInteger getTotalDifficultyForHash(byte[] hash){
-        Block block = this.getBlockByHash(hash);
-        if (block == null) {
-            return ZERO;
+        HeaderInfo headerInfo = getHeaderInfo(hash);
+
+        return headerInfo == null ? ZERO : headerInfo.totalDifficulty;
+    }
+
+    private HeaderInfo getHeaderInfo(byte[] hash) {
+        byte[] encoded = headers.get(hash);
+
+        if (encoded != null) {
+            return decodeHeaderInfo(encoded);
         }
 
-        Long level  =  block.getNumber();
-        List<BlockInfo> blockInfos =  index.get(level);
+        // the blocks saved before the header store only have the full block
+        Block block = getBlockByHash(hash);
 
-        if (blockInfos == null) {
-            return ZERO;
+        if (block == null) {
+            return null;
         }
 
-        for (BlockInfo blockInfo : blockInfos) {
-            if (areEqual(blockInfo.getHash(), hash)) {
-                return blockInfo.cummDifficulty;
-            }
+        BlockInfo blockInfo = getBlockInfoForHash(index.get(block.getNumber()), hash);
+        BigInteger totalDifficulty = blockInfo == null ? ZERO : blockInfo.getCummDifficulty();
+
+        if (blockInfo != null) {
+            headers.put(hash, encodeHeaderInfo(block.getHeader(), totalDifficulty));
         }
 
-        return ZERO;
+        return new HeaderInfo(block.getHeader(), totalDifficulty);
+    }
+
+    private static byte[] encodeHeaderInfo(BlockHeader header, BigInteger totalDifficulty) {
+        return RLP.encodeList(header.getEncoded(), RLP.encodeBigInteger(totalDifficulty));
+    }
+
+    private static HeaderInfo decodeHeaderInfo(byte[] encoded) {
+        RLPList rlpList = (RLPList) RLP.decode2(encoded).get(0);
+        BlockHeader header = new BlockHeader((RLPList) rlpList.get(0), true);
+        byte[] totalDifficulty = rlpList.get(1).getRLPData();
+
+        return new HeaderInfo(header, totalDifficulty == null ? ZERO : new BigInteger(1, totalDifficulty));
     }
 
     @Override
@@ -259,11 +341,11 @@ public class IndexedBlockStore extends AbstractBlockstore {
     @Override
     public synchronized List<byte[]> getListHashesEndWith(byte[] hash, long number){
 
-        List<Block> blocks = getListBlocksEndWith(hash, number);
-        List<byte[]> hashes = new ArrayList<>(blocks.size());
+        List<BlockHeader> headers = getListHeadersEndWith(hash, number);
+        List<byte[]> hashes = new ArrayList<>(headers.size());
 
-        for (Block b : blocks) {
-            hashes.add(b.getHash());
+        for (BlockHeader h : headers) {
+            hashes.add(h.getHash());
         }
 
         return hashes;
@@ -271,12 +353,21 @@ public class IndexedBlockStore extends AbstractBlockstore {
 
     @Override
     public synchronized List<BlockHeader> getListHeadersEndWith(byte[] hash, long qty) {
+        BlockHeader header = getBlockHeaderByHash(hash);
+
+        if (header == null) {
+            return new ArrayList<>();
+        }
+
+        List<BlockHeader> headers = new ArrayList<>((int) qty);
 
-        List<Block> blocks = getListBlocksEndWith(hash, qty);
-        List<BlockHeader> headers = new ArrayList<>(blocks.size());
+        for (int i = 0; i < qty; ++i) {
+            headers.add(header);
+            header = getBlockHeaderByHash(header.getParentHash());
 
-        for (Block b : blocks) {
-            headers.add(b.getHeader());
+            if (header == null) {
+                break;
+            }
         }
 
         return headers;
@@ -295,7 +386,7 @@ public class IndexedBlockStore extends AbstractBlockstore {
         for (int i = 0; i < qty; ++i) {
 
             blocks.add(block);
-            block = getBlockByHash(hash);
+            block = getBlockByHash(block.getParentHash());
             if (block == null) {
                 break;
             }
@@ -399,6 +490,16 @@ public class IndexedBlockStore extends AbstractBlockstore {
         return result;
     }
 
+    private static class HeaderInfo {
+        private final BlockHeader header;
+        private final BigInteger totalDifficulty;
+
+        HeaderInfo(BlockHeader header, BigInteger totalDifficulty) {
+            this.header = header;
+            this.totalDifficulty = totalDifficulty;
+        }
+    }
+
     public static class BlockInfo implements Serializable {
         byte[] hash;
         BigInteger cummDifficulty;
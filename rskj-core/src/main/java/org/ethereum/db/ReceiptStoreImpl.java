@@ -19,9 +19,10 @@
 
 package org.ethereum.db;
 
-import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
 import org.ethereum.core.TransactionReceipt;
 import org.ethereum.datasource.KeyValueDataSource;
+import org.ethereum.util.ByteUtil;
 import org.ethereum.util.RLP;
 import org.ethereum.util.RLPList;
 
@@ -30,6 +31,13 @@ import java.util.*;
 /**
  * Created by Ruben on 6/1/2016.
  * Class used to store transaction receipts
+ * <p>
+ * Each receipt of a transaction (one by block that includes it) is saved by itself,
+ * keyed by the transaction hash and the number of receipts saved before for it,
+ * so adding a receipt doesn't rewrite the others. The receipts of a block are written in one batch.
+ * <p>
+ * Previous versions saved the list of receipts of a transaction keyed by its hash.
+ * These lists are still read, and moved to the new keys when a receipt is added to them.
  */
 
 public class ReceiptStoreImpl implements ReceiptStore {
@@ -41,23 +49,9 @@ public class ReceiptStoreImpl implements ReceiptStore {
 
     @Override
     public void add(byte[] blockHash, int transactionIndex, TransactionReceipt receipt){
-        byte[] txHash = receipt.getTransaction().getHash();
-
-        TransactionInfo newTxInfo = new TransactionInfo(receipt, blockHash, transactionIndex);
-
-        List<TransactionInfo> txsInfo = getAll(txHash);
-
-        txsInfo.add(newTxInfo);
-
-        List<byte[]> encodedTxs = new ArrayList<>();
-
-        for (TransactionInfo ti : txsInfo) {
-            encodedTxs.add(ti.getEncoded());
-        }
-
-        byte[][] txsBytes = encodedTxs.toArray(new byte[encodedTxs.size()][]);
-
-        receiptsDS.put(receipt.getTransaction().getHash(), RLP.encodeList(txsBytes));
+        ReceiptsBatch batch = new ReceiptsBatch();
+        batch.add(blockHash, transactionIndex, receipt);
+        batch.write();
     }
 
     @Override
@@ -71,114 +65,108 @@ public class ReceiptStoreImpl implements ReceiptStore {
         return txs.get(txs.size() - 1);
     }
 
+    /**
+     * @return the receipt of the transaction in the block or its nearest ancestor that includes it
+     */
     @Override
     public TransactionInfo get(byte[] transactionHash, byte[] blockHash, BlockStore store) {
         List<TransactionInfo> txsInfo = getAll(transactionHash);
 
-        if (txsInfo.isEmpty()) {
+        for (TransactionInfo ti : txsInfo) {
+            if (Arrays.equals(ti.getBlockHash(), blockHash)) {
+                return ti;
+            }
+        }
+
+        if (txsInfo.isEmpty() || store == null) {
             return null;
         }
 
-        Block block = null;
-        Map<ByteArrayWrapper, Block> tiblocks = new HashMap();
+        Map<ByteArrayWrapper, TransactionInfo> candidates = new HashMap<>();
+        Map<ByteArrayWrapper, Long> candidateNumbers = new HashMap<>();
 
-        if (store != null) {
-            block = store.getBlockByHash(blockHash);
+        for (TransactionInfo ti : txsInfo) {
+            BlockHeader header = store.getBlockHeaderByHash(ti.getBlockHash());
 
-            for (TransactionInfo ti : txsInfo) {
-                byte[] bhash = ti.getBlockHash();
-                ByteArrayWrapper key = new ByteArrayWrapper(bhash);
-                tiblocks.put(key, store.getBlockByHash(bhash));
+            if (header != null) {
+                ByteArrayWrapper key = new ByteArrayWrapper(ti.getBlockHash());
+                candidates.put(key, ti);
+                candidateNumbers.put(key, header.getNumber());
             }
         }
 
-        while (true) {
-            int nless = 0;
-
-            for (TransactionInfo ti : txsInfo) {
-                byte[] hash = ti.getBlockHash();
-                ByteArrayWrapper key = new ByteArrayWrapper(hash);
-                Block tiblock = tiblocks.get(key);
-
-                if (tiblock != null && block != null) {
-                    if (tiblock.getNumber() > block.getNumber()) {
-                        nless++;
-                        continue;
-                    }
-
-                    if (tiblock.getNumber() < block.getNumber()) {
-                        continue;
-                    }
-                }
-
-                if (Arrays.equals(ti.getBlockHash(), blockHash)) {
-                    return ti;
-                }
-            }
+        long minNumber = candidateNumbers.values().stream().min(Long::compare).orElse(Long.MAX_VALUE);
+        BlockHeader header = store.getBlockHeaderByHash(blockHash);
 
-            if (nless >= txsInfo.size()) {
-                return null;
-            }
+        // the headers are walked until one in the main chain, its ancestors are the main chain blocks below it
+        while (header != null && header.getNumber() >= minNumber) {
+            TransactionInfo ti = candidates.get(new ByteArrayWrapper(header.getHash()));
 
-            if (store == null) {
-                return null;
-            }
-
-            if (block == null) {
-                block = store.getBlockByHash(blockHash);
-
-                if (block == null) {
-                    return null;
-                }
+            if (ti != null) {
+                return ti;
             }
 
-            if (block.isGenesis()) {
-                return null;
+            if (isInMainChain(header.getHash(), header.getNumber(), store)) {
+                return getInMainChain(candidates, candidateNumbers, header.getNumber(), store);
             }
 
-            block = store.getBlockByHash(block.getParentHash());
-
-            if (block == null) {
+            if (header.isGenesis()) {
                 return null;
             }
 
-            blockHash = block.getHash();
+            header = store.getBlockHeaderByHash(header.getParentHash());
         }
+
+        return null;
     }
 
     @Override
     public TransactionInfo getInMainChain(byte[] transactionHash, BlockStore store) {
-        List<TransactionInfo> tis = this.getAll(transactionHash);
+        for (TransactionInfo ti : this.getAll(transactionHash)) {
+            BlockHeader header = store.getBlockHeaderByHash(ti.getBlockHash());
 
-        if (tis.isEmpty()) {
-            return null;
+            if (header != null && isInMainChain(ti.getBlockHash(), header.getNumber(), store)) {
+                return ti;
+            }
         }
 
-        for (TransactionInfo ti : tis) {
-            byte[] bhash = ti.getBlockHash();
-
-            Block block = store.getBlockByHash(bhash);
+        return null;
+    }
 
-            if (block == null) {
-                continue;
-            }
+    @Override
+    public List<TransactionInfo> getAll(byte[] transactionHash) {
+        List<TransactionInfo> txsInfo = new ArrayList<>();
 
-            Block mblock = store.getChainBlockByNumber(block.getNumber());
+        for (int i = 0;; i++) {
+            byte[] txBytes = receiptsDS.get(getKey(transactionHash, i));
 
-            if (mblock == null) {
-                continue;
+            if (txBytes == null) {
+                break;
             }
 
-            if (new ByteArrayWrapper(bhash).equals(mblock.getWrappedHash())) {
-                return ti;
-            }
+            txsInfo.add(new TransactionInfo(txBytes));
         }
 
-        return null;
+        if (txsInfo.isEmpty()) {
+            return getAllFromList(transactionHash);
+        }
+
+        return txsInfo;
     }
 
     @Override
-    public List<TransactionInfo> getAll(byte[] transactionHash) {
+    public void saveMultiple(byte[] blockHash, List<TransactionReceipt> receipts) {
+        ReceiptsBatch batch = new ReceiptsBatch();
+
+        int i = 0;
+        for (TransactionReceipt receipt : receipts) {
+            batch.add(blockHash, i++, receipt);
+        }
+
+        batch.write();
+    }
+
+    private List<TransactionInfo> getAllFromList(byte[] transactionHash) {
         byte[] txsBytes = receiptsDS.get(transactionHash);
 
         if (txsBytes == null || txsBytes.length == 0) {
@@ -196,11 +184,82 @@ public class ReceiptStoreImpl implements ReceiptStore {
         return txsInfo;
     }
 
-    @Override
-    public void saveMultiple(byte[] blockHash, List<TransactionReceipt> receipts) {
-        int i = 0;
-        for (TransactionReceipt receipt : receipts) {
-            this.add(blockHash, i++, receipt);
+    private static TransactionInfo getInMainChain(Map<ByteArrayWrapper, TransactionInfo> candidates, Map<ByteArrayWrapper, Long> candidateNumbers, long maxNumber, BlockStore store) {
+        TransactionInfo result = null;
+        long resultNumber = -1;
+
+        for (Map.Entry<ByteArrayWrapper, TransactionInfo> entry : candidates.entrySet()) {
+            long number = candidateNumbers.get(entry.getKey());
+
+            if (number <= maxNumber && number > resultNumber && isInMainChain(entry.getKey().getData(), number, store)) {
+                result = entry.getValue();
+                resultNumber = number;
+            }
+        }
+
+        return result;
+    }
+
+    private static boolean isInMainChain(byte[] blockHash, long number, BlockStore store) {
+        return Arrays.equals(blockHash, store.getBlockHashByNumber(number));
+    }
+
+    private static byte[] getKey(byte[] transactionHash, int receiptNumber) {
+        return ByteUtil.merge(transactionHash, ByteUtil.intToBytes(receiptNumber));
+    }
+
+    private class ReceiptsBatch {
+        private final Map<byte[], byte[]> rows = new HashMap<>();
+        // the number of the next receipt of each transaction in the batch
+        private final Map<ByteArrayWrapper, Integer> receiptNumbers = new HashMap<>();
+        // the lists of previous versions moved to the new keys
+        private final List<byte[]> movedLists = new ArrayList<>();
+
+        void add(byte[] blockHash, int transactionIndex, TransactionReceipt receipt) {
+            byte[] txHash = receipt.getTransaction().getHash();
+            ByteArrayWrapper wrappedTxHash = new ByteArrayWrapper(txHash);
+
+            Integer receiptNumber = receiptNumbers.get(wrappedTxHash);
+
+            if (receiptNumber == null) {
+                receiptNumber = getReceiptNumber(txHash);
+            }
+
+            rows.put(getKey(txHash, receiptNumber), new TransactionInfo(receipt, blockHash, transactionIndex).getEncoded());
+            receiptNumbers.put(wrappedTxHash, receiptNumber + 1);
+        }
+
+        void write() {
+            receiptsDS.updateBatch(rows);
+
+            // the moved receipts are read first, a list left by a crash here is ignored
+            movedLists.forEach(receiptsDS::delete);
+        }
+
+        private int getReceiptNumber(byte[] txHash) {
+            int receiptNumber = 0;
+
+            while (receiptsDS.get(getKey(txHash, receiptNumber)) != null) {
+                receiptNumber++;
+            }
+
+            if (receiptNumber > 0) {
+                return receiptNumber;
+            }
+
+            List<TransactionInfo> txsInfo = getAllFromList(txHash);
+
+            if (txsInfo.isEmpty()) {
+                return 0;
+            }
+
+            for (TransactionInfo ti : txsInfo) {
+                rows.put(getKey(txHash, receiptNumber++), ti.getEncoded());
+            }
+
+            movedLists.add(txHash);
+
+            return receiptNumber;
         }
     }
 }
@@ -32,6 +32,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -339,6 +341,11 @@ public class RepositoryTrack implements Repository {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public Runnable prepareFlush() {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public void commit() {
 
@@ -441,6 +448,26 @@ public class RepositoryTrack implements Repository {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void exportTrie(OutputStream outputStream) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public byte[] importTrie(InputStream inputStream) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public byte[] getTrieNode(byte[] hash) {
+        return repository.getTrieNode(hash);
+    }
+
+    @Override
+    public void saveTrieNodes(Map<byte[], byte[]> nodes) {
+        repository.saveTrieNodes(nodes);
+    }
+
     public Repository getOriginRepository() {
         return (repository instanceof RepositoryTrack)
                 ? ((RepositoryTrack) repository).getOriginRepository()
@@ -32,8 +32,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Queue;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.ethereum.net.message.StaticMessages.DISCONNECT_MESSAGE;
 
@@ -50,6 +50,11 @@ import static org.ethereum.net.message.StaticMessages.DISCONNECT_MESSAGE;
  * The following messages will not be answered:
  *      PONG, PEERS, HELLO, STATUS, TRANSACTIONS, BLOCKS
  *
+ * The queues are drained in the channel event loop as soon as a message is queued,
+ * a request is answered or the channel becomes writable again. All the messages
+ * written by a drain are flushed together. Only one request is on the wire at a time,
+ * the next one is sent when it is answered.
+ *
  * @author Roman Mandeleil
  */
 public class MessageQueue {
@@ -57,20 +62,16 @@ public class MessageQueue {
     private static final Logger logger = LoggerFactory.getLogger("net");
     private static final PanicProcessor panicProcessor = new PanicProcessor();
 
-    private static final ScheduledExecutorService timer = Executors.newScheduledThreadPool(4, new ThreadFactory() {
-        private AtomicInteger cnt = new AtomicInteger(0);
-
-        public Thread newThread(Runnable r) {
-            return new Thread(r, "MessageQueueTimer-" + cnt.getAndIncrement());
-        }
-    });
-
     private Queue<MessageRoundtrip> requestQueue = new LinkedBlockingQueue<>();
     private Queue<MessageRoundtrip> respondQueue = new LinkedBlockingQueue<>();
-    private ChannelHandlerContext ctx = null;
-
-    boolean hasPing = false;
-    private ScheduledFuture<?> timerTask;
+    private volatile ChannelHandlerContext ctx = null;
+
+    volatile boolean hasPing = false;
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private volatile boolean closed = false;
+    // only used in the channel event loop
+    private boolean draining = false;
+    private boolean drainAgain = false;
     private Channel channel;
 
     public MessageQueue() {
@@ -78,16 +79,7 @@ public class MessageQueue {
 
     public void activate(ChannelHandlerContext ctx) {
         this.ctx = ctx;
-        timerTask = timer.scheduleAtFixedRate(new Runnable() {
-            public void run() {
-                try {
-                    nudgeQueue();
-                } catch (Throwable t) {
-                    logger.error("Unhandled exception", t);
-                    panicProcessor.panic("messagequeue", String.format("Unhandled exception %s", t.toString()));
-                }
-            }
-        }, 10, 10, TimeUnit.MILLISECONDS);
+        nudgeQueue();
     }
 
     public void setChannel(Channel channel) {
@@ -105,6 +97,8 @@ public class MessageQueue {
 
         Queue<MessageRoundtrip> queue = msg.getAnswerMessage() != null ? requestQueue : respondQueue;
         queue.add(new MessageRoundtrip(msg));
+
+        nudgeQueue();
     }
 
     public void disconnect() {
@@ -138,43 +132,114 @@ public class MessageQueue {
                 }
                 logger.trace("Message round trip covered: [{}] ",
                         messageRoundtrip.getMsg().getClass());
+
+                // the next request can be sent now
+                nudgeQueue();
             }
         }
     }
 
+    /**
+     * Drains the queues in the channel event loop, coalescing the calls made from other threads.
+     * It is also called when the channel becomes writable again.
+     */
+    public void nudgeQueue() {
+        ChannelHandlerContext context = this.ctx;
+
+        if (context == null || closed) {
+            return;
+        }
+
+        if (context.executor().inEventLoop()) {
+            drainQueues(context);
+            return;
+        }
+
+        if (drainScheduled.compareAndSet(false, true)) {
+            context.executor().execute(() -> {
+                drainScheduled.set(false);
+                drainQueues(context);
+            });
+        }
+    }
+
     private void removeAnsweredMessage(MessageRoundtrip messageRoundtrip) {
         if (messageRoundtrip != null && messageRoundtrip.isAnswered()) {
             requestQueue.remove();
         }
     }
 
-    private void nudgeQueue() {
+    private void drainQueues(ChannelHandlerContext context) {
+        // a flush can fire a writability change in the same event loop
+        if (draining) {
+            drainAgain = true;
+            return;
+        }
+
+        draining = true;
+
+        try {
+            do {
+                drainAgain = false;
+                drainOnce(context);
+            } while (drainAgain && !closed);
+        } catch (Throwable t) {
+            logger.error("Unhandled exception", t);
+            panicProcessor.panic("messagequeue", String.format("Unhandled exception %s", t.toString()));
+        } finally {
+            draining = false;
+        }
+    }
+
+    private void drainOnce(ChannelHandlerContext context) {
+        if (closed) {
+            return;
+        }
+
         // remove last answered message on the queue
         removeAnsweredMessage(requestQueue.peek());
-        // Now send the next message
-        sendToWire(respondQueue.poll());
-        sendToWire(requestQueue.peek());
+
+        boolean written = false;
+
+        // the rest are sent when the channel becomes writable again
+        while (context.channel().isWritable()) {
+            MessageRoundtrip messageRoundtrip = respondQueue.poll();
+
+            if (messageRoundtrip == null) {
+                break;
+            }
+
+            written |= sendToWire(context, messageRoundtrip);
+        }
+
+        written |= sendToWire(context, requestQueue.peek());
+
+        if (written) {
+            context.flush();
+        }
     }
 
-    private void sendToWire(MessageRoundtrip messageRoundtrip) {
+    private boolean sendToWire(ChannelHandlerContext context, MessageRoundtrip messageRoundtrip) {
 
         if (messageRoundtrip != null && messageRoundtrip.getRetryTimes() == 0) {
             // TODO: retry logic. See messageRoundtrip.hasToRetry
 
             Message msg = messageRoundtrip.getMsg();
 
-            ctx.writeAndFlush(msg).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+            context.write(msg).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
 
             if (msg.getAnswerMessage() != null) {
                 messageRoundtrip.incRetryTimes();
                 messageRoundtrip.saveTime();
             }
+
+            return true;
         }
+
+        return false;
     }
 
     public void close() {
-        if (timerTask != null) {
-            timerTask.cancel(false);
-        }
+        closed = true;
     }
 }
@@ -141,6 +141,15 @@ public class P2pHandler extends SimpleChannelInboundHandler<P2pMessage> {
         channel.getNodeStatistics().nodeDisconnectedLocal(reasonCode);
     }
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            msgQueue.nudgeQueue();
+        }
+
+        super.channelWritabilityChanged(ctx);
+    }
+
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         logger.info("channel inactive: ", ctx.toString());
@@ -0,0 +1,313 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ethereum.rpc;
+
+import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
+import org.ethereum.core.Bloom;
+import org.ethereum.core.TransactionReceipt;
+import org.ethereum.datasource.KeyValueDataSource;
+import org.ethereum.db.BlockStore;
+import org.ethereum.listener.CompositeEthereumListener;
+import org.ethereum.listener.EthereumListenerAdapter;
+import org.ethereum.util.ByteUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+
+/**
+ * An index of the log blooms of the main chain blocks, to find the blocks that could have the logs
+ * of a filter without reading the blocks.
+ * <p>
+ * The blocks are grouped in sections of SECTION_SIZE blocks. A section has a bit slice for each bloom bit,
+ * with the value of that bit in each block of the section. The blocks that match a filter are found
+ * combining the slices of the bits of the filter blooms, with the semantics of LogFilter.matchBloom.
+ * <p>
+ * A section is built from the block headers in the background, when a block is connected after all its blocks
+ * are in the main chain. It keeps the hash of its last block, and it is built again if that block is no longer
+ * in the main chain. The queries only read the sections: the blocks of a section that is not complete,
+ * not built yet or not up to date are matched one by one, with their header bloom.
+ * <p>
+ * A section is saved by its number (long), with the hash of its last block and a bitmap of its non-empty slices.
+ * A slice is saved by the section number and the bit (short).
+ */
+public class LogBloomIndex {
+    private static final Logger logger = LoggerFactory.getLogger("web3");
+
+    public static final int SECTION_SIZE = 4096;
+
+    private static final int BLOOM_BITS = 2048;
+    private static final int HASH_SIZE = 32;
+    private static final int SLICE_SIZE = SECTION_SIZE / 8;
+
+    private final KeyValueDataSource dataSource;
+
+    // the sections are built in this thread, one build is scheduled at a time
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "LogBloomIndex");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean buildScheduled = new AtomicBoolean();
+
+    public LogBloomIndex(KeyValueDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Creates an index whose sections are built in the background when the blocks are connected
+     */
+    public LogBloomIndex(KeyValueDataSource dataSource, BlockStore store, CompositeEthereumListener compositeEthereumListener) {
+        this(dataSource);
+        compositeEthereumListener.addListener(new Listener(store));
+    }
+
+    /**
+     * Delivers the numbers of the main chain blocks that match the filter bloom, in ascending order,
+     * as they are found, section by section.
+     */
+    public void findBlocks(LogFilter filter, long fromNumber, long toNumber, BlockStore store, LongConsumer consumer) {
+        Bloom[][] filterBlooms = filter.getFilterBlooms();
+
+        for (long section = fromNumber / SECTION_SIZE; section <= toNumber / SECTION_SIZE; section++) {
+            long firstNumber = section * SECTION_SIZE;
+            long from = Math.max(fromNumber, firstNumber);
+            long to = Math.min(toNumber, firstNumber + SECTION_SIZE - 1);
+
+            byte[] sectionData = getSection(section, store);
+
+            if (sectionData == null) {
+                findBlocksByHeader(filter, from, to, store, consumer);
+                continue;
+            }
+
+            byte[] matches = match(section, sectionData, filterBlooms);
+
+            for (long number = from; number <= to; number++) {
+                if (getBit(matches, (int) (number - firstNumber))) {
+                    consumer.accept(number);
+                }
+            }
+        }
+    }
+
+    private static void findBlocksByHeader(LogFilter filter, long from, long to, BlockStore store, LongConsumer consumer) {
+        for (long number = from; number <= to; number++) {
+            BlockHeader header = getMainChainHeader(number, store);
+
+            if (header != null && filter.matchBloom(new Bloom(header.getLogsBloom()))) {
+                consumer.accept(number);
+            }
+        }
+    }
+
+    /**
+     * Builds the sections completed by the main chain that are missing, or whose last block is no longer
+     * in the main chain, in the background. A build already scheduled builds them.
+     */
+    public void scheduleBuild(BlockStore store) {
+        if (buildScheduled.compareAndSet(false, true)) {
+            executorService.execute(() -> {
+                buildScheduled.set(false);
+                buildSections(store);
+            });
+        }
+    }
+
+    /**
+     * Builds the sections completed by the main chain that are missing, or whose last block is no longer
+     * in the main chain. The sections after a fork are the ones that change, so they are checked
+     * from the last one back to the first one up to date.
+     */
+    public synchronized void buildSections(BlockStore store) {
+        long sections = (store.getMaxNumber() + 1) / SECTION_SIZE;
+        long first = sections;
+
+        while (first > 0 && getSection(first - 1, store) == null) {
+            first--;
+        }
+
+        for (long section = first; section < sections; section++) {
+            byte[] lastHash = store.getBlockHashByNumber((section + 1) * SECTION_SIZE - 1);
+
+            if (lastHash == null || buildSection(section, lastHash, store) == null) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the saved section, null if it is not built or its last block is no longer in the main chain
+     */
+    private byte[] getSection(long section, BlockStore store) {
+        byte[] lastHash = store.getBlockHashByNumber((section + 1) * SECTION_SIZE - 1);
+
+        if (lastHash == null) {
+            return null;
+        }
+
+        byte[] sectionData = dataSource.get(getKey(section));
+
+        if (sectionData != null && Arrays.equals(lastHash, Arrays.copyOfRange(sectionData, 0, HASH_SIZE))) {
+            return sectionData;
+        }
+
+        return null;
+    }
+
+    private byte[] buildSection(long section, byte[] lastHash, BlockStore store) {
+        long start = System.nanoTime();
+        long firstNumber = section * SECTION_SIZE;
+        byte[][] slices = new byte[BLOOM_BITS][];
+
+        for (int k = 0; k < SECTION_SIZE; k++) {
+            BlockHeader header = getMainChainHeader(firstNumber + k, store);
+
+            if (header == null) {
+                return null;
+            }
+
+            byte[] bloom = header.getLogsBloom();
+
+            if (bloom == null || ByteUtil.isAllZeroes(bloom)) {
+                continue;
+            }
+
+            for (int bit = 0; bit < BLOOM_BITS; bit++) {
+                if (ByteUtil.getBit(bloom, bit) == 1) {
+                    if (slices[bit] == null) {
+                        slices[bit] = new byte[SLICE_SIZE];
+                    }
+
+                    setBit(slices[bit], k);
+                }
+            }
+        }
+
+        // the slices not in the bitmap are not read, a slice left by a previous build is ignored
+        byte[] sectionData = new byte[HASH_SIZE + BLOOM_BITS / 8];
+        System.arraycopy(lastHash, 0, sectionData, 0, HASH_SIZE);
+
+        Map<byte[], byte[]> rows = new HashMap<>();
+
+        for (int bit = 0; bit < BLOOM_BITS; bit++) {
+            if (slices[bit] != null) {
+                setBit(sectionData, HASH_SIZE * 8 + bit);
+                rows.put(getKey(section, bit), slices[bit]);
+            }
+        }
+
+        rows.put(getKey(section), sectionData);
+        dataSource.updateBatch(rows);
+
+        logger.trace("Log bloom section {} built in [{}]nano", section, System.nanoTime() - start);
+
+        return sectionData;
+    }
+
+    private byte[] match(long section, byte[] sectionData, Bloom[][] filterBlooms) {
+        Map<Integer, byte[]> slices = new HashMap<>();
+        byte[] result = filledSlice();
+
+        for (Bloom[] orBlooms : filterBlooms) {
+            byte[] orResult = new byte[SLICE_SIZE];
+
+            for (Bloom orBloom : orBlooms) {
+                byte[] andResult = filledSlice();
+
+                for (int bit = 0; bit < BLOOM_BITS; bit++) {
+                    if (ByteUtil.getBit(orBloom.getData(), bit) == 1) {
+                        byte[] slice = slices.computeIfAbsent(bit, b -> getSlice(section, sectionData, b));
+
+                        for (int k = 0; k < SLICE_SIZE; k++) {
+                            andResult[k] &= slice[k];
+                        }
+                    }
+                }
+
+                for (int k = 0; k < SLICE_SIZE; k++) {
+                    orResult[k] |= andResult[k];
+                }
+            }
+
+            for (int k = 0; k < SLICE_SIZE; k++) {
+                result[k] &= orResult[k];
+            }
+        }
+
+        return result;
+    }
+
+    private byte[] getSlice(long section, byte[] sectionData, int bit) {
+        byte[] slice = getBit(sectionData, HASH_SIZE * 8 + bit) ? dataSource.get(getKey(section, bit)) : null;
+
+        return slice == null ? new byte[SLICE_SIZE] : slice;
+    }
+
+    private static BlockHeader getMainChainHeader(long number, BlockStore store) {
+        byte[] hash = store.getBlockHashByNumber(number);
+
+        return hash == null ? null : store.getBlockHeaderByHash(hash);
+    }
+
+    private static byte[] filledSlice() {
+        byte[] slice = new byte[SLICE_SIZE];
+        Arrays.fill(slice, (byte) 0xff);
+
+        return slice;
+    }
+
+    private static boolean getBit(byte[] data, int position) {
+        return (data[position / 8] & (1 << (position % 8))) != 0;
+    }
+
+    private static void setBit(byte[] data, int position) {
+        data[position / 8] |= 1 << (position % 8);
+    }
+
+    private static byte[] getKey(long section) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(section).array();
+    }
+
+    private static byte[] getKey(long section, int bit) {
+        return ByteBuffer.allocate(Long.BYTES + Short.BYTES).putLong(section).putShort((short) bit).array();
+    }
+
+    private class Listener extends EthereumListenerAdapter {
+        private final BlockStore store;
+
+        Listener(BlockStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public void onBlock(Block block, List<TransactionReceipt> receipts) {
+            scheduleBuild(store);
+        }
+    }
+}
@@ -21,6 +21,7 @@ package org.ethereum.rpc;
 import co.rsk.config.RskSystemProperties;
 import co.rsk.core.RskAddress;
 import co.rsk.core.SnapshotManager;
+import co.rsk.core.TransactionSenderCache;
 import co.rsk.metrics.HashRateCalculator;
 import co.rsk.mine.MinerClient;
 import co.rsk.mine.MinerManager;
@@ -100,6 +101,8 @@ public class Web3Impl implements Web3 {
     private final HashRateCalculator hashRateCalculator;
     private final ConfigCapabilities configCapabilities;
     private final BlockStore blockStore;
+    private final LogBloomIndex logBloomIndex;
+    private final TransactionSenderCache senderCache;
     private final PendingState pendingState;
     private final RskSystemProperties config;
 
@@ -121,7 +124,9 @@ public class Web3Impl implements Web3 {
                        PeerServer peerServer,
                        BlockProcessor nodeBlockProcessor,
                        HashRateCalculator hashRateCalculator,
-                       ConfigCapabilities configCapabilities) {
+                       ConfigCapabilities configCapabilities,
+                       LogBloomIndex logBloomIndex,
+                       TransactionSenderCache senderCache) {
         this.eth = eth;
         this.blockchain = blockchain;
         this.blockStore = blockStore;
@@ -137,6 +142,8 @@ public class Web3Impl implements Web3 {
         this.nodeBlockProcessor = nodeBlockProcessor;
         this.hashRateCalculator = hashRateCalculator;
         this.configCapabilities = configCapabilities;
+        this.logBloomIndex = logBloomIndex;
+        this.senderCache = senderCache;
         this.config = config;
         initialBlockNumber = this.blockchain.getBestBlock().getNumber();
 
@@ -680,7 +687,7 @@ public class Web3Impl implements Web3 {
         List<Object> txes = new ArrayList<>();
         if (fullTx) {
             for (int i = 0; i < b.getTransactionsList().size(); i++) {
-                txes.add(new TransactionResultDTO(b, i, b.getTransactionsList().get(i)));
+                txes.add(toTransactionResult(b, i, b.getTransactionsList().get(i)));
             }
         } else {
             for (Transaction tx : b.getTransactionsList()) {
@@ -765,7 +772,7 @@ public class Web3Impl implements Web3 {
                 for (Transaction tx : txs) {
                     if (Hex.toHexString(tx.getHash()).equals(transactionHash))
                     {
-                        return s = new TransactionResultDTO(null, null, tx);
+                        return s = toTransactionResult(null, null, tx);
                     }
                 }
             } else {
@@ -781,7 +788,7 @@ public class Web3Impl implements Web3 {
             if (txInfo == null) {
                 return null;
             }
-            return s = new TransactionResultDTO(block, txInfo.getIndex(), txInfo.getReceipt().getTransaction());
+            return s = toTransactionResult(block, txInfo.getIndex(), txInfo.getReceipt().getTransaction());
         } finally {
             if (logger.isDebugEnabled()) {
                 logger.debug("eth_getTransactionByHash(" + transactionHash + "): " + s);
@@ -802,7 +809,7 @@ public class Web3Impl implements Web3 {
                 return null;
             }
             Transaction tx = b.getTransactionsList().get(idx);
-            return s = new TransactionResultDTO(b, idx, tx);
+            return s = toTransactionResult(b, idx, tx);
         } finally {
             if (logger.isDebugEnabled()) {
                 logger.debug("eth_getTransactionByBlockHashAndIndex(" + blockHash + ", " + index + "): " + s);
@@ -824,7 +831,7 @@ public class Web3Impl implements Web3 {
                 return null;
             }
             Transaction tx = txs.get(idx);
-            return s = new TransactionResultDTO(b, idx, tx);
+            return s = toTransactionResult(b, idx, tx);
         } finally {
             if (logger.isDebugEnabled()) {
                 logger.debug("eth_getTransactionByBlockNumberAndIndex(" + bnOrId + ", " + index + "): " + s);
@@ -847,10 +854,26 @@ public class Web3Impl implements Web3 {
         Block block = blockStore.getBlockByHash(txInfo.getBlockHash());
         Transaction tx = block.getTransactionsList().get(txInfo.getIndex());
         txInfo.setTransaction(tx);
+        recoverSender(tx);
 
         return new TransactionReceiptDTO(block, txInfo);
     }
 
+    private TransactionResultDTO toTransactionResult(Block block, Integer index, Transaction tx) {
+        recoverSender(tx);
+        return new TransactionResultDTO(block, index, tx);
+    }
+
+    /**
+     * The transactions read from the block store are new instances, so their senders
+     * are taken from the cache filled on import instead of being recovered again
+     */
+    private void recoverSender(Transaction tx) {
+        if (tx.getSignature() != null) {
+            tx.getSender(senderCache);
+        }
+    }
+
     @Override
     public BlockResult eth_getUncleByBlockHashAndIndex(String blockHash, String uncleIdx) throws Exception {
         BlockResult s = null;
@@ -1111,9 +1134,9 @@ public class Web3Impl implements Web3 {
             if (blockFrom != null) {
                 // need to add historical data
                 blockTo = blockTo == null ? this.blockchain.getBestBlock() : blockTo;
-                for (long blockNum = blockFrom.getNumber(); blockNum <= blockTo.getNumber(); blockNum++) {
-                    filter.onBlock(this.blockchain.getBlockByNumber(blockNum));
-                }
+                // only the blocks whose bloom matches the filter are read
+                logBloomIndex.findBlocks(logFilter, blockFrom.getNumber(), blockTo.getNumber(), this.blockchain.getBlockStore(),
+                        blockNum -> filter.onBlock(this.blockchain.getBlockByNumber(blockNum)));
             }
 
             // the following is not precisely documented
@@ -370,74 +370,174 @@ public class DataWord implements Comparable<DataWord> {
         this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
     }
 
-    // TODO: mul can be done in more efficient way
-    // TODO:     with shift left shift right trick
-    // TODO      without BigInteger quick hack
     public void mul(DataWord word) {
-        BigInteger result = value().multiply(word.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        ensureFullData();
+
+        byte[] other = word.data;
+
+        if (fitsIn(this.data, 4) && fitsIn(other, 4)) {
+            // the product fits in an unsigned long
+            setLong(lowLong(this.data) * lowLong(other));
+            return;
+        }
+
+        int[] result = new int[LIMBS];
+        multiply(this.data, other, result);
+        setLimbs(result);
     }
 
-    // TODO: improve with no BigInteger
     public void div(DataWord word) {
+        ensureFullData();
 
         if (word.isZero()) {
-            this.and(ZERO);
+            this.zero();
             return;
         }
 
-        BigInteger result = value().divide(word.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        byte[] other = word.data;
+
+        if (fitsIn(this.data, 8) && fitsIn(other, 8)) {
+            setLong(Long.divideUnsigned(lowLong(this.data), lowLong(other)));
+            return;
+        }
+
+        int[] quotient = new int[LIMBS];
+        divide(toLimbs(this.data), toLimbs(other), quotient, null);
+        setLimbs(quotient);
     }
 
-    // TODO: improve with no BigInteger
     public void sDiv(DataWord word) {
+        ensureFullData();
 
         if (word.isZero()) {
-            this.and(ZERO);
+            this.zero();
             return;
         }
 
-        BigInteger result = sValue().divide(word.sValue());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
-    }
+        boolean negative = this.isNegative() != word.isNegative();
+
+        // |this| / |word|, then the sign is applied
+        // the minimum value has no positive counterpart, but its unsigned magnitude is right
+        if (this.isNegative()) {
+            this.negate();
+        }
+
+        int[] divisor = toLimbs(word.data);
+
+        if (word.isNegative()) {
+            negate(divisor);
+        }
 
+        int[] quotient = new int[LIMBS];
+        divide(toLimbs(this.data), divisor, quotient, null);
+        setLimbs(quotient);
+
+        if (negative) {
+            this.negate();
+        }
+    }
 
-    // TODO: improve with no BigInteger
     public void sub(DataWord word) {
-        BigInteger result = value().subtract(word.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        ensureFullData();
+
+        byte[] other = word.data;
+        int offset = 32 - other.length;
+
+        for (int i = 31, borrow = 0; i >= 0; i--) {
+            int otherByte = i >= offset ? other[i - offset] & 0xff : 0;
+            int v = (this.data[i] & 0xff) - otherByte - borrow;
+            this.data[i] = (byte) v;
+            borrow = v >>> 31;
+        }
     }
 
-    // TODO: improve with no BigInteger
     public void exp(DataWord word) {
-        BigInteger result = value().modPow(word.value(), _2_256);
-        this.data = ByteUtil.copyToArray(result);
+        ensureFullData();
+
+        int bits = word.bitsOccupied();
+
+        // anything to the zero power, including zero, is one
+        if (bits == 0) {
+            this.setTrue();
+            return;
+        }
+
+        // zero and one are their own powers
+        if (bitsOccupied() <= 1) {
+            return;
+        }
+
+        byte[] exponent = word.data;
+        int[] base = toLimbs(this.data);
+        int[] result = toLimbs(this.data);
+        int[] product = new int[LIMBS];
+
+        // left to right square and multiply, the highest bit is the initial result
+        for (int k = bits - 2; k >= 0 && !isZero(result); k--) {
+            multiply(result, result, product);
+            int[] swap = result;
+            result = product;
+            product = swap;
+
+            if (testBit(exponent, k)) {
+                multiply(result, base, product);
+                swap = result;
+                result = product;
+                product = swap;
+            }
+        }
+
+        setLimbs(result);
     }
 
-    // TODO: improve with no BigInteger
     public void mod(DataWord word) {
+        ensureFullData();
 
         if (word.isZero()) {
-            this.and(ZERO);
+            this.zero();
             return;
         }
 
-        BigInteger result = value().mod(word.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        byte[] other = word.data;
+
+        if (fitsIn(this.data, 8) && fitsIn(other, 8)) {
+            setLong(Long.remainderUnsigned(lowLong(this.data), lowLong(other)));
+            return;
+        }
+
+        int[] remainder = new int[LIMBS];
+        divide(toLimbs(this.data), toLimbs(other), null, remainder);
+        setLimbs(remainder);
     }
 
     public void sMod(DataWord word) {
+        ensureFullData();
 
         if (word.isZero()) {
-            this.and(ZERO);
+            this.zero();
             return;
         }
 
-        BigInteger result = sValue().abs().mod(word.sValue().abs());
-        result = (sValue().signum() == -1) ? result.negate() : result;
+        // |this| mod |word|, with the sign of this
+        boolean negative = this.isNegative();
 
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        if (negative) {
+            this.negate();
+        }
+
+        int[] divisor = toLimbs(word.data);
+
+        if (word.isNegative()) {
+            negate(divisor);
+        }
+
+        int[] remainder = new int[LIMBS];
+        divide(toLimbs(this.data), divisor, null, remainder);
+        setLimbs(remainder);
+
+        if (negative) {
+            this.negate();
+        }
     }
 
     public void addmod(DataWord word1, DataWord word2) {
@@ -452,14 +552,332 @@ public class DataWord implements Comparable<DataWord> {
     }
 
     public void mulmod(DataWord word1, DataWord word2) {
+        ensureFullData();
 
         if (word2.isZero()) {
-            this.data = new byte[32];
+            this.zero();
             return;
         }
 
-        BigInteger result = value().multiply(word1.value()).mod(word2.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        // the full 512 bits product is reduced
+        int[] product = new int[2 * LIMBS];
+        multiply(this.data, word1.data, product);
+
+        int[] remainder = new int[LIMBS];
+        divide(product, toLimbs(word2.data), null, remainder);
+        setLimbs(remainder);
+    }
+
+    /*
+     * 256-bit arithmetic support.
+     *
+     * Values are operated as little endian arrays of unsigned 32-bit limbs,
+     * so every partial product fits in a long. Results are written back into
+     * the data array, without going through BigInteger.
+     */
+
+    private static final int LIMBS = 8;
+    private static final long LIMB_MASK = 0xFFFFFFFFL;
+    private static final long LIMB_BASE = 1L << 32;
+
+    // Arithmetic results are written in place, so data must be a full word
+    private void ensureFullData() {
+        if (this.data.length != 32) {
+            byte[] full = new byte[32];
+            System.arraycopy(this.data, 0, full, 32 - this.data.length, this.data.length);
+            this.data = full;
+        }
+    }
+
+    private void setLong(long value) {
+        java.util.Arrays.fill(this.data, 0, 24, (byte) 0);
+
+        for (int i = 31; i >= 24; i--) {
+            this.data[i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private void setLimbs(int[] limbs) {
+        for (int i = 0, k = 31; i < LIMBS; i++, k -= 4) {
+            int limb = limbs[i];
+            this.data[k] = (byte) limb;
+            this.data[k - 1] = (byte) (limb >>> 8);
+            this.data[k - 2] = (byte) (limb >>> 16);
+            this.data[k - 3] = (byte) (limb >>> 24);
+        }
+    }
+
+    private static int[] toLimbs(byte[] bytes) {
+        int[] limbs = new int[LIMBS];
+
+        for (int i = 0; i < LIMBS; i++) {
+            limbs[i] = limb(bytes, i);
+        }
+
+        return limbs;
+    }
+
+    // i-th least significant limb of a big endian value of up to 32 bytes
+    private static int limb(byte[] bytes, int i) {
+        int end = bytes.length - 4 * i;
+
+        if (end >= 4) {
+            return (bytes[end - 4] & 0xff) << 24 | (bytes[end - 3] & 0xff) << 16 | (bytes[end - 2] & 0xff) << 8 | (bytes[end - 1] & 0xff);
+        }
+
+        int limb = 0;
+
+        for (int k = Math.max(end - 4, 0); k < end; k++) {
+            limb = limb << 8 | (bytes[k] & 0xff);
+        }
+
+        return limb;
+    }
+
+    // true if the big endian value fits in its last n bytes
+    private static boolean fitsIn(byte[] bytes, int n) {
+        for (int i = 0; i < bytes.length - n; i++) {
+            if (bytes[i] != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // unsigned value of the last 8 bytes
+    private static long lowLong(byte[] bytes) {
+        long value = 0;
+
+        for (int i = Math.max(bytes.length - 8, 0); i < bytes.length; i++) {
+            value = value << 8 | (bytes[i] & 0xff);
+        }
+
+        return value;
+    }
+
+    private static boolean testBit(byte[] bytes, int n) {
+        int index = bytes.length - 1 - (n >>> 3);
+        return index >= 0 && (bytes[index] & (1 << (n & 7))) != 0;
+    }
+
+    private static boolean isZero(int[] limbs) {
+        for (int limb : limbs) {
+            if (limb != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // two's complement, in place
+    private static void negate(int[] limbs) {
+        long carry = 1;
+
+        for (int i = 0; i < limbs.length; i++) {
+            long v = (~limbs[i] & LIMB_MASK) + carry;
+            limbs[i] = (int) v;
+            carry = v >>> 32;
+        }
+    }
+
+    // product of two big endian values, truncated to the length of the result
+    private static void multiply(byte[] a, byte[] b, int[] result) {
+        java.util.Arrays.fill(result, 0);
+
+        for (int i = 0; i < LIMBS; i++) {
+            long ai = limb(a, i) & LIMB_MASK;
+
+            if (ai == 0) {
+                continue;
+            }
+
+            long carry = 0;
+            int j = 0;
+
+            for (; j < LIMBS && i + j < result.length; j++) {
+                long v = ai * (limb(b, j) & LIMB_MASK) + (result[i + j] & LIMB_MASK) + carry;
+                result[i + j] = (int) v;
+                carry = v >>> 32;
+            }
+
+            if (i + j < result.length) {
+                result[i + j] = (int) carry;
+            }
+        }
+    }
+
+    // product of two limb values, truncated to 256 bits; the result must be a different array
+    private static void multiply(int[] a, int[] b, int[] result) {
+        java.util.Arrays.fill(result, 0);
+
+        for (int i = 0; i < LIMBS; i++) {
+            long ai = a[i] & LIMB_MASK;
+
+            if (ai == 0) {
+                continue;
+            }
+
+            long carry = 0;
+
+            for (int j = 0; j < LIMBS - i; j++) {
+                long v = ai * (b[j] & LIMB_MASK) + (result[i + j] & LIMB_MASK) + carry;
+                result[i + j] = (int) v;
+                carry = v >>> 32;
+            }
+        }
+    }
+
+    private static int significantLimbs(int[] limbs) {
+        int n = limbs.length;
+
+        while (n > 0 && limbs[n - 1] == 0) {
+            n--;
+        }
+
+        return n;
+    }
+
+    /**
+     * Unsigned division of u by a non zero v, using Knuth's algorithm D
+     * (as described in Hacker's Delight, divmnu).
+     *
+     * @param u         the dividend, of any number of limbs
+     * @param v         the divisor, of at most LIMBS limbs
+     * @param quotient  receives the low LIMBS limbs of the quotient, can be null
+     * @param remainder receives the remainder, can be null
+     */
+    private static void divide(int[] u, int[] v, int[] quotient, int[] remainder) {
+        int m = significantLimbs(u);
+        int n = significantLimbs(v);
+
+        if (quotient != null) {
+            java.util.Arrays.fill(quotient, 0);
+        }
+
+        if (remainder != null) {
+            java.util.Arrays.fill(remainder, 0);
+        }
+
+        if (m < n) {
+            if (remainder != null) {
+                System.arraycopy(u, 0, remainder, 0, m);
+            }
+
+            return;
+        }
+
+        if (n == 1) {
+            long divisor = v[0] & LIMB_MASK;
+            long rest = 0;
+
+            for (int j = m - 1; j >= 0; j--) {
+                long dividend = rest << 32 | (u[j] & LIMB_MASK);
+                long q = Long.divideUnsigned(dividend, divisor);
+
+                if (quotient != null && j < quotient.length) {
+                    quotient[j] = (int) q;
+                }
+
+                rest = dividend - q * divisor;
+            }
+
+            if (remainder != null) {
+                remainder[0] = (int) rest;
+            }
+
+            return;
+        }
+
+        // normalize, so the divisor top limb has its high bit set
+        int s = Integer.numberOfLeadingZeros(v[n - 1]);
+        int[] vn = new int[n];
+        int[] un = new int[m + 1];
+
+        for (int i = n - 1; i > 0; i--) {
+            vn[i] = shiftLeft(v[i], v[i - 1], s);
+        }
+
+        vn[0] = v[0] << s;
+
+        un[m] = s == 0 ? 0 : u[m - 1] >>> (32 - s);
+
+        for (int i = m - 1; i > 0; i--) {
+            un[i] = shiftLeft(u[i], u[i - 1], s);
+        }
+
+        un[0] = u[0] << s;
+
+        long vTop = vn[n - 1] & LIMB_MASK;
+        long vNext = vn[n - 2] & LIMB_MASK;
+
+        for (int j = m - n; j >= 0; j--) {
+            // estimate the quotient limb, and correct it
+            long dividend = (un[j + n] & LIMB_MASK) << 32 | (un[j + n - 1] & LIMB_MASK);
+            long qhat = Long.divideUnsigned(dividend, vTop);
+            long rhat = dividend - qhat * vTop;
+
+            while (qhat >= LIMB_BASE || Long.compareUnsigned(qhat * vNext, rhat << 32 | (un[j + n - 2] & LIMB_MASK)) > 0) {
+                qhat--;
+                rhat += vTop;
+
+                if (rhat >= LIMB_BASE) {
+                    break;
+                }
+            }
+
+            // multiply and subtract
+            long borrow = 0;
+            long t;
+
+            for (int i = 0; i < n; i++) {
+                long p = qhat * (vn[i] & LIMB_MASK);
+                t = (un[i + j] & LIMB_MASK) - borrow - (p & LIMB_MASK);
+                un[i + j] = (int) t;
+                borrow = (p >>> 32) - (t >> 32);
+            }
+
+            t = (un[j + n] & LIMB_MASK) - borrow;
+            un[j + n] = (int) t;
+
+            // the estimate was one too big: add back
+            if (t < 0) {
+                qhat--;
+                long carry = 0;
+
+                for (int i = 0; i < n; i++) {
+                    t = (un[i + j] & LIMB_MASK) + (vn[i] & LIMB_MASK) + carry;
+                    un[i + j] = (int) t;
+                    carry = t >>> 32;
+                }
+
+                un[j + n] += (int) carry;
+            }
+
+            if (quotient != null && j < quotient.length) {
+                quotient[j] = (int) qhat;
+            }
+        }
+
+        if (remainder != null) {
+            for (int i = 0; i < n - 1; i++) {
+                remainder[i] = shiftRight(un[i + 1], un[i], s);
+            }
+
+            remainder[n - 1] = un[n - 1] >>> s;
+        }
+    }
+
+    // high limb of (hi, lo) shifted left by s bits, 0 <= s < 32
+    private static int shiftLeft(int hi, int lo, int s) {
+        return s == 0 ? hi : hi << s | lo >>> (32 - s);
+    }
+
+    // low limb of (hi, lo) shifted right by s bits, 0 <= s < 32
+    private static int shiftRight(int hi, int lo, int s) {
+        return s == 0 ? lo : lo >>> s | hi << (32 - s);
     }
 
     @JsonValue
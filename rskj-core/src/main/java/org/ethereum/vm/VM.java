@@ -34,7 +34,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import static org.ethereum.crypto.HashUtil.sha3;
 import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
 
 
@@ -612,9 +611,7 @@ public class VM {
         // EXECUTION PHASE
         DataWord memOffsetData = program.stackPop();
         DataWord lengthData = program.stackPop();
-        byte[] buffer = program.memoryChunk(memOffsetData.intValue(), lengthData.intValue());
-
-        byte[] encoded = sha3(buffer);
+        byte[] encoded = program.memoryHash(memOffsetData.intValue(), lengthData.intValue());
         DataWord word = program.newDataWord(encoded);
 
         if (isLogEnabled) {
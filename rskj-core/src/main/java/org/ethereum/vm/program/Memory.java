@@ -19,25 +19,32 @@
 
 package org.ethereum.vm.program;
 
+import org.ethereum.crypto.HashUtil;
 import org.ethereum.vm.DataWord;
 import org.ethereum.vm.program.listener.ProgramListener;
 import org.ethereum.vm.program.listener.ProgramListenerAware;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static java.lang.Math.ceil;
-import static java.lang.Math.min;
 import static java.lang.String.format;
 import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
 import static org.ethereum.util.ByteUtil.oneByteToHexString;
 
+/**
+ * Program memory, kept in a single contiguous array so any address is accessed directly.
+ * <p>
+ * The array is allocated in chunks of CHUNK_SIZE bytes and its capacity is at least doubled
+ * each time it grows, so extending it word by word copies it only a logarithmic number of times.
+ */
 public class Memory implements ProgramListenerAware {
 
     private static final int CHUNK_SIZE = 1024;
     private static final int WORD_SIZE = 32;
 
-    private List<byte[]> chunks = new LinkedList<>();
+    private byte[] buffer = EMPTY_BYTE_ARRAY;
     private int softSize;
     private ProgramListener traceListener;
 
@@ -52,27 +59,8 @@ public class Memory implements ProgramListenerAware {
         }
 
         extend(address, size);
-        byte[] data = new byte[size];
-
-        int chunkIndex = address / CHUNK_SIZE;
-        int chunkOffset = address % CHUNK_SIZE;
-
-        int toGrab = data.length;
-        int start = 0;
-
-        while (toGrab > 0) {
-            int copied = grabMax(chunkIndex, chunkOffset, toGrab, data, start);
-
-            // read next chunk from the start
-            ++chunkIndex;
-            chunkOffset = 0;
-
-            // mark remind
-            toGrab -= copied;
-            start += copied;
-        }
 
-        return data;
+        return Arrays.copyOfRange(buffer, address, address + size);
     }
 
     public void write(int address, byte[] data, int dataSize, boolean limited) {
@@ -85,9 +73,6 @@ public class Memory implements ProgramListenerAware {
             extend(address, dataSize);
         }
 
-        int chunkIndex = address / CHUNK_SIZE;
-        int chunkOffset = address % CHUNK_SIZE;
-
         int toCapture = 0;
         if (limited) {
             toCapture = (address + dataSize > softSize) ? softSize - address : dataSize;
@@ -95,17 +80,8 @@ public class Memory implements ProgramListenerAware {
             toCapture = dataSize;
         }
 
-        int start = 0;
-        while (toCapture > 0) {
-            int captured = captureMax(chunkIndex, chunkOffset, toCapture, data, start);
-
-            // capture next chunk
-            ++chunkIndex;
-            chunkOffset = 0;
-
-            // mark remind
-            toCapture -= captured;
-            start += captured;
+        if (toCapture > 0) {
+            System.arraycopy(data, 0, buffer, address, toCapture);
         }
 
         if (traceListener != null) {
@@ -126,12 +102,11 @@ public class Memory implements ProgramListenerAware {
 
         final int newSize = address + size;
 
-        int toAllocate = newSize - internalSize();
-        if (toAllocate > 0) {
-            addChunks((int) ceil((double) toAllocate / CHUNK_SIZE));
+        if (newSize > buffer.length) {
+            grow(newSize);
         }
 
-        toAllocate = newSize - softSize;
+        int toAllocate = newSize - softSize;
         if (toAllocate > 0) {
             toAllocate = (int) ceil((double) toAllocate / WORD_SIZE) * WORD_SIZE;
             softSize += toAllocate;
@@ -143,18 +118,30 @@ public class Memory implements ProgramListenerAware {
     }
 
     public DataWord readWord(int address) {
-        return new DataWord(read(address, 32));
+        extend(address, WORD_SIZE);
+
+        DataWord word = new DataWord();
+        System.arraycopy(buffer, address, word.getData(), 0, WORD_SIZE);
+
+        return word;
     }
 
-    // just access expecting all data valid
-    public byte readByte(int address) {
+    /**
+     * Hashes a memory region in place, without copying it first
+     */
+    public byte[] sha3(int address, int size) {
+        if (size <= 0) {
+            return HashUtil.sha3(EMPTY_BYTE_ARRAY);
+        }
 
-        int chunkIndex = address / CHUNK_SIZE;
-        int chunkOffset = address % CHUNK_SIZE;
+        extend(address, size);
 
-        byte[] chunk = chunks.get(chunkIndex);
+        return HashUtil.sha3(buffer, address, size);
+    }
 
-        return chunk[chunkOffset];
+    // just access expecting all data valid
+    public byte readByte(int address) {
+        return buffer[address];
     }
 
     @Override
@@ -194,35 +181,27 @@ public class Memory implements ProgramListenerAware {
     }
 
     public int internalSize() {
-        return chunks.size() * CHUNK_SIZE;
+        return buffer.length;
     }
 
+    /**
+     * Returns a copy of the memory in use split in chunks of CHUNK_SIZE bytes
+     */
     public List<byte[]> getChunks() {
-        return new LinkedList<>(chunks);
-    }
-
-    private int captureMax(int chunkIndex, int chunkOffset, int size, byte[] src, int srcPos) {
+        List<byte[]> chunks = new ArrayList<>();
 
-        byte[] chunk = chunks.get(chunkIndex);
-        int toCapture = min(size, chunk.length - chunkOffset);
+        for (int offset = 0; offset < softSize; offset += CHUNK_SIZE) {
+            chunks.add(Arrays.copyOfRange(buffer, offset, offset + CHUNK_SIZE));
+        }
 
-        System.arraycopy(src, srcPos, chunk, chunkOffset, toCapture);
-        return toCapture;
+        return chunks;
     }
 
-    private int grabMax(int chunkIndex, int chunkOffset, int size, byte[] dest, int destPos) {
-
-        byte[] chunk = chunks.get(chunkIndex);
-        int toGrab = min(size, chunk.length - chunkOffset);
+    private void grow(int minSize) {
+        int newSize = (int) ceil((double) minSize / CHUNK_SIZE) * CHUNK_SIZE;
 
-        System.arraycopy(chunk, chunkOffset, dest, destPos, toGrab);
+        newSize = Math.max(newSize, (int) Math.min(2L * buffer.length, Program.MAX_MEMORY));
 
-        return toGrab;
-    }
-
-    private void addChunks(int num) {
-        for (int i = 0; i < num; ++i) {
-            chunks.add(new byte[CHUNK_SIZE]);
-        }
+        buffer = Arrays.copyOf(buffer, newSize);
     }
 }
@@ -24,6 +24,8 @@ import co.rsk.core.RskAddress;
 import co.rsk.peg.Bridge;
 import co.rsk.remasc.RemascContract;
 import co.rsk.vm.BitSet;
+import co.rsk.vm.CodeAnalysis;
+import co.rsk.vm.CodeAnalysisCache;
 import com.google.common.annotations.VisibleForTesting;
 import org.ethereum.config.Constants;
 import org.ethereum.core.Block;
@@ -84,12 +86,13 @@ public class Program {
     public static final long MAX_MEMORY = (1<<30);
 
     //Max size for stack checks
-    private static final int MAX_STACKSIZE = 1024;
+    private static final int MAX_STACKSIZE = Stack.MAX_SIZE;
 
     private Transaction transaction;
 
     private final ProgramInvoke invoke;
     private final ProgramInvokeFactory programInvokeFactory = new ProgramInvokeFactoryImpl();
+    private final CodeAnalysisCache codeAnalysisCache;
 
     private ProgramOutListener listener;
     private final ProgramTraceListener traceListener;
@@ -104,6 +107,7 @@ public class Program {
     private final ProgramTrace trace;
 
     private final byte[] ops;
+    private final byte[] codeHash;
     private int pc;
     private byte lastOp;
     private byte previouslyExecutedOp;
@@ -184,7 +188,21 @@ public class Program {
     boolean isGasLogEnabled;
 
     public Program(RskSystemProperties config, byte[] ops, ProgramInvoke programInvoke) {
+        this(config, ops, null, programInvoke, null, null);
+    }
+
+    public Program(RskSystemProperties config, byte[] ops, ProgramInvoke programInvoke, Transaction transaction) {
+        this(config, ops, null, programInvoke, transaction, null);
+    }
+
+    /**
+     * @param codeHash the hash of the code, to reuse its analysis if it was already run, or null if unknown
+     * @param codeAnalysisCache the cache of code analysis, also used by the nested calls, or null
+     */
+    public Program(RskSystemProperties config, byte[] ops, byte[] codeHash, ProgramInvoke programInvoke, Transaction transaction, CodeAnalysisCache codeAnalysisCache) {
         this.config = config;
+        this.transaction = transaction;
+        this.codeAnalysisCache = codeAnalysisCache;
         isLogEnabled = logger.isInfoEnabled();
         isGasLogEnabled = gasLogger.isInfoEnabled();
 
@@ -199,10 +217,10 @@ public class Program {
         this.invoke = programInvoke;
 
         this.ops = nullToEmpty(ops);
+        this.codeHash = codeHash;
 
         this.memory = setupProgramListener(new Memory());
         this.stack = setupProgramListener(new Stack());
-        this.stack.ensureCapacity(1024); // faster?
         this.storage = setupProgramListener(new Storage(programInvoke));
         this.trace = new ProgramTrace(config, programInvoke);
 
@@ -217,11 +235,6 @@ public class Program {
         traceListener = new ProgramTraceListener(config);
     }
 
-    public Program(RskSystemProperties config, byte[] ops, ProgramInvoke programInvoke, Transaction transaction) {
-        this(config, ops, programInvoke);
-        this.transaction = transaction;
-    }
-
     public static void setUseDataWordPool(Boolean value) {
         useDataWordPool = value;
     }
@@ -518,6 +531,10 @@ public class Program {
         return memory.read(offset, size);
     }
 
+    public byte[] memoryHash(int offset, int size) {
+        return memory.sha3(offset, size);
+    }
+
     /**
      * Allocates extra memory in the program for
      * a specified size, calculated from a given offset
@@ -655,7 +672,7 @@ public class Program {
         returnDataBuffer = null; // reset return buffer right before the call
         if (isNotEmpty(programCode)) {
             VM vm = new VM(config);
-            Program program = new Program(config, programCode, programInvoke, internalTx);
+            Program program = new Program(config, programCode, null, programInvoke, internalTx, codeAnalysisCache);
             vm.play(program);
             programResult = program.getResult();
         }
@@ -823,6 +840,7 @@ public class Program {
 
         // FETCH THE CODE
         byte[] programCode = getStorage().isExist(codeAddress) ? getStorage().getCode(codeAddress) : EMPTY_BYTE_ARRAY;
+        byte[] programCodeHash = isNotEmpty(programCode) ? getStorage().getAccountState(codeAddress).getCodeHash() : null;
 
         // Always first remove funds from sender
         track.addBalance(senderAddress, endowment.negate());
@@ -845,7 +863,7 @@ public class Program {
         boolean callResult;
 
         if (isNotEmpty(programCode)) {
-            callResult = executeCode(msg, contextAddress, contextBalance, internalTx, track, programCode, senderAddress, data);
+            callResult = executeCode(msg, contextAddress, contextBalance, internalTx, track, programCode, programCodeHash, senderAddress, data);
         }
         else {
             track.commit();
@@ -869,6 +887,7 @@ public class Program {
             InternalTransaction internalTx,
             Repository track,
             byte[] programCode,
+            byte[] programCodeHash,
             RskAddress senderAddress,
             byte[] data ) {
 
@@ -881,7 +900,7 @@ public class Program {
                 limitToMaxLong(msg.getGas()), contextBalance, data, track, this.invoke.getBlockStore(), byTestingSuite());
 
         VM vm = new VM(config);
-        Program program = new Program(config, programCode, programInvoke, internalTx);
+        Program program = new Program(config, programCode, programCodeHash, programInvoke, internalTx, codeAnalysisCache);
         vm.play(program);
         childResult  = program.getResult();
 
@@ -1299,6 +1318,18 @@ public class Program {
     }
 
     public void precompile() {
+        boolean cached = codeHash != null && codeAnalysisCache != null;
+        CodeAnalysis analysis = cached ? codeAnalysisCache.get(codeHash, ops.length) : null;
+
+        if (analysis != null) {
+            exeVersion = analysis.getExeVersion();
+            scriptVersion = analysis.getScriptVersion();
+            startAddr = analysis.getStartAddr();
+            pc = startAddr;
+            jumpdestSet = analysis.getJumpdestSet();
+            return;
+        }
+
         int i = 0;
         exeVersion = 0;
         scriptVersion = 0;
@@ -1306,6 +1337,10 @@ public class Program {
         pc = 0;
         i = processAndSkipCodeHeader(i);
         computeJumpDests(i);
+
+        if (cached) {
+            codeAnalysisCache.put(codeHash, new CodeAnalysis(ops.length, exeVersion, scriptVersion, startAddr, jumpdestSet));
+        }
     }
 
     public void computeJumpDests(int start) {
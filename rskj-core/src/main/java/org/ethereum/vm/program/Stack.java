@@ -23,7 +23,23 @@ import org.ethereum.vm.DataWord;
 import org.ethereum.vm.program.listener.ProgramListener;
 import org.ethereum.vm.program.listener.ProgramListenerAware;
 
-public class Stack extends java.util.Stack<DataWord> implements ProgramListenerAware {
+import java.util.EmptyStackException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The program operand stack.
+ * <p>
+ * It is backed by an array allocated once with the maximum stack size, so pushes never resize it.
+ * A program is executed by a single thread, so there is no synchronization.
+ * Index 0 is the bottom of the stack, as in the former java.util.Stack based implementation.
+ */
+public class Stack implements ProgramListenerAware, Iterable<DataWord> {
+
+    public static final int MAX_SIZE = 1024;
+
+    private final DataWord[] elements = new DataWord[MAX_SIZE];
+    private int size;
 
     private ProgramListener traceListener;
 
@@ -32,20 +48,63 @@ public class Stack extends java.util.Stack<DataWord> implements ProgramListenerA
         this.traceListener = listener;
     }
 
-    @Override
-    public synchronized DataWord pop() {
+    public DataWord pop() {
+        if (size == 0) {
+            throw new EmptyStackException();
+        }
+
         if (traceListener != null) {
             traceListener.onStackPop();
         }
-        return super.pop();
+
+        DataWord item = elements[--size];
+        // don't retain words popped from the stack, they can go back to the pool
+        elements[size] = null;
+
+        return item;
     }
 
-    @Override
     public DataWord push(DataWord item) {
+        if (size == MAX_SIZE) {
+            throw new IllegalStateException("Stack limit of " + MAX_SIZE + " elements exceeded");
+        }
+
         if (traceListener != null) {
             traceListener.onStackPush(item);
         }
-        return super.push(item);
+
+        elements[size++] = item;
+
+        return item;
+    }
+
+    public DataWord peek() {
+        if (size == 0) {
+            throw new EmptyStackException();
+        }
+
+        return elements[size - 1];
+    }
+
+    public DataWord get(int index) {
+        if (!isAccessible(index)) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+
+        return elements[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(elements, 0, size, null);
+        size = 0;
     }
 
     public void swap(int from, int to) {
@@ -53,12 +112,40 @@ public class Stack extends java.util.Stack<DataWord> implements ProgramListenerA
             if (traceListener != null) {
                 traceListener.onStackSwap(from, to);
             }
-            DataWord tmp = get(from);
-            set(from, set(to, tmp));
+            DataWord tmp = elements[from];
+            elements[from] = elements[to];
+            elements[to] = tmp;
         }
     }
 
+    public DataWord[] toArray() {
+        DataWord[] result = new DataWord[size];
+        System.arraycopy(elements, 0, result, 0, size);
+        return result;
+    }
+
+    @Override
+    public Iterator<DataWord> iterator() {
+        return new Iterator<DataWord>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public DataWord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                return elements[index++];
+            }
+        };
+    }
+
     private boolean isAccessible(int from) {
-        return from >= 0 && from < size();
+        return from >= 0 && from < size;
     }
 }
@@ -30,6 +30,9 @@ import org.ethereum.vm.program.invoke.ProgramInvoke;
 import org.ethereum.vm.program.listener.ProgramListener;
 import org.ethereum.vm.program.listener.ProgramListenerAware;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.util.Map;
 import java.util.Set;
@@ -173,6 +176,11 @@ public class Storage implements Repository, ProgramListenerAware {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public Runnable prepareFlush() {
+        return repository.prepareFlush();
+    }
+
 
     @Override
     public void commit() {
@@ -238,6 +246,26 @@ public class Storage implements Repository, ProgramListenerAware {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void exportTrie(OutputStream outputStream) throws IOException {
+        repository.exportTrie(outputStream);
+    }
+
+    @Override
+    public byte[] importTrie(InputStream inputStream) throws IOException {
+        return repository.importTrie(inputStream);
+    }
+
+    @Override
+    public byte[] getTrieNode(byte[] hash) {
+        return repository.getTrieNode(hash);
+    }
+
+    @Override
+    public void saveTrieNodes(Map<byte[], byte[]> nodes) {
+        repository.saveTrieNodes(nodes);
+    }
+
     @Override
     public DetailsDataStore getDetailsDataStore() {
         return this.repository.getDetailsDataStore();
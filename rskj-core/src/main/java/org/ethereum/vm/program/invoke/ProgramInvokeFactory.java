@@ -19,6 +19,7 @@
 
 package org.ethereum.vm.program.invoke;
 
+import co.rsk.vm.CodeAnalysisCache;
 import org.ethereum.core.Block;
 import org.ethereum.core.Repository;
 import org.ethereum.core.Transaction;
@@ -42,5 +43,9 @@ public interface ProgramInvokeFactory {
                                              BigInteger balanceInt, byte[] dataIn,
                                              Repository repository, BlockStore blockStore, boolean byTestingSuite);
 
+    /**
+     * @return the cache of code analysis of the programs run with the invokes of this factory, or null
+     */
+    CodeAnalysisCache getCodeAnalysisCache();
 
 }
@@ -20,6 +20,7 @@
 package org.ethereum.vm.program.invoke;
 
 import co.rsk.core.RskAddress;
+import co.rsk.vm.CodeAnalysisCache;
 import org.ethereum.core.Block;
 import org.ethereum.core.Repository;
 import org.ethereum.core.Transaction;
@@ -30,6 +31,7 @@ import org.ethereum.vm.program.Program;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.math.BigInteger;
@@ -45,6 +47,22 @@ public class ProgramInvokeFactoryImpl implements ProgramInvokeFactory {
 
     private static final Logger logger = LoggerFactory.getLogger("VM");
 
+    private final CodeAnalysisCache codeAnalysisCache;
+
+    public ProgramInvokeFactoryImpl() {
+        this(null);
+    }
+
+    @Autowired
+    public ProgramInvokeFactoryImpl(CodeAnalysisCache codeAnalysisCache) {
+        this.codeAnalysisCache = codeAnalysisCache;
+    }
+
+    @Override
+    public CodeAnalysisCache getCodeAnalysisCache() {
+        return codeAnalysisCache;
+    }
+
     // Invocation by the wire tx
     @Override
     public ProgramInvoke createProgramInvoke(Transaction tx, int txindex, Block block, Repository repository,
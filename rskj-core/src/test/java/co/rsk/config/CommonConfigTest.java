@@ -40,7 +40,7 @@ public class CommonConfigTest {
     public void createRepositoryUsingNewRepository() {
         CommonConfig config = new CommonConfig();
 
-        Repository repository = config.repository(this.config);
+        Repository repository = config.repository(this.config, config.trieNodeCache(this.config));
 
         Assert.assertNotNull(repository);
         Assert.assertTrue(repository instanceof RepositoryImpl);
@@ -20,6 +20,7 @@ package co.rsk.core;
 
 import co.rsk.config.RskSystemProperties;
 import co.rsk.db.RepositoryImpl;
+import co.rsk.trie.TrieImporter;
 import co.rsk.trie.TrieStoreImpl;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -37,6 +38,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.spongycastle.util.encoders.Hex;
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
@@ -51,6 +53,7 @@ public class NetworkStateExporterTest {
     private static final byte[] ZERO_BYTE_ARRAY = new byte[]{0};
 
     static String jsonFileName = "networkStateExporterTest.json";
+    static String trieFileName = "networkStateExporterTest.trie";
     private RskSystemProperties config;
 
     @Before
@@ -61,6 +64,7 @@ public class NetworkStateExporterTest {
     @AfterClass
     public static void cleanup(){
         FileUtils.deleteQuietly(new File(jsonFileName));
+        FileUtils.deleteQuietly(new File(trieFileName));
     }
 
     @Test
@@ -149,6 +153,104 @@ public class NetworkStateExporterTest {
     }
 
 
+    @Test
+    public void exportAndImportStateTrie() throws Exception {
+        Repository repository = new RepositoryImpl(config, new TrieStoreImpl(new HashMapDB()));
+        RskAddress addr1 = new RskAddress("1000000000000000000000000000000000000000");
+        RskAddress addr2 = new RskAddress("2000000000000000000000000000000000000000");
+        repository.addBalance(addr1, BigInteger.ONE);
+        repository.addBalance(addr2, BigInteger.TEN);
+
+        NetworkStateExporter nse = new NetworkStateExporter(repository);
+        Assert.assertTrue(nse.exportStateTrie(trieFileName));
+
+        HashMapDB imported = new HashMapDB();
+
+        try (InputStream inputStream = new FileInputStream(trieFileName)) {
+            Assert.assertArrayEquals(repository.getRoot(), new TrieImporter(imported).importFrom(inputStream));
+        }
+
+        Repository importedRepository = new RepositoryImpl(config, new TrieStoreImpl(imported)).getSnapshotTo(repository.getRoot());
+
+        Assert.assertEquals(BigInteger.ONE, importedRepository.getBalance(addr1));
+        Assert.assertEquals(BigInteger.TEN, importedRepository.getBalance(addr2));
+    }
+
+    @Test
+    public void exportStateTrieWithContracts() throws Exception {
+        Repository repository = new RepositoryImpl(config, new TrieStoreImpl(new HashMapDB()));
+        RskAddress addr1 = new RskAddress("1000000000000000000000000000000000000000");
+        repository.createAccount(addr1);
+        ContractDetails contractDetails = new co.rsk.db.ContractDetailsImpl(config);
+        contractDetails.setCode(new byte[] {1, 2, 3, 4});
+        contractDetails.put(DataWord.ZERO, DataWord.ONE);
+        repository.updateContractDetails(addr1, contractDetails);
+        AccountState accountState = repository.getAccountState(addr1);
+        accountState.setStateRoot(contractDetails.getStorageHash());
+        repository.updateAccountState(addr1, accountState);
+
+        NetworkStateExporter nse = new NetworkStateExporter(repository);
+        Assert.assertTrue(nse.exportStateTrie(trieFileName));
+
+        try (DataInputStream inputStream = new DataInputStream(new FileInputStream(trieFileName))) {
+            Assert.assertArrayEquals(repository.getRoot(), new TrieImporter(new HashMapDB()).importFrom(inputStream));
+
+            Assert.assertTrue(inputStream.readBoolean());
+            byte[] address = new byte[20];
+            inputStream.readFully(address);
+            byte[] encoded = new byte[inputStream.readInt()];
+            inputStream.readFully(encoded);
+
+            ContractDetails importedDetails = new co.rsk.db.ContractDetailsImpl(config, encoded);
+
+            Assert.assertArrayEquals(addr1.getBytes(), address);
+            Assert.assertArrayEquals(new byte[] {1, 2, 3, 4}, importedDetails.getCode());
+            Assert.assertEquals(DataWord.ONE, importedDetails.get(DataWord.ZERO));
+            Assert.assertFalse(inputStream.readBoolean());
+        }
+    }
+
+    @Test
+    public void exportAndImportStateWithContracts() throws Exception {
+        Repository repository = new RepositoryImpl(config, new TrieStoreImpl(new HashMapDB()));
+        RskAddress addr1 = new RskAddress("1000000000000000000000000000000000000000");
+        repository.createAccount(addr1);
+        repository.addBalance(addr1, BigInteger.TEN);
+        RskAddress addr2 = new RskAddress("2000000000000000000000000000000000000000");
+        repository.createAccount(addr2);
+        repository.saveCode(addr2, new byte[] {1, 2, 3, 4});
+        ContractDetails contractDetails = repository.getContractDetails(addr2);
+        contractDetails.put(DataWord.ZERO, DataWord.ONE);
+        contractDetails.put(DataWord.ONE, new DataWord(42));
+        repository.updateContractDetails(addr2, contractDetails);
+        AccountState accountState = repository.getAccountState(addr2);
+        accountState.setStateRoot(contractDetails.getStorageHash());
+        repository.updateAccountState(addr2, accountState);
+        repository.flush();
+
+        NetworkStateExporter nse = new NetworkStateExporter(repository);
+        Assert.assertTrue(nse.exportStateTrie(trieFileName));
+
+        Repository importedRepository = new RepositoryImpl(config, new TrieStoreImpl(new HashMapDB()));
+        NetworkStateImporter nsi = new NetworkStateImporter(config, importedRepository);
+
+        Assert.assertArrayEquals(repository.getRoot(), nsi.importStateTrie(trieFileName));
+        Assert.assertArrayEquals(repository.getRoot(), importedRepository.getRoot());
+        Assert.assertEquals(BigInteger.TEN, importedRepository.getBalance(addr1));
+        Assert.assertArrayEquals(new byte[] {1, 2, 3, 4}, importedRepository.getCode(addr2));
+        Assert.assertEquals(DataWord.ONE, importedRepository.getStorageValue(addr2, DataWord.ZERO));
+        Assert.assertEquals(new DataWord(42), importedRepository.getStorageValue(addr2, DataWord.ONE));
+        Assert.assertArrayEquals(contractDetails.getStorageHash(), importedRepository.getContractDetails(addr2).getStorageHash());
+    }
+
+    @Test
+    public void importMissingStateTrie() {
+        Repository repository = new RepositoryImpl(config, new TrieStoreImpl(new HashMapDB()));
+        NetworkStateImporter nsi = new NetworkStateImporter(config, repository);
+
+        Assert.assertNull(nsi.importStateTrie("networkStateExporterTest.missing"));
+    }
+
     private Map writeAndReadJson(Repository repository) throws Exception {
         NetworkStateExporter nse = new NetworkStateExporter(repository);
         Assert.assertTrue(nse.exportStatus(jsonFileName));
@@ -0,0 +1,93 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.core;
+
+import co.rsk.config.RskSystemProperties;
+import org.ethereum.core.ImmutableTransaction;
+import org.ethereum.core.Transaction;
+import org.ethereum.crypto.ECKey;
+import org.ethereum.crypto.HashUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+public class TransactionSenderCacheTest {
+    private final RskSystemProperties config = new RskSystemProperties();
+
+    @Test
+    public void getUnknownSender() {
+        TransactionSenderCache cache = new TransactionSenderCache(10);
+
+        Assert.assertNull(cache.get(HashUtil.sha3(new byte[] { 0x01 })));
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void putAndGetSender() {
+        TransactionSenderCache cache = new TransactionSenderCache(10);
+        byte[] hash = HashUtil.sha3(new byte[] { 0x01 });
+        RskAddress sender = new RskAddress("0000000000000000000000000000000000000001");
+
+        cache.put(hash, sender);
+
+        Assert.assertEquals(sender, cache.get(hash));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(0, cache.getMisses());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedSender() {
+        TransactionSenderCache cache = new TransactionSenderCache(2);
+        byte[] hash1 = HashUtil.sha3(new byte[] { 0x01 });
+        byte[] hash2 = HashUtil.sha3(new byte[] { 0x02 });
+        byte[] hash3 = HashUtil.sha3(new byte[] { 0x03 });
+        RskAddress sender = new RskAddress("0000000000000000000000000000000000000001");
+
+        cache.put(hash1, sender);
+        cache.put(hash2, sender);
+        cache.get(hash1);
+        cache.put(hash3, sender);
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNotNull(cache.get(hash1));
+        Assert.assertNull(cache.get(hash2));
+        Assert.assertNotNull(cache.get(hash3));
+    }
+
+    @Test
+    public void senderIsSharedByTransactionInstances() {
+        ECKey key = ECKey.fromPrivate(HashUtil.sha3("cache".getBytes()));
+        Transaction tx = Transaction.create(config, "0000000000000000000000000000000000000001", BigInteger.TEN, BigInteger.valueOf(42), BigInteger.ONE, BigInteger.valueOf(21000));
+        tx.sign(key.getPrivKeyBytes());
+        byte[] encoded = tx.getEncoded();
+
+        TransactionSenderCache cache = new TransactionSenderCache(10);
+
+        Transaction tx1 = new ImmutableTransaction(encoded);
+        Assert.assertEquals(new RskAddress(key.getAddress()), tx1.getSender(cache));
+        Assert.assertEquals(new RskAddress(key.getAddress()), cache.get(tx1.getHash()));
+
+        Transaction tx2 = new ImmutableTransaction(encoded);
+        Assert.assertEquals(new RskAddress(key.getAddress()), tx2.getSender(cache));
+        Assert.assertEquals(2, cache.getHits());
+    }
+}
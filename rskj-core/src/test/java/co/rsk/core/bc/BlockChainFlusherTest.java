@@ -0,0 +1,139 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.core.bc;
+
+import co.rsk.config.RskSystemProperties;
+import co.rsk.core.RskAddress;
+import co.rsk.db.RepositoryImpl;
+import co.rsk.trie.TrieStoreImpl;
+import org.ethereum.datasource.HashMapDB;
+import org.ethereum.core.Repository;
+import org.ethereum.db.BlockStore;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.util.concurrent.CountDownLatch;
+
+public class BlockChainFlusherTest {
+    private final RskSystemProperties config = new RskSystemProperties();
+
+    @Test
+    public void flushWritesRepositoryAndBlockStore() {
+        HashMapDB detailsDB = new HashMapDB();
+        RepositoryImpl repository = new RepositoryImpl(config, new TrieStoreImpl(new HashMapDB()), detailsDB);
+        BlockStore blockStore = Mockito.mock(BlockStore.class);
+        Runnable blockStoreWrites = Mockito.mock(Runnable.class);
+        Mockito.when(blockStore.prepareFlush()).thenReturn(blockStoreWrites);
+        RskAddress address = new RskAddress("0000000000000000000000000000000000001a2b");
+
+        repository.createAccount(address);
+        repository.saveCode(address, new byte[] { 0x01, 0x02 });
+
+        BlockChainFlusher flusher = new BlockChainFlusher(repository, blockStore);
+        flusher.flush();
+        flusher.waitForPendingFlushes();
+
+        Assert.assertNotNull(detailsDB.get(address.getBytes()));
+        Assert.assertArrayEquals(new byte[] { 0x01, 0x02 }, repository.getCode(address));
+        Assert.assertEquals(0, flusher.getQueueDepth());
+        Mockito.verify(blockStoreWrites, Mockito.times(1)).run();
+    }
+
+    @Test
+    public void flushWritesBlockStoreAfterRepository() {
+        Repository repository = Mockito.mock(Repository.class);
+        BlockStore blockStore = Mockito.mock(BlockStore.class);
+        Runnable repositoryWrites = Mockito.mock(Runnable.class);
+        Runnable blockStoreWrites = Mockito.mock(Runnable.class);
+        Mockito.when(repository.prepareFlush()).thenReturn(repositoryWrites);
+        Mockito.when(blockStore.prepareFlush()).thenReturn(blockStoreWrites);
+
+        BlockChainFlusher flusher = new BlockChainFlusher(repository, blockStore);
+        flusher.flush();
+        flusher.waitForPendingFlushes();
+
+        InOrder inOrder = Mockito.inOrder(repository, blockStore, repositoryWrites, blockStoreWrites);
+        inOrder.verify(repository).prepareFlush();
+        inOrder.verify(blockStore).prepareFlush();
+        inOrder.verify(repositoryWrites).run();
+        inOrder.verify(blockStoreWrites).run();
+        Mockito.verify(blockStore, Mockito.never()).flush();
+    }
+
+    @Test
+    public void flushWaitsForQueuedFlushes() throws InterruptedException {
+        RepositoryImpl repository = new RepositoryImpl(config, new TrieStoreImpl(new HashMapDB()));
+        BlockStore blockStore = Mockito.mock(BlockStore.class);
+        Runnable blockStoreWrites = Mockito.mock(Runnable.class);
+        Mockito.when(blockStore.prepareFlush()).thenReturn(blockStoreWrites);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Mockito.doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return null;
+        }).when(blockStoreWrites).run();
+
+        BlockChainFlusher flusher = new BlockChainFlusher(repository, blockStore);
+
+        for (int k = 0; k < BlockChainFlusher.MAX_PENDING_FLUSHES; k++) {
+            flusher.flush();
+        }
+
+        writing.await();
+        Assert.assertEquals(BlockChainFlusher.MAX_PENDING_FLUSHES, flusher.getQueueDepth());
+
+        Thread blocked = new Thread(flusher::flush);
+        blocked.start();
+        blocked.join(200);
+
+        Assert.assertTrue(blocked.isAlive());
+
+        release.countDown();
+        blocked.join();
+        flusher.waitForPendingFlushes();
+
+        Assert.assertEquals(0, flusher.getQueueDepth());
+        Mockito.verify(blockStoreWrites, Mockito.times(BlockChainFlusher.MAX_PENDING_FLUSHES + 1)).run();
+    }
+
+    @Test
+    public void closeWritesQueuedFlushes() {
+        RepositoryImpl repository = new RepositoryImpl(config, new TrieStoreImpl(new HashMapDB()));
+        BlockStore blockStore = Mockito.mock(BlockStore.class);
+        Runnable blockStoreWrites = Mockito.mock(Runnable.class);
+        Mockito.when(blockStore.prepareFlush()).thenReturn(blockStoreWrites);
+
+        BlockChainFlusher flusher = new BlockChainFlusher(repository, blockStore);
+        flusher.flush();
+        flusher.close();
+
+        Assert.assertEquals(0, flusher.getQueueDepth());
+        Mockito.verify(blockStoreWrites, Mockito.times(1)).run();
+        Mockito.verify(blockStore, Mockito.times(1)).close();
+
+        // without writer thread, in the calling thread
+        flusher.flush();
+
+        Mockito.verify(blockStoreWrites, Mockito.times(2)).run();
+    }
+}
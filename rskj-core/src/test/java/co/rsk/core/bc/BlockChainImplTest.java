@@ -22,6 +22,7 @@ import co.rsk.blockchain.utils.BlockGenerator;
 import co.rsk.blocks.DummyBlockRecorder;
 import co.rsk.config.RskSystemProperties;
 import co.rsk.core.RskAddress;
+import co.rsk.core.TransactionSenderCache;
 import co.rsk.db.RepositoryImpl;
 import co.rsk.test.builders.BlockBuilder;
 import co.rsk.test.builders.BlockChainBuilder;
@@ -40,6 +41,7 @@ import org.ethereum.listener.EthereumListener;
 import org.ethereum.manager.AdminInfo;
 import org.ethereum.util.FastByteComparisons;
 import org.ethereum.vm.PrecompiledContracts;
+import org.ethereum.vm.program.invoke.ProgramInvokeFactoryImpl;
 import org.junit.Assert;
 import org.junit.Test;
 import org.spongycastle.util.Arrays;
@@ -793,7 +795,7 @@ public class BlockChainImplTest {
 
     @Test
     public void createWithoutArgumentsAndUnusedMethods() {
-        BlockChainImpl blockChain = new BlockChainImpl(config, null, null, null, null, null, null, new DummyBlockValidator());
+        BlockChainImpl blockChain = new BlockChainImpl(config, null, null, null, null, null, null, new DummyBlockValidator(), new TransactionSenderCache(config.senderCacheSize()), new ProgramInvokeFactoryImpl(), new BlockChainFlusher(new RepositoryImpl(config, new TrieStoreImpl(new HashMapDB())), new IndexedBlockStore(config)));
         blockChain.setExitOn(0);
         blockChain.close();
     }
@@ -907,8 +909,8 @@ public class BlockChainImplTest {
 
         EthereumListener listener = new BlockExecutorTest.SimpleEthereumListener();
 
-        BlockChainImpl blockChain = new BlockChainImpl(config, repository, blockStore, receiptStore, null, listener, adminInfo, blockValidator);
-        PendingStateImpl pendingState = new PendingStateImpl(config, repository, blockStore, receiptStore, null, listener, 10, 100);
+        BlockChainImpl blockChain = new BlockChainImpl(config, repository, blockStore, receiptStore, null, listener, adminInfo, blockValidator, new TransactionSenderCache(config.senderCacheSize()), new ProgramInvokeFactoryImpl(), new BlockChainFlusher(repository, blockStore));
+        PendingStateImpl pendingState = new PendingStateImpl(config, repository, blockStore, receiptStore, null, listener, 10, 100, new TransactionSenderCache(100));
         blockChain.setPendingState(pendingState);
 
         return blockChain;
@@ -39,6 +39,7 @@ import org.ethereum.net.server.Channel;
 import org.ethereum.util.RLP;
 import org.ethereum.vm.trace.ProgramTrace;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.spongycastle.util.BigIntegers;
 import org.spongycastle.util.encoders.Hex;
@@ -377,6 +378,76 @@ public class BlockExecutorTest {
         Assert.assertFalse(executor.executeAndValidate(block, parent));
     }
 
+    @Test
+    public void executeBlockWithManyTransactionsComputesFinalStateRoot() {
+        Repository repository = new RepositoryImpl(config, new TrieStoreImpl(new HashMapDB()));
+        Block block = generateBlockWithManyTransactions(repository, 20);
+
+        BlockExecutor executor = new BlockExecutor(config, repository, new BlockchainDummy(), null, null);
+
+        byte[] initialRoot = repository.getRoot();
+        BlockResult result = executor.execute(block, initialRoot, false);
+
+        Assert.assertEquals(20, result.getTransactionReceipts().size());
+        Assert.assertEquals(20 * 21000, result.getGasUsed());
+
+        Repository finalRepository = repository.getSnapshotTo(result.getStateRoot());
+        Assert.assertArrayEquals(result.getStateRoot(), finalRepository.getRoot());
+
+        BlockResult result2 = executor.execute(block, initialRoot, false);
+        Assert.assertArrayEquals(result.getStateRoot(), result2.getStateRoot());
+    }
+
+    @Test
+    @Ignore
+    public void executeBlockWithManyTransactionsPerformance() {
+        int nblocks = 20;
+        int ntxs = 500;
+
+        Repository repository = new RepositoryImpl(config, new TrieStoreImpl(new HashMapDB()));
+        Block block = generateBlockWithManyTransactions(repository, ntxs);
+        byte[] initialRoot = repository.getRoot();
+
+        BlockExecutor executor = new BlockExecutor(config, repository, new BlockchainDummy(), null, null);
+
+        // warm up
+        executor.execute(block, initialRoot, false);
+
+        long start = System.nanoTime();
+
+        for (int k = 0; k < nblocks; k++) {
+            executor.execute(block, initialRoot, false);
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println(String.format("Block with %d txs: %d ms per block", ntxs, elapsed / nblocks / 1000000));
+    }
+
+    private static Block generateBlockWithManyTransactions(Repository repository, int ntxs) {
+        Repository track = repository.startTracking();
+
+        Account account = createAccount("acctest1", track, BigInteger.valueOf(30000L * ntxs));
+        List<Account> receivers = new ArrayList<>();
+
+        for (int k = 0; k < ntxs; k++) {
+            receivers.add(createAccount("receiver" + k, track, BigInteger.TEN));
+        }
+
+        track.commit();
+
+        List<Transaction> txs = new ArrayList<>();
+        BigInteger nonce = repository.getNonce(account.getAddress());
+
+        for (Account receiver : receivers) {
+            txs.add(createTransaction(account, receiver, BigInteger.TEN, nonce));
+            nonce = nonce.add(BigInteger.ONE);
+        }
+
+        BlockGenerator blockGenerator = new BlockGenerator();
+        return blockGenerator.createChildBlock(blockGenerator.getGenesisBlock(), txs, new ArrayList<>(), 1, null);
+    }
+
     public static TestObjects generateBlockWithOneTransaction() {
         BlockChainImpl blockchain = new BlockChainBuilder().build();
         Repository repository = blockchain.getRepository();
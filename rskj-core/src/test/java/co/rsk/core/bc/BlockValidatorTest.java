@@ -900,6 +900,11 @@ public class BlockValidatorTest {
             return block;
         }
 
+        @Override
+        public BlockHeader getBlockHeaderByHash(byte[] hash) {
+            return block.getHeader();
+        }
+
         @Override
         public Block getBlockByHashAndDepth(byte[] hash, long depth) {
             return null;
@@ -950,6 +955,16 @@ public class BlockValidatorTest {
 
         }
 
+        @Override
+        public Runnable prepareFlush() {
+            return () -> { };
+        }
+
+        @Override
+        public void close() {
+
+        }
+
         @Override
         public void reBranch(Block forkBlock) {
 
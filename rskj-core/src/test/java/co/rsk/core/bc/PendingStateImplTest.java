@@ -20,6 +20,7 @@ package co.rsk.core.bc;
 
 import co.rsk.blockchain.utils.BlockGenerator;
 import co.rsk.config.RskSystemProperties;
+import co.rsk.core.TransactionSenderCache;
 import co.rsk.test.builders.AccountBuilder;
 import co.rsk.test.builders.BlockBuilder;
 import co.rsk.test.builders.BlockChainBuilder;
@@ -155,6 +156,21 @@ public class PendingStateImplTest {
         Assert.assertEquals(BigInteger.valueOf(1004000), repository.getBalance(receiver.getAddress()));
     }
 
+    @Test
+    public void addPendingTransactionAddsSenderToCache() {
+        BlockChainImpl blockchain = createBlockchain();
+        TransactionSenderCache senderCache = new TransactionSenderCache(100);
+        PendingStateImpl pendingState = createSampleNewPendingStateWithAccounts(2, new BigInteger("1000000"), blockchain, senderCache);
+        pendingState.processBest(blockchain.getBestBlock());
+        Transaction tx = createSampleTransaction(1, 2, 1000, 0);
+        Account sender = createAccount(1);
+
+        pendingState.addPendingTransaction(tx);
+
+        Assert.assertEquals(1, senderCache.size());
+        Assert.assertEquals(sender.getAddress(), senderCache.get(tx.getHash()));
+    }
+
     @Test
     public void rejectPendingStateTransaction() {
         BlockChainImpl blockchain = createBlockchain();
@@ -482,12 +498,16 @@ public class PendingStateImplTest {
     }
 
     private static PendingStateImpl createSampleNewPendingState(BlockChainImpl blockChain) {
-        PendingStateImpl pendingState = new PendingStateImpl(config, blockChain.getRepository(), blockChain.getBlockStore(), blockChain.getReceiptStore(), new ProgramInvokeFactoryImpl(), new BlockExecutorTest.SimpleEthereumListener(), 10, 100);
+        PendingStateImpl pendingState = new PendingStateImpl(config, blockChain.getRepository(), blockChain.getBlockStore(), blockChain.getReceiptStore(), new ProgramInvokeFactoryImpl(), new BlockExecutorTest.SimpleEthereumListener(), 10, 100, new TransactionSenderCache(100));
         pendingState.processBest(blockChain.getBestBlock());
         return pendingState;
     }
 
     private static PendingStateImpl createSampleNewPendingStateWithAccounts(int naccounts, BigInteger balance, BlockChainImpl blockChain) {
+        return createSampleNewPendingStateWithAccounts(naccounts, balance, blockChain, new TransactionSenderCache(100));
+    }
+
+    private static PendingStateImpl createSampleNewPendingStateWithAccounts(int naccounts, BigInteger balance, BlockChainImpl blockChain, TransactionSenderCache senderCache) {
 
         Block best = blockChain.getStatus().getBestBlock();
         Repository repository = blockChain.getRepository();
@@ -505,7 +525,7 @@ public class PendingStateImplTest {
         best.setStateRoot(repository.getRoot());
         best.flushRLP();
 
-        PendingStateImpl pendingState = new PendingStateImpl(config, blockChain.getRepository(), blockChain.getBlockStore(), blockChain.getReceiptStore(), new ProgramInvokeFactoryImpl(), new BlockExecutorTest.SimpleEthereumListener(), 10, 100);
+        PendingStateImpl pendingState = new PendingStateImpl(config, blockChain.getRepository(), blockChain.getBlockStore(), blockChain.getReceiptStore(), new ProgramInvokeFactoryImpl(), new BlockExecutorTest.SimpleEthereumListener(), 10, 100, senderCache);
         blockChain.setPendingState(pendingState);
 
         return pendingState;
@@ -0,0 +1,93 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.core.bc;
+
+import co.rsk.config.RskSystemProperties;
+import co.rsk.core.RskAddress;
+import co.rsk.core.TransactionSenderCache;
+import org.ethereum.core.ImmutableTransaction;
+import org.ethereum.core.Transaction;
+import org.ethereum.crypto.ECKey;
+import org.ethereum.crypto.HashUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TransactionSenderRecovererTest {
+    private static final RskSystemProperties config = new RskSystemProperties();
+
+    @Test
+    public void recoverSendersOfManyTransactions() {
+        List<ECKey> keys = new ArrayList<>();
+        List<Transaction> txs = new ArrayList<>();
+
+        for (int k = 0; k < 50; k++) {
+            ECKey key = ECKey.fromPrivate(HashUtil.sha3(("sender" + k).getBytes()));
+            keys.add(key);
+            txs.add(createSignedTransaction(key, k));
+        }
+
+        TransactionSenderCache senderCache = new TransactionSenderCache(100);
+        new TransactionSenderRecoverer(senderCache).recoverSenders(txs);
+
+        // the senders are read from the cache, getSender() would recover them on demand
+        Assert.assertEquals(txs.size(), senderCache.size());
+
+        for (int k = 0; k < txs.size(); k++) {
+            Assert.assertEquals(new RskAddress(keys.get(k).getAddress()), senderCache.get(txs.get(k).getHash()));
+        }
+
+        Assert.assertEquals(txs.size(), senderCache.getHits());
+    }
+
+    @Test
+    public void recoverSendersSkipsUnsignedTransactions() {
+        ECKey key = ECKey.fromPrivate(HashUtil.sha3("sender".getBytes()));
+        Transaction signed = createSignedTransaction(key, 0);
+        Transaction unsigned = Transaction.create(config, "0000000000000000000000000000000000000001", BigInteger.TEN, BigInteger.ONE, BigInteger.ONE, BigInteger.valueOf(21000));
+
+        List<Transaction> txs = new ArrayList<>();
+        txs.add(unsigned);
+        txs.add(signed);
+
+        TransactionSenderCache senderCache = new TransactionSenderCache(100);
+        new TransactionSenderRecoverer(senderCache).recoverSenders(txs);
+
+        Assert.assertNull(unsigned.getSignature());
+        Assert.assertEquals(1, senderCache.size());
+        Assert.assertEquals(new RskAddress(key.getAddress()), senderCache.get(signed.getHash()));
+    }
+
+    @Test
+    public void recoverSendersOfEmptyList() {
+        new TransactionSenderRecoverer(new TransactionSenderCache(100)).recoverSenders(Collections.emptyList());
+    }
+
+    private static Transaction createSignedTransaction(ECKey key, long nonce) {
+        Transaction tx = Transaction.create(config, "0000000000000000000000000000000000000001", BigInteger.TEN, BigInteger.valueOf(nonce), BigInteger.ONE, BigInteger.valueOf(21000));
+        tx.sign(key.getPrivKeyBytes());
+
+        // a fresh instance, as received from the network, without its sender computed
+        return new ImmutableTransaction(tx.getEncoded());
+    }
+}
@@ -23,8 +23,12 @@ import co.rsk.trie.Trie;
 import co.rsk.trie.TrieImpl;
 import co.rsk.trie.TrieStore;
 import co.rsk.trie.TrieStoreImpl;
+import org.ethereum.datasource.DataSourcePool;
 import org.ethereum.datasource.HashMapDB;
+import org.ethereum.db.ByteArrayWrapper;
 import org.ethereum.db.ContractDetails;
+import org.ethereum.util.RLP;
+import org.ethereum.util.RLPList;
 import org.ethereum.vm.DataWord;
 import org.junit.Assert;
 import org.junit.Test;
@@ -552,6 +556,40 @@ public class ContractDetailsImplTest {
         details2.syncStorage();
     }
 
+    @Test
+    public void usingUnifiedExternalStorage() {
+        RskSystemProperties unifiedConfig = new RskSystemProperties();
+        unifiedConfig.overrideParams("database.unifiedContractStorage", "true");
+
+        TrieStore store = new TrieStoreImpl(new HashMapDB());
+        Trie trie = new TrieImpl(store, false);
+        byte[] accountAddress = randomAddress();
+        ContractDetailsImpl details = new ContractDetailsImpl(unifiedConfig, accountAddress, trie, null);
+
+        int nkeys = IN_MEMORY_STORAGE_LIMIT;
+
+        for (int k = 1; k <= nkeys + 1; k++)
+            details.put(new DataWord(k), new DataWord(k * 2));
+
+        Assert.assertTrue(details.hasExternalStorage());
+
+        details.syncStorage();
+
+        int openDataSources = DataSourcePool.getOpenDataSourcesCount();
+
+        ContractDetailsImpl details1 = new ContractDetailsImpl(unifiedConfig, details.getEncoded());
+
+        Assert.assertTrue(details1.hasExternalStorage());
+
+        for (int k = 1; k <= nkeys + 1; k++)
+            Assert.assertEquals(new DataWord(k * 2), details1.get(new DataWord(k)));
+
+        details1.syncStorage();
+
+        Assert.assertEquals(openDataSources, DataSourcePool.getOpenDataSourcesCount());
+        Assert.assertEquals(new DataWord(2), details1.get(new DataWord(1)));
+    }
+
     @Test
     public void syncStorageWithExternalStorage() {
         TrieStore store = new TrieStoreImpl(new HashMapDB());
@@ -717,6 +755,71 @@ public class ContractDetailsImplTest {
         }
     }
 
+    @Test
+    public void decodeKeysEncodedAsList() {
+        byte[] address = randomAddress();
+        ContractDetailsImpl original = new ContractDetailsImpl(config);
+        original.setAddress(address);
+        original.put(DataWord.ONE, new DataWord(42));
+        original.put(new DataWord(2), new DataWord(43));
+
+        Set<ByteArrayWrapper> keys = new HashSet<>();
+        keys.add(new ByteArrayWrapper(DataWord.ONE.getData()));
+        keys.add(new ByteArrayWrapper(new DataWord(2).getData()));
+
+        // as encoded for a storage in memory
+        byte[] encoded = RLP.encodeList(
+                RLP.encodeElement(address),
+                RLP.encodeByte((byte) 0),
+                RLP.encodeElement(original.getTrie().serialize()),
+                RLP.encodeElement(null),
+                RLP.encodeSet(keys));
+
+        ContractDetailsImpl details = new ContractDetailsImpl(config, encoded);
+
+        Assert.assertEquals(2, details.getStorageSize());
+        Assert.assertEquals(original.getStorageKeys(), details.getStorageKeys());
+        Assert.assertEquals(new DataWord(42), details.get(DataWord.ONE));
+
+        ContractDetailsImpl clone = new ContractDetailsImpl(config, details.getEncoded());
+
+        Assert.assertEquals(2, clone.getStorageSize());
+        Assert.assertEquals(original.getStorageKeys(), clone.getStorageKeys());
+    }
+
+    @Test
+    public void encodeKeysAsListForStorageInMemory() {
+        ContractDetailsImpl details = new ContractDetailsImpl(config);
+        details.put(DataWord.ONE, new DataWord(42));
+        details.put(new DataWord(2), new DataWord(43));
+
+        RLPList rlpList = (RLPList) RLP.decode2(details.getEncoded()).get(0);
+
+        Assert.assertFalse(details.hasExternalStorage());
+        Assert.assertEquals(5, rlpList.size());
+        Assert.assertEquals(2, ((RLPList) rlpList.get(4)).size());
+    }
+
+    @Test
+    public void keepStorageKeysAfterDeleteAndEncode() {
+        ContractDetailsImpl details = new ContractDetailsImpl(config);
+
+        for (int k = 1; k <= 10; k++) {
+            details.put(new DataWord(k), new DataWord(k));
+        }
+
+        details.put(new DataWord(5), DataWord.ZERO);
+        details.put(new DataWord(5), DataWord.ZERO);
+        details.put(new DataWord(11), DataWord.ZERO);
+
+        ContractDetailsImpl clone = new ContractDetailsImpl(config, details.getEncoded());
+
+        Assert.assertEquals(9, clone.getStorageSize());
+        Assert.assertEquals(9, clone.getStorageKeys().size());
+        Assert.assertFalse(clone.getStorageKeys().contains(new DataWord(5)));
+        Assert.assertTrue(clone.getStorageKeys().contains(new DataWord(10)));
+    }
+
     @Test
     public void test_1(){
 
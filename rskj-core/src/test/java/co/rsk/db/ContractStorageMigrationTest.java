@@ -0,0 +1,95 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.db;
+
+import co.rsk.config.RskSystemProperties;
+import co.rsk.trie.Trie;
+import co.rsk.trie.TrieImpl;
+import co.rsk.trie.TrieStoreImpl;
+import org.ethereum.datasource.HashMapDB;
+import org.ethereum.datasource.KeyValueDataSource;
+import org.ethereum.util.RLP;
+import org.ethereum.vm.DataWord;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.ethereum.TestUtils.randomAddress;
+
+public class ContractStorageMigrationTest {
+    private final RskSystemProperties config = new RskSystemProperties();
+
+    @Test
+    public void copyExternalStorageToUnifiedDataSource() {
+        HashMapDB detailsDataSource = new HashMapDB();
+        HashMapDB unifiedDataSource = new HashMapDB();
+        Map<String, KeyValueDataSource> dataSources = new HashMap<>();
+
+        byte[][] roots = new byte[3][];
+        byte[][] addresses = new byte[3][];
+
+        for (int k = 0; k < roots.length; k++) {
+            addresses[k] = randomAddress().getBytes();
+            HashMapDB contractDataSource = new HashMapDB();
+
+            Trie trie = new TrieImpl(new TrieStoreImpl(contractDataSource), true);
+
+            for (int j = 1; j <= 100; j++) {
+                trie = trie.put(new DataWord(j).getData(), new DataWord(j + k).getNoLeadZeroesData());
+            }
+
+            trie.save();
+            roots[k] = trie.getHash();
+
+            dataSources.put(ContractDetailsImpl.getDataSourceName(addresses[k]), contractDataSource);
+            detailsDataSource.put(addresses[k], encodeExternalDetails(addresses[k], roots[k]));
+        }
+
+        ContractDetailsImpl inMemory = new ContractDetailsImpl(config);
+        inMemory.setAddress(randomAddress().getBytes());
+        inMemory.put(DataWord.ONE, DataWord.ONE);
+        detailsDataSource.put(inMemory.getAddress(), inMemory.getEncoded());
+
+        int contracts = new ContractStorageMigration(detailsDataSource, unifiedDataSource, dataSources::get).migrate();
+
+        Assert.assertEquals(roots.length, contracts);
+
+        TrieStoreImpl unifiedStore = new TrieStoreImpl(unifiedDataSource);
+
+        for (int k = 0; k < roots.length; k++) {
+            Trie trie = unifiedStore.retrieve(roots[k]);
+
+            for (int j = 1; j <= 100; j++) {
+                Assert.assertEquals(new DataWord(j + k), new DataWord(trie.get(new DataWord(j).getData())));
+            }
+        }
+    }
+
+    private static byte[] encodeExternalDetails(byte[] address, byte[] root) {
+        return RLP.encodeList(
+                RLP.encodeElement(address),
+                RLP.encodeByte((byte) 1),
+                RLP.encodeElement(root),
+                RLP.encodeElement(null),
+                RLP.encodeSet(new HashSet<>()));
+    }
+}
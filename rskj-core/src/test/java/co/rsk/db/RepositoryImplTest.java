@@ -28,12 +28,15 @@ import org.ethereum.core.Repository;
 import org.ethereum.datasource.HashMapDB;
 import org.ethereum.vm.DataWord;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
 
 import java.math.BigInteger;
-import java.util.Arrays;
-import java.util.Random;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Created by ajlopez on 29/03/2017.
@@ -483,6 +486,161 @@ public class RepositoryImplTest {
         Assert.assertTrue(repository.isExist(accAddress));
     }
 
+    @Test(timeout = 10000)
+    public void readWhileRepositoryIsLocked() throws InterruptedException {
+        RepositoryImpl repository = new RepositoryImpl(config, new TrieStoreImpl(new HashMapDB()));
+        RskAddress accAddress = randomAccountAddress();
+
+        Repository track = repository.startTracking();
+        track.addBalance(accAddress, BigInteger.TEN);
+        track.addStorageRow(accAddress, DataWord.ONE, DataWord.ONE);
+        track.commit();
+        repository.flush();
+        byte[] root = repository.getRoot();
+
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+
+        // as a block being imported
+        Thread writer = new Thread(() -> {
+            synchronized (repository) {
+                locked.countDown();
+
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        writer.start();
+        locked.await();
+
+        try {
+            Assert.assertTrue(repository.isExist(accAddress));
+            Assert.assertEquals(BigInteger.TEN, repository.getBalance(accAddress));
+            Assert.assertEquals(BigInteger.ZERO, repository.getNonce(accAddress));
+            Assert.assertEquals(DataWord.ONE, repository.getStorageValue(accAddress, DataWord.ONE));
+            Assert.assertEquals(0, repository.getCode(accAddress).length);
+            Assert.assertEquals(BigInteger.TEN, repository.getSnapshotTo(root).getBalance(accAddress));
+        } finally {
+            released.countDown();
+            writer.join();
+        }
+    }
+
+    @Test
+    public void readWhileUpdating() throws InterruptedException {
+        RepositoryImpl repository = new RepositoryImpl(config, new TrieStoreImpl(new HashMapDB()));
+        RskAddress[] addresses = createAccounts(repository, 100);
+        int nblocks = 100;
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean importing = new AtomicBoolean(true);
+        List<Thread> readers = new ArrayList<>();
+
+        for (int k = 0; k < 4; k++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    while (importing.get()) {
+                        for (RskAddress address : addresses) {
+                            BigInteger balance = repository.getBalance(address);
+                            Assert.assertTrue(balance.signum() > 0 && balance.intValue() <= nblocks + 1);
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            });
+
+            readers.add(reader);
+            reader.start();
+        }
+
+        try {
+            importBlocks(repository, addresses, nblocks);
+        } finally {
+            importing.set(false);
+
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+
+        Assert.assertNull(failure.get());
+
+        for (RskAddress address : addresses) {
+            Assert.assertEquals(BigInteger.valueOf(nblocks + 1), repository.getBalance(address));
+        }
+    }
+
+    @Ignore
+    @Test
+    public void readThroughputWhileImporting() throws InterruptedException {
+        for (int nreaders : new int[] { 1, 2, 4, 8 }) {
+            RepositoryImpl repository = new RepositoryImpl(config, new TrieStoreImpl(new HashMapDB()));
+            RskAddress[] addresses = createAccounts(repository, 1000);
+
+            AtomicBoolean importing = new AtomicBoolean(true);
+            AtomicLong reads = new AtomicLong();
+            List<Thread> readers = new ArrayList<>();
+
+            for (int k = 0; k < nreaders; k++) {
+                Random random = new Random(k);
+                Thread reader = new Thread(() -> {
+                    while (importing.get()) {
+                        repository.getBalance(addresses[random.nextInt(addresses.length)]);
+                        reads.incrementAndGet();
+                    }
+                });
+
+                readers.add(reader);
+                reader.start();
+            }
+
+            long start = System.nanoTime();
+            importBlocks(repository, addresses, 100);
+            long time = System.nanoTime() - start;
+
+            importing.set(false);
+
+            for (Thread reader : readers) {
+                reader.join();
+            }
+
+            System.out.println(String.format("%d readers, 100 blocks imported in %d ms, %d reads per second",
+                    nreaders, time / 1_000_000, reads.get() * 1_000_000_000L / time));
+        }
+    }
+
+    private static RskAddress[] createAccounts(Repository repository, int naccounts) {
+        RskAddress[] addresses = new RskAddress[naccounts];
+
+        for (int k = 0; k < naccounts; k++) {
+            addresses[k] = randomAccountAddress();
+            repository.addBalance(addresses[k], BigInteger.ONE);
+        }
+
+        repository.flush();
+
+        return addresses;
+    }
+
+    private static void importBlocks(Repository repository, RskAddress[] addresses, int nblocks) {
+        for (int k = 0; k < nblocks; k++) {
+            Repository track = repository.startTracking();
+
+            // each block pays one to every account
+            for (RskAddress address : addresses) {
+                track.addBalance(address, BigInteger.ONE);
+            }
+
+            track.commit();
+            repository.flush();
+        }
+    }
+
     private static RskAddress randomAccountAddress() {
         byte[] bytes = new byte[20];
 
@@ -19,21 +19,27 @@
 package co.rsk.net;
 
 import co.rsk.blockchain.utils.BlockGenerator;
+import co.rsk.core.RskAddress;
 import co.rsk.net.messages.*;
 import co.rsk.net.simples.SimpleMessageChannel;
 import co.rsk.net.sync.SyncConfiguration;
 import co.rsk.test.builders.BlockChainBuilder;
+import org.ethereum.TestUtils;
 import org.ethereum.core.Block;
 import org.ethereum.core.BlockIdentifier;
 import org.ethereum.core.Blockchain;
+import org.ethereum.core.Repository;
 import org.ethereum.crypto.HashUtil;
 import org.ethereum.db.ByteArrayWrapper;
+import org.ethereum.vm.DataWord;
 import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import java.math.BigInteger;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -891,6 +897,151 @@ public class NodeBlockProcessorTest {
         assertBlockIdentifiers(expected, bMessage.getBlockIdentifiers());
     }
 
+    @Test
+    public void processTrieNodesRequest() throws UnknownHostException {
+        final Blockchain blockchain = BlockChainBuilder.ofSize(0);
+        final BlockStore store = new BlockStore();
+
+        blockchain.getRepository().addBalance(TestUtils.randomAddress(), BigInteger.TEN);
+        blockchain.getRepository().flush();
+        byte[] root = blockchain.getRepository().getRoot();
+
+        BlockNodeInformation nodeInformation = new BlockNodeInformation();
+        SyncConfiguration syncConfiguration = SyncConfiguration.IMMEDIATE_FOR_TESTING;
+        BlockSyncService blockSyncService = new BlockSyncService(store, blockchain, nodeInformation, syncConfiguration);
+        final NodeBlockProcessor processor = new NodeBlockProcessor(store, blockchain, nodeInformation, blockSyncService, syncConfiguration);
+
+        final SimpleMessageChannel sender = new SimpleMessageChannel();
+
+        processor.processTrieNodesRequest(sender, 100, Arrays.asList(root, HashUtil.randomHash()));
+
+        Assert.assertEquals(1, sender.getMessages().size());
+
+        final Message message = sender.getMessages().get(0);
+
+        Assert.assertEquals(MessageType.TRIE_NODES_RESPONSE_MESSAGE, message.getMessageType());
+
+        final TrieNodesResponseMessage tMessage = (TrieNodesResponseMessage) message;
+
+        Assert.assertEquals(100, tMessage.getId());
+        Assert.assertEquals(2, tMessage.getValues().size());
+        Assert.assertArrayEquals(root, HashUtil.sha3(tMessage.getValues().get(0)));
+        // the node is not found
+        Assert.assertEquals(0, tMessage.getValues().get(1).length);
+    }
+
+    @Test
+    public void processContractDetailsRequest() throws UnknownHostException {
+        final Blockchain blockchain = BlockChainBuilder.ofSize(0);
+        final BlockStore store = new BlockStore();
+
+        RskAddress address = TestUtils.randomAddress();
+        Repository repository = blockchain.getRepository();
+        Repository track = repository.startTracking();
+        track.saveCode(address, new byte[] { 0x01, 0x02 });
+        track.addStorageRow(address, DataWord.ONE, new DataWord(42));
+        track.commit();
+        repository.flush();
+        byte[] root = repository.getRoot();
+
+        BlockNodeInformation nodeInformation = new BlockNodeInformation();
+        SyncConfiguration syncConfiguration = SyncConfiguration.IMMEDIATE_FOR_TESTING;
+        BlockSyncService blockSyncService = new BlockSyncService(store, blockchain, nodeInformation, syncConfiguration);
+        final NodeBlockProcessor processor = new NodeBlockProcessor(store, blockchain, nodeInformation, blockSyncService, syncConfiguration);
+
+        final SimpleMessageChannel sender = new SimpleMessageChannel();
+
+        processor.processContractDetailsRequest(sender, 100, root, null, null);
+
+        Assert.assertEquals(1, sender.getMessages().size());
+        Assert.assertEquals(MessageType.CONTRACT_DETAILS_RESPONSE_MESSAGE, sender.getMessages().get(0).getMessageType());
+
+        ContractDetailsResponseMessage response = (ContractDetailsResponseMessage) sender.getMessages().get(0);
+        List<ContractDetailsResponseMessage.AccountDetails> accounts = response.getAccounts();
+
+        Assert.assertEquals(100, response.getId());
+        Assert.assertEquals(repository.getAccountsKeys().size(), accounts.size());
+        Assert.assertNull(response.getNextAddress());
+
+        for (int k = 1; k < accounts.size(); k++) {
+            Assert.assertTrue(RskAddress.LEXICOGRAPHICAL_COMPARATOR.compare(accounts.get(k - 1).getAddress(), accounts.get(k).getAddress()) < 0);
+        }
+
+        ContractDetailsResponseMessage.AccountDetails account = accounts.stream().filter(a -> a.getAddress().equals(address)).findFirst().get();
+
+        Assert.assertArrayEquals(new byte[] { 0x01, 0x02 }, account.getCode());
+        Assert.assertEquals(1, account.getStorage().size());
+        Assert.assertArrayEquals(new DataWord(42).getNoLeadZeroesData(), account.getStorage().get(DataWord.ONE));
+
+        // the accounts are sent from the requested address
+        processor.processContractDetailsRequest(sender, 101, root, address, null);
+
+        Assert.assertEquals(2, sender.getMessages().size());
+        response = (ContractDetailsResponseMessage) sender.getMessages().get(1);
+        Assert.assertEquals(address, response.getAccounts().get(0).getAddress());
+        Assert.assertEquals(accounts.size() - accounts.indexOf(account), response.getAccounts().size());
+
+        // the state is not found
+        processor.processContractDetailsRequest(sender, 102, HashUtil.randomHash(), null, null);
+
+        Assert.assertEquals(2, sender.getMessages().size());
+    }
+
+    @Test
+    public void processContractDetailsRequestSendsStorageInParts() throws UnknownHostException {
+        final Blockchain blockchain = BlockChainBuilder.ofSize(0);
+        final BlockStore store = new BlockStore();
+
+        RskAddress address = TestUtils.randomAddress();
+        int rows = ContractDetailsResponseMessage.MAX_STORAGE_ROWS + 10;
+        Repository repository = blockchain.getRepository();
+        Repository track = repository.startTracking();
+        track.saveCode(address, new byte[] { 0x01, 0x02 });
+
+        for (int k = 1; k <= rows; k++) {
+            track.addStorageRow(address, new DataWord(HashUtil.randomHash()), new DataWord(k));
+        }
+
+        track.commit();
+        repository.flush();
+        byte[] root = repository.getRoot();
+
+        BlockNodeInformation nodeInformation = new BlockNodeInformation();
+        SyncConfiguration syncConfiguration = SyncConfiguration.IMMEDIATE_FOR_TESTING;
+        BlockSyncService blockSyncService = new BlockSyncService(store, blockchain, nodeInformation, syncConfiguration);
+        final NodeBlockProcessor processor = new NodeBlockProcessor(store, blockchain, nodeInformation, blockSyncService, syncConfiguration);
+
+        final SimpleMessageChannel sender = new SimpleMessageChannel();
+
+        processor.processContractDetailsRequest(sender, 100, root, address, null);
+
+        ContractDetailsResponseMessage response = (ContractDetailsResponseMessage) sender.getMessages().get(0);
+        ContractDetailsResponseMessage.AccountDetails account = response.getAccounts().get(0);
+        List<DataWord> keys = new ArrayList<>(account.getStorage().keySet());
+
+        Assert.assertEquals(1, response.getAccounts().size());
+        Assert.assertEquals(address, account.getAddress());
+        Assert.assertArrayEquals(new byte[] { 0x01, 0x02 }, account.getCode());
+        Assert.assertEquals(ContractDetailsResponseMessage.MAX_STORAGE_ROWS, keys.size());
+        Assert.assertEquals(address, response.getNextAddress());
+        Assert.assertEquals(keys.get(keys.size() - 1), response.getNextKey());
+
+        // the rest of the storage, without the code
+        processor.processContractDetailsRequest(sender, 101, root, address, response.getNextKey());
+
+        response = (ContractDetailsResponseMessage) sender.getMessages().get(1);
+        account = response.getAccounts().get(0);
+        keys.addAll(account.getStorage().keySet());
+
+        Assert.assertEquals(address, account.getAddress());
+        Assert.assertEquals(0, account.getCode().length);
+        Assert.assertEquals(rows, keys.size());
+
+        for (int k = 1; k < keys.size(); k++) {
+            Assert.assertTrue(keys.get(k - 1).compareTo(keys.get(k)) < 0);
+        }
+    }
+
     @Test
     public void processSkeletonRequestWithThreeResults() throws UnknownHostException {
         int skeletonStep = 192;
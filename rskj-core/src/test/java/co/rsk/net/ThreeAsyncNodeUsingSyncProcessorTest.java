@@ -23,8 +23,10 @@ import co.rsk.net.messages.NewBlockHashMessage;
 import co.rsk.net.simples.SimpleAsyncNode;
 import co.rsk.net.sync.SyncConfiguration;
 import co.rsk.net.utils.SyncUtils;
+import co.rsk.test.World;
 import co.rsk.test.builders.BlockChainBuilder;
 import org.ethereum.core.Blockchain;
+import org.ethereum.core.ImportResult;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -614,4 +616,71 @@ public class ThreeAsyncNodeUsingSyncProcessorTest {
         Assert.assertFalse(node3.getSyncProcessor().isPeerSyncing(node1.getNodeID()));
         Assert.assertFalse(node2.getSyncProcessor().isPeerSyncing(node2.getNodeID()));
     }
+
+    @Test
+    public void downloadStateFromTwoNodes() throws Exception {
+        Blockchain blockchain1 = new World().getBlockChain();
+        BlockChainBuilder.extend(blockchain1, 30, false, false);
+
+        // the same chain
+        Blockchain blockchain2 = new World().getBlockChain();
+
+        for (long number = 1; number <= blockchain1.getBestBlock().getNumber(); number++) {
+            Assert.assertEquals(ImportResult.IMPORTED_BEST, blockchain2.tryToConnect(blockchain1.getBlockByNumber(number)));
+        }
+
+        SyncConfiguration syncConfiguration = new SyncConfiguration(2, 1, 3, 1, 5, 192, true);
+        SimpleAsyncNode node1 = SimpleAsyncNode.createNode(blockchain1, syncConfiguration);
+        SimpleAsyncNode node2 = SimpleAsyncNode.createNode(blockchain2, syncConfiguration);
+        Blockchain blockchain3 = new World().getBlockChain();
+        SimpleAsyncNode node3 = SimpleAsyncNode.createNode(blockchain3, syncConfiguration);
+
+        Assert.assertArrayEquals(node1.getBestBlock().getHash(), node2.getBestBlock().getHash());
+
+        node1.sendFullStatusTo(node3);
+        node2.sendFullStatusTo(node3);
+        waitUntilBestBlock(node3, 30);
+
+        Assert.assertArrayEquals(node1.getBestBlock().getHash(), node3.getBestBlock().getHash());
+        Assert.assertArrayEquals(blockchain1.getRepository().getRoot(), node3.getBestBlock().getStateRoot());
+
+        // the blocks before the downloaded ancestors are missing
+        Assert.assertNull(blockchain3.getBlockByNumber(1));
+
+        node1.joinWithTimeout();
+        node2.joinWithTimeout();
+        node3.joinWithTimeout();
+    }
+
+    @Test
+    public void executeBlocksWhenNodesReportDifferentBestBlocks() throws Exception {
+        Blockchain blockchain1 = new World().getBlockChain();
+        BlockChainBuilder.extend(blockchain1, 30, false, false);
+        Blockchain blockchain2 = new World().getBlockChain();
+        BlockChainBuilder.extend(blockchain2, 20, false, false);
+
+        SyncConfiguration syncConfiguration = new SyncConfiguration(2, 1, 3, 1, 5, 192, true);
+        SimpleAsyncNode node1 = SimpleAsyncNode.createNode(blockchain1, syncConfiguration);
+        SimpleAsyncNode node2 = SimpleAsyncNode.createNode(blockchain2, syncConfiguration);
+        Blockchain blockchain3 = new World().getBlockChain();
+        SimpleAsyncNode node3 = SimpleAsyncNode.createNode(blockchain3, syncConfiguration);
+
+        node1.sendFullStatusTo(node3);
+        node2.sendFullStatusTo(node3);
+        waitUntilBestBlock(node3, 30);
+
+        Assert.assertArrayEquals(node1.getBestBlock().getHash(), node3.getBestBlock().getHash());
+        // the pivot total difficulty is not confirmed by another node, the blocks are executed
+        Assert.assertNotNull(blockchain3.getBlockByNumber(1));
+
+        node1.joinWithTimeout();
+        node2.joinWithTimeout();
+        node3.joinWithTimeout();
+    }
+
+    private static void waitUntilBestBlock(SimpleAsyncNode node, long number) {
+        while (node.getBestBlock().getNumber() != number) {
+            node.waitUntilNTasksWithTimeout(1);
+        }
+    }
 }
@@ -19,15 +19,19 @@
 package co.rsk.net;
 
 import co.rsk.blockchain.utils.BlockGenerator;
+import co.rsk.core.RskAddress;
 import co.rsk.net.messages.BlockMessage;
 import co.rsk.net.messages.NewBlockHashMessage;
 import co.rsk.net.simples.SimpleAsyncNode;
 import co.rsk.net.sync.SyncConfiguration;
 import co.rsk.net.utils.SyncUtils;
 import co.rsk.test.World;
+import co.rsk.test.dsl.DslParser;
+import co.rsk.test.dsl.WorldDslProcessor;
 import co.rsk.test.builders.BlockChainBuilder;
 import org.ethereum.core.Block;
 import org.ethereum.core.Blockchain;
+import org.ethereum.core.Repository;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -264,4 +268,58 @@ public class TwoAsyncNodeUsingSyncProcessorTest {
         Assert.assertFalse(node2.getSyncProcessor().isPeerSyncing(node1.getNodeID()));
     }
 
+    @Test
+    public void downloadStateAndSynchronize() throws Exception {
+        World world1 = new World();
+        // a contract with storage
+        new WorldDslProcessor(world1).processCommands(DslParser.fromResource("dsl/contracts02.txt"));
+        Blockchain blockchain1 = world1.getBlockChain();
+        BlockChainBuilder.extend(blockchain1, 30, false, false);
+
+        SyncConfiguration syncConfiguration = new SyncConfiguration(1, 1, 3, 1, 5, 192, true);
+        SimpleAsyncNode node1 = SimpleAsyncNode.createNode(blockchain1, syncConfiguration);
+        Blockchain blockchain2 = new World().getBlockChain();
+        SimpleAsyncNode node2 = SimpleAsyncNode.createNode(blockchain2, syncConfiguration);
+
+        Assert.assertEquals(32, node1.getBestBlock().getNumber());
+
+        node1.sendFullStatusTo(node2);
+        waitUntilBestBlock(node2, 32);
+
+        Assert.assertArrayEquals(node1.getBestBlock().getHash(), node2.getBestBlock().getHash());
+        Assert.assertArrayEquals(blockchain1.getRepository().getRoot(), node2.getBestBlock().getStateRoot());
+        Assert.assertFalse(node2.getSyncProcessor().isDownloadingState());
+
+        // the contract created in the first block
+        RskAddress contractAddress = world1.getTransactionByName("tx01").getContractAddress();
+        Repository repository2 = blockchain2.getRepository();
+
+        Assert.assertFalse(repository2.getContractDetails(contractAddress).getStorageKeys().isEmpty());
+        Assert.assertArrayEquals(blockchain1.getRepository().getCode(contractAddress), repository2.getCode(contractAddress));
+        Assert.assertEquals(blockchain1.getRepository().getContractDetails(contractAddress).getStorage(), repository2.getContractDetails(contractAddress).getStorage());
+
+        // the blocks before the downloaded ancestors are missing
+        Assert.assertNull(blockchain2.getBlockByNumber(1));
+
+        // the next blocks are executed over the downloaded state
+        BlockChainBuilder.extend(blockchain1, 10, false, false);
+
+        node1.sendFullStatusTo(node2);
+        waitUntilBestBlock(node2, 42);
+
+        node1.joinWithTimeout();
+        node2.joinWithTimeout();
+
+        Assert.assertArrayEquals(node1.getBestBlock().getHash(), node2.getBestBlock().getHash());
+        Assert.assertArrayEquals(blockchain1.getRepository().getRoot(), node2.getBestBlock().getStateRoot());
+
+        Assert.assertFalse(node1.getSyncProcessor().isPeerSyncing(node2.getNodeID()));
+        Assert.assertFalse(node2.getSyncProcessor().isPeerSyncing(node1.getNodeID()));
+    }
+
+    private static void waitUntilBestBlock(SimpleAsyncNode node, long number) {
+        while (node.getBestBlock().getNumber() != number) {
+            node.waitUntilNTasksWithTimeout(1);
+        }
+    }
 }
@@ -19,19 +19,24 @@
 package co.rsk.net.messages;
 
 import co.rsk.blockchain.utils.BlockGenerator;
+import co.rsk.core.RskAddress;
 import co.rsk.net.Status;
 import co.rsk.net.utils.TransactionUtils;
 import co.rsk.test.builders.AccountBuilder;
 import co.rsk.test.builders.TransactionBuilder;
+import org.ethereum.TestUtils;
 import org.ethereum.core.*;
 import org.ethereum.crypto.HashUtil;
+import org.ethereum.vm.DataWord;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
@@ -549,6 +554,142 @@ public class MessageTest {
             Assert.assertArrayEquals(uncles.get(k).getEncoded(), newmessage.getUncles().get(k).getEncoded());
     }
 
+    @Test
+    public void encodeDecodeTrieNodesRequestMessage() {
+        long someId = 42;
+        List<byte[]> hashes = new ArrayList<>();
+
+        for (int k = 0; k < 10; k++)
+            hashes.add(HashUtil.randomHash());
+
+        TrieNodesRequestMessage message = new TrieNodesRequestMessage(someId, hashes);
+
+        byte[] encoded = message.getEncoded();
+
+        Message result = Message.create(encoded);
+
+        Assert.assertNotNull(result);
+        Assert.assertArrayEquals(encoded, result.getEncoded());
+        Assert.assertEquals(MessageType.TRIE_NODES_REQUEST_MESSAGE, result.getMessageType());
+
+        TrieNodesRequestMessage newMessage = (TrieNodesRequestMessage) result;
+
+        Assert.assertEquals(someId, newMessage.getId());
+        Assert.assertEquals(hashes.size(), newMessage.getHashes().size());
+
+        for (int k = 0; k < hashes.size(); k++)
+            Assert.assertArrayEquals(hashes.get(k), newMessage.getHashes().get(k));
+    }
+
+    @Test
+    public void encodeDecodeTrieNodesResponseMessage() {
+        long someId = 42;
+        List<byte[]> values = new ArrayList<>();
+        values.add(HashUtil.randomHash());
+        // a node not found
+        values.add(new byte[0]);
+        values.add(new byte[] { 0x01 });
+
+        TrieNodesResponseMessage message = new TrieNodesResponseMessage(someId, values);
+
+        byte[] encoded = message.getEncoded();
+
+        Message result = Message.create(encoded);
+
+        Assert.assertNotNull(result);
+        Assert.assertArrayEquals(encoded, result.getEncoded());
+        Assert.assertEquals(MessageType.TRIE_NODES_RESPONSE_MESSAGE, result.getMessageType());
+
+        TrieNodesResponseMessage newMessage = (TrieNodesResponseMessage) result;
+
+        Assert.assertEquals(someId, newMessage.getId());
+        Assert.assertEquals(values.size(), newMessage.getValues().size());
+
+        for (int k = 0; k < values.size(); k++)
+            Assert.assertArrayEquals(values.get(k), newMessage.getValues().get(k));
+    }
+
+    @Test
+    public void encodeDecodeContractDetailsRequestMessage() {
+        long someId = 42;
+        byte[] stateRoot = HashUtil.randomHash();
+        RskAddress fromAddress = TestUtils.randomAddress();
+        DataWord fromKey = new DataWord(HashUtil.randomHash());
+
+        ContractDetailsRequestMessage message = new ContractDetailsRequestMessage(someId, stateRoot, fromAddress, fromKey);
+
+        byte[] encoded = message.getEncoded();
+
+        Message result = Message.create(encoded);
+
+        Assert.assertNotNull(result);
+        Assert.assertArrayEquals(encoded, result.getEncoded());
+        Assert.assertEquals(MessageType.CONTRACT_DETAILS_REQUEST_MESSAGE, result.getMessageType());
+
+        ContractDetailsRequestMessage newMessage = (ContractDetailsRequestMessage) result;
+
+        Assert.assertEquals(someId, newMessage.getId());
+        Assert.assertArrayEquals(stateRoot, newMessage.getStateRoot());
+        Assert.assertEquals(fromAddress, newMessage.getFromAddress());
+        Assert.assertEquals(fromKey, newMessage.getFromKey());
+
+        // from the first account
+        newMessage = (ContractDetailsRequestMessage) Message.create(new ContractDetailsRequestMessage(someId, stateRoot, null, null).getEncoded());
+
+        Assert.assertNull(newMessage.getFromAddress());
+        Assert.assertNull(newMessage.getFromKey());
+    }
+
+    @Test
+    public void encodeDecodeContractDetailsResponseMessage() {
+        long someId = 42;
+        Map<DataWord, byte[]> storage = new LinkedHashMap<>();
+        storage.put(DataWord.ZERO, new byte[] { 0x01 });
+        storage.put(new DataWord(HashUtil.randomHash()), HashUtil.randomHash());
+
+        List<ContractDetailsResponseMessage.AccountDetails> accounts = new ArrayList<>();
+        accounts.add(new ContractDetailsResponseMessage.AccountDetails(TestUtils.randomAddress(), new byte[] { 0x60, 0x60 }, storage));
+        // an account without code and storage
+        accounts.add(new ContractDetailsResponseMessage.AccountDetails(TestUtils.randomAddress(), new byte[0], new LinkedHashMap<>()));
+
+        RskAddress nextAddress = TestUtils.randomAddress();
+        DataWord nextKey = new DataWord(HashUtil.randomHash());
+
+        ContractDetailsResponseMessage message = new ContractDetailsResponseMessage(someId, accounts, nextAddress, nextKey);
+
+        byte[] encoded = message.getEncoded();
+
+        Message result = Message.create(encoded);
+
+        Assert.assertNotNull(result);
+        Assert.assertArrayEquals(encoded, result.getEncoded());
+        Assert.assertEquals(MessageType.CONTRACT_DETAILS_RESPONSE_MESSAGE, result.getMessageType());
+
+        ContractDetailsResponseMessage newMessage = (ContractDetailsResponseMessage) result;
+
+        Assert.assertEquals(someId, newMessage.getId());
+        Assert.assertEquals(accounts.size(), newMessage.getAccounts().size());
+
+        for (int k = 0; k < accounts.size(); k++) {
+            ContractDetailsResponseMessage.AccountDetails account = accounts.get(k);
+            ContractDetailsResponseMessage.AccountDetails newAccount = newMessage.getAccounts().get(k);
+
+            Assert.assertEquals(account.getAddress(), newAccount.getAddress());
+            Assert.assertArrayEquals(account.getCode(), newAccount.getCode());
+            Assert.assertEquals(account.getStorage().keySet(), newAccount.getStorage().keySet());
+            account.getStorage().forEach((key, value) -> Assert.assertArrayEquals(value, newAccount.getStorage().get(key)));
+        }
+
+        Assert.assertEquals(nextAddress, newMessage.getNextAddress());
+        Assert.assertEquals(nextKey, newMessage.getNextKey());
+
+        // the last response
+        newMessage = (ContractDetailsResponseMessage) Message.create(new ContractDetailsResponseMessage(someId, accounts, null, null).getEncoded());
+
+        Assert.assertNull(newMessage.getNextAddress());
+        Assert.assertNull(newMessage.getNextKey());
+    }
+
     private static Transaction createTransaction(int number) {
         AccountBuilder acbuilder = new AccountBuilder();
         acbuilder.name("sender" + number);
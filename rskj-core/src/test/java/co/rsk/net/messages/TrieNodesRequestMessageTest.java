@@ -0,0 +1,48 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.net.messages;
+
+import org.ethereum.crypto.HashUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TrieNodesRequestMessageTest {
+
+    @Test
+    public void createMessage() {
+        long id = 42;
+        List<byte[]> hashes = new ArrayList<>();
+        hashes.add(HashUtil.randomHash());
+        hashes.add(HashUtil.randomHash());
+
+        TrieNodesRequestMessage message = new TrieNodesRequestMessage(id, hashes);
+
+        assertEquals(MessageType.TRIE_NODES_REQUEST_MESSAGE, message.getMessageType());
+        assertEquals(MessageType.TRIE_NODES_RESPONSE_MESSAGE, message.getResponseMessageType());
+        assertEquals(id, message.getId());
+        assertEquals(2, message.getHashes().size());
+        assertArrayEquals(hashes.get(0), message.getHashes().get(0));
+        assertArrayEquals(hashes.get(1), message.getHashes().get(1));
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.net.messages;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TrieNodesResponseMessageTest {
+
+    @Test
+    public void createMessage() {
+        long id = 42;
+        List<byte[]> values = new ArrayList<>();
+        values.add(new byte[] { 0x01, 0x02 });
+        values.add(new byte[0]);
+
+        TrieNodesResponseMessage message = new TrieNodesResponseMessage(id, values);
+
+        assertEquals(MessageType.TRIE_NODES_RESPONSE_MESSAGE, message.getMessageType());
+        assertEquals(id, message.getId());
+        assertEquals(2, message.getValues().size());
+        assertArrayEquals(values.get(0), message.getValues().get(0));
+        assertArrayEquals(values.get(1), message.getValues().get(1));
+    }
+}
@@ -18,6 +18,7 @@
 
 package co.rsk.net.simples;
 
+import co.rsk.core.RskAddress;
 import co.rsk.net.*;
 import co.rsk.net.messages.NewBlockHashesMessage;
 import org.ethereum.core.Block;
@@ -25,6 +26,7 @@ import org.ethereum.core.BlockHeader;
 import org.ethereum.core.Blockchain;
 import org.ethereum.core.ImportResult;
 import org.ethereum.db.ByteArrayWrapper;
+import org.ethereum.vm.DataWord;
 
 import java.time.Duration;
 import java.util.ArrayList;
@@ -109,6 +111,14 @@ public class SimpleBlockProcessor implements BlockProcessor {
 
     }
 
+    @Override
+    public void processTrieNodesRequest(MessageChannel sender, long requestId, List<byte[]> hashes) {
+    }
+
+    @Override
+    public void processContractDetailsRequest(MessageChannel sender, long requestId, byte[] stateRoot, RskAddress fromAddress, DataWord fromKey) {
+    }
+
     @Override
     public boolean hasBlock(byte[] hash) {
         return false;
@@ -1,16 +1,22 @@
 package co.rsk.net.sync;
 
 
+import co.rsk.core.RskAddress;
 import co.rsk.net.MessageChannel;
 import co.rsk.net.NodeID;
+import co.rsk.net.messages.TrieNodesRequestMessage;
 import co.rsk.scoring.EventType;
+import org.ethereum.core.Block;
 import org.ethereum.core.BlockHeader;
 import org.ethereum.core.BlockIdentifier;
+import org.ethereum.vm.DataWord;
 
 import javax.annotation.Nonnull;
+import java.math.BigInteger;
 import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.function.LongFunction;
 
 public class SimpleSyncEventsHandler implements SyncEventsHandler {
     private boolean startSyncingWasCalled_;
@@ -32,6 +38,11 @@ public class SimpleSyncEventsHandler implements SyncEventsHandler {
         stopSyncing();
     }
 
+    @Override
+    public void onCompletedStateDownload(List<Block> blocks, BigInteger totalDifficulty) {
+        stopSyncing();
+    }
+
     @Override
     public void startFindingConnectionPoint() {
 
@@ -40,6 +51,12 @@ public class SimpleSyncEventsHandler implements SyncEventsHandler {
     @Override
     public long sendBodyRequest(@Nonnull BlockHeader header, NodeID peerId) { return 0; }
 
+    @Override
+    public void sendTrieNodesRequest(NodeID peerId, LongFunction<TrieNodesRequestMessage> requestById) { }
+
+    @Override
+    public long sendContractDetailsRequest(byte[] stateRoot, RskAddress fromAddress, DataWord fromKey, NodeID peerId) { return 0; }
+
     @Override
     public void sendSkeletonRequest(MessageChannel peer, long height) { }
 
@@ -0,0 +1,208 @@
+package co.rsk.net.sync;
+
+import co.rsk.config.RskSystemProperties;
+import co.rsk.core.RskAddress;
+import co.rsk.db.RepositoryImpl;
+import co.rsk.net.NodeID;
+import co.rsk.net.messages.TrieNodesRequestMessage;
+import co.rsk.net.messages.TrieNodesResponseMessage;
+import co.rsk.trie.Trie;
+import co.rsk.trie.TrieImpl;
+import co.rsk.trie.TrieImplValueTest;
+import co.rsk.trie.TrieStoreImpl;
+import org.ethereum.core.Repository;
+import org.ethereum.datasource.HashMapDB;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.ethereum.TestUtils.randomAddress;
+
+public class StateSnapshotDownloaderTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final RskSystemProperties config = new RskSystemProperties();
+    private final NodeID peerId = new NodeID(new byte[] { 0x01 });
+
+    @Test
+    public void downloadWorldState() {
+        Repository repository = new RepositoryImpl(config, new TrieStoreImpl(new HashMapDB()));
+        RskAddress[] addresses = new RskAddress[1000];
+
+        for (int k = 0; k < addresses.length; k++) {
+            addresses[k] = randomAddress();
+            repository.addBalance(addresses[k], BigInteger.valueOf(k + 1));
+        }
+
+        repository.flush();
+        byte[] root = repository.getRoot();
+
+        HashMapDB dataSource = new HashMapDB();
+        StateSnapshotDownloader downloader = new StateSnapshotDownloader(root, new RepositoryImpl(config, new TrieStoreImpl(dataSource)), TIMEOUT);
+
+        int responses = download(downloader, repository::getTrieNode);
+
+        // the nodes are requested level by level
+        Assert.assertTrue(responses > 1);
+        Assert.assertEquals(dataSource.keys().size(), downloader.getDownloadedNodes());
+        // a value by account
+        Assert.assertEquals(addresses.length, downloader.getDownloadedValues());
+
+        Repository downloaded = new RepositoryImpl(config, new TrieStoreImpl(dataSource));
+        downloaded.syncToRoot(root);
+
+        for (int k = 0; k < addresses.length; k++) {
+            Assert.assertEquals(BigInteger.valueOf(k + 1), downloaded.getBalance(addresses[k]));
+        }
+    }
+
+    @Test
+    public void downloadTrieWithLongValues() {
+        HashMapDB source = new HashMapDB();
+        Trie trie = new TrieImpl(new TrieStoreImpl(source), true);
+
+        for (int k = 0; k < 100; k++) {
+            trie = trie.put(k + "", TrieImplValueTest.makeValue(k + 1));
+        }
+
+        trie.save();
+
+        HashMapDB dataSource = new HashMapDB();
+        StateSnapshotDownloader downloader = new StateSnapshotDownloader(trie.getHash(), new RepositoryImpl(config, new TrieStoreImpl(dataSource)), TIMEOUT);
+
+        download(downloader, source::get);
+
+        Assert.assertEquals(source.keys().size(), dataSource.keys().size());
+        Assert.assertEquals(100, downloader.getDownloadedValues());
+
+        Trie trie2 = new TrieStoreImpl(dataSource).retrieve(trie.getHash());
+
+        for (int k = 0; k < 100; k++) {
+            Assert.assertArrayEquals(TrieImplValueTest.makeValue(k + 1), trie2.get(k + ""));
+        }
+    }
+
+    @Test
+    public void downloadEmptyTrie() {
+        StateSnapshotDownloader downloader = new StateSnapshotDownloader(new TrieImpl().getHash(), new RepositoryImpl(config, new TrieStoreImpl(new HashMapDB())), TIMEOUT);
+
+        Assert.assertTrue(downloader.isCompleted());
+        Assert.assertFalse(downloader.canRequest(peerId));
+        Assert.assertNull(downloader.createRequest(1, peerId));
+    }
+
+    @Test
+    public void rejectInvalidNode() {
+        Trie trie = makeSavedTrie();
+        HashMapDB dataSource = new HashMapDB();
+        StateSnapshotDownloader downloader = new StateSnapshotDownloader(trie.getHash(), new RepositoryImpl(config, new TrieStoreImpl(dataSource)), TIMEOUT);
+
+        TrieNodesRequestMessage request = downloader.createRequest(1, peerId);
+        List<byte[]> values = new ArrayList<>();
+        values.add(new byte[] { 0x01, 0x02 });
+
+        Assert.assertFalse(downloader.processResponse(peerId, new TrieNodesResponseMessage(request.getId(), values)));
+        Assert.assertTrue(dataSource.keys().isEmpty());
+
+        // the root is requested again
+        Assert.assertFalse(downloader.isCompleted());
+        Assert.assertArrayEquals(trie.getHash(), downloader.createRequest(2, peerId).getHashes().get(0));
+    }
+
+    @Test
+    public void requestNodesNotFoundToOtherPeers() {
+        Trie trie = makeSavedTrie();
+        StateSnapshotDownloader downloader = new StateSnapshotDownloader(trie.getHash(), new RepositoryImpl(config, new TrieStoreImpl(new HashMapDB())), TIMEOUT);
+
+        TrieNodesRequestMessage request = downloader.createRequest(1, peerId);
+        List<byte[]> values = new ArrayList<>();
+        values.add(new byte[0]);
+
+        Assert.assertTrue(downloader.processResponse(peerId, new TrieNodesResponseMessage(request.getId(), values)));
+        Assert.assertFalse(downloader.isCompleted());
+
+        // the root is not requested again to the same peer, but to another one
+        NodeID otherPeerId = new NodeID(new byte[] { 0x02 });
+
+        Assert.assertTrue(downloader.hasMissingNodes(Collections.singletonList(peerId)));
+        Assert.assertFalse(downloader.hasMissingNodes(Arrays.asList(peerId, otherPeerId)));
+        Assert.assertFalse(downloader.canRequest(peerId));
+        Assert.assertNull(downloader.createRequest(2, peerId));
+        Assert.assertTrue(downloader.canRequest(otherPeerId));
+
+        request = downloader.createRequest(3, otherPeerId);
+
+        Assert.assertArrayEquals(trie.getHash(), request.getHashes().get(0));
+
+        // no peer has the root
+        Assert.assertTrue(downloader.processResponse(otherPeerId, new TrieNodesResponseMessage(request.getId(), values)));
+        Assert.assertTrue(downloader.hasMissingNodes(Arrays.asList(peerId, otherPeerId)));
+    }
+
+    @Test
+    public void ignoreResponseFromOtherPeer() {
+        Trie trie = makeSavedTrie();
+        HashMapDB dataSource = new HashMapDB();
+        StateSnapshotDownloader downloader = new StateSnapshotDownloader(trie.getHash(), new RepositoryImpl(config, new TrieStoreImpl(dataSource)), TIMEOUT);
+
+        TrieNodesRequestMessage request = downloader.createRequest(1, peerId);
+        List<byte[]> values = new ArrayList<>();
+        values.add(trie.toMessage());
+
+        Assert.assertTrue(downloader.processResponse(new NodeID(new byte[] { 0x02 }), new TrieNodesResponseMessage(request.getId(), values)));
+        Assert.assertTrue(dataSource.keys().isEmpty());
+        Assert.assertEquals(0, downloader.getDownloadedNodes());
+    }
+
+    @Test
+    public void requestAgainAfterTimeout() {
+        Trie trie = makeSavedTrie();
+        StateSnapshotDownloader downloader = new StateSnapshotDownloader(trie.getHash(), new RepositoryImpl(config, new TrieStoreImpl(new HashMapDB())), TIMEOUT);
+
+        downloader.createRequest(1, peerId);
+
+        Assert.assertFalse(downloader.canRequest(peerId));
+        Assert.assertTrue(downloader.tick(TIMEOUT.minusSeconds(1)).isEmpty());
+
+        List<NodeID> timedOutPeers = downloader.tick(Duration.ofSeconds(1));
+
+        Assert.assertEquals(1, timedOutPeers.size());
+        Assert.assertEquals(peerId, timedOutPeers.get(0));
+        Assert.assertTrue(downloader.canRequest(peerId));
+        Assert.assertArrayEquals(trie.getHash(), downloader.createRequest(2, peerId).getHashes().get(0));
+    }
+
+    private static Trie makeSavedTrie() {
+        Trie trie = new TrieImpl(new TrieStoreImpl(new HashMapDB()), true)
+                .put("foo", "abc".getBytes())
+                .put("bar", "def".getBytes());
+
+        trie.save();
+
+        return trie;
+    }
+
+    private int download(StateSnapshotDownloader downloader, Function<byte[], byte[]> source) {
+        int responses = 0;
+
+        for (long id = 1; !downloader.isCompleted(); id++) {
+            TrieNodesRequestMessage request = downloader.createRequest(id, peerId);
+            Assert.assertTrue(request.getHashes().size() <= TrieNodesRequestMessage.MAX_HASHES);
+
+            List<byte[]> values = new ArrayList<>();
+            request.getHashes().forEach(h -> values.add(source.apply(h)));
+
+            Assert.assertTrue(downloader.processResponse(peerId, new TrieNodesResponseMessage(id, values)));
+            responses++;
+        }
+
+        return responses;
+    }
+}
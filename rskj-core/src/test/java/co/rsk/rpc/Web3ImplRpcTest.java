@@ -19,6 +19,7 @@
 package co.rsk.rpc;
 
 import co.rsk.config.RskSystemProperties;
+import co.rsk.core.TransactionSenderCache;
 import co.rsk.rpc.modules.personal.PersonalModule;
 import co.rsk.rpc.modules.personal.PersonalModuleWalletDisabled;
 import org.ethereum.core.Blockchain;
@@ -43,7 +44,7 @@ public class Web3ImplRpcTest {
         PendingState pendingState = Web3Mocks.getMockPendingState();
         PersonalModule pm = new PersonalModuleWalletDisabled();
         Repository repository = Web3Mocks.getMockRepository();
-        Web3Impl web3 = new Web3RskImpl(eth, blockchain, pendingState, new RskSystemProperties(), null, null, pm, null, null, repository, null, null, null, null, null, null, null);
+        Web3Impl web3 = new Web3RskImpl(eth, blockchain, pendingState, new RskSystemProperties(), null, null, pm, null, null, repository, null, null, null, null, null, null, null, null, new TransactionSenderCache(100));
 
         Map<String, String> result = web3.rpc_modules();
 
@@ -21,6 +21,7 @@ package co.rsk.rpc;
 import co.rsk.config.RskSystemProperties;
 import co.rsk.core.NetworkStateExporter;
 import co.rsk.core.Rsk;
+import co.rsk.core.TransactionSenderCache;
 import co.rsk.core.Wallet;
 import co.rsk.core.WalletFactory;
 import co.rsk.peg.PegTestUtils;
@@ -69,7 +70,7 @@ public class Web3RskImplTest {
         RskSystemProperties config = new RskSystemProperties();
         PersonalModule pm = new PersonalModuleWalletEnabled(config, rsk, wallet, null);
         EthModule em = new EthModule(config, rsk, new EthModuleSolidityDisabled(), new EthModuleWalletEnabled(config, rsk, wallet, null));
-        Web3RskImpl web3 = new Web3RskImpl(rsk, blockchain, Web3Mocks.getMockPendingState(), config, Web3Mocks.getMockMinerClient(), Web3Mocks.getMockMinerServer(), pm, em, Web3Mocks.getMockChannelManager(), Web3Mocks.getMockRepository(), null, networkStateExporter, blockStore, null, null, null, null);
+        Web3RskImpl web3 = new Web3RskImpl(rsk, blockchain, Web3Mocks.getMockPendingState(), config, Web3Mocks.getMockMinerClient(), Web3Mocks.getMockMinerServer(), pm, em, Web3Mocks.getMockChannelManager(), Web3Mocks.getMockRepository(), null, networkStateExporter, blockStore, null, null, null, null, null, new TransactionSenderCache(100));
         web3.ext_dumpState();
     }
 
@@ -0,0 +1,96 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.trie;
+
+import org.ethereum.datasource.HashMapDB;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public class TrieExporterTest {
+    @Test
+    public void exportAndImportTrie() throws IOException {
+        HashMapDB map = new HashMapDB();
+        Trie trie = new TrieImpl(new TrieStoreImpl(map), true);
+
+        // enough data for many chunks
+        for (int k = 0; k < 20000; k++) {
+            trie = trie.put(k + "", TrieImplValueTest.makeValue(k % 100 + 1));
+        }
+
+        trie.save();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long entries = new TrieExporter(new TrieStoreImpl(map)).export(trie.getHash(), output);
+
+        Assert.assertTrue(output.size() > TrieExporter.CHUNK_SIZE * 2);
+        // repeated long values are written once for each node
+        Assert.assertTrue(entries > map.keys().size());
+
+        HashMapDB imported = new HashMapDB();
+        byte[] root = new TrieImporter(imported).importFrom(new ByteArrayInputStream(output.toByteArray()));
+
+        Assert.assertArrayEquals(trie.getHash(), root);
+        Assert.assertEquals(map.keys().size(), imported.keys().size());
+
+        Trie trie2 = new TrieStoreImpl(imported).retrieve(root);
+
+        for (int k = 0; k < 20000; k++) {
+            Assert.assertArrayEquals(TrieImplValueTest.makeValue(k % 100 + 1), trie2.get(k + ""));
+        }
+    }
+
+    @Test
+    public void exportAndImportEmptyTrie() throws IOException {
+        Trie trie = new TrieImpl(new TrieStoreImpl(new HashMapDB()), true);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long entries = new TrieExporter(((TrieImpl) trie).getStore()).export(trie.getHash(), output);
+
+        Assert.assertEquals(0, entries);
+
+        HashMapDB imported = new HashMapDB();
+        byte[] root = new TrieImporter(imported).importFrom(new ByteArrayInputStream(output.toByteArray()));
+
+        Assert.assertArrayEquals(trie.getHash(), root);
+        Assert.assertTrue(imported.keys().isEmpty());
+    }
+
+    @Test(expected = TrieSerializationException.class)
+    public void rejectCorruptedChunk() throws IOException {
+        HashMapDB map = new HashMapDB();
+        Trie trie = new TrieImpl(new TrieStoreImpl(map), true)
+                .put("foo", "abc".getBytes())
+                .put("bar", TrieImplValueTest.makeValue(100));
+
+        trie.save();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new TrieExporter(new TrieStoreImpl(map)).export(trie.getHash(), output);
+
+        byte[] bytes = output.toByteArray();
+        // a byte of the first entry
+        bytes[Short.BYTES + 32 + Integer.BYTES * 2 + 10] ^= 1;
+
+        new TrieImporter(new HashMapDB()).importFrom(new ByteArrayInputStream(bytes));
+    }
+}
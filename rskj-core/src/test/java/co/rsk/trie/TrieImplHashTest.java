@@ -18,11 +18,15 @@
 
 package co.rsk.trie;
 
+import org.ethereum.datasource.HashMapDB;
 import org.ethereum.util.RLP;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
 
+import java.lang.management.ManagementFactory;
 import java.util.Arrays;
+import java.util.Random;
 
 import static org.ethereum.crypto.HashUtil.sha3;
 import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
@@ -189,6 +193,97 @@ public class TrieImplHashTest {
         Assert.assertFalse(Arrays.equals(trie1.getHash(), trie2.getHash()));
     }
 
+    @Test
+    public void getSha3HashWithoutCopying() {
+        Trie trie = new TrieImpl()
+                .put("foo", "abc".getBytes())
+                .put("bar", TrieImplValueTest.makeValue(100));
+
+        Assert.assertSame(trie.getSha3Hash(), trie.getSha3Hash());
+        Assert.assertArrayEquals(trie.getHash(), trie.getSha3Hash().getBytes());
+        Assert.assertNotSame(trie.getHash(), trie.getSha3Hash().getBytes());
+        Assert.assertArrayEquals(emptyHash, new TrieImpl().getSha3Hash().getBytes());
+    }
+
+    @Test
+    public void getSameHashInParallel() {
+        Trie trie1 = putRandomValues(new TrieImpl(false), new Random(1), 5000);
+        Trie trie2 = putRandomValues(new TrieImpl(makeParallelStore(1), false), new Random(1), 5000);
+
+        Assert.assertArrayEquals(trie1.getHash(), trie2.getHash());
+
+        // only the updated nodes are hashed again
+        trie1 = putRandomValues(trie1, new Random(2), 100);
+        trie2 = putRandomValues(trie2, new Random(2), 100);
+
+        Assert.assertArrayEquals(trie1.getHash(), trie2.getHash());
+    }
+
+    @Ignore
+    @Test
+    public void hashRandomUpdates() {
+        for (int nkeys : new int[] { 10_000, 100_000 }) {
+            for (int threshold : new int[] { 0, 1000 }) {
+                Trie trie = putRandomValues(new TrieImpl(makeParallelStore(threshold), false), new Random(1), nkeys);
+
+                long start = System.nanoTime();
+                trie.getHash();
+                long time = System.nanoTime() - start;
+
+                System.out.println(String.format("Hashed %d random keys in %d ms, threshold %d",
+                        nkeys, time / 1_000_000, threshold));
+            }
+        }
+    }
+
+    @Ignore
+    @Test
+    public void putAndGetHashAllocations() {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int ncycles = 100_000;
+
+        Trie trie = makeRandomTrie(new Random(1), 10_000);
+        trie.getHash();
+
+        Random random = new Random(2);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+
+        for (int k = 0; k < ncycles; k++) {
+            trie = putRandomValues(trie, random, 1);
+            trie.getSha3Hash();
+        }
+
+        long time = System.nanoTime() - start;
+        allocated = threadBean.getThreadAllocatedBytes(threadId) - allocated;
+
+        System.out.println(String.format("%d put and hash cycles in %d ms, %d bytes allocated per cycle",
+                ncycles, time / 1_000_000, allocated / ncycles));
+    }
+
+    private static Trie makeRandomTrie(Random random, int nkeys) {
+        return putRandomValues(new TrieImpl(false), random, nkeys);
+    }
+
+    private static TrieStore makeParallelStore(int threshold) {
+        return new TrieStoreImpl(new HashMapDB(), null, threshold);
+    }
+
+    private static Trie putRandomValues(Trie trie, Random random, int nkeys) {
+        Trie result = trie;
+
+        for (int k = 0; k < nkeys; k++) {
+            byte[] key = new byte[32];
+            byte[] value = new byte[1 + random.nextInt(64)];
+            random.nextBytes(key);
+            random.nextBytes(value);
+            result = result.put(key, value);
+        }
+
+        return result;
+    }
+
     public static byte[] makeEmptyHash() {
         return sha3(RLP.encodeElement(EMPTY_BYTE_ARRAY));
     }
@@ -21,6 +21,11 @@ package co.rsk.trie;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 /**
  * Created by ajlopez on 11/01/2017.
  */
@@ -236,4 +241,28 @@ public class TrieImplKeyValueTest {
             Assert.assertArrayEquals(expected, value);
         }
     }
+
+    @Test
+    public void collectValuesAfterKeyInKeyOrder() {
+        Trie trie = new TrieImpl();
+
+        for (int k = 0; k < 100; k++)
+            trie = trie.put(k + "", (k + "").getBytes());
+
+        List<String> keys = IntStream.range(0, 100).mapToObj(k -> k + "").sorted().collect(Collectors.toList());
+
+        Assert.assertEquals(keys.subList(0, 5), collectValues(trie, null, 5));
+        Assert.assertEquals(keys.subList(keys.indexOf("42") + 1, keys.indexOf("42") + 11), collectValues(trie, "42", 10));
+        // the key is not in the trie
+        Assert.assertEquals(keys.subList(keys.indexOf("43"), keys.indexOf("43") + 3), collectValues(trie, "425", 3));
+        Assert.assertEquals(keys.subList(keys.indexOf("90"), keys.size()), collectValues(trie, "9", 100));
+        Assert.assertTrue(collectValues(trie, "99", 100).isEmpty());
+    }
+
+    private static List<String> collectValues(Trie trie, String fromKey, int limit) {
+        List<byte[]> values = new ArrayList<>();
+        ((TrieImpl) trie).collectValues(fromKey == null ? null : fromKey.getBytes(), limit, values);
+
+        return values.stream().map(String::new).collect(Collectors.toList());
+    }
 }
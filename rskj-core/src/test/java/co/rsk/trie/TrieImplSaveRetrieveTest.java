@@ -23,6 +23,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Map;
 
 /**
  * Created by ajlopez on 11/01/2017.
@@ -53,6 +54,29 @@ public class TrieImplSaveRetrieveTest {
         }
     }
 
+    @Test
+    public void retrieveLongValueOnlyWhenUsed() {
+        HashMapDB map = new HashMapDB();
+        ValueCountingTrieStore store = new ValueCountingTrieStore(map);
+
+        Trie trie = new TrieImpl(store, false)
+                .put("foo", TrieImplValueTest.makeValue(100))
+                .put("bar", TrieImplValueTest.makeValue(10));
+
+        trie.save();
+
+        Trie trie2 = store.retrieve(trie.getHash());
+
+        Assert.assertArrayEquals(trie.getHash(), trie2.getHash());
+        Assert.assertArrayEquals(trie.toMessage(), trie2.toMessage());
+        Assert.assertArrayEquals(TrieImplValueTest.makeValue(10), trie2.get("bar"));
+        Assert.assertEquals(0, store.valueRetrieves);
+
+        Assert.assertArrayEquals(TrieImplValueTest.makeValue(100), trie2.get("foo"));
+        Assert.assertArrayEquals(TrieImplValueTest.makeValue(100), trie2.get("foo"));
+        Assert.assertEquals(1, store.valueRetrieves);
+    }
+
     @Test
     public void updateSaveRetrieveAndGetOneThousandKeyLongValues() {
         HashMapDB map = new HashMapDB();
@@ -301,4 +325,78 @@ public class TrieImplSaveRetrieveTest {
         Assert.assertArrayEquals(trie.get("bar"), trie2.get("bar"));
         Assert.assertArrayEquals(trie.get("answer"), trie2.get("answer"));
     }
+
+    @Test
+    public void saveTrieInSingleBatch() {
+        BatchCountingHashMapDB map = new BatchCountingHashMapDB();
+        TrieStoreImpl store = new TrieStoreImpl(map);
+
+        Trie trie = new TrieImpl(store, false);
+
+        for (int k = 0; k < 100; k++)
+            trie = trie.put(k + "", TrieImplValueTest.makeValue(k + 1));
+
+        trie.save();
+
+        Assert.assertEquals(1, map.batches);
+        Assert.assertEquals(0, map.puts);
+        Assert.assertEquals(trie.trieSize() + 68, map.keys().size());
+
+        trie.save();
+
+        Assert.assertEquals(1, map.batches);
+    }
+
+    @Test
+    public void saveOnlyUnsavedNodes() {
+        BatchCountingHashMapDB map = new BatchCountingHashMapDB();
+        TrieStoreImpl store = new TrieStoreImpl(map);
+
+        Trie trie = new TrieImpl(store, false);
+
+        for (int k = 0; k < 100; k++)
+            trie = trie.put(k + "", (k + "").getBytes());
+
+        trie.save();
+
+        int saveCount = store.getSaveCount();
+
+        trie = trie.put("foo", "bar".getBytes());
+        trie.save();
+
+        Assert.assertEquals(2, map.batches);
+        Assert.assertTrue(store.getSaveCount() - saveCount < trie.trieSize());
+        Assert.assertEquals(trie.trieSize(), store.retrieve(trie.getHash()).trieSize());
+    }
+
+    private static class BatchCountingHashMapDB extends HashMapDB {
+        private int batches;
+        private int puts;
+
+        @Override
+        public byte[] put(byte[] key, byte[] value) {
+            this.puts++;
+            return super.put(key, value);
+        }
+
+        @Override
+        public synchronized void updateBatch(Map<byte[], byte[]> rows) {
+            this.batches++;
+            super.updateBatch(rows);
+        }
+    }
+
+    private static class ValueCountingTrieStore extends TrieStoreImpl {
+        private int valueRetrieves;
+
+        ValueCountingTrieStore(HashMapDB map) {
+            super(map);
+        }
+
+        @Override
+        public byte[] retrieveValue(byte[] hash) {
+            this.valueRetrieves++;
+            return super.retrieveValue(hash);
+        }
+    }
 }
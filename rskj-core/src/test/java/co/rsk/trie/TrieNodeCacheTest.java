@@ -0,0 +1,130 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.trie;
+
+import org.ethereum.datasource.HashMapDB;
+import org.ethereum.db.ByteArrayWrapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.ethereum.crypto.SHA3Helper.sha3;
+
+public class TrieNodeCacheTest {
+    @Test
+    public void getUnknownNode() {
+        TrieNodeCache cache = new TrieNodeCache(1000);
+
+        Assert.assertNull(cache.get(sha3("foo".getBytes())));
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void putAndGetNode() {
+        TrieNodeCache cache = new TrieNodeCache(1000);
+        byte[] message = new byte[] { 1, 2, 3 };
+
+        cache.put(sha3(message), message);
+
+        Assert.assertArrayEquals(message, cache.get(sha3(message)));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.size());
+        Assert.assertTrue(cache.getSizeInBytes() > message.length);
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedNodesWhenFull() {
+        byte[] message1 = new byte[100];
+        byte[] message2 = new byte[200];
+        byte[] message3 = new byte[300];
+
+        TrieNodeCache cache = new TrieNodeCache(800);
+
+        cache.put(sha3(message1), message1);
+        cache.put(sha3(message2), message2);
+        cache.get(sha3(message1));
+
+        Assert.assertEquals(0, cache.getEvictions());
+
+        cache.put(sha3(message3), message3);
+
+        Assert.assertTrue(cache.getSizeInBytes() <= 800);
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertNotNull(cache.get(sha3(message1)));
+        Assert.assertNull(cache.get(sha3(message2)));
+        Assert.assertNotNull(cache.get(sha3(message3)));
+    }
+
+    @Test
+    public void shrinkCache() {
+        TrieNodeCache cache = new TrieNodeCache(100000);
+
+        for (int k = 0; k < 100; k++) {
+            byte[] message = new byte[] { (byte) k };
+            cache.put(sha3(message), message);
+        }
+
+        Assert.assertEquals(100, cache.size());
+
+        cache.setMaxSizeInBytes(cache.getSizeInBytes() / 2);
+
+        Assert.assertEquals(50, cache.size());
+        Assert.assertEquals(50, cache.getEvictions());
+    }
+
+    @Test
+    public void replaceNodeDoesNotChangeSize() {
+        TrieNodeCache cache = new TrieNodeCache(1000);
+        byte[] message = new byte[] { 1, 2, 3 };
+
+        cache.put(sha3(message), message);
+        long size = cache.getSizeInBytes();
+        cache.put(sha3(message), message);
+
+        Assert.assertEquals(size, cache.getSizeInBytes());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void keepNodeSavedByTwoStoresUntilBothAreWritten() {
+        TrieNodeCache cache = new TrieNodeCache(0);
+        HashMapDB store1 = new HashMapDB();
+        HashMapDB store2 = new HashMapDB();
+        byte[] message = new byte[] { 1, 2, 3 };
+
+        cache.queueWrite(store1, Collections.singletonMap(new ByteArrayWrapper(sha3(message)), message));
+        Runnable writes1 = cache.takeWrites();
+        cache.queueWrite(store2, Collections.singletonMap(new ByteArrayWrapper(sha3(message)), message));
+        Runnable writes2 = cache.takeWrites();
+
+        writes1.run();
+
+        Assert.assertArrayEquals(message, store1.get(sha3(message)));
+        Assert.assertNull(store2.get(sha3(message)));
+        Assert.assertArrayEquals(message, cache.get(sha3(message)));
+
+        writes2.run();
+
+        Assert.assertArrayEquals(message, store2.get(sha3(message)));
+        Assert.assertEquals(0, cache.getUnwrittenCount());
+        Assert.assertNull(cache.get(sha3(message)));
+    }
+}
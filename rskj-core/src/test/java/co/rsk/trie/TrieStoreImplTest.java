@@ -265,4 +265,83 @@ public class TrieStoreImplTest {
         Assert.assertArrayEquals("bar".getBytes(), result.get("foo"));
         Assert.assertArrayEquals("foo".getBytes(), result.get("bar"));
     }
+
+    @Test
+    public void retrieveTrieNodeFromCache() {
+        HashMapDB map = new HashMapDB();
+        TrieNodeCache cache = new TrieNodeCache(1024 * 1024);
+        TrieStoreImpl store = new TrieStoreImpl(map, cache);
+
+        Trie trie = new TrieImpl(store, false).put("foo", "bar".getBytes());
+
+        store.save(trie);
+        store.takeWrites().run();
+
+        Assert.assertNotNull(store.retrieve(trie.getHash()));
+        Assert.assertEquals(1, cache.getMisses());
+
+        map.delete(trie.getHash());
+
+        Trie newTrie = store.retrieve(trie.getHash());
+
+        Assert.assertNotNull(newTrie);
+        Assert.assertArrayEquals(trie.getHash(), newTrie.getHash());
+        Assert.assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void cacheIsSharedByStores() {
+        TrieNodeCache cache = new TrieNodeCache(1024 * 1024);
+        TrieStoreImpl store1 = new TrieStoreImpl(new HashMapDB(), cache);
+        TrieStoreImpl store2 = new TrieStoreImpl(new HashMapDB(), cache);
+
+        Trie trie = new TrieImpl(store1, false).put("foo", "bar".getBytes());
+
+        store1.save(trie);
+        store1.takeWrites().run();
+        store1.retrieve(trie.getHash());
+
+        Trie newTrie = store2.retrieve(trie.getHash());
+
+        Assert.assertNotNull(newTrie);
+        Assert.assertArrayEquals("bar".getBytes(), newTrie.get("foo"));
+    }
+
+    @Test
+    public void storeWithoutCacheDoesNotRetrieveNodesOfOtherStores() {
+        TrieNodeCache cache = new TrieNodeCache(1024 * 1024);
+        TrieStoreImpl store1 = new TrieStoreImpl(new HashMapDB(), cache);
+        TrieStoreImpl store2 = new TrieStoreImpl(new HashMapDB());
+
+        Trie trie = new TrieImpl(store1, false).put("foo", "bar".getBytes());
+
+        store1.save(trie);
+        store1.retrieve(trie.getHash());
+
+        Assert.assertNull(store2.retrieve(trie.getHash()));
+    }
+
+    @Test
+    public void storeWithCacheWritesSavedNodesWhenTaken() {
+        HashMapDB map = new HashMapDB();
+        TrieNodeCache cache = new TrieNodeCache(0);
+        TrieStoreImpl store = new TrieStoreImpl(map, cache);
+
+        Trie trie = new TrieImpl(store, false).put("foo", "bar".getBytes());
+
+        store.save(trie);
+
+        Assert.assertTrue(map.keys().isEmpty());
+        Assert.assertArrayEquals("bar".getBytes(), store.retrieve(trie.getHash()).get("foo"));
+
+        Runnable writes = store.takeWrites();
+
+        Assert.assertEquals(1, cache.getUnwrittenCount());
+
+        writes.run();
+
+        Assert.assertNotNull(map.get(trie.getHash()));
+        Assert.assertEquals(0, cache.getUnwrittenCount());
+        Assert.assertArrayEquals("bar".getBytes(), store.retrieve(trie.getHash()).get("foo"));
+    }
 }
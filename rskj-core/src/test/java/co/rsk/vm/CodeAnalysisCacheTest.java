@@ -0,0 +1,81 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.vm;
+
+import org.ethereum.crypto.HashUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CodeAnalysisCacheTest {
+    @Test
+    public void getUnknownAnalysis() {
+        CodeAnalysisCache cache = new CodeAnalysisCache(10);
+
+        Assert.assertNull(cache.get(HashUtil.sha3(new byte[] { 0x01 }), 1));
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void putAndGetAnalysis() {
+        CodeAnalysisCache cache = new CodeAnalysisCache(10);
+        byte[] hash = HashUtil.sha3(new byte[] { 0x01 });
+        CodeAnalysis analysis = createAnalysis(10);
+
+        cache.put(hash, analysis);
+
+        Assert.assertSame(analysis, cache.get(hash, 10));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(0, cache.getMisses());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void analysisOfCodeWithAnotherLengthIsNotReturned() {
+        CodeAnalysisCache cache = new CodeAnalysisCache(10);
+        byte[] hash = HashUtil.sha3(new byte[] { 0x01 });
+
+        cache.put(hash, createAnalysis(10));
+
+        Assert.assertNull(cache.get(hash, 11));
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedAnalysis() {
+        CodeAnalysisCache cache = new CodeAnalysisCache(2);
+        byte[] hash1 = HashUtil.sha3(new byte[] { 0x01 });
+        byte[] hash2 = HashUtil.sha3(new byte[] { 0x02 });
+        byte[] hash3 = HashUtil.sha3(new byte[] { 0x03 });
+
+        cache.put(hash1, createAnalysis(10));
+        cache.put(hash2, createAnalysis(10));
+        cache.get(hash1, 10);
+        cache.put(hash3, createAnalysis(10));
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNotNull(cache.get(hash1, 10));
+        Assert.assertNull(cache.get(hash2, 10));
+        Assert.assertNotNull(cache.get(hash3, 10));
+    }
+
+    private static CodeAnalysis createAnalysis(int codeLength) {
+        return new CodeAnalysis(codeLength, (byte) 0, (byte) 0, 0, new BitSet(codeLength));
+    }
+}
@@ -19,6 +19,7 @@
 package co.rsk.vm;
 
 import co.rsk.config.RskSystemProperties;
+import org.ethereum.crypto.HashUtil;
 import org.ethereum.vm.DataWord;
 import org.ethereum.vm.VM;
 import org.ethereum.vm.program.Program;
@@ -257,6 +258,22 @@ public class VMExecutionTest {
         Assert.assertTrue(jumpdestSet.get(3));
     }
 
+    @Test
+    public void programsWithSameCodeHashShareJumpdests() {
+        byte[] code = compiler.compile("JUMPDEST PUSH1 0x5b JUMPDEST");
+        byte[] codeHash = HashUtil.sha3(code);
+        CodeAnalysisCache cache = new CodeAnalysisCache(10);
+
+        Program program1 = new Program(config, code, codeHash, invoke, null, cache);
+        Program program2 = new Program(config, code, codeHash, invoke, null, cache);
+
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertSame(program1.getJumpdestSet(), program2.getJumpdestSet());
+        Assert.assertTrue(program2.getJumpdestSet().get(0));
+        Assert.assertFalse(program2.getJumpdestSet().get(2));
+        Assert.assertTrue(program2.getJumpdestSet().get(3));
+    }
+
     @Test
     public void swapnArgumentIsNotJumpdest() {
         byte[] code = compiler.compile("JUMPDEST SWAPN 0x5b 0x5b");
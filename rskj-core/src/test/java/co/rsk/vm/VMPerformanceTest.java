@@ -616,6 +616,39 @@ public class VMPerformanceTest {
     Avg Time per instructions [ns]: 99
     -----------------------------------------------------------------------------*/
 
+    @Ignore //
+    @Test
+    public void testMemoryLongTime() {
+        /********************************************************************************************
+         * Memory intensive loop, similar to ABI encoding: reads and writes 1024 consecutive words
+         * and hashes them, 10000 times.
+
+         PUSH2 0x2710            // k
+         JUMPDEST                // outer loop (0x03)
+         PUSH2 0x0400            // i
+         JUMPDEST                // inner loop (0x07)
+         DUP1 PUSH1 0x20 MUL     // address = i * 32
+         DUP1 MLOAD DUP3 ADD     // m[address] + i
+         SWAP1 MSTORE
+         PUSH1 0x01 SWAP1 SUB    // i--
+         DUP1 PUSH1 0x07 JUMPI
+         POP
+         PUSH2 0x8000 PUSH1 0x20 SHA3 POP
+         PUSH1 0x01 SWAP1 SUB    // k--
+         DUP1 PUSH1 0x03 JUMPI
+         PUSH1 0x20 PUSH2 0x8000 RETURN
+         ********************************************************************************************/
+        vm = new VM(config);
+
+        byte[] code = Hex.decode("6127105b6104005b806020028051820190526001900380600757506180006020205060019003806003576020618000f3");
+
+        // the word at 0x8000 accumulates i = 1024 on each of the 10000 outer iterations
+        String s_expected = "00000000000000000000000000000000000000000000000000000000009C4000";
+
+        Program.setUseDataWordPool(true);
+        testRunTime(code, s_expected);
+    }
+
     public void testRunTime(byte[] code, String s_expected) {
         program = new Program(config, code, invoke);
         System.out.println("-----------------------------------------------------------------------------");
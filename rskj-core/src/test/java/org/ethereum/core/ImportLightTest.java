@@ -21,6 +21,8 @@ package org.ethereum.core;
 
 import co.rsk.core.RskAddress;
 import co.rsk.config.RskSystemProperties;
+import co.rsk.core.TransactionSenderCache;
+import co.rsk.core.bc.BlockChainFlusher;
 import co.rsk.core.bc.BlockChainImpl;
 import co.rsk.core.bc.PendingStateImpl;
 import co.rsk.db.RepositoryImpl;
@@ -38,6 +40,7 @@ import org.ethereum.manager.AdminInfo;
 
 import java.math.BigInteger;
 import java.util.HashMap;
+import org.ethereum.vm.program.invoke.ProgramInvokeFactoryImpl;
 
 /**
  * Created by Anton Nashatyrev on 29.12.2015.
@@ -70,12 +73,15 @@ public class ImportLightTest {
                 null,
                 listener,
                 new AdminInfo(),
-                new DummyBlockValidator()
+                new DummyBlockValidator(),
+                new TransactionSenderCache(config.senderCacheSize()),
+                new ProgramInvokeFactoryImpl(),
+                new BlockChainFlusher(repository, blockStore)
         );
 
         blockchain.setNoValidation(true);
 
-        PendingStateImpl pendingState = new PendingStateImpl(config, repository, null, blockchain.getReceiptStore(), null, listener, 10, 100);
+        PendingStateImpl pendingState = new PendingStateImpl(config, repository, null, blockchain.getReceiptStore(), null, listener, 10, 100, new TransactionSenderCache(100));
 
         blockchain.setPendingState(pendingState);
 
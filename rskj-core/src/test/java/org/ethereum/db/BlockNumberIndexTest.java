@@ -0,0 +1,369 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ethereum.db;
+
+import co.rsk.blockchain.utils.BlockGenerator;
+import co.rsk.config.RskSystemProperties;
+import org.ethereum.core.Block;
+import org.ethereum.datasource.HashMapDB;
+import org.ethereum.db.IndexedBlockStore.BlockInfo;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.ethereum.TestUtils.createIndexMap;
+import static org.ethereum.TestUtils.randomBytes;
+
+public class BlockNumberIndexTest {
+    @Rule
+    public TemporaryFolder tempRule = new TemporaryFolder();
+
+    private final RskSystemProperties config = new RskSystemProperties();
+
+    @Test
+    public void putAndGetLevels() throws IOException {
+        File directory = tempRule.newFolder();
+        BlockInfo main = blockInfo(randomBytes(32), BigInteger.TEN, true);
+        BlockInfo fork = blockInfo(randomBytes(32), BigInteger.ONE, false);
+        List<BlockInfo> level = new ArrayList<>();
+        level.add(fork);
+        level.add(main);
+
+        BlockNumberIndex index = openIndex(directory);
+        index.put(0L, level);
+        index.put(2L, singleton(blockInfo(randomBytes(32), BigInteger.valueOf(20), false)));
+        index.close();
+
+        index = openIndex(directory);
+
+        Assert.assertEquals(3, index.size());
+        Assert.assertTrue(index.containsKey(1L));
+        Assert.assertFalse(index.containsKey(3L));
+        Assert.assertNull(index.get(3L));
+        Assert.assertTrue(index.get(1L).isEmpty());
+
+        List<BlockInfo> infos = index.get(0L);
+
+        Assert.assertEquals(2, infos.size());
+        assertBlockInfo(main, infos.get(0));
+        assertBlockInfo(fork, infos.get(1));
+
+        infos = index.get(2L);
+
+        Assert.assertEquals(1, infos.size());
+        Assert.assertFalse(infos.get(0).isMainChain());
+        Assert.assertEquals(BigInteger.valueOf(20), infos.get(0).getCummDifficulty());
+    }
+
+    @Test
+    public void changeMainChainBlock() throws IOException {
+        File directory = tempRule.newFolder();
+        BlockInfo block1 = blockInfo(randomBytes(32), BigInteger.ONE, true);
+        BlockInfo block2 = blockInfo(randomBytes(32), BigInteger.TEN, false);
+        List<BlockInfo> level = new ArrayList<>();
+        level.add(block1);
+        level.add(block2);
+
+        BlockNumberIndex index = openIndex(directory);
+        index.put(0L, level);
+
+        block1.setMainChain(false);
+        block2.setMainChain(true);
+        index.put(0L, level);
+        index.close();
+
+        List<BlockInfo> infos = openIndex(directory).get(0L);
+
+        Assert.assertEquals(2, infos.size());
+        assertBlockInfo(block2, infos.get(0));
+        assertBlockInfo(block1, infos.get(1));
+    }
+
+    @Test
+    public void discardInterruptedLogRecord() throws IOException {
+        File directory = tempRule.newFolder();
+        BlockInfo fork = blockInfo(randomBytes(32), BigInteger.ONE, false);
+
+        BlockNumberIndex index = openIndex(directory);
+        index.put(0L, singleton(fork));
+        index.close();
+
+        File logFile = new File(directory, "index.log");
+        long length = logFile.length();
+
+        // a record written in part
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+            file.seek(length);
+            file.writeLong(0);
+            file.write(new byte[64]);
+            file.writeInt(1);
+            file.write(randomBytes(10));
+        }
+
+        index = openIndex(directory);
+
+        Assert.assertEquals(length, logFile.length());
+        assertBlockInfo(fork, index.get(0L).get(0));
+
+        // the next records are appended after the valid ones
+        index.put(0L, singleton(blockInfo(fork.getHash(), BigInteger.TEN, false)));
+        index.close();
+
+        Assert.assertEquals(BigInteger.TEN, openIndex(directory).get(0L).get(0).getCummDifficulty());
+    }
+
+    @Test
+    public void discardLevelsPutAfterLastFlush() throws IOException {
+        File directory = tempRule.newFolder();
+        BlockInfo main = blockInfo(randomBytes(32), BigInteger.TEN, true);
+
+        BlockNumberIndex index = openIndex(directory);
+        index.put(0L, singleton(main));
+        index.flush();
+
+        File logFile = new File(directory, "index.log");
+        long length = logFile.length();
+
+        // more records than the log buffer, written to the file without a flush
+        for (long number = 1; number <= 1000; number++) {
+            index.put(number, singleton(blockInfo(randomBytes(32), BigInteger.valueOf(number), true)));
+        }
+
+        Assert.assertTrue(logFile.length() > length);
+
+        BlockNumberIndex reopened = openIndex(directory);
+
+        // the log is written again without the discarded records
+        Assert.assertTrue(logFile.length() <= length);
+        Assert.assertEquals(1, reopened.size());
+        assertBlockInfo(main, reopened.get(0L).get(0));
+    }
+
+    @Test
+    public void commitLevelsPutBeforePrepareFlush() throws IOException {
+        File directory = tempRule.newFolder();
+        BlockInfo main = blockInfo(randomBytes(32), BigInteger.ONE, true);
+        BlockInfo fork = blockInfo(randomBytes(32), BigInteger.TEN, false);
+
+        BlockNumberIndex index = openIndex(directory);
+        index.put(0L, singleton(main));
+        Runnable writes = index.prepareFlush();
+
+        // a reorganization and a new level after the flush is prepared
+        List<BlockInfo> level = singleton(blockInfo(main.getHash(), BigInteger.ONE, false));
+        level.add(blockInfo(fork.getHash(), BigInteger.TEN, true));
+        index.put(0L, level);
+        index.put(1L, singleton(blockInfo(randomBytes(32), BigInteger.TEN, true)));
+        writes.run();
+
+        Assert.assertEquals(2, index.size());
+        Assert.assertArrayEquals(fork.getHash(), index.get(0L).get(0).getHash());
+
+        BlockNumberIndex reopened = openIndex(directory);
+
+        Assert.assertEquals(1, reopened.size());
+        Assert.assertEquals(1, reopened.get(0L).size());
+        assertBlockInfo(main, reopened.get(0L).get(0));
+        reopened.close();
+
+        // the discarded levels are not committed by a later flush
+        reopened = openIndex(directory);
+        reopened.put(2L, singleton(blockInfo(randomBytes(32), BigInteger.TEN, true)));
+        reopened.close();
+
+        reopened = openIndex(directory);
+
+        Assert.assertEquals(3, reopened.size());
+        assertBlockInfo(main, reopened.get(0L).get(0));
+        Assert.assertTrue(reopened.get(1L).isEmpty());
+    }
+
+    @Test
+    public void applyLogWhenMainChainWritesAreLost() throws IOException {
+        File directory = tempRule.newFolder();
+        BlockInfo main = blockInfo(randomBytes(32), BigInteger.TEN, true);
+
+        BlockNumberIndex index = openIndex(directory);
+        index.put(0L, singleton(blockInfo(randomBytes(32), BigInteger.ONE, true)));
+        index.put(1L, singleton(main));
+        index.close();
+
+        // the main chain file without the record of level 1 and the number of levels
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, "index.main"), "rw")) {
+            file.seek(Integer.BYTES);
+            file.writeLong(0);
+            file.seek(2 * 64);
+            file.write(new byte[64]);
+        }
+
+        index = openIndex(directory);
+
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals(1, index.get(1L).size());
+        assertBlockInfo(main, index.get(1L).get(0));
+        index.close();
+
+        // the records applied again are flushed
+        Assert.assertEquals(2, openIndex(directory).size());
+    }
+
+    @Test
+    public void compactLog() throws IOException {
+        File directory = tempRule.newFolder();
+        BlockInfo fork = blockInfo(randomBytes(32), BigInteger.ONE, false);
+        int nlevels = 100_000;
+
+        BlockNumberIndex index = openIndex(directory);
+
+        for (long number = 0; number < nlevels; number++) {
+            index.put(number, singleton(blockInfo(randomBytes(32), BigInteger.valueOf(number), true)));
+        }
+
+        List<BlockInfo> level = index.get(7L);
+        level.add(fork);
+        index.put(7L, level);
+        index.close();
+
+        File logFile = new File(directory, "index.log");
+
+        // a record by level would take 84 bytes
+        Assert.assertTrue(logFile.length() < nlevels * 84L / 2);
+        Assert.assertFalse(new File(directory, "index.log.tmp").exists());
+
+        index = openIndex(directory);
+
+        Assert.assertEquals(nlevels, index.size());
+        Assert.assertEquals(BigInteger.valueOf(nlevels - 1), index.get(nlevels - 1L).get(0).getCummDifficulty());
+        Assert.assertEquals(2, index.get(7L).size());
+        assertBlockInfo(fork, index.get(7L).get(1));
+    }
+
+    @Test
+    public void saveBlocksAndReBranch() throws IOException {
+        File directory = tempRule.newFolder();
+        BlockGenerator blockGenerator = new BlockGenerator();
+        List<Block> blocks = blockGenerator.getSimpleBlockChain(blockGenerator.getGenesisBlock(), 5, 1);
+        Block fork1 = blockGenerator.createChildBlock(blocks.get(1), 0, 3);
+        Block fork2 = blockGenerator.createChildBlock(fork1, 0, 3);
+        HashMapDB blocksDB = new HashMapDB();
+
+        IndexedBlockStore store = new IndexedBlockStore(config);
+        BlockNumberIndex index = openIndex(directory);
+        store.init(index, blocksDB, new HashMapDB());
+
+        BigInteger totalDifficulty = BigInteger.ZERO;
+
+        for (Block block : blocks) {
+            totalDifficulty = totalDifficulty.add(BigInteger.ONE);
+            store.saveBlock(block, totalDifficulty, true);
+        }
+
+        store.saveBlock(fork1, BigInteger.valueOf(5), false);
+        store.saveBlock(fork2, BigInteger.valueOf(8), false);
+        store.reBranch(fork2);
+        store.flush();
+        index.close();
+
+        store = new IndexedBlockStore(config);
+        store.init(openIndex(directory), blocksDB, new HashMapDB());
+
+        // the blocks start at number 1
+        Assert.assertEquals(5, store.getMaxNumber());
+        Assert.assertArrayEquals(fork2.getHash(), store.getBlockHashByNumber(4));
+        Assert.assertArrayEquals(fork1.getHash(), store.getBlockHashByNumber(3));
+        Assert.assertArrayEquals(blocks.get(1).getHash(), store.getBlockHashByNumber(2));
+        Assert.assertNull(store.getBlockHashByNumber(5));
+        Assert.assertArrayEquals(fork2.getHash(), store.getBestBlock().getHash());
+        Assert.assertEquals(2, store.getBlocksInformationByNumber(3).size());
+        Assert.assertEquals(1, store.getBlocksInformationByNumber(5).size());
+    }
+
+    @Ignore
+    @Test
+    public void getHashesByNumber() throws IOException {
+        int nlevels = 100_000;
+        int nlookups = 1_000_000;
+
+        DB indexDB = DBMaker.memoryDB().make();
+        Map<Long, List<BlockInfo>> mapDBIndex = createIndexMap(indexDB);
+        BlockNumberIndex index = openIndex(tempRule.newFolder());
+
+        for (long number = 0; number < nlevels; number++) {
+            List<BlockInfo> level = singleton(blockInfo(randomBytes(32), BigInteger.valueOf(number * 1000), true));
+            mapDBIndex.put(number, level);
+            index.put(number, level);
+        }
+
+        for (Map<Long, List<BlockInfo>> map : new Map[] { mapDBIndex, index }) {
+            IndexedBlockStore store = new IndexedBlockStore(config);
+            store.init(map, new HashMapDB(), null);
+
+            long start = System.nanoTime();
+
+            for (int k = 0; k < nlookups; k++) {
+                Assert.assertNotNull(store.getBlockHashByNumber((k * 7919L) % nlevels));
+            }
+
+            long time = System.nanoTime() - start;
+
+            System.out.println(String.format("%d lookups in %d ms, %s", nlookups, time / 1_000_000, map.getClass().getSimpleName()));
+        }
+
+        indexDB.close();
+        index.close();
+    }
+
+    private static BlockNumberIndex openIndex(File directory) throws IOException {
+        return new BlockNumberIndex(new File(directory, "index.main"), new File(directory, "index.log"));
+    }
+
+    private static BlockInfo blockInfo(byte[] hash, BigInteger totalDifficulty, boolean mainChain) {
+        BlockInfo blockInfo = new BlockInfo();
+        blockInfo.setHash(hash);
+        blockInfo.setCummDifficulty(totalDifficulty);
+        blockInfo.setMainChain(mainChain);
+
+        return blockInfo;
+    }
+
+    private static List<BlockInfo> singleton(BlockInfo blockInfo) {
+        List<BlockInfo> result = new ArrayList<>();
+        result.add(blockInfo);
+
+        return result;
+    }
+
+    private static void assertBlockInfo(BlockInfo expected, BlockInfo actual) {
+        Assert.assertArrayEquals(expected.getHash(), actual.getHash());
+        Assert.assertEquals(expected.getCummDifficulty(), actual.getCummDifficulty());
+        Assert.assertEquals(expected.isMainChain(), actual.isMainChain());
+    }
+}
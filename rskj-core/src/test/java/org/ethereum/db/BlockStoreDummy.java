@@ -57,6 +57,11 @@ public class BlockStoreDummy implements BlockStore {
         return null;
     }
 
+    @Override
+    public BlockHeader getBlockHeaderByHash(byte[] hash) {
+        return null;
+    }
+
     @Override
     public Block getBlockByHashAndDepth(byte[] hash, long depth) {
         return null;
@@ -101,6 +106,15 @@ public class BlockStoreDummy implements BlockStore {
     public void flush() {
     }
 
+    @Override
+    public Runnable prepareFlush() {
+        return () -> { };
+    }
+
+    @Override
+    public void close() {
+    }
+
     @Override
     public void load() {
     }
@@ -28,8 +28,7 @@ import org.junit.Test;
 import org.spongycastle.util.encoders.Hex;
 
 import static org.ethereum.TestUtils.randomAddress;
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNull;
+import static org.junit.Assert.*;
 
 public class DetailsDataStoreTest {
 
@@ -151,4 +150,146 @@ public class DetailsDataStoreTest {
         ContractDetails contractDetails = dds.get(c_key);
         assertNull(contractDetails);
     }
+
+    @Test
+    public void getPreparedFlushBeforeWrite() {
+        DatabaseImpl db = new DatabaseImpl(new HashMapDB());
+        DetailsDataStore dds = new DetailsDataStore(config, db);
+
+        RskAddress c_key = new RskAddress("0000000000000000000000000000000000001a2b");
+
+        ContractDetails contractDetails = new ContractDetailsImpl(config);
+        contractDetails.setCode(Hex.decode("60606060"));
+        contractDetails.put(new DataWord(Hex.decode("11")), new DataWord(Hex.decode("aa")));
+
+        dds.update(c_key, contractDetails);
+
+        String encoded1 = Hex.toHexString(contractDetails.getEncoded());
+
+        Runnable writes = dds.prepareFlush();
+
+        assertNull(db.get(c_key.getBytes()));
+        assertEquals(encoded1, Hex.toHexString(dds.get(c_key).getEncoded()));
+        assertTrue(dds.keys().contains(c_key));
+
+        writes.run();
+
+        assertNotNull(db.get(c_key.getBytes()));
+        assertEquals(encoded1, Hex.toHexString(dds.get(c_key).getEncoded()));
+    }
+
+    @Test
+    public void removePreparedFlushBeforeWrite() {
+        DatabaseImpl db = new DatabaseImpl(new HashMapDB());
+        DetailsDataStore dds = new DetailsDataStore(config, db);
+
+        RskAddress c_key = new RskAddress("0000000000000000000000000000000000001a2b");
+
+        ContractDetails contractDetails = new ContractDetailsImpl(config);
+        contractDetails.setCode(Hex.decode("60606060"));
+
+        dds.update(c_key, contractDetails);
+        dds.flush();
+
+        dds.remove(c_key);
+        Runnable writes = dds.prepareFlush();
+
+        assertNotNull(db.get(c_key.getBytes()));
+        assertNull(dds.get(c_key));
+        assertFalse(dds.keys().contains(c_key));
+
+        writes.run();
+
+        assertNull(db.get(c_key.getBytes()));
+        assertNull(dds.get(c_key));
+    }
+
+    @Test
+    public void writeOlderFlushKeepsNewerPendingWrite() {
+        DatabaseImpl db = new DatabaseImpl(new HashMapDB());
+        DetailsDataStore dds = new DetailsDataStore(config, db);
+
+        RskAddress c_key = new RskAddress("0000000000000000000000000000000000001a2b");
+
+        ContractDetails contractDetails = new ContractDetailsImpl(config);
+        contractDetails.setCode(Hex.decode("60606060"));
+        dds.update(c_key, contractDetails);
+        Runnable writes1 = dds.prepareFlush();
+
+        dds.remove(c_key);
+        Runnable writes2 = dds.prepareFlush();
+
+        ContractDetails contractDetails2 = new ContractDetailsImpl(config);
+        contractDetails2.setCode(Hex.decode("61616161"));
+        dds.update(c_key, contractDetails2);
+        String encoded2 = Hex.toHexString(contractDetails2.getEncoded());
+        Runnable writes3 = dds.prepareFlush();
+
+        writes1.run();
+        writes2.run();
+
+        assertNull(db.get(c_key.getBytes()));
+        assertEquals(encoded2, Hex.toHexString(dds.get(c_key).getEncoded()));
+
+        writes3.run();
+
+        assertEquals(encoded2, Hex.toHexString(db.get(c_key.getBytes())));
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedCleanDetails() {
+        DatabaseImpl db = new DatabaseImpl(new HashMapDB());
+        DetailsDataStore dds = new DetailsDataStore(config, db, 2);
+
+        RskAddress addr1 = new RskAddress("0000000000000000000000000000000000000001");
+        RskAddress addr2 = new RskAddress("0000000000000000000000000000000000000002");
+        RskAddress addr3 = new RskAddress("0000000000000000000000000000000000000003");
+
+        dds.update(addr1, new ContractDetailsImpl(config));
+        dds.update(addr2, new ContractDetailsImpl(config));
+        dds.update(addr3, new ContractDetailsImpl(config));
+
+        // updated details are kept until flushed
+        assertEquals(3, dds.getCachedCount());
+        assertEquals(3, dds.getDirtyCount());
+        assertEquals(0, dds.getEvictedCount());
+
+        dds.flush();
+
+        assertEquals(2, dds.getCachedCount());
+        assertEquals(0, dds.getDirtyCount());
+        assertEquals(1, dds.getEvictedCount());
+
+        assertNotNull(dds.get(addr1));
+        assertNotNull(dds.get(addr2));
+        assertNotNull(dds.get(addr3));
+        assertEquals(2, dds.getCachedCount());
+    }
+
+    @Test
+    public void flushOnlyUpdatedDetails() {
+        DatabaseImpl db = new DatabaseImpl(new HashMapDB());
+        DetailsDataStore dds = new DetailsDataStore(config, db);
+
+        RskAddress addr1 = new RskAddress("0000000000000000000000000000000000000001");
+        RskAddress addr2 = new RskAddress("0000000000000000000000000000000000000002");
+
+        dds.update(addr1, new ContractDetailsImpl(config));
+        dds.update(addr2, new ContractDetailsImpl(config));
+        dds.flush();
+
+        db.delete(addr1.getBytes());
+        db.delete(addr2.getBytes());
+
+        ContractDetails details = dds.get(addr2);
+        details.setCode(Hex.decode("60606060"));
+        dds.update(addr2, details);
+        assertTrue(details.isDirty());
+
+        dds.flush();
+
+        assertFalse(details.isDirty());
+        assertNull(db.get(addr1.getBytes()));
+        assertNotNull(db.get(addr2.getBytes()));
+    }
 }
@@ -0,0 +1,171 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ethereum.db;
+
+import co.rsk.blockchain.utils.BlockGenerator;
+import co.rsk.config.RskSystemProperties;
+import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
+import org.ethereum.datasource.HashMapDB;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class IndexedBlockStoreHeadersTest {
+    private final RskSystemProperties config = new RskSystemProperties();
+
+    @Test
+    public void getHeaderWithoutReadingBlocks() {
+        List<Block> blocks = new BlockGenerator().getSimpleBlockChain(new BlockGenerator().getGenesisBlock(), 10, 5);
+        Map<Long, List<IndexedBlockStore.BlockInfo>> index = new HashMap<>();
+        CountingHashMapDB blocksDB = new CountingHashMapDB();
+        HashMapDB headersDB = new HashMapDB();
+
+        IndexedBlockStore store = new IndexedBlockStore(config);
+        store.init(index, blocksDB, headersDB, null);
+        saveBlocks(store, blocks);
+
+        // a new store, without blocks in its cache
+        IndexedBlockStore store2 = new IndexedBlockStore(config);
+        store2.init(index, blocksDB, headersDB, null);
+        blocksDB.reads = 0;
+
+        Block block = blocks.get(blocks.size() - 1);
+
+        Assert.assertArrayEquals(block.getHeader().getEncoded(), store2.getBlockHeaderByHash(block.getHash()).getEncoded());
+        Assert.assertEquals(BigInteger.valueOf(blocks.size()), store2.getTotalDifficultyForHash(block.getHash()));
+        Assert.assertTrue(store2.isBlockExist(block.getHash()));
+
+        List<BlockHeader> headers = store2.getListHeadersEndWith(block.getHash(), 5);
+
+        Assert.assertEquals(5, headers.size());
+
+        for (int k = 0; k < headers.size(); k++) {
+            Assert.assertArrayEquals(blocks.get(blocks.size() - 1 - k).getHash(), headers.get(k).getHash());
+        }
+
+        Assert.assertEquals(0, blocksDB.reads);
+    }
+
+    @Test
+    public void getHeaderOfBlockSavedWithoutHeader() {
+        List<Block> blocks = new BlockGenerator().getSimpleBlockChain(new BlockGenerator().getGenesisBlock(), 3, 1);
+        Map<Long, List<IndexedBlockStore.BlockInfo>> index = new HashMap<>();
+        HashMapDB blocksDB = new HashMapDB();
+
+        IndexedBlockStore store = new IndexedBlockStore(config);
+        store.init(index, blocksDB, null);
+        saveBlocks(store, blocks);
+
+        // as a database of a previous version, only with the blocks
+        HashMapDB headersDB = new HashMapDB();
+        IndexedBlockStore store2 = new IndexedBlockStore(config);
+        store2.init(index, blocksDB, headersDB, null);
+
+        Block block = blocks.get(2);
+
+        Assert.assertArrayEquals(block.getHash(), store2.getBlockHeaderByHash(block.getHash()).getHash());
+        Assert.assertEquals(BigInteger.valueOf(3), store2.getTotalDifficultyForHash(block.getHash()));
+        Assert.assertNotNull(headersDB.get(block.getHash()));
+    }
+
+    @Test
+    public void removeBlockRemovesHeader() {
+        List<Block> blocks = new BlockGenerator().getSimpleBlockChain(new BlockGenerator().getGenesisBlock(), 3, 1);
+        HashMapDB headersDB = new HashMapDB();
+
+        IndexedBlockStore store = new IndexedBlockStore(config);
+        store.init(new HashMap<>(), new HashMapDB(), headersDB, null);
+        saveBlocks(store, blocks);
+
+        Block block = blocks.get(2);
+        store.removeBlock(block);
+
+        Assert.assertNull(headersDB.get(block.getHash()));
+        Assert.assertNull(store.getBlockHeaderByHash(block.getHash()));
+        Assert.assertEquals(BigInteger.ZERO, store.getTotalDifficultyForHash(block.getHash()));
+        Assert.assertFalse(store.isBlockExist(block.getHash()));
+    }
+
+    @Test
+    public void getUnknownHeader() {
+        IndexedBlockStore store = new IndexedBlockStore(config);
+        store.init(new HashMap<>(), new HashMapDB(), new HashMapDB(), null);
+
+        Assert.assertNull(store.getBlockHeaderByHash(new byte[32]));
+        Assert.assertNull(store.getBlockHashByNumber(1));
+        Assert.assertTrue(store.getListHeadersEndWith(new byte[32], 10).isEmpty());
+    }
+
+    @Ignore
+    @Test
+    public void serveHeaderChunks() {
+        int nblocks = 2000;
+        int chunkSize = 192;
+        List<Block> blocks = new BlockGenerator().getSimpleBlockChain(new BlockGenerator().getGenesisBlock(), nblocks, 50);
+        Map<Long, List<IndexedBlockStore.BlockInfo>> index = new HashMap<>();
+        HashMapDB blocksDB = new HashMapDB();
+        HashMapDB headersDB = new HashMapDB();
+
+        IndexedBlockStore store = new IndexedBlockStore(config);
+        store.init(index, blocksDB, headersDB, null);
+        saveBlocks(store, blocks);
+
+        for (boolean withHeaders : new boolean[] { false, true }) {
+            // a new store, without blocks in its cache
+            IndexedBlockStore store2 = new IndexedBlockStore(config);
+            store2.init(index, blocksDB, withHeaders ? headersDB : new HashMapDB(), null);
+
+            long start = System.nanoTime();
+
+            for (int k = nblocks - 1; k >= chunkSize; k -= chunkSize) {
+                Assert.assertEquals(chunkSize, store2.getListHeadersEndWith(blocks.get(k).getHash(), chunkSize).size());
+            }
+
+            long time = System.nanoTime() - start;
+
+            System.out.println(String.format("Served %d headers in chunks of %d in %d ms, header store %b",
+                    nblocks / chunkSize * chunkSize, chunkSize, time / 1_000_000, withHeaders));
+        }
+    }
+
+    private static void saveBlocks(IndexedBlockStore store, List<Block> blocks) {
+        BigInteger totalDifficulty = BigInteger.ZERO;
+
+        for (Block block : blocks) {
+            totalDifficulty = totalDifficulty.add(BigInteger.ONE);
+            store.saveBlock(block, totalDifficulty, true);
+        }
+    }
+
+    private static class CountingHashMapDB extends HashMapDB {
+        private int reads;
+
+        @Override
+        public byte[] get(byte[] arg0) {
+            reads++;
+            return super.get(arg0);
+        }
+    }
+}
@@ -19,17 +19,21 @@
 
 package org.ethereum.db;
 
+import co.rsk.blockchain.utils.BlockGenerator;
+import co.rsk.config.RskSystemProperties;
 import co.rsk.test.World;
 import co.rsk.test.builders.BlockBuilder;
 import org.ethereum.core.*;
 import org.ethereum.datasource.HashMapDB;
+import org.ethereum.util.RLP;
 import org.ethereum.vm.LogInfo;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.spongycastle.util.encoders.Hex;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.math.BigInteger;
+import java.util.*;
 
 /**
  * Created by ajlopez on 3/1/2016.
@@ -152,6 +156,63 @@ public class ReceiptStoreImplTest {
         Assert.assertArrayEquals(receipt.getEncoded(), result.get(1).getReceipt().getEncoded());
     }
 
+    @Test
+    public void saveMultipleInOneBatch() {
+        CountingHashMapDB dataSource = new CountingHashMapDB();
+        ReceiptStore store = new ReceiptStoreImpl(dataSource);
+        List<TransactionReceipt> receipts = new ArrayList<>();
+
+        for (int k = 0; k < 10; k++) {
+            TransactionReceipt receipt = createReceipt();
+            receipt.setTransaction(new Transaction(new byte[] { (byte) k }, null, null, null, null, null));
+            receipts.add(receipt);
+        }
+
+        byte[] blockHash = Hex.decode("0102030405060708");
+
+        store.saveMultiple(blockHash, receipts);
+
+        Assert.assertEquals(1, dataSource.batches);
+        Assert.assertEquals(0, dataSource.puts);
+
+        for (int k = 0; k < 10; k++) {
+            TransactionInfo result = store.get(receipts.get(k).getTransaction().getHash());
+
+            Assert.assertArrayEquals(blockHash, result.getBlockHash());
+            Assert.assertEquals(k, result.getIndex());
+        }
+    }
+
+    @Test
+    public void addTransactionSavedByPreviousVersion() {
+        HashMapDB dataSource = new HashMapDB();
+        ReceiptStore store = new ReceiptStoreImpl(dataSource);
+
+        TransactionReceipt receipt0 = createReceipt();
+        byte[] blockHash0 = Hex.decode("010203040506070809");
+        byte[] txHash = receipt0.getTransaction().getHash();
+
+        // the list of receipts saved by previous versions
+        dataSource.put(txHash, RLP.encodeList(new TransactionInfo(receipt0, blockHash0, 3).getEncoded()));
+
+        Assert.assertArrayEquals(blockHash0, store.get(txHash).getBlockHash());
+
+        TransactionReceipt receipt = createReceipt();
+        byte[] blockHash = Hex.decode("0102030405060708");
+
+        store.add(blockHash, 42, receipt);
+
+        Assert.assertNull(dataSource.get(txHash));
+
+        List<TransactionInfo> result = store.getAll(txHash);
+
+        Assert.assertEquals(2, result.size());
+        Assert.assertArrayEquals(blockHash0, result.get(0).getBlockHash());
+        Assert.assertEquals(3, result.get(0).getIndex());
+        Assert.assertArrayEquals(blockHash, result.get(1).getBlockHash());
+        Assert.assertEquals(42, result.get(1).getIndex());
+    }
+
     @Test
     public void getUnknownTransactionByBlock() {
         ReceiptStore store = new ReceiptStoreImpl(new HashMapDB());
@@ -270,6 +331,81 @@ public class ReceiptStoreImplTest {
         Assert.assertNull(result);
     }
 
+    @Test
+    public void getTransactionInMainChainAfterReorganization() {
+        World world = new World();
+        BlockStore blockStore = world.getBlockChain().getBlockStore();
+        Block genesis = world.getBlockChain().getBestBlock();
+
+        Block block1a = new BlockBuilder().difficulty(10).parent(genesis).build();
+        Block block1b = new BlockBuilder().difficulty(9).parent(genesis).build();
+        Block block2b = new BlockBuilder().difficulty(10).parent(block1b).build();
+
+        Assert.assertEquals(ImportResult.IMPORTED_BEST, world.getBlockChain().tryToConnect(block1a));
+        Assert.assertEquals(ImportResult.IMPORTED_NOT_BEST, world.getBlockChain().tryToConnect(block1b));
+
+        ReceiptStore store = new ReceiptStoreImpl(new HashMapDB());
+        TransactionReceipt receipt = createReceipt();
+        byte[] txHash = receipt.getTransaction().getHash();
+
+        store.add(block1a.getHash(), 3, receipt);
+        store.add(block1b.getHash(), 42, receipt);
+
+        Assert.assertArrayEquals(block1a.getHash(), store.getInMainChain(txHash, blockStore).getBlockHash());
+
+        Assert.assertEquals(ImportResult.IMPORTED_BEST, world.getBlockChain().tryToConnect(block2b));
+
+        Assert.assertArrayEquals(block1b.getHash(), store.getInMainChain(txHash, blockStore).getBlockHash());
+        Assert.assertEquals(42, store.get(txHash, block2b.getHash(), blockStore).getIndex());
+        Assert.assertEquals(3, store.get(txHash, block1a.getHash(), blockStore).getIndex());
+        Assert.assertNull(store.get(txHash, genesis.getHash(), blockStore));
+    }
+
+    @Ignore
+    @Test
+    public void getTransactionsFromLargeStore() {
+        int nblocks = 100_000;
+        int nlookups = 1000;
+
+        IndexedBlockStore blockStore = new IndexedBlockStore(new RskSystemProperties());
+        blockStore.init(new HashMap<>(), new HashMapDB(), new HashMapDB(), null);
+        ReceiptStore store = new ReceiptStoreImpl(new HashMapDB());
+
+        BlockGenerator blockGenerator = new BlockGenerator();
+        Block block = blockGenerator.getGenesisBlock();
+        List<byte[]> txHashes = new ArrayList<>();
+
+        for (int k = 0; k <= nblocks; k++) {
+            if (k > 0) {
+                block = blockGenerator.createChildBlock(block);
+            }
+
+            blockStore.saveBlock(block, BigInteger.valueOf(k + 1), true);
+
+            TransactionReceipt receipt = createReceipt();
+            receipt.setTransaction(new Transaction(BigInteger.valueOf(k).toByteArray(), null, null, null, null, null));
+            store.add(block.getHash(), 0, receipt);
+            txHashes.add(receipt.getTransaction().getHash());
+        }
+
+        byte[] bestHash = block.getHash();
+        Random random = new Random(0);
+
+        long start = System.nanoTime();
+
+        for (int k = 0; k < nlookups; k++) {
+            byte[] txHash = txHashes.get(random.nextInt(txHashes.size()));
+
+            Assert.assertNotNull(store.getInMainChain(txHash, blockStore));
+            Assert.assertNotNull(store.get(txHash, bestHash, blockStore));
+        }
+
+        long time = System.nanoTime() - start;
+
+        System.out.println(String.format("%d lookups in a store of %d blocks, %d us by lookup",
+                nlookups, nblocks, time / nlookups / 1000));
+    }
+
     // from TransactionTest
     private static TransactionReceipt createReceipt() {
         byte[] stateRoot = Hex.decode("f5ff3fbd159773816a7c707a9b8cb6bb778b934a8f6466c7830ed970498f4b68");
@@ -292,4 +428,21 @@ public class ReceiptStoreImplTest {
 
         return receipt;
     }
+
+    private static class CountingHashMapDB extends HashMapDB {
+        private int puts;
+        private int batches;
+
+        @Override
+        public byte[] put(byte[] key, byte[] value) {
+            puts++;
+            return super.put(key, value);
+        }
+
+        @Override
+        public void updateBatch(Map<byte[], byte[]> rows) {
+            batches++;
+            super.updateBatch(rows);
+        }
+    }
 }
@@ -20,6 +20,7 @@
 package org.ethereum.jsontestsuite;
 
 import co.rsk.core.RskAddress;
+import co.rsk.vm.CodeAnalysisCache;
 import org.ethereum.core.Block;
 import org.ethereum.core.Repository;
 import org.ethereum.core.Transaction;
@@ -59,6 +60,11 @@ public class TestProgramInvokeFactory implements ProgramInvokeFactory {
         return null;
     }
 
+    @Override
+    public CodeAnalysisCache getCodeAnalysisCache() {
+        return null;
+    }
+
     private ProgramInvoke generalInvoke(Transaction tx, int txindex, Repository repository, BlockStore blockStore) {
 
         /***         ADDRESS op       ***/
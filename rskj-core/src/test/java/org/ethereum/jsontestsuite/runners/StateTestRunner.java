@@ -21,6 +21,8 @@ package org.ethereum.jsontestsuite.runners;
 
 import co.rsk.config.RskSystemProperties;
 import co.rsk.core.RskAddress;
+import co.rsk.core.TransactionSenderCache;
+import co.rsk.core.bc.BlockChainFlusher;
 import co.rsk.core.bc.BlockChainImpl;
 import org.ethereum.core.Block;
 import org.ethereum.core.Repository;
@@ -40,6 +42,7 @@ import org.ethereum.jsontestsuite.validators.RepositoryValidator;
 import org.ethereum.vm.LogInfo;
 import org.ethereum.vm.program.ProgramResult;
 import org.ethereum.vm.program.invoke.ProgramInvokeFactory;
+import org.ethereum.vm.program.invoke.ProgramInvokeFactoryImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
@@ -102,7 +105,7 @@ public class StateTestRunner {
         indexedBlockStore.init(new HashMap<>(), new HashMapDB(), null);
         BlockStore blockStore = indexedBlockStore;
 
-        blockchain = new BlockChainImpl(config, repository, blockStore, null, null, null, null, null);
+        blockchain = new BlockChainImpl(config, repository, blockStore, null, null, null, null, null, new TransactionSenderCache(config.senderCacheSize()), new ProgramInvokeFactoryImpl(), new BlockChainFlusher(repository, blockStore));
 
         env = EnvBuilder.build(stateTestCase.getEnv());
         invokeFactory = new TestProgramInvokeFactory(env);
@@ -0,0 +1,157 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ethereum.net;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.ethereum.net.eth.message.GetBlockHeadersMessage;
+import org.ethereum.net.p2p.PingMessage;
+import org.ethereum.net.p2p.PongMessage;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class MessageQueueTest {
+
+    @Test
+    public void sendQueuedResponsesInOneFlush() {
+        FlushCounter flushCounter = new FlushCounter();
+        EmbeddedChannel channel = new EmbeddedChannel(flushCounter, new ChannelInboundHandlerAdapter());
+        MessageQueue queue = new MessageQueue();
+
+        queue.sendMessage(new PongMessage());
+        queue.sendMessage(new PongMessage());
+        queue.sendMessage(new PongMessage());
+
+        Assert.assertNull(channel.readOutbound());
+
+        queue.activate(channel.pipeline().lastContext());
+
+        for (int k = 0; k < 3; k++) {
+            Assert.assertTrue(channel.readOutbound() instanceof PongMessage);
+        }
+
+        Assert.assertNull(channel.readOutbound());
+        Assert.assertEquals(1, flushCounter.flushes);
+    }
+
+    @Test
+    public void sendMessageWithoutWaiting() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        MessageQueue queue = new MessageQueue();
+        queue.activate(channel.pipeline().lastContext());
+
+        for (int k = 0; k < 10; k++) {
+            queue.sendMessage(new PongMessage());
+            Assert.assertTrue(channel.readOutbound() instanceof PongMessage);
+        }
+    }
+
+    @Test
+    public void sendNextRequestWhenAnswered() throws InterruptedException {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        MessageQueue queue = new MessageQueue();
+        queue.activate(channel.pipeline().lastContext());
+
+        queue.sendMessage(new PingMessage());
+        queue.sendMessage(new GetBlockHeadersMessage(1, 10));
+        queue.sendMessage(new PongMessage());
+
+        Assert.assertTrue(channel.readOutbound() instanceof PingMessage);
+        Assert.assertTrue(channel.readOutbound() instanceof PongMessage);
+        Assert.assertNull(channel.readOutbound());
+
+        queue.receivedMessage(new PongMessage());
+
+        Assert.assertTrue(channel.readOutbound() instanceof GetBlockHeadersMessage);
+        Assert.assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void sendPendingResponsesWhenWritable() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        MessageQueue queue = new MessageQueue();
+
+        queue.sendMessage(new PongMessage());
+        queue.sendMessage(new PongMessage());
+
+        channel.config().setWriteBufferLowWaterMark(0);
+        channel.config().setWriteBufferHighWaterMark(1);
+        channel.pipeline().lastContext().write(Unpooled.wrappedBuffer(new byte[16]));
+
+        Assert.assertFalse(channel.isWritable());
+
+        queue.activate(channel.pipeline().lastContext());
+
+        Assert.assertNull(channel.readOutbound());
+
+        channel.flush();
+        channel.readOutbound();
+        queue.nudgeQueue();
+
+        Assert.assertTrue(channel.readOutbound() instanceof PongMessage);
+    }
+
+    @Test
+    public void closedQueueDoesNotSend() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        MessageQueue queue = new MessageQueue();
+        queue.activate(channel.pipeline().lastContext());
+
+        queue.close();
+        queue.sendMessage(new PongMessage());
+
+        Assert.assertNull(channel.readOutbound());
+    }
+
+    @Ignore
+    @Test
+    public void sendResponsesThroughput() {
+        int nmessages = 1_000_000;
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        MessageQueue queue = new MessageQueue();
+        queue.activate(channel.pipeline().lastContext());
+        PongMessage message = new PongMessage();
+
+        long start = System.nanoTime();
+
+        for (int k = 0; k < nmessages; k++) {
+            queue.sendMessage(message);
+            channel.readOutbound();
+        }
+
+        long time = System.nanoTime() - start;
+
+        System.out.println(String.format("Sent %d messages in %d ms, %d messages per second",
+                nmessages, time / 1_000_000, nmessages * 1_000_000_000L / time));
+    }
+
+    private static class FlushCounter extends ChannelOutboundHandlerAdapter {
+        private int flushes;
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) throws Exception {
+            flushes++;
+            super.flush(ctx);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ethereum.rpc;
+
+import co.rsk.blockchain.utils.BlockGenerator;
+import co.rsk.config.RskSystemProperties;
+import org.ethereum.core.Block;
+import org.ethereum.core.Bloom;
+import org.ethereum.crypto.SHA3Helper;
+import org.ethereum.datasource.HashMapDB;
+import org.ethereum.db.IndexedBlockStore;
+import org.ethereum.listener.CompositeEthereumListener;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.*;
+
+public class LogBloomIndexTest {
+    private static final byte[] ADDRESS1 = new byte[] { 0x01, 0x02, 0x03 };
+    private static final byte[] ADDRESS2 = new byte[] { 0x04, 0x05, 0x06 };
+
+    private final RskSystemProperties config = new RskSystemProperties();
+
+    @Test
+    public void findBlocksInSections() {
+        Map<Long, byte[]> logs = new HashMap<>();
+        logs.put(5L, ADDRESS1);
+        logs.put(10L, ADDRESS2);
+        logs.put(4100L, ADDRESS1);
+        // in the last section, not complete
+        logs.put(8200L, ADDRESS1);
+
+        IndexedBlockStore store = createBlockStore(2 * LogBloomIndex.SECTION_SIZE + 100, logs);
+        HashMapDB dataSource = new HashMapDB();
+        LogBloomIndex index = new LogBloomIndex(dataSource);
+
+        // the blocks are matched by their headers before the sections are built
+        Assert.assertEquals(Arrays.asList(5L, 4100L, 8200L), findBlocks(index, store, new LogFilter().withContractAddress(ADDRESS1), 0, store.getMaxNumber()));
+        Assert.assertNull(dataSource.get(new byte[8]));
+
+        index.buildSections(store);
+
+        Assert.assertEquals(Arrays.asList(5L, 4100L, 8200L), findBlocks(index, store, new LogFilter().withContractAddress(ADDRESS1), 0, store.getMaxNumber()));
+        Assert.assertEquals(Collections.singletonList(10L), findBlocks(index, store, new LogFilter().withContractAddress(ADDRESS2), 0, store.getMaxNumber()));
+        Assert.assertEquals(Collections.singletonList(4100L), findBlocks(index, store, new LogFilter().withContractAddress(ADDRESS1), 6, 8199));
+        Assert.assertEquals(Arrays.asList(5L, 10L), findBlocks(index, store, new LogFilter().withContractAddress(ADDRESS1, ADDRESS2), 0, 100));
+        Assert.assertTrue(findBlocks(index, store, new LogFilter().withContractAddress(ADDRESS1).withTopic(ADDRESS2), 0, store.getMaxNumber()).isEmpty());
+
+        // a filter without criteria matches all the blocks
+        Assert.assertEquals(store.getMaxNumber() + 1, findBlocks(index, store, new LogFilter(), 0, store.getMaxNumber()).size());
+
+        Assert.assertNotNull(dataSource.get(new byte[8]));
+    }
+
+    @Test
+    public void buildSectionAgainAfterReorganization() {
+        Map<Long, byte[]> logs = new HashMap<>();
+        logs.put(5L, ADDRESS1);
+
+        HashMapDB dataSource = new HashMapDB();
+        LogBloomIndex index = new LogBloomIndex(dataSource);
+        IndexedBlockStore store = createBlockStore(LogBloomIndex.SECTION_SIZE, logs);
+        index.buildSections(store);
+
+        Assert.assertEquals(Collections.singletonList(5L), findBlocks(index, store, new LogFilter().withContractAddress(ADDRESS1), 0, store.getMaxNumber()));
+
+        // other main chain, with other blocks in the section
+        logs.clear();
+        logs.put(7L, ADDRESS1);
+        store = createBlockStore(LogBloomIndex.SECTION_SIZE, logs);
+
+        // the section of the previous main chain is not used
+        Assert.assertEquals(Collections.singletonList(7L), findBlocks(index, store, new LogFilter().withContractAddress(ADDRESS1), 0, store.getMaxNumber()));
+
+        index.buildSections(store);
+
+        Assert.assertEquals(Collections.singletonList(7L), findBlocks(index, store, new LogFilter().withContractAddress(ADDRESS1), 0, store.getMaxNumber()));
+    }
+
+    @Test
+    public void buildSectionsWhenBlockIsConnected() throws InterruptedException {
+        Map<Long, byte[]> logs = new HashMap<>();
+        logs.put(5L, ADDRESS1);
+
+        HashMapDB dataSource = new HashMapDB();
+        IndexedBlockStore store = createBlockStore(LogBloomIndex.SECTION_SIZE, logs);
+        CompositeEthereumListener listener = new CompositeEthereumListener();
+        LogBloomIndex index = new LogBloomIndex(dataSource, store, listener);
+
+        listener.onBlock(store.getBestBlock(), Collections.emptyList());
+
+        for (int k = 0; k < 100 && dataSource.get(new byte[8]) == null; k++) {
+            Thread.sleep(50);
+        }
+
+        Assert.assertNotNull(dataSource.get(new byte[8]));
+        Assert.assertEquals(Collections.singletonList(5L), findBlocks(index, store, new LogFilter().withContractAddress(ADDRESS1), 0, store.getMaxNumber()));
+    }
+
+    @Ignore
+    @Test
+    public void findBlocksInLargeStore() {
+        int nblocks = 100_000;
+        Map<Long, byte[]> logs = new HashMap<>();
+
+        for (long number = 100; number < nblocks; number += 100) {
+            logs.put(number, number % 10_000 == 0 ? ADDRESS2 : ADDRESS1);
+        }
+
+        IndexedBlockStore store = createBlockStore(nblocks, logs);
+        LogFilter filter = new LogFilter().withContractAddress(ADDRESS2);
+        List<Long> expected = new ArrayList<>();
+
+        long start = System.nanoTime();
+
+        // as the blocks were read before the index
+        for (long number = 0; number <= store.getMaxNumber(); number++) {
+            if (filter.matchBloom(new Bloom(store.getChainBlockByNumber(number).getLogBloom()))) {
+                expected.add(number);
+            }
+        }
+
+        long time = System.nanoTime() - start;
+
+        System.out.println(String.format("Blocks read in %d ms", time / 1_000_000));
+
+        LogBloomIndex index = new LogBloomIndex(new HashMapDB());
+
+        start = System.nanoTime();
+        index.buildSections(store);
+        time = System.nanoTime() - start;
+
+        System.out.println(String.format("Sections built in %d ms", time / 1_000_000));
+
+        for (String query : new String[] { "first", "second" }) {
+            start = System.nanoTime();
+
+            Assert.assertEquals(expected, findBlocks(index, store, filter, 0, store.getMaxNumber()));
+
+            time = System.nanoTime() - start;
+
+            System.out.println(String.format("Blocks found in %d ms, %s query", time / 1_000_000, query));
+        }
+    }
+
+    private static List<Long> findBlocks(LogBloomIndex index, IndexedBlockStore store, LogFilter filter, long from, long to) {
+        List<Long> numbers = new ArrayList<>();
+        index.findBlocks(filter, from, to, store, numbers::add);
+
+        return numbers;
+    }
+
+    private IndexedBlockStore createBlockStore(int nblocks, Map<Long, byte[]> logs) {
+        IndexedBlockStore store = new IndexedBlockStore(config);
+        store.init(new HashMap<>(), new HashMapDB(), new HashMapDB(), null);
+
+        BlockGenerator blockGenerator = new BlockGenerator();
+        Block block = blockGenerator.getGenesisBlock();
+
+        for (long number = 0; number < nblocks; number++) {
+            if (number > 0) {
+                block = blockGenerator.createChildBlock(block);
+            }
+
+            if (logs.containsKey(number)) {
+                block.getHeader().setLogsBloom(Bloom.create(SHA3Helper.sha3(logs.get(number))).getData());
+            }
+
+            store.saveBlock(block, BigInteger.valueOf(number + 1), true);
+        }
+
+        return store;
+    }
+}
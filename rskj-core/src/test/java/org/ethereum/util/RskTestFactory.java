@@ -3,6 +3,8 @@ package org.ethereum.util;
 import co.rsk.blockchain.utils.BlockGenerator;
 import co.rsk.config.RskSystemProperties;
 import co.rsk.core.RskAddress;
+import co.rsk.core.TransactionSenderCache;
+import co.rsk.core.bc.BlockChainFlusher;
 import co.rsk.core.bc.BlockChainImpl;
 import co.rsk.core.bc.PendingStateImpl;
 import co.rsk.db.RepositoryImpl;
@@ -35,6 +37,7 @@ public class RskTestFactory {
     private PendingState pendingState;
     private RepositoryImpl repository;
     private ProgramInvokeFactoryImpl programInvokeFactory;
+    private TransactionSenderCache senderCache;
 
     public RskTestFactory() {
         Genesis genesis = new BlockGenerator().getGenesisBlock();
@@ -111,7 +114,10 @@ public class RskTestFactory {
                     null, //circular dependency
                     null,
                     null,
-                    new DummyBlockValidator()
+                    new DummyBlockValidator(),
+                    getSenderCache(),
+                    getProgramInvokeFactory(),
+                    new BlockChainFlusher(getRepository(), getBlockStore())
             );
             PendingState pendingState = getPendingState();
             blockchain.setPendingState(pendingState);
@@ -143,13 +149,22 @@ public class RskTestFactory {
                     null,
                     getProgramInvokeFactory(),
                     getRepository(),
-                    config
+                    config,
+                    getSenderCache()
             );
         }
 
         return pendingState;
     }
 
+    public TransactionSenderCache getSenderCache() {
+        if (senderCache == null) {
+            senderCache = new TransactionSenderCache(config.senderCacheSize());
+        }
+
+        return senderCache;
+    }
+
     public Repository getRepository() {
         if (repository == null) {
             HashMapDB stateStore = new HashMapDB();
@@ -19,11 +19,14 @@
 
 package org.ethereum.vm;
 
+import org.ethereum.util.ByteUtil;
 import org.junit.Test;
 
 import org.spongycastle.util.encoders.Hex;
 
 import java.math.BigInteger;
+import java.util.Random;
+import java.util.function.Consumer;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -326,6 +329,195 @@ public class DataWordTest {
         x.signExtend(k); // should throw an exception
     }
 
+    @Test
+    public void testArithmeticMatchesBigInteger() {
+        Random random = new Random(42);
+
+        for (int k = 0; k < 20000; k++) {
+            byte[] a = randomWord(random);
+            byte[] b = randomWord(random);
+            byte[] c = randomWord(random);
+
+            assertOperation("mul", a, b, refMul(a, b), w -> w.mul(new DataWord(b.clone())));
+            assertOperation("div", a, b, refDiv(a, b), w -> w.div(new DataWord(b.clone())));
+            assertOperation("sdiv", a, b, refSDiv(a, b), w -> w.sDiv(new DataWord(b.clone())));
+            assertOperation("sub", a, b, refSub(a, b), w -> w.sub(new DataWord(b.clone())));
+            assertOperation("mod", a, b, refMod(a, b), w -> w.mod(new DataWord(b.clone())));
+            assertOperation("smod", a, b, refSMod(a, b), w -> w.sMod(new DataWord(b.clone())));
+            assertOperation("mulmod", a, b, refMulMod(a, b, c), w -> w.mulmod(new DataWord(b.clone()), new DataWord(c.clone())));
+            assertOperation("addmod", a, b, refAddMod(a, b, c), w -> w.addmod(new DataWord(b.clone()), new DataWord(c.clone())));
+
+            // keep most exponents small, as in real contracts
+            byte[] e = k % 10 == 0 ? b : new DataWord(random.nextInt(600)).getData();
+            assertOperation("exp", a, e, refExp(a, e), w -> w.exp(new DataWord(e.clone())));
+        }
+    }
+
+    @Test
+    public void testArithmeticDoesNotChangeOperands() {
+        DataWord x = new DataWord(Hex.decode("8000000000000000000000000000000000000000000000000000000000000001"));
+        DataWord y = new DataWord(Hex.decode("fffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffd"));
+        DataWord z = new DataWord(Hex.decode("00000000000000000000000000000000000000000000000000000000000000ff"));
+        String ystr = y.toString();
+        String zstr = z.toString();
+
+        x.clone().mul(y);
+        x.clone().div(y);
+        x.clone().sDiv(y);
+        x.clone().sub(y);
+        x.clone().mod(y);
+        x.clone().sMod(y);
+        x.clone().exp(y);
+        x.clone().mulmod(y, z);
+        x.clone().addmod(y, z);
+
+        assertEquals(ystr, y.toString());
+        assertEquals(zstr, z.toString());
+    }
+
+    @Test
+    public void testExpZeroToTheZero() {
+        DataWord x = new DataWord();
+        x.exp(new DataWord());
+
+        assertEquals(DataWord.ONE, x);
+    }
+
+    @Test
+    public void testSDivMinimumByMinusOne() {
+        DataWord x = new DataWord(Hex.decode("8000000000000000000000000000000000000000000000000000000000000000"));
+        x.sDiv(new DataWord(Hex.decode("ffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffff")));
+
+        assertEquals("8000000000000000000000000000000000000000000000000000000000000000", x.toString());
+    }
+
+    @Test
+    public void testArithmeticPerformance() {
+        boolean enabled = false;
+
+        if (enabled) {
+            byte[] one = Hex.decode("0131544101315441013154410131544101315441013154410131544101315441");
+            byte[] two = Hex.decode("0000000000000000000000000000000000000000ff31544101315441013154ff");
+
+            int ITERATIONS = 10000000;
+
+            long now1 = System.currentTimeMillis();
+            for (int i = 0; i < ITERATIONS; i++) {
+                DataWord x = new DataWord(one.clone());
+                x.mul(new DataWord(two));
+                x.div(new DataWord(two));
+                x.mod(new DataWord(two));
+            }
+            System.out.println("Limbs: " + (System.currentTimeMillis() - now1) + "ms");
+
+            long now2 = System.currentTimeMillis();
+            for (int i = 0; i < ITERATIONS; i++) {
+                BigInteger x = new BigInteger(1, one);
+                BigInteger y = new BigInteger(1, two);
+                x = x.multiply(y).and(DataWord.MAX_VALUE);
+                x = x.divide(y);
+                x = x.mod(y);
+                ByteUtil.copyToArray(x);
+            }
+            System.out.println("BigInteger: " + (System.currentTimeMillis() - now2) + "ms");
+        } else {
+            System.out.println("Arithmetic performance test is disabled.");
+        }
+    }
+
+    private static void assertOperation(String name, byte[] a, byte[] b, BigInteger expected, Consumer<DataWord> operation) {
+        DataWord word = new DataWord(a.clone());
+        operation.accept(word);
+
+        assertEquals(32, word.getData().length);
+        assertEquals(name + " " + Hex.toHexString(a) + " " + Hex.toHexString(b), expected, word.value());
+    }
+
+    // values with a random number of bytes, and limbs that stress carries and quotient estimation
+    private static byte[] randomWord(Random random) {
+        byte[] data = new byte[32];
+        int length = random.nextInt(33);
+
+        for (int i = 32 - length; i < 32; i += 4) {
+            int limb;
+
+            switch (random.nextInt(6)) {
+                case 0: limb = 0; break;
+                case 1: limb = 1; break;
+                case 2: limb = 0x7fffffff; break;
+                case 3: limb = 0x80000000; break;
+                case 4: limb = 0xffffffff; break;
+                default: limb = random.nextInt(); break;
+            }
+
+            for (int j = 0; j < 4 && i + j < 32; j++) {
+                data[i + j] = (byte) (limb >>> (24 - 8 * j));
+            }
+        }
+
+        return data;
+    }
+
+    private static BigInteger refMul(byte[] a, byte[] b) {
+        return new BigInteger(1, a).multiply(new BigInteger(1, b)).and(DataWord.MAX_VALUE);
+    }
+
+    private static BigInteger refDiv(byte[] a, byte[] b) {
+        BigInteger divisor = new BigInteger(1, b);
+        return divisor.signum() == 0 ? BigInteger.ZERO : new BigInteger(1, a).divide(divisor);
+    }
+
+    private static BigInteger refSDiv(byte[] a, byte[] b) {
+        BigInteger divisor = new BigInteger(b);
+        return divisor.signum() == 0 ? BigInteger.ZERO : new BigInteger(a).divide(divisor).and(DataWord.MAX_VALUE);
+    }
+
+    private static BigInteger refSub(byte[] a, byte[] b) {
+        return new BigInteger(1, a).subtract(new BigInteger(1, b)).and(DataWord.MAX_VALUE);
+    }
+
+    private static BigInteger refMod(byte[] a, byte[] b) {
+        BigInteger divisor = new BigInteger(1, b);
+        return divisor.signum() == 0 ? BigInteger.ZERO : new BigInteger(1, a).mod(divisor);
+    }
+
+    private static BigInteger refSMod(byte[] a, byte[] b) {
+        BigInteger divisor = new BigInteger(b);
+
+        if (divisor.signum() == 0) {
+            return BigInteger.ZERO;
+        }
+
+        BigInteger result = new BigInteger(a).abs().mod(divisor.abs());
+        result = new BigInteger(a).signum() == -1 ? result.negate() : result;
+
+        return result.and(DataWord.MAX_VALUE);
+    }
+
+    private static BigInteger refExp(byte[] a, byte[] b) {
+        return new BigInteger(1, a).modPow(new BigInteger(1, b), DataWord._2_256);
+    }
+
+    private static BigInteger refMulMod(byte[] a, byte[] b, byte[] c) {
+        BigInteger modulus = new BigInteger(1, c);
+        return modulus.signum() == 0 ? BigInteger.ZERO : new BigInteger(1, a).multiply(new BigInteger(1, b)).mod(modulus);
+    }
+
+    // addmod reduces both operands first only if the sum could overflow
+    private static BigInteger refAddMod(byte[] a, byte[] b, byte[] c) {
+        BigInteger x = new BigInteger(1, a);
+        BigInteger y = new BigInteger(1, b);
+
+        if (a[0] != 0 || b[0] != 0) {
+            x = refMod(a, c);
+            y = refMod(b, c);
+        }
+
+        BigInteger sum = x.add(y).and(DataWord.MAX_VALUE);
+
+        return refMod(ByteUtil.copyToArray(sum), c);
+    }
+
     public static BigInteger pow(BigInteger x, BigInteger y) {
         if (y.compareTo(BigInteger.ZERO) < 0)
             throw new IllegalArgumentException();
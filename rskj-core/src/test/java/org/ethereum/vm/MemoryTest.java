@@ -19,6 +19,7 @@
 
 package org.ethereum.vm;
 
+import org.ethereum.crypto.HashUtil;
 import org.ethereum.vm.program.Memory;
 import org.junit.Test;
 import org.spongycastle.util.encoders.Hex;
@@ -530,6 +531,43 @@ public class MemoryTest {
         assertTrue(zero == 10);
     }
 
+    @Test
+    public void memoryGrowsByDoubling() {
+        Memory memoryBuffer = new Memory();
+
+        for (int k = 0; k < 1100; k++) {
+            memoryBuffer.write(k * WORD_SIZE, new DataWord(k).getData(), WORD_SIZE, false);
+        }
+
+        assertEquals(1100 * WORD_SIZE, memoryBuffer.size());
+        assertEquals(35, memoryBuffer.getChunks().size());
+        assertEquals(64 * CHUNK_SIZE, memoryBuffer.internalSize());
+
+        for (int k = 0; k < 1100; k++) {
+            assertEquals(new DataWord(k), memoryBuffer.readWord(k * WORD_SIZE));
+        }
+    }
+
+    @Test
+    public void readWordExtendsMemory() {
+        Memory memoryBuffer = new Memory();
 
+        DataWord word = memoryBuffer.readWord(CHUNK_SIZE * 3 + 1);
 
-}
\ No newline at end of file
+        assertTrue(word.isZero());
+        assertEquals(CHUNK_SIZE * 3 + 1 + WORD_SIZE + 31, memoryBuffer.size());
+    }
+
+    @Test
+    public void sha3OfMemoryRegion() {
+        Memory memoryBuffer = new Memory();
+        byte[] data = new byte[CHUNK_SIZE + 100];
+        Arrays.fill(data, (byte) 7);
+
+        memoryBuffer.write(10, data, data.length, false);
+
+        assertArrayEquals(HashUtil.sha3(data), memoryBuffer.sha3(10, data.length));
+        assertArrayEquals(HashUtil.sha3(memoryBuffer.read(0, 40)), memoryBuffer.sha3(0, 40));
+        assertArrayEquals(HashUtil.sha3(new byte[0]), memoryBuffer.sha3(0, 0));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ethereum.vm.program;
+
+import org.ethereum.vm.DataWord;
+import org.ethereum.vm.program.listener.ProgramListenerAdaptor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.EmptyStackException;
+
+public class StackTest {
+    @Test
+    public void pushPeekAndPop() {
+        Stack stack = new Stack();
+
+        stack.push(new DataWord(1));
+        stack.push(new DataWord(2));
+
+        Assert.assertEquals(2, stack.size());
+        Assert.assertEquals(new DataWord(2), stack.peek());
+        Assert.assertEquals(new DataWord(1), stack.get(0));
+        Assert.assertEquals(new DataWord(2), stack.pop());
+        Assert.assertEquals(new DataWord(1), stack.pop());
+        Assert.assertTrue(stack.isEmpty());
+    }
+
+    @Test(expected = EmptyStackException.class)
+    public void popEmptyStack() {
+        new Stack().pop();
+    }
+
+    @Test
+    public void swapElements() {
+        Stack stack = new Stack();
+
+        for (int k = 0; k < 4; k++) {
+            stack.push(new DataWord(k));
+        }
+
+        stack.swap(3, 0);
+
+        Assert.assertEquals(new DataWord(0), stack.peek());
+        Assert.assertEquals(new DataWord(3), stack.get(0));
+        Assert.assertEquals(new DataWord(1), stack.get(1));
+    }
+
+    @Test
+    public void fillUpToMaximumSize() {
+        Stack stack = new Stack();
+
+        for (int k = 0; k < Stack.MAX_SIZE; k++) {
+            stack.push(new DataWord(k));
+        }
+
+        Assert.assertEquals(Stack.MAX_SIZE, stack.size());
+        Assert.assertEquals(Stack.MAX_SIZE, stack.toArray().length);
+
+        try {
+            stack.push(new DataWord(0));
+            Assert.fail();
+        } catch (IllegalStateException ex) {
+            Assert.assertEquals(Stack.MAX_SIZE, stack.size());
+        }
+
+        stack.clear();
+
+        Assert.assertTrue(stack.isEmpty());
+    }
+
+    @Test
+    public void iterateFromBottomToTop() {
+        Stack stack = new Stack();
+        stack.push(new DataWord(1));
+        stack.push(new DataWord(2));
+
+        int k = 1;
+
+        for (DataWord item : stack) {
+            Assert.assertEquals(new DataWord(k++), item);
+        }
+
+        Assert.assertEquals(3, k);
+    }
+
+    @Test
+    public void notifyTraceListener() {
+        int[] counters = new int[3];
+
+        Stack stack = new Stack();
+        stack.setTraceListener(new ProgramListenerAdaptor() {
+            @Override
+            public void onStackPop() {
+                counters[0]++;
+            }
+
+            @Override
+            public void onStackPush(DataWord value) {
+                counters[1]++;
+            }
+
+            @Override
+            public void onStackSwap(int from, int to) {
+                counters[2]++;
+            }
+        });
+
+        stack.push(new DataWord(1));
+        stack.push(new DataWord(2));
+        stack.swap(0, 1);
+        stack.pop();
+
+        Assert.assertEquals(1, counters[0]);
+        Assert.assertEquals(2, counters[1]);
+        Assert.assertEquals(1, counters[2]);
+    }
+}